@@ -0,0 +1,44 @@
+package uwallet;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmark jar. JMH can not take the number of threads as a @Param, so the whole selection
+ * of benchmarks is run once per thread count listed in the uwallet.bench.threads system property (default
+ * "1,4,16"). Results of every run are written as JSON to jmh-threads-N.json in the working directory.
+ *
+ * usage: java [-Duwallet.bench.threads=1,8] -jar benchmarks.jar [benchmark regex]
+ */
+public class BenchmarkMain {
+
+    static final String SQLITE = "sqlite";
+    static final String MEMORY = "memory";
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "uwallet\\..*Benchmark";
+
+        for (String threads : System.getProperty("uwallet.bench.threads", "1,4,16").split(",")) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .result("jmh-threads-" + threads.trim() + ".json")
+                    .resultFormat(ResultFormatType.JSON)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    /**
+     * Points the library at the storage engine a benchmark is parameterized with and erases its records.
+     *
+     * @param engine the name of the storage engine, "sqlite" or "memory".
+     */
+    static void useEngine(String engine) {
+        uWalletDatabase.useEngine(engine);
+        Wallet.deleteAllRecord("delete");
+    }
+}
@@ -0,0 +1,61 @@
+package uwallet;
+
+import org.openjdk.jmh.annotations.*;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Wallet.getLastNTransactions for history reads that fit in an account's ring buffer of recent transactions
+ * and for reads that have to go to storage.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HistoryBenchmark {
+
+    private static final int HISTORY_LENGTH = 1000;
+
+    @State(Scope.Benchmark)
+    public static class SharedWallet {
+
+        @Param({BenchmarkMain.SQLITE, BenchmarkMain.MEMORY})
+        public String engine;
+
+        @Param({"10", "100"})
+        public int N;
+
+        final AtomicInteger threadCounter = new AtomicInteger();
+        Wallet wallet;
+
+        @Setup(Level.Trial)
+        public void setUp() throws UniqueIDConstraintException {
+            BenchmarkMain.useEngine(this.engine);
+            this.wallet = new Wallet("BENCHHISTORY", "US");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccount {
+
+        String name;
+
+        @Setup(Level.Trial)
+        public void setUp(SharedWallet shared) throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+            this.name = "history" + shared.threadCounter.incrementAndGet();
+            shared.wallet.createNewAccount(this.name);
+            for (int i = 0; i < HISTORY_LENGTH; i++)
+                shared.wallet.depositToAccount(1.0, this.name);
+        }
+    }
+
+    @Benchmark
+    public List<Transaction> getLastNTransactions(SharedWallet shared, ThreadAccount account) throws NoSuchObjectInDatabaseException {
+        return shared.wallet.getLastNTransactions(account.name, shared.N);
+    }
+}
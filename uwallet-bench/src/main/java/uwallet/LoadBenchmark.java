@@ -0,0 +1,117 @@
+package uwallet;
+
+import org.openjdk.jmh.annotations.*;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Account.loadAccount and Wallet.loadWallet.
+ *
+ * Warm loads find the object in memory: for accounts that is the identity map of live Account objects, which is
+ * why they are measured with 0, 10k and 100k other accounts alive. Cold loads measure what a miss costs, the scan
+ * of the identity map, the read from storage and the construction (and registration) of the new object. Every
+ * cold load is of its own account, stored before the trial and garbage collected since, so it is one shot per
+ * account on a single thread. Wallets are not kept in a weak map, so their cold load calls the storage layer
+ * directly.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+    private static final String WALLET_ID = "BENCHLOAD";
+    private static final int COLD_WARMUP = 200;
+    private static final int COLD_MEASUREMENT = 2000;
+
+    @State(Scope.Benchmark)
+    public static class Records {
+
+        @Param({BenchmarkMain.SQLITE, BenchmarkMain.MEMORY})
+        public String engine;
+
+        @Param({"0", "10000", "100000"})
+        public int liveAccounts;
+
+        //strong references keep these accounts in the identity map for the whole trial
+        final List<Account> live = new ArrayList<Account>();
+        Account warmAccount;
+        String warmAccountId;
+
+        @Setup(Level.Trial)
+        public void setUp() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+            BenchmarkMain.useEngine(this.engine);
+
+            Wallet wallet = new Wallet(WALLET_ID, "US");
+            wallet.createNewAccount("warm");
+            this.warmAccount = wallet.getAccount("warm");
+            this.warmAccountId = this.warmAccount.getAccountID();
+
+            //in memory only, they never need to reach storage to be scanned past
+            for (int i = 0; i < this.liveAccounts; i++)
+                this.live.add(new Account("live", "LIVE" + i, "BENCHLIVE", "US", "0", 0));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.live.clear();
+        }
+    }
+
+    @Benchmark
+    public Account loadAccountWarm(Records records) throws NoSuchObjectInDatabaseException {
+        return Account.loadAccount(records.warmAccountId);
+    }
+
+    @State(Scope.Benchmark)
+    public static class ColdAccounts {
+
+        //on record and no longer in memory, each one is loaded once
+        final List<String> ids = new ArrayList<String>();
+        int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp(Records records) throws UniqueIDConstraintException {
+            for (int i = 0; i < COLD_WARMUP + COLD_MEASUREMENT; i++) {
+                String id = "COLD" + i;
+                new Account("cold", id, WALLET_ID, "US");
+                this.ids.add(id);
+            }
+            //only the live accounts of the trial and the warm one may stay in the identity map
+            for (int i = 0; i < 100 && Account.countLoadedAccounts()[1] > records.live.size() + 1; i++)
+                System.gc();
+            if (Account.countLoadedAccounts()[1] > records.live.size() + 1)
+                throw new IllegalStateException("The cold accounts were not garbage collected");
+        }
+
+        String take() {
+            if (this.next >= this.ids.size())
+                throw new IllegalStateException("Every cold account was loaded already");
+            return this.ids.get(this.next++);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = COLD_WARMUP)
+    @Measurement(iterations = COLD_MEASUREMENT)
+    @Threads(1)
+    public Account loadAccountCold(Records records, ColdAccounts cold) throws NoSuchObjectInDatabaseException {
+        return Account.loadAccount(cold.take());
+    }
+
+    @Benchmark
+    public Wallet loadWalletWarm(Records records) throws NoSuchObjectInDatabaseException {
+        return Wallet.loadWallet(WALLET_ID);
+    }
+
+    @Benchmark
+    public Wallet loadWalletCold(Records records) throws NoSuchObjectInDatabaseException {
+        return uWalletDatabase.getWallet(WALLET_ID);
+    }
+}
@@ -0,0 +1,241 @@
+package uwallet;
+
+import uwallet.exceptions.InsufficientFundsException;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak test of the public Wallet API. Creates N wallets of M accounts each with an initial deposit, then drives a
+ * weighted mix of deposits, withdrawals, transfers and history reads from T threads for a fixed duration. At the
+ * end it reports the throughput and latency percentiles of each operation, the number of errors, and checks that
+ * the money in the accounts is exactly what was deposited minus what was withdrawn - transfers must neither
+ * create nor destroy money.
+ *
+ * Wallets are created under a fresh prefix for every run, no existing record is touched.
+ *
+ * usage: java -cp benchmarks.jar uwallet.LoadGenerator [--wallets=4] [--accounts=8] [--threads=8]
+ *            [--duration=60] [--mix=deposit:40,withdraw:30,transfer:20,history:10] [--history=10]
+ *            [--initial=1000]
+ *
+ * The exit status is 0 when there were no errors and the balances add up, 1 otherwise.
+ */
+public class LoadGenerator {
+
+    private enum Operation {DEPOSIT, WITHDRAW, TRANSFER, HISTORY}
+
+    private final int wallets;
+    private final int accounts;
+    private final int threads;
+    private final long durationSeconds;
+    private final int historyLength;
+    private final long initialCents;
+    private final int[] cumulativeWeights = new int[Operation.values().length];
+
+    private final List<Wallet> walletList = new ArrayList<Wallet>();
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final AtomicLong[] errors = new AtomicLong[Operation.values().length];
+    private final AtomicLong[] rejected = new AtomicLong[Operation.values().length];
+    //money that entered and left the system, in cents
+    private final AtomicLong depositedCents = new AtomicLong();
+    private final AtomicLong withdrawnCents = new AtomicLong();
+
+    LoadGenerator(Map<String, String> options) {
+        this.wallets = Integer.parseInt(option(options, "wallets", "4"));
+        this.accounts = Integer.parseInt(option(options, "accounts", "8"));
+        this.threads = Integer.parseInt(option(options, "threads", "8"));
+        this.durationSeconds = Long.parseLong(option(options, "duration", "60"));
+        this.historyLength = Integer.parseInt(option(options, "history", "10"));
+        this.initialCents = Long.parseLong(option(options, "initial", "1000")) * 100;
+
+        Map<String, Integer> weights = new HashMap<String, Integer>();
+        for (String entry : option(options, "mix", "deposit:40,withdraw:30,transfer:20,history:10").split(",")) {
+            String[] pair = entry.split(":");
+            weights.put(pair[0].trim().toUpperCase(), Integer.parseInt(pair[1].trim()));
+        }
+        int total = 0;
+        for (Operation operation : Operation.values()) {
+            Integer weight = weights.remove(operation.name());
+            if (operation == Operation.TRANSFER && weight != null && weight > 0 && this.accounts < 2)
+                throw new IllegalArgumentException("Transfers need at least 2 accounts per wallet");
+            total += weight == null ? 0 : weight;
+            this.cumulativeWeights[operation.ordinal()] = total;
+            this.latencies[operation.ordinal()] = new LatencyHistogram();
+            this.errors[operation.ordinal()] = new AtomicLong();
+            this.rejected[operation.ordinal()] = new AtomicLong();
+        }
+        if (!weights.isEmpty())
+            throw new IllegalArgumentException("Unknown operations in mix: " + weights.keySet());
+        if (total <= 0)
+            throw new IllegalArgumentException("The operation mix must have a positive weight");
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<String, String>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("="))
+                throw new IllegalArgumentException("Options are given as --name=value, got " + arg);
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        LoadGenerator generator = new LoadGenerator(options);
+        boolean passed = generator.run();
+        System.exit(passed ? 0 : 1);
+    }
+
+    /**
+     * Runs the whole soak test and prints its report.
+     *
+     * @return true if no operation failed unexpectedly and the balances add up.
+     */
+    boolean run() throws InterruptedException {
+        String prefix = "SOAK" + System.currentTimeMillis() + "W";
+        System.out.printf("Creating %d wallets of %d accounts%n", this.wallets, this.accounts);
+        try {
+            for (int w = 0; w < this.wallets; w++) {
+                Wallet wallet = new Wallet(prefix + w, "US");
+                for (int a = 0; a < this.accounts; a++) {
+                    wallet.createNewAccount(accountName(a));
+                    wallet.depositToAccount(this.initialCents / 100.0, accountName(a), "initial deposit");
+                    this.depositedCents.addAndGet(this.initialCents);
+                }
+                this.walletList.add(wallet);
+            }
+        } catch (UniqueIDConstraintException | NoSuchObjectInDatabaseException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            return false;
+        }
+
+        System.out.printf("Running %d threads for %ds%n", this.threads, this.durationSeconds);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.durationSeconds);
+        StorageMetrics.reset();
+        long started = System.nanoTime();
+
+        List<Thread> workers = new ArrayList<Thread>();
+        for (int t = 0; t < this.threads; t++) {
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    while (System.nanoTime() < deadline)
+                        LoadGenerator.this.doOneOperation();
+                }
+            }, "soak-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+            worker.join();
+        double elapsedSeconds = (System.nanoTime() - started) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        boolean noErrors = this.report(elapsedSeconds);
+        boolean conserved = this.checkConservation();
+        return noErrors && conserved;
+    }
+
+    private void doOneOperation() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Operation operation = this.pickOperation(random.nextInt(this.cumulativeWeights[this.cumulativeWeights.length - 1]));
+        Wallet wallet = this.walletList.get(random.nextInt(this.walletList.size()));
+        int from = random.nextInt(this.accounts);
+        long cents = 1 + random.nextInt(1000);
+        double amount = cents / 100.0;
+
+        long started = System.nanoTime();
+        try {
+            switch (operation) {
+                case DEPOSIT:
+                    wallet.depositToAccount(amount, accountName(from), "soak deposit");
+                    this.depositedCents.addAndGet(cents);
+                    break;
+                case WITHDRAW:
+                    wallet.withdrawFromAccount(amount, accountName(from), "soak withdrawal");
+                    this.withdrawnCents.addAndGet(cents);
+                    break;
+                case TRANSFER:
+                    int to = (from + 1 + random.nextInt(this.accounts - 1)) % this.accounts;
+                    wallet.transfer(amount, accountName(from), accountName(to), "soak transfer");
+                    break;
+                case HISTORY:
+                    wallet.getLastNTransactions(accountName(from), this.historyLength);
+                    break;
+            }
+        } catch (InsufficientFundsException e) {
+            //an expected outcome under a random mix, not an error
+            this.rejected[operation.ordinal()].incrementAndGet();
+        } catch (Exception e) {
+            this.errors[operation.ordinal()].incrementAndGet();
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        }
+        this.latencies[operation.ordinal()].record(System.nanoTime() - started);
+    }
+
+    private Operation pickOperation(int roll) {
+        for (Operation operation : Operation.values()) {
+            if (roll < this.cumulativeWeights[operation.ordinal()])
+                return operation;
+        }
+        throw new AssertionError(roll);
+    }
+
+    private boolean report(double elapsedSeconds) {
+        long totalErrors = 0;
+        long totalOperations = 0;
+        System.out.printf("%n%-10s %10s %10s %9s %9s %9s %9s %9s %8s %8s%n", "operation", "count", "ops/s",
+                "p50(us)", "p90(us)", "p99(us)", "p99.9(us)", "max(us)", "rejected", "errors");
+        for (Operation operation : Operation.values()) {
+            LatencySnapshot snapshot = this.latencies[operation.ordinal()].snapshot();
+            long operationErrors = this.errors[operation.ordinal()].get();
+            System.out.printf("%-10s %10d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f %8d %8d%n",
+                    operation.name().toLowerCase(), snapshot.getCount(), snapshot.getCount() / elapsedSeconds,
+                    snapshot.getP50() / 1e3, snapshot.getP90() / 1e3, snapshot.getP99() / 1e3,
+                    snapshot.getP999() / 1e3, snapshot.getMax() / 1e3,
+                    this.rejected[operation.ordinal()].get(), operationErrors);
+            totalErrors += operationErrors;
+            totalOperations += snapshot.getCount();
+        }
+        System.out.printf("%ntotal %d operations in %.1fs, %.1f ops/s, %d errors%n",
+                totalOperations, elapsedSeconds, totalOperations / elapsedSeconds, totalErrors);
+        System.out.println("storage lock wait: " + StorageMetrics.getLockWait());
+        return totalErrors == 0;
+    }
+
+    /**
+     * Checks that the accounts hold the initial deposits plus every successful deposit minus every successful
+     * withdrawal. Only valid once every worker has stopped.
+     */
+    private boolean checkConservation() {
+        BigDecimal expected = BigDecimal.valueOf(this.depositedCents.get() - this.withdrawnCents.get(), 2);
+        BigDecimal actual = BigDecimal.ZERO;
+        try {
+            for (Wallet wallet : this.walletList) {
+                for (int a = 0; a < this.accounts; a++)
+                    actual = actual.add(wallet.getAccountBalanceBigDecimal(accountName(a)));
+            }
+        } catch (NoSuchObjectInDatabaseException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            return false;
+        }
+
+        boolean conserved = actual.compareTo(expected) == 0;
+        System.out.printf("balance conservation: expected %s, found %s - %s%n",
+                expected.toPlainString(), actual.toPlainString(), conserved ? "OK" : "FAILED");
+        return conserved;
+    }
+
+    private static String accountName(int index) {
+        return "account" + index;
+    }
+
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : value;
+    }
+}
@@ -0,0 +1,81 @@
+package uwallet;
+
+import org.openjdk.jmh.annotations.*;
+import uwallet.exceptions.InsufficientFundsException;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Write paths of the public Wallet API. Every benchmark thread works on its own pair of accounts of a shared
+ * wallet, so the numbers show the cost of the global serialization points rather than of per account locking.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WalletBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedWallet {
+
+        @Param({BenchmarkMain.SQLITE, BenchmarkMain.MEMORY})
+        public String engine;
+
+        final AtomicInteger threadCounter = new AtomicInteger();
+        Wallet wallet;
+        Wallet payee;
+
+        @Setup(Level.Trial)
+        public void setUp() throws UniqueIDConstraintException {
+            BenchmarkMain.useEngine(this.engine);
+            this.wallet = new Wallet("BENCHWALLET", "US");
+            this.payee = new Wallet("BENCHPAYEE", "US");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadAccounts {
+
+        String from;
+        String to;
+
+        @Setup(Level.Trial)
+        public void setUp(SharedWallet shared) throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+            int thread = shared.threadCounter.incrementAndGet();
+            this.from = "from" + thread;
+            this.to = "to" + thread;
+            shared.wallet.createNewAccount(this.from);
+            shared.wallet.createNewAccount(this.to);
+            shared.payee.createNewAccount(this.to);
+            //enough for any number of withdrawals and transfers of a cent
+            shared.wallet.depositToAccount(1e12, this.from);
+        }
+    }
+
+    @Benchmark
+    public void depositToAccount(SharedWallet shared, ThreadAccounts accounts) throws NoSuchObjectInDatabaseException {
+        shared.wallet.depositToAccount(0.01, accounts.from);
+    }
+
+    @Benchmark
+    public void withdrawFromAccount(SharedWallet shared, ThreadAccounts accounts)
+            throws NoSuchObjectInDatabaseException, InsufficientFundsException {
+        shared.wallet.withdrawFromAccount(0.01, accounts.from);
+    }
+
+    @Benchmark
+    public void transfer(SharedWallet shared, ThreadAccounts accounts)
+            throws NoSuchObjectInDatabaseException, InsufficientFundsException {
+        shared.wallet.transfer(0.01, accounts.from, accounts.to);
+    }
+
+    @Benchmark
+    public void transferToWallet(SharedWallet shared, ThreadAccounts accounts)
+            throws NoSuchObjectInDatabaseException, InsufficientFundsException {
+        shared.wallet.transferToWallet(0.01, accounts.from, shared.payee, accounts.to);
+    }
+}
@@ -0,0 +1,202 @@
+package uwallet;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how often each wallet and account is loaded, and saves the hottest ones to a file when the storage is
+ * stopped or the JVM exits. The next run reads the file back to prewarm its caches before taking traffic (see
+ * Storage).
+ *
+ * Each line of the file is a kind (W for a wallet, A for an account), the number of loads and the identifier,
+ * separated by tabs. Lines are ordered hottest first within each kind.
+ *
+ * Counting is off unless -Duwallet.prewarm=true. When on, a load costs a map lookup and an increment; at most
+ * MAX_TRACKED identifiers of each kind are counted, later ones are ignored.
+ */
+final class AccessLog {
+
+    static final int MAX_TRACKED = 100000;
+    static final String WALLET = "W";
+    static final String ACCOUNT = "A";
+
+    private static volatile boolean recording = Boolean.getBoolean("uwallet.prewarm");
+    private static volatile boolean hookInstalled = false;
+    private static final ConcurrentHashMap<String, LongAdder> wallets = new ConcurrentHashMap<String, LongAdder>();
+    private static final ConcurrentHashMap<String, LongAdder> accounts = new ConcurrentHashMap<String, LongAdder>();
+
+    /**
+     * The hottest identifiers of a saved log, hottest first.
+     */
+    static class Entries {
+        final List<String> wallets = new ArrayList<String>();
+        final List<String> accounts = new ArrayList<String>();
+    }
+
+    private AccessLog() {
+    }
+
+    /**
+     * @return the file the log is saved to and read from, -Duwallet.prewarm.file, default sqlite/access.log
+     */
+    static File file() {
+        return new File(System.getProperty("uwallet.prewarm.file", "sqlite" + File.separator + "access.log"));
+    }
+
+    /**
+     * @return the number of wallets, and of accounts, that are saved, -Duwallet.prewarm.limit, default 1000
+     */
+    static int limit() {
+        return Integer.getInteger("uwallet.prewarm.limit", 1000);
+    }
+
+    static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Turns counting on or off. Once anything was counted, the log is also saved when the JVM exits.
+     */
+    static void setRecording(boolean on) {
+        recording = on;
+    }
+
+    static void recordWallet(String walletUID) {
+        if (recording)
+            count(wallets, walletUID);
+    }
+
+    static void recordAccount(String accountIdentifier) {
+        if (recording)
+            count(accounts, accountIdentifier);
+    }
+
+    private static void count(ConcurrentHashMap<String, LongAdder> counts, String identifier) {
+        LongAdder counter = counts.get(identifier);
+        if (counter == null) {
+            if (!hookInstalled)
+                installShutdownHook();
+            if (counts.size() >= MAX_TRACKED)
+                return;
+            LongAdder created = new LongAdder();
+            counter = counts.putIfAbsent(identifier, created);
+            if (counter == null)
+                counter = created;
+        }
+        counter.increment();
+    }
+
+    private static synchronized void installShutdownHook() {
+        if (hookInstalled)
+            return;
+        hookInstalled = true;
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                save(file(), limit());
+            }
+        }, "uwallet-access-log"));
+    }
+
+    /**
+     * Discards every count.
+     */
+    static void reset() {
+        wallets.clear();
+        accounts.clear();
+    }
+
+    /**
+     * Writes the hottest wallets and accounts counted so far. The file is replaced atomically, a reader never sees
+     * it half written. Nothing is written if nothing was counted, so a run without traffic keeps the log of the
+     * run before it.
+     *
+     * @param file the file to write
+     * @param limit the number of wallets, and of accounts, to write
+     */
+    static synchronized void save(File file, int limit) {
+        if (wallets.isEmpty() && accounts.isEmpty())
+            return;
+
+        File dir = file.getAbsoluteFile().getParentFile();
+        try {
+            if (!dir.exists())
+                dir.mkdirs();
+            File partial = new File(dir, file.getName() + ".partial");
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(partial), StandardCharsets.UTF_8));
+            try {
+                writeHottest(out, WALLET, wallets, limit);
+                writeHottest(out, ACCOUNT, accounts, limit);
+            } finally {
+                out.close();
+            }
+            Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            //the next run simply starts cold
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeHottest(BufferedWriter out, String kind, Map<String, LongAdder> counts, int limit) throws IOException {
+        List<Map.Entry<String, Long>> rows = new ArrayList<Map.Entry<String, Long>>();
+        for (Map.Entry<String, LongAdder> entry : counts.entrySet())
+            rows.add(new AbstractMap.SimpleImmutableEntry<String, Long>(entry.getKey(), entry.getValue().sum()));
+        Collections.sort(rows, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                return Long.compare(b.getValue(), a.getValue());
+            }
+        });
+        for (int i = 0; i < rows.size() && i < limit; i++) {
+            out.write(kind + "\t" + rows.get(i).getValue() + "\t" + rows.get(i).getKey());
+            out.newLine();
+        }
+    }
+
+    /**
+     * Reads a saved log.
+     *
+     * @param file the file to read
+     * @return the identifiers in the file, hottest first. Empty if the file does not exist.
+     * @throws IOException if the file exists but could not be read
+     */
+    static Entries read(File file) throws IOException {
+        Entries entries = new Entries();
+        if (!file.exists())
+            return entries;
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split("\t", 3);
+                if (fields.length < 3)
+                    continue;
+                if (fields[0].equals(WALLET))
+                    entries.wallets.add(fields[2]);
+                else if (fields[0].equals(ACCOUNT))
+                    entries.accounts.add(fields[2]);
+            }
+        } finally {
+            in.close();
+        }
+        return entries;
+    }
+}
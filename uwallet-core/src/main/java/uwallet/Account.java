@@ -0,0 +1,888 @@
+package uwallet;
+
+import java.util.*;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.lang.ref.WeakReference;
+import java.lang.ref.ReferenceQueue;
+
+
+import uwallet.exceptions.InsufficientFundsException;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+
+/**
+ * Represents a financial account.  When calls to deposit and withdrawal
+ * are made the whole account gets locked until it is done pushing changes to the uWalletDatabase.
+ * it has a parentUID which can be any String and will not hamper the functioning of the class.
+ * the balance is of arbitrary accuracy and size. When the constructor is called - a new Account is
+ * that must have a non-existent id is created. To get the object referring to a previously created account
+ * one must use the static loadAccount(id) method. To assure unique creation of Transaction ID the account
+ * keeps track of last_txId which get incremented after each new Transaction.
+ *
+ * RI: There can never be more then two objects in existence with the same id. Once a regionCode
+ * is chosen to initialize an account it can not be changed. The last_txID needs to be incremented
+ * after ALL new deposit or withdrawal calls. held is the sum of the holds on record for the account, and
+ * withdrawals never take the balance below it.
+ */
+
+class Account {
+
+    //how many of the most recent transactions each live account keeps in memory to serve history reads.
+    private static final int RECENT_TRANSACTIONS_CAPACITY = 16;
+
+    //the following vars are  used to refer to active objects to ensure that we never have two
+    //Account objects referring to the same account active at the same time.
+    private static List<WeakReference<Account>> loadedAccountObjects = new ArrayList<WeakReference<Account>>();
+    private static ReferenceQueue<Object> rq = new ReferenceQueue<Object>();
+    //guards loadedAccountObjects, it can be watched with the ContentionProfiler
+    private static final ProfiledLock loadedAccountObjectsLock = new ProfiledLock("Account.loadedAccountObjects");
+
+    private BigDecimal balance;
+    //the sum of the amounts of the holds on the account, never more than balance
+    private BigDecimal held = BigDecimal.ZERO;
+    private final String accountName;
+    private final String id;
+    private final String parentWalletUID;
+    private final String regionCode;
+    private int last_txID = 0; //the last txID that was created. 0 referring to nothing was last.
+    private final CurrencyFormatter currencyFormat; //shared by every account of the region
+
+    //ring buffer of the most recent committed transactions, oldest first. It always holds a contiguous run of the
+    //newest transactions on record, recentTransactionsComplete is true when that run is the entire history.
+    private final ArrayDeque<Transaction> recentTransactions = new ArrayDeque<Transaction>(RECENT_TRANSACTIONS_CAPACITY);
+    private boolean recentTransactionsComplete = false;
+
+    /**
+     * Creates an Account object with a name defined by accountName. Balance is initialized to 0.
+     *
+     * @param accountName      the name of the account. a String that can not be empty.
+     * @param uniqueIdentifier a string that uniquely identifies this account - needs to be globally unique. No
+     *                         two accounts should have the same uniqueIdentifier - can not be Null or empty
+     * @param currencyCountry  ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country whose
+     *                         currency is desired
+     * @throws UniqueIDConstraintException if another Account object with the same uniqueIdentifier already exists either in DB or in memory.
+     */
+    Account(String accountName, String uniqueIdentifier, String parentWalletUID, String currencyCountry) throws UniqueIDConstraintException {
+        try {
+            this.loadAccount(uniqueIdentifier);
+            throw new UniqueIDConstraintException("Unique Identifier: " + uniqueIdentifier + " is already allocated to an account!");
+        } catch (NoSuchObjectInDatabaseException e) {
+            this.id = uniqueIdentifier;
+            this.parentWalletUID = parentWalletUID;
+            this.accountName = accountName;
+            this.balance = new BigDecimal("0");
+            this.regionCode = currencyCountry;
+            this.currencyFormat = CurrencyFormatter.forRegion(currencyCountry);
+            this.recentTransactionsComplete = true; //a brand new account has no history
+            this.commit(Collections.<Transaction>emptyList());
+
+            //this must always be locked when being changed as it is static
+            //and if another object iterates through the list while we change it
+            //it will raise a ConcurrentModificationException
+            loadedAccountObjectsLock.lock("Account.<init>");
+            try {
+                WeakReference<Account> weakr = new WeakReference<Account>(this, rq);
+                this.removeNullPointersInActiveObjectList();
+                loadedAccountObjects.add(weakr);
+            } finally {
+                loadedAccountObjectsLock.unlock();
+            }
+        }
+    }
+
+
+    /**
+     * Creates an Account object all variables as given.
+     *
+     * @param accountName      the name of the account. a String that can not be empty.
+     * @param uniqueIdentifier a string that uniquely identifies this account - needs to be globally unique. No
+     *                         two accounts should have the same uniqueIdentifier - can not be Null or empty
+     * @param currencyCountry  ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country whose
+     *                         currency is desired
+     */
+    Account(String accountName, String uniqueIdentifier, String parentWalletUID,
+            String currencyCountry, String balance, int last_txID) {
+        this(accountName, uniqueIdentifier, parentWalletUID, currencyCountry, balance, last_txID, "0");
+    }
+
+    /**
+     * Creates an Account object all variables as given, with funds on hold.
+     *
+     * @param held the sum of the holds on record for the account
+     */
+    Account(String accountName, String uniqueIdentifier, String parentWalletUID,
+            String currencyCountry, String balance, int last_txID, String held) {
+
+        this.id = uniqueIdentifier;
+        this.parentWalletUID = parentWalletUID;
+        this.last_txID = last_txID;
+        this.accountName = accountName;
+        this.balance = new BigDecimal(balance);
+        this.held = new BigDecimal(held);
+        this.regionCode = currencyCountry;
+        this.currencyFormat = CurrencyFormatter.forRegion(currencyCountry);
+        //holds placed before a restart still have to expire
+        if (this.held.signum() > 0)
+            HoldExpiry.start();
+
+        loadedAccountObjectsLock.lock("Account.<init>(loaded)");
+        try {
+            WeakReference<Account> weakr = new WeakReference<Account>(this, rq);
+            //clean up null pointers and add a pointer to this object
+            this.removeNullPointersInActiveObjectList();
+            loadedAccountObjects.add(weakr);
+        } finally {
+            loadedAccountObjectsLock.unlock();
+        }
+    }
+
+    /**
+     * Loads an Account object from persistent database given the uniqueIdentifier.If a reference to the account object
+     * with the identifier already exists, the object will be returned instead of creating a new one to ensure that no 2
+     * Account object exists to represent a single account.
+     *
+     * @param uniqueIdentifier the uniqueIdentifer of the account that wants to be accessed. can not be empty or null
+     * @return Account object as defined within the DB
+     * @throws NoSuchObjectInDatabaseException if the account with the given uniqueIdentifier does not match any account that has been committed to
+     *                                          the database as well as accounts in memory.
+     */
+    static Account loadAccount(String uniqueIdentifier) throws NoSuchObjectInDatabaseException {
+        FlightEvents.AccountLoad event = new FlightEvents.AccountLoad();
+        event.begin();
+        AccessLog.recordAccount(uniqueIdentifier);
+        int scanned = 0;
+
+        loadedAccountObjectsLock.lock("loadAccount");
+        try {
+            for (Iterator<WeakReference<Account>> itr = loadedAccountObjects.iterator(); itr.hasNext(); ) {
+
+                Account acc = itr.next().get();
+                scanned += 1;
+
+                if (acc == null)
+                    continue;
+                else if (acc.getAccountID().equals(uniqueIdentifier)) {
+                    reportLoad(event, uniqueIdentifier, true, scanned);
+                    return acc;
+                }
+
+            }
+        } finally {
+            loadedAccountObjectsLock.unlock();
+        }
+
+        //a Account object for this account is not already loaded, so load one from the DB and return it.
+        try {
+            return registered(uWalletDatabase.getAccount(uniqueIdentifier));
+        } finally {
+            reportLoad(event, uniqueIdentifier, false, scanned);
+        }
+
+
+    }
+
+    /**
+     * Loads several accounts at once, for batch jobs that go through every account. The identity map is scanned
+     * once for the whole list, and the accounts that are not loaded yet are read from the DB in one call. Unlike
+     * loadAccount the loads are not counted in the access log, a job touching every account says nothing about
+     * which ones are hot.
+     *
+     * @param uniqueIdentifiers the identifiers of the accounts, without duplicates
+     * @return the Account objects, in the order of the identifiers. Identifiers of accounts that do not exist
+     *          are skipped.
+     */
+    static List<Account> loadAccounts(List<String> uniqueIdentifiers) {
+        Map<String, Account> found = new HashMap<String, Account>(uniqueIdentifiers.size() * 2);
+        Set<String> wanted = new HashSet<String>(uniqueIdentifiers);
+
+        loadedAccountObjectsLock.lock("loadAccounts");
+        try {
+            //the first object of an identifier is the one kept, see registered
+            for (int i = 0; i < loadedAccountObjects.size(); i++) {
+                Account acc = loadedAccountObjects.get(i).get();
+                if (acc != null && wanted.contains(acc.id) && !found.containsKey(acc.id))
+                    found.put(acc.id, acc);
+            }
+        } finally {
+            loadedAccountObjectsLock.unlock();
+        }
+
+        List<String> missing = new ArrayList<String>();
+        for (String identifier : uniqueIdentifiers) {
+            if (!found.containsKey(identifier))
+                missing.add(identifier);
+        }
+        if (!missing.isEmpty()) {
+            for (Account acc : uWalletDatabase.getAccounts(missing))
+                found.put(acc.id, registered(acc));
+        }
+
+        List<Account> accounts = new ArrayList<Account>(uniqueIdentifiers.size());
+        for (String identifier : uniqueIdentifiers) {
+            Account acc = found.get(identifier);
+            if (acc != null)
+                accounts.add(acc);
+        }
+        return accounts;
+    }
+
+    /**
+     * Settles the race between two loads of the same account that both missed the identity map and built an Account
+     * from the DB. Both objects registered themselves, the one registered first is kept and the other one is dropped
+     * from the map, so every caller ends up with the same object.
+     *
+     * @param loaded an Account just built from the DB
+     * @return the Account registered first for the identifier of loaded, possibly loaded itself
+     */
+    private static Account registered(Account loaded) {
+        loadedAccountObjectsLock.lock("registered");
+        try {
+            Account first = null;
+            for (Iterator<WeakReference<Account>> itr = loadedAccountObjects.iterator(); itr.hasNext(); ) {
+                Account acc = itr.next().get();
+                if (acc == null || !acc.id.equals(loaded.id))
+                    continue;
+                if (first == null)
+                    first = acc;
+                else if (acc == loaded)
+                    itr.remove();
+            }
+            return first != null ? first : loaded;
+        } finally {
+            loadedAccountObjectsLock.unlock();
+        }
+    }
+
+    private static void reportLoad(FlightEvents.AccountLoad event, String uniqueIdentifier, boolean hit, int scanned) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.accountId = uniqueIdentifier;
+            event.hit = hit;
+            event.scanned = scanned;
+            event.commit();
+        }
+    }
+
+    /**
+     * Increases the balance by the given amount. The amount can not be null.
+     *
+     * @param amount - double
+     *            the amount to be deposited. must be positive. the balance is an arbitrary precision class and will
+     *            get as big as the systems memory allows it
+     *
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null. All other items in description
+     *            are ignored. The default description is N/A. Should not be an empty string.
+     *
+     */
+    void deposit(double amount, String... description){
+        FlightEvents.AccountMonitorWait wait = new FlightEvents.AccountMonitorWait();
+        wait.begin();
+        synchronized (this) {
+            this.reportMonitorWait(wait, "deposit");
+            this.last_txID += 1;
+            DepositTransaction depositTX = new DepositTransaction(amount, this, this.last_txID, description);
+            this.balance = depositTX.endingBalance;
+            this.commit(Collections.<Transaction>singletonList(depositTX));
+        }
+    }
+
+
+    /**
+     * Decreases the balance by the given amount. The amount can not be null.
+     *
+     * @param amount - double
+     *               the amount to be withdrawn. must be positive. the balance is an arbitrary precision class and will
+     *               get as big as the systems memory allows it
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null. All other items in description
+     *            are ignored. The default description is N/A. Should not be an empty string.
+     *
+     * @throws InsufficientFundsException
+     *               if the the withdrawal would take the balance in the account below the funds on hold, or
+     *               make it negative
+     */
+    void withdraw(double amount, String... description) throws InsufficientFundsException{
+        FlightEvents.AccountMonitorWait wait = new FlightEvents.AccountMonitorWait();
+        wait.begin();
+        synchronized (this) {
+            this.reportMonitorWait(wait, "withdraw");
+            this.last_txID += 1;
+            WithdrawalTransaction withdrawalTX = new WithdrawalTransaction(amount, this, this.last_txID, description);
+            BigDecimal afterWithdrawalBalance = withdrawalTX.endingBalance;
+            if (afterWithdrawalBalance.compareTo(this.held) < 0){
+                throw new InsufficientFundsException(String.format("%s only has %s available", this.accountName,
+                        this.applyAccountFormat(this.getAvailableBalance())));
+            }
+
+            this.balance = afterWithdrawalBalance;
+            this.commit(Collections.<Transaction>singletonList(withdrawalTX));
+        }
+    }
+
+    /**
+     * Transfers an amount between two accounts of the same currency, which may belong to different wallets. Both
+     * accounts are locked for the whole transfer in the order of their ids, as conversions and scheduled transfers
+     * lock them, so transfers in opposite directions can not deadlock, and both legs are committed in a single
+     * storage transaction: the money is never withdrawn without being deposited.
+     *
+     * @param from the account to withdraw the amount from
+     * @param to the account to deposit the amount to. Must not be from, and must have the currency of from.
+     * @param amount - double
+     *            the amount to be transferred. must be positive.
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null. It describes both legs.
+     *
+     * @throws InsufficientFundsException
+     *            if the withdrawal would take the balance of the from account below the funds on hold
+     */
+    static void transfer(Account from, Account to, double amount, String... description)
+            throws InsufficientFundsException {
+        Account first = from.id.compareTo(to.id) < 0 ? from : to;
+        Account second = first == from ? to : from;
+        FlightEvents.AccountMonitorWait wait = new FlightEvents.AccountMonitorWait();
+        wait.begin();
+        synchronized (first) {
+            synchronized (second) {
+                from.reportMonitorWait(wait, "transfer");
+                WithdrawalTransaction debit = new WithdrawalTransaction(amount, from, from.last_txID + 1, description);
+                if (debit.endingBalance.compareTo(from.held) < 0)
+                    throw new InsufficientFundsException(String.format("%s only has %s available", from.accountName,
+                            from.applyAccountFormat(from.getAvailableBalance())));
+                DepositTransaction credit = new DepositTransaction(amount, to, to.last_txID + 1, description);
+
+                from.last_txID += 1;
+                from.balance = debit.endingBalance;
+                to.last_txID += 1;
+                to.balance = credit.endingBalance;
+
+                uWalletDatabase.commitTransfer(debit, credit);
+                AccountActivity.record(from.id);
+                AccountActivity.record(to.id);
+                from.rememberRecentTransaction(debit);
+                to.rememberRecentTransaction(credit);
+                ChangeStream.publish(debit);
+                ChangeStream.publish(credit);
+            }
+        }
+    }
+
+    /**
+     * Transfers an amount between two accounts of different currencies, converting it with the given rates. Both
+     * accounts are locked for the whole transfer, always in the order of their ids so that two transfers in
+     * opposite directions can not deadlock, and both legs are committed together with the applied rate.
+     *
+     * @param from the account to withdraw the amount from, in its currency
+     * @param to the account to deposit the converted amount to. Must not be from.
+     * @param amount - double
+     *            the amount to be withdrawn from the from account. must be positive.
+     * @param rates the exchange rates to convert with
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null. It describes both legs.
+     *
+     * @return the conversion that was committed.
+     * @throws InsufficientFundsException
+     *            if the withdrawal would cause the balance of the from account to be negative
+     * @throws IllegalStateException
+     *            if the rates have no rate between the currencies of the two accounts
+     */
+    static CurrencyConversion transferConverted(Account from, Account to, double amount, ExchangeRateTable rates,
+                                                String... description) throws InsufficientFundsException {
+        String fromCurrency = from.getCurrencyCode();
+        String toCurrency = to.getCurrencyCode();
+        //read once, the same rate is recorded that is applied even if new rates are loaded meanwhile
+        BigDecimal rate = rates.getRate(fromCurrency, toCurrency);
+
+        Account first = from.id.compareTo(to.id) < 0 ? from : to;
+        Account second = first == from ? to : from;
+        FlightEvents.AccountMonitorWait wait = new FlightEvents.AccountMonitorWait();
+        wait.begin();
+        synchronized (first) {
+            synchronized (second) {
+                from.reportMonitorWait(wait, "transferConverted");
+                WithdrawalTransaction debit = new WithdrawalTransaction(amount, from, from.last_txID + 1, description);
+                if (debit.endingBalance.compareTo(from.held) < 0)
+                    throw new InsufficientFundsException(String.format("%s only has %s available", from.accountName,
+                            from.applyAccountFormat(from.getAvailableBalance())));
+
+                BigDecimal converted = to.roundToCurrency(BigDecimal.valueOf(amount).multiply(rate));
+                DepositTransaction credit = new DepositTransaction(converted.doubleValue(), to, to.last_txID + 1, description);
+
+                from.last_txID += 1;
+                from.balance = debit.endingBalance;
+                to.last_txID += 1;
+                to.balance = credit.endingBalance;
+
+                CurrencyConversion conversion = new CurrencyConversion(debit.timestamp, debit.uuid, credit.uuid,
+                        fromCurrency, toCurrency, rate, rates.getVersion());
+                uWalletDatabase.commitConversion(debit, credit, conversion);
+                AccountActivity.record(from.id);
+                AccountActivity.record(to.id);
+                from.rememberRecentTransaction(debit);
+                to.rememberRecentTransaction(credit);
+                ChangeStream.publish(debit);
+                ChangeStream.publish(credit);
+                return conversion;
+            }
+        }
+    }
+
+    /**
+     * Applies a posting of a batch job to the balance, without committing it: the caller commits the account and
+     * the returned transaction with the rest of its batch. The caller must hold the account's monitor until the
+     * batch is committed, so that no other operation commits the new balance before the transaction that made it.
+     *
+     * @param amount the amount to post, rounded to the account's currency. Positive amounts are deposited,
+     *               negative ones withdrawn.
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null.
+     *
+     * @return the transaction, or null if the amount is 0 or a withdrawal would take the balance below the funds
+     *          on hold, in which case nothing changes.
+     */
+    Transaction post(BigDecimal amount, String... description){
+        Transaction tx;
+        if (amount.signum() > 0)
+            tx = new DepositTransaction(amount.doubleValue(), this, this.last_txID + 1, description);
+        else if (amount.signum() < 0)
+            tx = new WithdrawalTransaction(amount.negate().doubleValue(), this, this.last_txID + 1, description);
+        else
+            return null;
+
+        if (tx.endingBalance.compareTo(this.held) < 0)
+            return null;
+        this.last_txID += 1;
+        this.balance = tx.endingBalance;
+        return tx;
+    }
+
+    /**
+     * Puts back the balance and last transaction id the account had before postings of a batch that could not be
+     * committed. The caller must have held the account's monitor since it read them.
+     */
+    void unpost(BigDecimal balance, int last_txID){
+        this.balance = balance;
+        this.last_txID = last_txID;
+    }
+
+    /**
+     * Keeps a transaction returned by post in the recent history and publishes it, once its batch was committed.
+     * Must be called before the account's monitor is released.
+     */
+    void posted(Transaction tx){
+        this.rememberRecentTransaction(tx);
+        ChangeStream.publish(tx);
+    }
+
+    /**
+     * Holds funds for a later capture. The hold lowers the available balance but posts no transaction; it is
+     * committed together with the new held balance, and scheduled to be released when it expires.
+     *
+     * @param amount - double
+     *            the amount to hold. must be positive.
+     * @param expires when the hold is released if it was not captured or released before
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null. It is the default description of
+     *            the withdrawal a capture posts.
+     *
+     * @return the hold that was placed.
+     * @throws InsufficientFundsException
+     *            if the available balance does not cover the amount
+     * @throws IllegalArgumentException
+     *            if the amount, rounded to the currency, is not positive or the hold would expire before it is
+     *            placed
+     */
+    Hold placeHold(double amount, Timestamp expires, String... description) throws InsufficientFundsException{
+        BigDecimal amountHeld = this.roundToCurrency(BigDecimal.valueOf(amount));
+        if (amountHeld.signum() <= 0)
+            throw new IllegalArgumentException("Can not hold " + amountHeld.toPlainString());
+
+        FlightEvents.AccountMonitorWait wait = new FlightEvents.AccountMonitorWait();
+        wait.begin();
+        synchronized (this) {
+            this.reportMonitorWait(wait, "placeHold");
+            Timestamp created = new Timestamp(System.currentTimeMillis());
+            if (!expires.after(created))
+                throw new IllegalArgumentException("Can not place a hold that expired at " + expires);
+            if (this.getAvailableBalance().compareTo(amountHeld) < 0)
+                throw new InsufficientFundsException(String.format("%s only has %s available", this.accountName,
+                        this.applyAccountFormat(this.getAvailableBalance())));
+
+            Hold hold = new Hold(this.id + "HOLD" + UUID.randomUUID().toString(), this.id, amountHeld,
+                    description.length > 0 ? description[0] : "N/A", created, expires);
+            this.held = this.held.add(amountHeld);
+            uWalletDatabase.commitHold(this, hold);
+            HoldExpiry.schedule(hold);
+            return hold;
+        }
+    }
+
+    /**
+     * Ends a hold by withdrawing at most the held amount. The rest of the hold is released, the withdrawal and
+     * the end of the hold are committed together.
+     *
+     * @param holdId the id of a hold on this account
+     * @param amount - double
+     *            the amount to withdraw. must be positive and at most the amount of the hold.
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null. The default is the description
+     *            of the hold.
+     *
+     * @return the withdrawal.
+     * @throws NoSuchObjectInDatabaseException
+     *            if the hold is not on record for this account, it was captured, released or expired already
+     * @throws IllegalArgumentException
+     *            if the amount is not positive or more than the amount of the hold
+     */
+    Transaction captureHold(String holdId, double amount, String... description) throws NoSuchObjectInDatabaseException{
+        FlightEvents.AccountMonitorWait wait = new FlightEvents.AccountMonitorWait();
+        wait.begin();
+        synchronized (this) {
+            this.reportMonitorWait(wait, "captureHold");
+            Hold hold = this.getOwnHold(holdId);
+            BigDecimal captured = BigDecimal.valueOf(amount);
+            if (captured.signum() <= 0 || captured.compareTo(hold.getAmount()) > 0)
+                throw new IllegalArgumentException("Can not capture " + captured.toPlainString() + " of a hold of "
+                        + hold.getAmount().toPlainString());
+
+            this.held = this.held.subtract(hold.getAmount());
+            this.last_txID += 1;
+            WithdrawalTransaction capture = new WithdrawalTransaction(amount, this, this.last_txID,
+                    description.length > 0 ? description : new String[]{hold.getDescription()});
+            this.balance = capture.endingBalance;
+            uWalletDatabase.commitHoldRelease(this, Collections.<Transaction>singletonList(capture), holdId);
+            AccountActivity.record(this.id);
+            this.rememberRecentTransaction(capture);
+            ChangeStream.publish(capture);
+            return capture;
+        }
+    }
+
+    /**
+     * Ends a hold without withdrawing anything, its amount is available again.
+     *
+     * @param holdId the id of a hold on this account
+     * @throws NoSuchObjectInDatabaseException
+     *            if the hold is not on record for this account, it was captured, released or expired already
+     */
+    void releaseHold(String holdId) throws NoSuchObjectInDatabaseException{
+        FlightEvents.AccountMonitorWait wait = new FlightEvents.AccountMonitorWait();
+        wait.begin();
+        synchronized (this) {
+            this.reportMonitorWait(wait, "releaseHold");
+            Hold hold = this.getOwnHold(holdId);
+            this.held = this.held.subtract(hold.getAmount());
+            uWalletDatabase.commitHoldRelease(this, Collections.<Transaction>emptyList(), holdId);
+        }
+    }
+
+    /**
+     * Releases a hold the HoldExpiry found to have expired, unless it ended meanwhile.
+     */
+    void expireHold(String holdId){
+        synchronized (this) {
+            try {
+                Hold hold = this.getOwnHold(holdId);
+                if (hold.getExpires().getTime() > System.currentTimeMillis())
+                    return;
+                this.held = this.held.subtract(hold.getAmount());
+                uWalletDatabase.commitHoldRelease(this, Collections.<Transaction>emptyList(), holdId);
+            } catch (NoSuchObjectInDatabaseException e) {
+                //captured or released before it expired
+            }
+        }
+    }
+
+    //must be called while holding the monitor, the hold can not end meanwhile
+    private Hold getOwnHold(String holdId) throws NoSuchObjectInDatabaseException{
+        Hold hold = uWalletDatabase.getHold(holdId);
+        if (!hold.getAccountId().equals(this.id))
+            throw new NoSuchObjectInDatabaseException("No hold with identifier " + holdId + " on " + this.accountName);
+        return hold;
+    }
+
+    /**
+     * Rounds an amount the way the account's currency is, to its number of fraction digits.
+     */
+    BigDecimal roundToCurrency(BigDecimal amount){
+        return amount.setScale(this.currencyFormat.getFractionDigits(), this.currencyFormat.getRoundingMode());
+    }
+
+    private void reportMonitorWait(FlightEvents.AccountMonitorWait wait, String operation) {
+        wait.end();
+        if (wait.shouldCommit()) {
+            wait.accountId = this.id;
+            wait.operation = operation;
+            wait.commit();
+        }
+    }
+
+    /**
+     * updates the persistent data to contain transactions that have not been saved yet. Must be run after complete
+     * operations on the account to ensure that they will be persistent. Uploads the state of the account and
+     * transactions to database in a single database transaction, then publishes the transactions on the ChangeStream.
+     */
+    private void commit(List<Transaction> uncomitedTransactions ){
+        FlightEvents.AccountCommit event = new FlightEvents.AccountCommit();
+        event.begin();
+
+        uWalletDatabase.commit(this, uncomitedTransactions);
+        if (!uncomitedTransactions.isEmpty())
+            AccountActivity.record(this.id);
+
+        for (int i = 0; i < uncomitedTransactions.size(); i++) {
+            this.rememberRecentTransaction(uncomitedTransactions.get(i));
+            ChangeStream.publish(uncomitedTransactions.get(i));
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.accountId = this.id;
+            event.batchSize = uncomitedTransactions.size();
+            event.commit();
+        }
+    }
+
+    /**
+     *
+     * Return the past N transaction. Reads for no more transactions than are kept in memory are served without
+     * going to the database.
+     *
+     * @return List<Transaction> - which is a list of length 0-N (limited by the total number of transactions for
+     * the account) of the last 0-N transactions that are on file for this account, ordered by sequence, newest
+     * first. Only returns transactions made BEFORE method is called.
+     *
+     */
+    synchronized List<Transaction> getPastTransactions(int N) {
+        List<Transaction> pastTransactions = this.getRecentTransactionsBefore(Long.MAX_VALUE, N);
+        if (pastTransactions != null)
+            return pastTransactions;
+
+        try {
+            pastTransactions = uWalletDatabase.getNLastTransactions(this.id, N);
+        } catch (NoSuchObjectInDatabaseException e) {
+            //this account has never been committed to the DB yet
+            //so return an empty list
+            return new ArrayList<Transaction>();
+        }
+
+        //refill the ring buffer with what we just read, newest transactions are at the front of the list
+        this.recentTransactions.clear();
+        for (int i = Math.min(pastTransactions.size(), RECENT_TRANSACTIONS_CAPACITY) - 1; i >= 0; i--)
+            this.recentTransactions.addLast(pastTransactions.get(i));
+        this.recentTransactionsComplete = pastTransactions.size() < N
+                && pastTransactions.size() <= RECENT_TRANSACTIONS_CAPACITY;
+
+        return pastTransactions;
+    }
+
+    /**
+     *
+     * Return the N transactions that directly precede the given sequence number, to page through the history.
+     *
+     * @param sequence only transactions with a sequence strictly lower than this one are returned.
+     *
+     * @return List<Transaction> - which is a list of length 0-N (limited by the total number of transactions for
+     * the account before the sequence), ordered by sequence, newest first.
+     *
+     */
+    synchronized List<Transaction> getPastTransactionsBefore(long sequence, int N) {
+        List<Transaction> pastTransactions = this.getRecentTransactionsBefore(sequence, N);
+        if (pastTransactions != null)
+            return pastTransactions;
+
+        try {
+            return uWalletDatabase.getTransactionsBefore(this.id, sequence, N);
+        } catch (NoSuchObjectInDatabaseException e) {
+            //this account has never been committed to the DB yet
+            //so return an empty list
+            return new ArrayList<Transaction>();
+        }
+    }
+
+    /**
+     * Answers a history read from the ring buffer alone.
+     *
+     * @return the N transactions before the sequence, newest first, or null if the ring buffer does not hold
+     * enough of the history to answer.
+     */
+    private List<Transaction> getRecentTransactionsBefore(long sequence, int N){
+        List<Transaction> pastTransactions = new ArrayList<Transaction>(Math.min(N, this.recentTransactions.size()));
+        Iterator<Transaction> itr = this.recentTransactions.descendingIterator();
+        while (pastTransactions.size() < N && itr.hasNext()) {
+            Transaction tx = itr.next();
+            if (tx.sequence < sequence)
+                pastTransactions.add(tx);
+        }
+
+        if (pastTransactions.size() == N || this.recentTransactionsComplete)
+            return pastTransactions;
+        return null;
+    }
+
+    /**
+     * Adds a committed transaction to the ring buffer, evicting the oldest one if it is full.
+     */
+    private void rememberRecentTransaction(Transaction tx){
+        if (this.recentTransactions.size() == RECENT_TRANSACTIONS_CAPACITY) {
+            this.recentTransactions.removeFirst();
+            this.recentTransactionsComplete = false;
+        }
+        this.recentTransactions.addLast(tx);
+    }
+
+    /**
+     * Get this account's name.
+     *
+     * @return String - the name of the account
+     */
+    String getAccountName(){
+        return this.accountName;
+    }
+
+    /**
+     * Get this accounts' unique identifier.
+     * @return int - the account id
+     */
+    String getAccountID(){
+        return this.id;
+    }
+
+    /**
+     * Get this accounts currency region code.
+     *
+     * @return String - ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country that was used.
+     */
+    String getRegionCode(){
+        return this.regionCode;
+    }
+
+    /**
+     * Get this accounts currency.
+     *
+     * @return String - the ISO 4217 code of the currency of the account's region.
+     */
+    String getCurrencyCode(){
+        return this.currencyFormat.getCurrencyCode();
+    }
+
+    /**
+     * Get this accounts last transaction id.
+     *
+     * @return int - a variable that keeps track of the number of transaction object was created, this variable is
+     * used to ensure uniqueness in the identifier for the transactions and does not represent the actual number of
+     * transactions stored for this account.
+     */
+    int getLastTxId(){
+        return this.last_txID;
+    }
+
+    /**
+     *  Get the balance of this account as a BigDecimal
+     *
+     * @return a BigDecimal object representing the CURRENT balance - BigDecimal is immutable so it will not
+     * update with changes to the account.
+     */
+    BigDecimal getCurrentBalance(){
+        return this.balance;
+    }
+
+    /**
+     * @return the sum of the amounts of the holds on this account.
+     */
+    BigDecimal getHeldBalance(){
+        return this.held;
+    }
+
+    /**
+     * @return the balance that can be withdrawn or held, the balance less the funds on hold.
+     */
+    BigDecimal getAvailableBalance(){
+        return this.balance.subtract(this.held);
+    }
+
+    /**
+     * Get the balance of this account as formatted with the currency region.
+     *
+     * @return String - the balance in english, as formatted as per standards for the country that was used to initialize
+     * this account.
+     */
+    String getFormattedBalance(){
+
+        return this.currencyFormat.format(this.balance);
+    }
+
+    /**
+     *  get the unique identifier of this account's parent wallet.
+     *
+     * @return the UID of the parent wallet.
+     */
+    String getParentWalletUID(){
+        return this.parentWalletUID;
+    }
+
+    /**
+     * Returns a formatted version of any double using this account's currency region.
+     *
+     * @param amount double -  a double representing the amount to be formatted.
+     *
+     * @return String - a formatted version of the double passed in using this account's currency format.
+     */
+    String applyAccountFormat(double amount){
+        return this.currencyFormat.format(amount);
+    }
+
+    /**
+     * Returns a formatted version of any BigDecimal using this account's currency region.
+     *
+     * @param amount BigDecimal -  a BigDecimal representing the amount to be formatted.
+     *
+     * @return String - a formatted version of the double passed in using this account's currency format.
+     */
+    String applyAccountFormat(BigDecimal amount){
+        return this.currencyFormat.format(amount);
+    }
+
+    @Override
+    public String toString(){
+        return this.id + "|" + this.accountName + " : " + this.getFormattedBalance();
+    }
+
+    /**
+     * Counts the identity map of live accounts. Holds the same lock as loadAccount, for the time of one scan.
+     *
+     * @return an array of two counts: the references in the map, and how many of them still point to an account.
+     */
+    static int[] countLoadedAccounts(){
+        loadedAccountObjectsLock.lock("countLoadedAccounts");
+        try {
+            int live = 0;
+            for (int i = 0; i < loadedAccountObjects.size(); i++) {
+                if (loadedAccountObjects.get(i).get() != null)
+                    live += 1;
+            }
+            return new int[]{loadedAccountObjects.size(), live};
+        } finally {
+            loadedAccountObjectsLock.unlock();
+        }
+    }
+
+    private void removeNullPointersInActiveObjectList(){
+        //clean up the loadedAccountObject list to remove null pointers
+        loadedAccountObjectsLock.lock("removeNullPointersInActiveObjectList");
+        try {
+            Iterator<WeakReference<Account>> itr = loadedAccountObjects.iterator();
+            while(itr.hasNext()) {
+                Account acc = itr.next().get();
+                if (acc == null)
+                    itr.remove();
+            }
+        } finally {
+            loadedAccountObjectsLock.unlock();
+        }
+
+    }
+
+}
\ No newline at end of file
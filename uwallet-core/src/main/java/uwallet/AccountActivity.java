@@ -0,0 +1,136 @@
+package uwallet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the committed operations (deposits, withdrawals, ...) of each account, to rank the hottest accounts in
+ * diagnostics. Counts are kept per window of WINDOW_NANOS: when a window is over a new one starts and the one
+ * before it is kept, so rates are always computed over the last one to two windows and follow the load as it
+ * shifts.
+ *
+ * Recording an operation costs a clock read, a map lookup and an increment. At most MAX_TRACKED accounts are
+ * counted per window, later ones are ignored until the next window.
+ *
+ * RI: previous, if not null, started WINDOW_NANOS or more before current.
+ */
+final class AccountActivity {
+
+    static final long WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    static final int MAX_TRACKED = 100000;
+
+    private static class Window {
+        final long started;
+        final ConcurrentHashMap<String, LongAdder> operations = new ConcurrentHashMap<String, LongAdder>();
+
+        Window(long started) {
+            this.started = started;
+        }
+    }
+
+    /**
+     * The operation rate of one account.
+     */
+    static class Rate {
+        final String accountId;
+        final long operations;
+        final double perSecond;
+
+        Rate(String accountId, long operations, double perSecond) {
+            this.accountId = accountId;
+            this.operations = operations;
+            this.perSecond = perSecond;
+        }
+    }
+
+    private static volatile Window current = new Window(System.nanoTime());
+    private static volatile Window previous = null;
+
+    private AccountActivity() {
+    }
+
+    /**
+     * Counts one committed operation of the account.
+     */
+    static void record(String accountId) {
+        Window window = currentWindow(System.nanoTime());
+        LongAdder counter = window.operations.get(accountId);
+        if (counter == null) {
+            if (window.operations.size() >= MAX_TRACKED)
+                return;
+            LongAdder created = new LongAdder();
+            counter = window.operations.putIfAbsent(accountId, created);
+            if (counter == null)
+                counter = created;
+        }
+        counter.increment();
+    }
+
+    /**
+     * Get the accounts with the most operations per second over the current and the previous window.
+     *
+     * @param k the number of accounts to return
+     * @return at most k accounts, hottest first.
+     */
+    static List<Rate> hottest(int k) {
+        long now = System.nanoTime();
+        Window window = currentWindow(now);
+        Window before = previous;
+        long since = before != null ? before.started : window.started;
+        double seconds = Math.max(1, now - since) / (double) TimeUnit.SECONDS.toNanos(1);
+
+        Map<String, Long> totals = new HashMap<String, Long>();
+        for (Window counted : new Window[]{before, window}) {
+            if (counted == null)
+                continue;
+            for (Map.Entry<String, LongAdder> entry : counted.operations.entrySet()) {
+                Long total = totals.get(entry.getKey());
+                totals.put(entry.getKey(), (total == null ? 0 : total) + entry.getValue().sum());
+            }
+        }
+
+        List<Rate> rates = new ArrayList<Rate>();
+        for (Map.Entry<String, Long> entry : totals.entrySet())
+            rates.add(new Rate(entry.getKey(), entry.getValue(), entry.getValue() / seconds));
+        Collections.sort(rates, new Comparator<Rate>() {
+            @Override
+            public int compare(Rate a, Rate b) {
+                return Long.compare(b.operations, a.operations);
+            }
+        });
+        return rates.size() > k ? new ArrayList<Rate>(rates.subList(0, k)) : rates;
+    }
+
+    /**
+     * Discards every count.
+     */
+    static synchronized void reset() {
+        previous = null;
+        current = new Window(System.nanoTime());
+    }
+
+    private static Window currentWindow(long now) {
+        Window window = current;
+        if (now - window.started < WINDOW_NANOS)
+            return window;
+        return rotate(now);
+    }
+
+    private static synchronized Window rotate(long now) {
+        Window window = current;
+        if (now - window.started >= WINDOW_NANOS) {
+            //a window with no activity at all is not worth keeping as the previous one
+            previous = now - window.started < 2 * WINDOW_NANOS ? window : null;
+            window = new Window(now);
+            current = window;
+        }
+        return window;
+    }
+}
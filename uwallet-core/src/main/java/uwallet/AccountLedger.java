@@ -0,0 +1,48 @@
+package uwallet;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The records of one account as a ledger snapshot read them: the balance and last txID of its account row, where
+ * its hot transactions start from, and those transactions in sequence order. Values are kept as they are stored,
+ * so that reconciliation checks the records rather than what the library would make of them.
+ *
+ * RI: entries are ordered by ascending sequence.
+ */
+final class AccountLedger {
+
+    /**
+     * One transaction row.
+     */
+    static final class Entry {
+        final long sequence;
+        final String txtype;
+        final double amount;
+        final String endingBalance;
+
+        Entry(long sequence, String txtype, double amount, String endingBalance) {
+            this.sequence = sequence;
+            this.txtype = txtype;
+            this.amount = amount;
+            this.endingBalance = endingBalance;
+        }
+    }
+
+    final String accountId;
+    //null if there is no account row for the transactions
+    final String balance;
+    final long lastTxId;
+    //the sequence and ending balance of the last archived transaction, 0 and "0" if none was archived
+    final long startSequence;
+    final String startBalance;
+    final List<Entry> entries = new ArrayList<Entry>();
+
+    AccountLedger(String accountId, String balance, long lastTxId, long startSequence, String startBalance) {
+        this.accountId = accountId;
+        this.balance = balance;
+        this.lastTxId = lastTxId;
+        this.startSequence = startSequence;
+        this.startBalance = startBalance;
+    }
+}
@@ -0,0 +1,147 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The statement of one account for a period: its balance when the period started, every transaction of the
+ * period in order, and its balance when the period ended. A statement only holds the transactions of its own
+ * period.
+ *
+ * The history is read newest first, from the latest transaction back to the last one before the period, whose
+ * ending balance is the opening balance - so reading the statement of a recent period is cheap, and reading one
+ * of a period long ago reads every transaction since.
+ *
+ * RI: transactions are the account's transactions with from <= timestamp < to, oldest first. closing is the ending
+ *     balance of the last of them, or opening if there are none.
+ */
+final class AccountStatement {
+
+    //transactions read per page while going back through the history
+    private static final int PAGE = 100;
+
+    final Account account;
+    final Timestamp from;
+    final Timestamp to;
+    final BigDecimal opening;
+    final List<Transaction> transactions;
+    final BigDecimal closing;
+
+    private AccountStatement(Account account, Timestamp from, Timestamp to, BigDecimal opening, List<Transaction> transactions) {
+        this.account = account;
+        this.from = from;
+        this.to = to;
+        this.opening = opening;
+        this.transactions = transactions;
+        this.closing = transactions.isEmpty() ? opening : transactions.get(transactions.size() - 1).endingBalance;
+    }
+
+    /**
+     * Reads the statement of an account.
+     *
+     * @param from the start of the period, included
+     * @param to the end of the period, excluded
+     */
+    static AccountStatement read(Account account, Timestamp from, Timestamp to) {
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        BigDecimal opening = BigDecimal.ZERO;
+        long before = Long.MAX_VALUE;
+
+        paging:
+        while (true) {
+            List<Transaction> page = account.getPastTransactionsBefore(before, PAGE);
+            for (int i = 0; i < page.size(); i++) {
+                Transaction tx = page.get(i);
+                if (!tx.timestamp.before(to))
+                    continue;
+                if (!tx.timestamp.before(from)) {
+                    transactions.add(tx);
+                    continue;
+                }
+                opening = tx.endingBalance;
+                break paging;
+            }
+            if (page.size() < PAGE)
+                break;
+            before = page.get(page.size() - 1).sequence;
+        }
+
+        Collections.reverse(transactions);
+        return new AccountStatement(account, from, to, opening, transactions);
+    }
+
+    /**
+     * Renders the statement, without the header row of CSV.
+     */
+    String render(StatementFormat format) {
+        StringBuilder out = new StringBuilder(256 + 96 * this.transactions.size());
+        if (format == StatementFormat.CSV)
+            this.renderCsv(out);
+        else
+            this.renderText(out);
+        return out.toString();
+    }
+
+    private void renderText(StringBuilder out) {
+        String newline = System.lineSeparator();
+        out.append("Statement of ").append(this.account.getAccountName()).append(" (").append(this.account.getAccountID())
+                .append("), wallet ").append(this.account.getParentWalletUID()).append(newline);
+        out.append("Period: ").append(this.from).append(" to ").append(this.to).append(newline);
+        out.append("Opening balance: ").append(this.account.applyAccountFormat(this.opening)).append(newline);
+        for (int i = 0; i < this.transactions.size(); i++) {
+            Transaction tx = this.transactions.get(i);
+            out.append(tx.timestamp).append(" | ").append(tx.sequence).append(" | ").append(tx.getTXSymbol())
+                    .append(" | ").append(this.account.applyAccountFormat(tx.amount))
+                    .append(" | ").append(this.account.applyAccountFormat(tx.endingBalance))
+                    .append(" | ").append(tx.description).append(newline);
+        }
+        out.append("Closing balance: ").append(this.account.applyAccountFormat(this.closing)).append(newline);
+        out.append(newline);
+    }
+
+    private void renderCsv(StringBuilder out) {
+        this.csvRow(out, this.from, "", "OPENING", "", this.opening, "");
+        for (int i = 0; i < this.transactions.size(); i++) {
+            Transaction tx = this.transactions.get(i);
+            this.csvRow(out, tx.timestamp, String.valueOf(tx.sequence), tx.getTXSymbol(),
+                    this.account.applyAccountFormat(tx.amount), tx.endingBalance, tx.description);
+        }
+        this.csvRow(out, this.to, "", "CLOSING", "", this.closing, "");
+    }
+
+    private void csvRow(StringBuilder out, Timestamp timestamp, String sequence, String type, String amount,
+                        BigDecimal balance, String description) {
+        csvField(out, this.account.getAccountID()).append(',');
+        csvField(out, this.account.getParentWalletUID()).append(',');
+        out.append(timestamp).append(',').append(sequence).append(',').append(type).append(',');
+        csvField(out, amount).append(',');
+        csvField(out, this.account.applyAccountFormat(balance)).append(',');
+        csvField(out, description).append(System.lineSeparator());
+    }
+
+    /**
+     * Appends a field, quoted if it holds a separator, a quote or a line break (formatted amounts often hold the
+     * grouping separator).
+     */
+    static StringBuilder csvField(StringBuilder out, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote)
+            return out.append(value);
+
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"')
+                out.append('"');
+            out.append(c);
+        }
+        return out.append('"');
+    }
+}
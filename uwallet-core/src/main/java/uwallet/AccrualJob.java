@@ -0,0 +1,183 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Applies interest or fees to every account on record, as computed by an AccrualRule. Accounts are read from the
+ * records in batches of uwallet.accrual.batchSize accounts, in the order of their ids; the rule is applied to a
+ * batch on uwallet.accrual.threads threads with fork/join, and the whole batch is committed in a single storage
+ * transaction together with a checkpoint of the job.
+ *
+ * A job is identified by its name, typically the kind of posting and the period it is for. Running a job whose
+ * previous run was interrupted resumes after the last batch that was committed, and running a job that completed
+ * does nothing - so a job can safely be run again until it completes, and no account is ever posted to twice.
+ *
+ * While a batch is computed and committed the monitors of its accounts are held, in the order of their ids as
+ * transfers between currencies take them. Deposits and withdrawals on those accounts wait for the batch, and
+ * never commit a balance the batch changed before the batch's transactions are on record.
+ *
+ * Tuned with:
+ *      uwallet.accrual.batchSize   accounts per batch, and per storage transaction, default 1000, at most 4096
+ *      uwallet.accrual.threads     threads the rule is applied on, default the number of cores
+ *
+ * usage:
+ *      AccrualResult result = new AccrualJob("interest-2018-11-30", rule, "daily interest").run();
+ */
+public final class AccrualJob {
+
+    static final String BATCH_SIZE_PROPERTY = "uwallet.accrual.batchSize";
+    static final String THREADS_PROPERTY = "uwallet.accrual.threads";
+    //the monitors of a batch are taken by recursion, one stack frame per account
+    static final int MAX_BATCH_SIZE = 4096;
+    //accounts the rule is applied to by a single fork/join task
+    private static final int LEAF_SIZE = 64;
+
+    private final String name;
+    private final AccrualRule rule;
+    private final String[] description;
+    private final int batchSize;
+    private final int threads;
+
+    //counts of the current run, only accessed by the thread running it
+    private long accounts;
+    private long postings;
+    private long skipped;
+    private long batches;
+
+    /**
+     * @param name identifies the job, and its checkpoint, in the records. Can not be null or empty.
+     * @param rule computes the amount to post to each account
+     * @param description (optional)
+     *         description[0] is a String of at most 50char that describes every posting. The default description
+     *         is N/A.
+     */
+    public AccrualJob(String name, AccrualRule rule, String... description) {
+        this(name, rule, Integer.getInteger(BATCH_SIZE_PROPERTY, 1000),
+                Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()), description);
+    }
+
+    AccrualJob(String name, AccrualRule rule, int batchSize, int threads, String... description) {
+        this.name = name;
+        this.rule = rule;
+        this.description = description;
+        this.batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, batchSize));
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Runs the job to completion, or resumes it if a previous run was interrupted.
+     *
+     * @return what this run did.
+     */
+    public synchronized AccrualResult run() {
+        long started = System.nanoTime();
+        JobCheckpoint checkpoint = uWalletDatabase.getCheckpoint(this.name);
+        if (checkpoint != null && checkpoint.completed)
+            return new AccrualResult(this.name, true, false, 0, 0, 0, 0, System.nanoTime() - started);
+
+        this.accounts = 0;
+        this.postings = 0;
+        this.skipped = 0;
+        this.batches = 0;
+        String position = checkpoint == null ? null : checkpoint.position;
+        ForkJoinPool pool = new ForkJoinPool(this.threads);
+        try {
+            while (true) {
+                List<String> ids = uWalletDatabase.getAccountIdsAfter(position, this.batchSize);
+                if (ids.isEmpty())
+                    break;
+                position = ids.get(ids.size() - 1);
+                this.commitLocked(Account.loadAccounts(ids), 0, position, pool);
+                if (ids.size() < this.batchSize)
+                    break;
+            }
+        } finally {
+            pool.shutdown();
+        }
+        uWalletDatabase.commitBatch(Collections.<Account>emptyList(), Collections.<Transaction>emptyList(),
+                new JobCheckpoint(this.name, position, true));
+
+        return new AccrualResult(this.name, false, checkpoint != null, this.accounts, this.postings, this.skipped,
+                this.batches, System.nanoTime() - started);
+    }
+
+    /**
+     * Takes the monitor of every account of the batch, in order, then computes and commits it.
+     */
+    private void commitLocked(List<Account> batch, int next, String position, ForkJoinPool pool) {
+        if (next < batch.size()) {
+            synchronized (batch.get(next)) {
+                this.commitLocked(batch, next + 1, position, pool);
+            }
+            return;
+        }
+
+        BigDecimal[] amounts = new BigDecimal[batch.size()];
+        pool.invoke(new Accrue(this.rule, batch, amounts, 0, batch.size()));
+
+        List<Account> changed = new ArrayList<Account>();
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        for (int i = 0; i < batch.size(); i++) {
+            if (amounts[i] == null || amounts[i].signum() == 0)
+                continue;
+            Transaction tx = batch.get(i).post(amounts[i], this.description);
+            if (tx == null) {
+                this.skipped += 1;
+                continue;
+            }
+            changed.add(batch.get(i));
+            transactions.add(tx);
+        }
+
+        uWalletDatabase.commitBatch(changed, transactions, new JobCheckpoint(this.name, position, false));
+        for (int i = 0; i < changed.size(); i++)
+            changed.get(i).posted(transactions.get(i));
+
+        this.accounts += batch.size();
+        this.postings += transactions.size();
+        this.batches += 1;
+    }
+
+    /**
+     * Applies the rule to a range of the batch, splitting it in halves down to LEAF_SIZE accounts. The monitors
+     * of the accounts are held by the thread that invoked it, which waits for it to complete, so the balances
+     * read here do not change meanwhile.
+     */
+    private static class Accrue extends RecursiveAction {
+
+        private final AccrualRule rule;
+        private final List<Account> batch;
+        private final BigDecimal[] amounts;
+        private final int from;
+        private final int to;
+
+        Accrue(AccrualRule rule, List<Account> batch, BigDecimal[] amounts, int from, int to) {
+            this.rule = rule;
+            this.batch = batch;
+            this.amounts = amounts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > LEAF_SIZE) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new Accrue(this.rule, this.batch, this.amounts, this.from, middle),
+                        new Accrue(this.rule, this.batch, this.amounts, middle, this.to));
+                return;
+            }
+            for (int i = this.from; i < this.to; i++) {
+                Account account = this.batch.get(i);
+                BigDecimal amount = this.rule.accrue(account.getRegionCode(), account.getCurrentBalance());
+                if (amount != null)
+                    this.amounts[i] = account.roundToCurrency(amount);
+            }
+        }
+    }
+}
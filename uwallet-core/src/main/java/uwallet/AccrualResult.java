@@ -0,0 +1,89 @@
+package uwallet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What one run of an AccrualJob did. A run that resumes an interrupted job only counts what it did itself.
+ */
+public final class AccrualResult {
+
+    private final String job;
+    private final boolean alreadyCompleted;
+    private final boolean resumed;
+    private final long accounts;
+    private final long postings;
+    private final long skipped;
+    private final long batches;
+    private final long elapsedNanos;
+
+    AccrualResult(String job, boolean alreadyCompleted, boolean resumed, long accounts, long postings, long skipped,
+                  long batches, long elapsedNanos) {
+        this.job = job;
+        this.alreadyCompleted = alreadyCompleted;
+        this.resumed = resumed;
+        this.accounts = accounts;
+        this.postings = postings;
+        this.skipped = skipped;
+        this.batches = batches;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public String getJob() {
+        return this.job;
+    }
+
+    /**
+     * @return true if the job had completed before this run, which then did nothing.
+     */
+    public boolean isAlreadyCompleted() {
+        return this.alreadyCompleted;
+    }
+
+    /**
+     * @return true if this run carried on after the last batch an interrupted run committed.
+     */
+    public boolean isResumed() {
+        return this.resumed;
+    }
+
+    /**
+     * @return the number of accounts the rule was applied to.
+     */
+    public long getAccounts() {
+        return this.accounts;
+    }
+
+    /**
+     * @return the number of transactions that were posted.
+     */
+    public long getPostings() {
+        return this.postings;
+    }
+
+    /**
+     * @return the number of fees that were not posted because the balance did not cover them.
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
+    /**
+     * @return the number of batches that were committed.
+     */
+    public long getBatches() {
+        return this.batches;
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        if (this.alreadyCompleted)
+            return this.job + ": already completed";
+        return String.format("%s: %d accounts, %d postings, %d skipped, %d batches in %dms%s", this.job, this.accounts,
+                this.postings, this.skipped, this.batches, TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos),
+                this.resumed ? " (resumed)" : "");
+    }
+}
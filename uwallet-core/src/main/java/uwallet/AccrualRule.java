@@ -0,0 +1,18 @@
+package uwallet;
+
+import java.math.BigDecimal;
+
+/**
+ * Computes the interest or fee an AccrualJob posts to an account. Rules are called from several threads at once,
+ * for different accounts, and must not keep state between calls.
+ */
+public interface AccrualRule {
+
+    /**
+     * @param regionCode the region of the account's currency
+     * @param balance the balance of the account
+     * @return the amount to post: positive to deposit interest, negative to withdraw a fee, 0 or null to post
+     *          nothing. It is rounded to the account's currency before it is posted.
+     */
+    BigDecimal accrue(String regionCode, BigDecimal balance);
+}
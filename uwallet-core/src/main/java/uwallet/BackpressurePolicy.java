@@ -0,0 +1,25 @@
+package uwallet;
+
+/**
+ * What happens when a change subscription falls a whole ring of events behind the commits.
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Commits wait for the subscription to read the event they would overwrite. Nothing is ever missed, but a
+     * subscription that stops reading holds up every deposit and withdrawal until it is closed.
+     */
+    BLOCK,
+
+    /**
+     * Commits never wait. The subscription skips to the oldest event still in the ring and counts the events it
+     * missed.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Commits never wait. The subscription is closed, and polling it throws SubscriptionLaggedException, so that
+     * the subscriber can catch up from the records and resume.
+     */
+    DISCONNECT
+}
@@ -0,0 +1,94 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * A committed transaction, and the balance it left its account with, as published on the ChangeStream. Events
+ * of one account are published in the order of their sequences.
+ */
+public final class ChangeEvent {
+
+    private final long position;
+    private final Timestamp timestamp;
+    private final String uuid;
+    private final long sequence;
+    private final String accountId;
+    private final String walletId;
+    private final String type;
+    private final double amount;
+    private final BigDecimal endingBalance;
+    private final String description;
+
+    ChangeEvent(long position, Transaction transaction) {
+        this.position = position;
+        this.timestamp = transaction.getTimestamp();
+        this.uuid = transaction.uuid;
+        this.sequence = transaction.sequence;
+        this.accountId = transaction.involvedAccount.getAccountID();
+        this.walletId = transaction.involvedAccount.getParentWalletUID();
+        this.type = transaction.getTXSymbol();
+        this.amount = transaction.amount;
+        this.endingBalance = transaction.endingBalance;
+        this.description = transaction.description;
+    }
+
+    /**
+     * @return the position of the event in the stream, which a subscription can resume after.
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    public Timestamp getTimestamp() {
+        return this.timestamp;
+    }
+
+    public String getTransactionUUID() {
+        return this.uuid;
+    }
+
+    /**
+     * @return the sequence of the transaction within its account.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public String getAccountId() {
+        return this.accountId;
+    }
+
+    public String getWalletId() {
+        return this.walletId;
+    }
+
+    /**
+     * @return DR for a deposit, CR for a withdrawal.
+     */
+    public String getType() {
+        return this.type;
+    }
+
+    public double getAmount() {
+        return this.amount;
+    }
+
+    /**
+     * @return the balance of the account after the transaction.
+     */
+    public BigDecimal getEndingBalance() {
+        return this.endingBalance;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    @Override
+    public String toString() {
+        return this.position + " | " + this.timestamp + " | " + this.accountId + " | " + this.sequence + " | "
+                + this.type + " | " + this.amount + " | " + this.endingBalance.toPlainString() + " | "
+                + this.description;
+    }
+}
@@ -0,0 +1,156 @@
+package uwallet;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The bounded ring of change events behind the ChangeStream. Publishing claims the next position with a
+ * compare-and-set on the cursor and writes the event to its slot; subscriptions read the slots without any
+ * locking, an event is in its slot once the slot holds its position. The ring keeps the last capacity events, so
+ * that a subscription can resume from a position it read before as long as it was not overwritten since.
+ *
+ * Publishing only waits while a BLOCK subscription has not read the event it would overwrite.
+ *
+ * RI: capacity is a power of two and mask is capacity - 1. cursor is the last position that was claimed, the
+ *     first event gets position 1. A slot only ever goes to a higher position. subscriptions is never modified,
+ *     only replaced while holding the ring's lock.
+ */
+final class ChangeRing {
+
+    //how long publishing waits before looking at a blocking subscription again
+    static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<ChangeEvent> slots;
+    private final AtomicLong cursor = new AtomicLong(0);
+    private volatile ChangeSubscription[] subscriptions = new ChangeSubscription[0];
+
+    /**
+     * @param capacity the number of events kept, rounded up to a power of two
+     */
+    ChangeRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity));
+        if (size < capacity)
+            size <<= 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<ChangeEvent>(size);
+    }
+
+    int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * @return the position of the last event that was published, 0 if none was.
+     */
+    long getPosition() {
+        return this.cursor.get();
+    }
+
+    /**
+     * @return the position of the oldest event the ring still holds, or would hold once it is written.
+     */
+    long getOldestPosition() {
+        return Math.max(1, this.cursor.get() - this.capacity + 1);
+    }
+
+    int getSubscriptionCount() {
+        return this.subscriptions.length;
+    }
+
+    /**
+     * Publishes a committed transaction and wakes the subscriptions waiting for it.
+     *
+     * @return the position the event was published at.
+     */
+    long publish(Transaction transaction) {
+        long position = claim();
+        ChangeEvent event = new ChangeEvent(position, transaction);
+        int index = (int) (position & this.mask);
+        while (true) {
+            //a publisher that claimed a whole ring earlier but was slower to write must not go back over this one
+            ChangeEvent previous = this.slots.get(index);
+            if (previous != null && previous.getPosition() > position)
+                break;
+            if (this.slots.compareAndSet(index, previous, event))
+                break;
+        }
+        for (ChangeSubscription subscription : this.subscriptions)
+            subscription.wake();
+        return position;
+    }
+
+    private long claim() {
+        while (true) {
+            long current = this.cursor.get();
+            long next = current + 1;
+            long overwritten = next - this.capacity;
+            if (overwritten > 0 && overwritten >= blockingGate()) {
+                LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+                continue;
+            }
+            if (this.cursor.compareAndSet(current, next))
+                return next;
+        }
+    }
+
+    //the lowest position a BLOCK subscription has yet to read, Long.MAX_VALUE if there is none
+    private long blockingGate() {
+        long gate = Long.MAX_VALUE;
+        for (ChangeSubscription subscription : this.subscriptions)
+            if (subscription.getPolicy() == BackpressurePolicy.BLOCK)
+                gate = Math.min(gate, subscription.getPosition() + 1);
+        return gate;
+    }
+
+    /**
+     * @return the event at the position, or null if it was not published yet, or was overwritten - which is
+     *          told apart by getOldestPosition().
+     */
+    ChangeEvent get(long position) {
+        ChangeEvent event = this.slots.get((int) (position & this.mask));
+        if (event == null || event.getPosition() != position)
+            return null;
+        return event;
+    }
+
+    /**
+     * @return true if the event at the position was overwritten by a later one.
+     */
+    boolean isOverwritten(long position) {
+        ChangeEvent event = this.slots.get((int) (position & this.mask));
+        return event != null && event.getPosition() > position;
+    }
+
+    /**
+     * Starts a subscription with the first event after a position.
+     *
+     * @param after the position of the last event the subscriber read, clamped to the last published one.
+     */
+    synchronized ChangeSubscription subscribe(BackpressurePolicy policy, long after) {
+        ChangeSubscription subscription = new ChangeSubscription(this, policy,
+                Math.max(0, Math.min(after, this.cursor.get())));
+        ChangeSubscription[] grown = new ChangeSubscription[this.subscriptions.length + 1];
+        System.arraycopy(this.subscriptions, 0, grown, 0, this.subscriptions.length);
+        grown[this.subscriptions.length] = subscription;
+        this.subscriptions = grown;
+        return subscription;
+    }
+
+    synchronized void unsubscribe(ChangeSubscription subscription) {
+        int at = -1;
+        for (int i = 0; i < this.subscriptions.length; i++)
+            if (this.subscriptions[i] == subscription)
+                at = i;
+        if (at < 0)
+            return;
+        ChangeSubscription[] shrunk = new ChangeSubscription[this.subscriptions.length - 1];
+        System.arraycopy(this.subscriptions, 0, shrunk, 0, at);
+        System.arraycopy(this.subscriptions, at + 1, shrunk, at, shrunk.length - at);
+        this.subscriptions = shrunk;
+    }
+}
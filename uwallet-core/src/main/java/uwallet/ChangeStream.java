@@ -0,0 +1,73 @@
+package uwallet;
+
+/**
+ * Every transaction committed by the library, and the balance it left its account with, published to in-process
+ * subscribers as it is committed - so that downstream systems need not poll the records for new transactions.
+ * Events are kept in a bounded ring of the last uwallet.changes.capacity events; publishing and reading never
+ * take a lock, and each subscription chooses what happens when it falls a whole ring behind with its
+ * BackpressurePolicy.
+ *
+ * Events of an account are published while its monitor is still held, after the commit, so they come in the
+ * order of its sequences and a subscriber never sees a transaction that is not on record. Positions are only
+ * kept in memory and start again at 1 when the process does.
+ *
+ * Tuned with:
+ *      uwallet.changes.capacity    events kept for subscriptions to read or resume from, default 16384
+ *
+ * usage:
+ *      ChangeSubscription changes = ChangeStream.subscribe(BackpressurePolicy.DROP_OLDEST);
+ *      while (running) {
+ *          ChangeEvent event = changes.poll(1, TimeUnit.SECONDS);
+ *          if (event != null)
+ *              notify(event.getAccountId(), event.getEndingBalance());
+ *      }
+ *      changes.close();
+ */
+public final class ChangeStream {
+
+    static final String CAPACITY_PROPERTY = "uwallet.changes.capacity";
+    static final int DEFAULT_CAPACITY = 16384;
+
+    private static final ChangeRing ring = new ChangeRing(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY));
+
+    private ChangeStream() {
+    }
+
+    /**
+     * Subscribes to the events published from now on.
+     */
+    public static ChangeSubscription subscribe(BackpressurePolicy policy) {
+        return ring.subscribe(policy, Long.MAX_VALUE);
+    }
+
+    /**
+     * Subscribes to the events published after a position, such as the last one a previous subscription read.
+     * Events after it that were already overwritten are handled according to the policy.
+     *
+     * @param after the position of the last event already handled, 0 to start with the first event published
+     */
+    public static ChangeSubscription subscribe(BackpressurePolicy policy, long after) {
+        return ring.subscribe(policy, after);
+    }
+
+    /**
+     * @return the position of the last event that was published, 0 if none was.
+     */
+    public static long getPosition() {
+        return ring.getPosition();
+    }
+
+    /**
+     * @return the position of the oldest event that can still be read.
+     */
+    public static long getOldestPosition() {
+        return ring.getOldestPosition();
+    }
+
+    /**
+     * Publishes a transaction that was committed. Called while holding the monitor of its account.
+     */
+    static void publish(Transaction transaction) {
+        ring.publish(transaction);
+    }
+}
@@ -0,0 +1,134 @@
+package uwallet;
+
+import uwallet.exceptions.SubscriptionLaggedException;
+
+import java.io.Closeable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A subscriber's place in the ChangeStream. Events are read in the order of their positions by polling, which
+ * never takes a lock: a poll that finds nothing returns null, a timed poll parks until a commit wakes it.
+ *
+ * The subscriber should keep getPosition() of the last event it handled, and subscribe after it when it starts
+ * again; events that were overwritten meanwhile are handled according to the policy, as when falling behind.
+ *
+ * RI: only polled by one thread at a time. position is the position of the last event that was read or skipped.
+ *     waiter is the thread parked in a timed poll, if any.
+ */
+public final class ChangeSubscription implements Closeable {
+
+    private final ChangeRing ring;
+    private final BackpressurePolicy policy;
+    private volatile long position;
+    private volatile long missed = 0;
+    private volatile Thread waiter = null;
+    private volatile boolean closed = false;
+
+    ChangeSubscription(ChangeRing ring, BackpressurePolicy policy, long position) {
+        this.ring = ring;
+        this.policy = policy;
+        this.position = position;
+    }
+
+    public BackpressurePolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * @return the position of the last event that was read, or skipped, by this subscription.
+     */
+    public long getPosition() {
+        return this.position;
+    }
+
+    /**
+     * @return the number of events that were overwritten before they were read, and skipped. Always 0 unless the
+     *          policy is DROP_OLDEST, or the subscription resumed from an overwritten position.
+     */
+    public long getMissed() {
+        return this.missed;
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Reads the next event without waiting.
+     *
+     * @return the event, or null if none was published since the last one, or the subscription is closed.
+     * @throws SubscriptionLaggedException if the policy is DISCONNECT and the next event was overwritten. The
+     *          subscription is then closed.
+     */
+    public ChangeEvent poll() throws SubscriptionLaggedException {
+        while (!this.closed) {
+            long next = this.position + 1;
+            ChangeEvent event = this.ring.get(next);
+            if (event != null) {
+                this.position = next;
+                return event;
+            }
+            if (!this.ring.isOverwritten(next))
+                return null;
+
+            if (this.policy == BackpressurePolicy.DISCONNECT) {
+                close();
+                throw new SubscriptionLaggedException("The change subscription fell behind, event " + next
+                        + " was overwritten. The oldest event kept is " + this.ring.getOldestPosition());
+            }
+            long oldest = this.ring.getOldestPosition();
+            this.missed += oldest - next;
+            this.position = oldest - 1;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the next event, waiting for it to be published if needed.
+     *
+     * @return the event, or null if none was published in time, or the subscription is closed.
+     * @throws SubscriptionLaggedException as poll()
+     * @throws InterruptedException if the thread was interrupted while waiting
+     */
+    public ChangeEvent poll(long timeout, TimeUnit unit) throws SubscriptionLaggedException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            ChangeEvent event = poll();
+            if (event != null || this.closed)
+                return event;
+
+            this.waiter = Thread.currentThread();
+            try {
+                //looked at again once registered, an event published in between would not have woken it
+                event = poll();
+                if (event != null || this.closed)
+                    return event;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0)
+                    return null;
+                LockSupport.parkNanos(this, remaining);
+            } finally {
+                this.waiter = null;
+            }
+            if (Thread.interrupted())
+                throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Stops the subscription. A BLOCK subscription no longer holds up commits once closed.
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        this.ring.unsubscribe(this);
+        wake();
+    }
+
+    void wake() {
+        Thread parked = this.waiter;
+        if (parked != null)
+            LockSupport.unpark(parked);
+    }
+}
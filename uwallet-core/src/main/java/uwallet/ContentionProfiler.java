@@ -0,0 +1,189 @@
+package uwallet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in profiler of the library's global locks: the database lock every storage operation takes, and the lock on
+ * the identity map of live Account objects. While it is on, every acquisition of those locks records how long it
+ * waited, how many threads were queued ahead of it, which operation was holding the lock, and how long it then
+ * held the lock itself. report() ranks the operations by the total time threads spent waiting.
+ *
+ * It is off by default, turned on with -Duwallet.contentionProfiler=true or setEnabled(true). When off the locks
+ * only check a volatile flag.
+ *
+ * usage:
+ *      ContentionProfiler.setEnabled(true);
+ *      ... run the workload ...
+ *      System.out.println(ContentionProfiler.report());
+ */
+public final class ContentionProfiler {
+
+    private static volatile boolean enabled = Boolean.getBoolean("uwallet.contentionProfiler");
+    private static volatile long since = System.nanoTime();
+    private static final ConcurrentHashMap<String, OperationStats> stats = new ConcurrentHashMap<String, OperationStats>();
+
+    private ContentionProfiler() {
+    }
+
+    /**
+     * Turns the profiler on or off. Turning it on after it was off starts a new profile.
+     *
+     * @param on true to record lock acquisitions
+     */
+    public static synchronized void setEnabled(boolean on) {
+        if (on && !enabled)
+            reset();
+        enabled = on;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Discards everything recorded so far.
+     */
+    public static synchronized void reset() {
+        stats.clear();
+        since = System.nanoTime();
+    }
+
+    /**
+     * Builds the contention report: for each lock and operation that took it, the number of acquisitions, how many
+     * of them had to wait, the total, mean and maximum wait, the total and maximum hold time, the mean and maximum
+     * number of threads queued on arrival, and the operation that most often held the lock while it waited. Rows
+     * are ranked by total wait. The header gives the mean number of threads that were blocked on each lock over
+     * the profile, the number of cores that sat idle waiting on it if every thread has a core of its own.
+     *
+     * @return the report as text.
+     */
+    public static String report() {
+        double elapsed = System.nanoTime() - since;
+        List<OperationStats> rows = new ArrayList<OperationStats>(stats.values());
+        Collections.sort(rows, new Comparator<OperationStats>() {
+            @Override
+            public int compare(OperationStats a, OperationStats b) {
+                return Long.compare(b.waitNanos.sum(), a.waitNanos.sum());
+            }
+        });
+
+        Map<String, Long> waitByLock = new LinkedHashMap<String, Long>();
+        for (OperationStats row : rows) {
+            Long total = waitByLock.get(row.lock);
+            waitByLock.put(row.lock, (total == null ? 0 : total) + row.waitNanos.sum());
+        }
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Lock contention over %.1fs, ranked by total wait%n", elapsed / 1e9));
+        for (Map.Entry<String, Long> lock : waitByLock.entrySet())
+            report.append(String.format("  %s: %.2f threads waiting on average%n", lock.getKey(), lock.getValue() / elapsed));
+        report.append(String.format("%n%-30s %-34s %10s %10s %10s %10s %10s %10s %10s %7s %7s  %s%n",
+                "lock", "operation", "acquired", "contended", "wait(ms)", "avg(us)", "max(us)", "hold(ms)",
+                "maxhold(us)", "avgq", "maxq", "most blocked by"));
+        for (OperationStats row : rows) {
+            long acquisitions = row.acquisitions.sum();
+            long contended = row.contended.sum();
+            report.append(String.format("%-30s %-34s %10d %10d %10.1f %10.1f %10.1f %10.1f %10.1f %7.2f %7d  %s%n",
+                    row.lock, row.operation, acquisitions, contended,
+                    row.waitNanos.sum() / 1e6,
+                    contended == 0 ? 0.0 : row.waitNanos.sum() / 1e3 / contended,
+                    row.maxWaitNanos.get() / 1e3,
+                    row.holdNanos.sum() / 1e6,
+                    row.maxHoldNanos.get() / 1e3,
+                    acquisitions == 0 ? 0.0 : row.queuedSum.sum() / (double) acquisitions,
+                    row.maxQueued.get(),
+                    row.mostBlockedBy()));
+        }
+        return report.toString();
+    }
+
+    static void recordAcquisition(String lock, String operation, long waited, int queued, String blockedBy) {
+        OperationStats row = statsOf(lock, operation);
+        row.acquisitions.increment();
+        row.queuedSum.add(queued);
+        raise(row.maxQueued, queued);
+        if (waited > 0) {
+            row.contended.increment();
+            row.waitNanos.add(waited);
+            raise(row.maxWaitNanos, waited);
+            if (blockedBy != null)
+                row.blockedBy(blockedBy).add(waited);
+        }
+    }
+
+    static void recordHold(String lock, String operation, long held) {
+        OperationStats row = statsOf(lock, operation);
+        row.holdNanos.add(held);
+        raise(row.maxHoldNanos, held);
+    }
+
+    private static OperationStats statsOf(String lock, String operation) {
+        String key = lock + '\u0000' + operation;
+        OperationStats row = stats.get(key);
+        if (row == null) {
+            OperationStats created = new OperationStats(lock, operation);
+            row = stats.putIfAbsent(key, created);
+            if (row == null)
+                row = created;
+        }
+        return row;
+    }
+
+    private static void raise(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value))
+            current = max.get();
+    }
+
+    private static class OperationStats {
+        final String lock;
+        final String operation;
+        final LongAdder acquisitions = new LongAdder();
+        final LongAdder contended = new LongAdder();
+        final LongAdder waitNanos = new LongAdder();
+        final LongAdder holdNanos = new LongAdder();
+        final LongAdder queuedSum = new LongAdder();
+        final AtomicLong maxWaitNanos = new AtomicLong();
+        final AtomicLong maxHoldNanos = new AtomicLong();
+        final AtomicLong maxQueued = new AtomicLong();
+        //wait time of this operation by the operation that held the lock
+        final ConcurrentHashMap<String, LongAdder> blockedBy = new ConcurrentHashMap<String, LongAdder>();
+
+        OperationStats(String lock, String operation) {
+            this.lock = lock;
+            this.operation = operation;
+        }
+
+        LongAdder blockedBy(String holder) {
+            LongAdder wait = this.blockedBy.get(holder);
+            if (wait == null) {
+                LongAdder created = new LongAdder();
+                wait = this.blockedBy.putIfAbsent(holder, created);
+                if (wait == null)
+                    wait = created;
+            }
+            return wait;
+        }
+
+        String mostBlockedBy() {
+            String holder = "-";
+            long most = 0;
+            for (Map.Entry<String, LongAdder> entry : this.blockedBy.entrySet()) {
+                long wait = entry.getValue().sum();
+                if (wait > most) {
+                    most = wait;
+                    holder = String.format("%s (%.0f%%)", entry.getKey(), 100.0 * wait / this.waitNanos.sum());
+                }
+            }
+            return holder;
+        }
+    }
+}
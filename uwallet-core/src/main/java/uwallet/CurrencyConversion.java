@@ -0,0 +1,87 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * The record of a transfer between two accounts of different currencies: the withdrawal from one account, the
+ * deposit to the other and the rate the amount was converted with. It is committed together with both
+ * transactions, so a conversion is never on record without its two legs, nor a leg without its conversion.
+ *
+ * RI: debitUUID and creditUUID are the uuids of a withdrawal and of a deposit that were committed with it. rate
+ *     is positive, the credited amount is the debited amount times the rate, rounded to the credited currency.
+ */
+public final class CurrencyConversion {
+
+    private final Timestamp timestamp;
+    private final String debitUUID;
+    private final String creditUUID;
+    private final String fromCurrency;
+    private final String toCurrency;
+    private final BigDecimal rate;
+    private final long rateVersion;
+
+    CurrencyConversion(Timestamp timestamp, String debitUUID, String creditUUID, String fromCurrency,
+                       String toCurrency, BigDecimal rate, long rateVersion) {
+        this.timestamp = timestamp;
+        this.debitUUID = debitUUID;
+        this.creditUUID = creditUUID;
+        this.fromCurrency = fromCurrency;
+        this.toCurrency = toCurrency;
+        this.rate = rate;
+        this.rateVersion = rateVersion;
+    }
+
+    public Timestamp getTimestamp() {
+        return this.timestamp;
+    }
+
+    /**
+     * @return the uuid of the withdrawal from the account the amount was transferred from.
+     */
+    public String getDebitUUID() {
+        return this.debitUUID;
+    }
+
+    /**
+     * @return the uuid of the deposit to the account the converted amount was transferred to.
+     */
+    public String getCreditUUID() {
+        return this.creditUUID;
+    }
+
+    /**
+     * @return the ISO 4217 code of the currency of the withdrawal.
+     */
+    public String getFromCurrency() {
+        return this.fromCurrency;
+    }
+
+    /**
+     * @return the ISO 4217 code of the currency of the deposit.
+     */
+    public String getToCurrency() {
+        return this.toCurrency;
+    }
+
+    /**
+     * @return the number of units of the deposit's currency each unit of the withdrawal's currency was converted to.
+     */
+    public BigDecimal getRate() {
+        return this.rate;
+    }
+
+    /**
+     * @return the version of the exchange rates the rate was taken from.
+     */
+    public long getRateVersion() {
+        return this.rateVersion;
+    }
+
+    @Override
+    public String toString() {
+        return this.timestamp.toString() + " | " + this.debitUUID + " -> " + this.creditUUID + " | 1 "
+                + this.fromCurrency + " = " + this.rate.toPlainString() + " " + this.toCurrency
+                + " | rates version " + this.rateVersion;
+    }
+}
@@ -0,0 +1,230 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Formats amounts as per the currency customs of a region. There is a single, shared formatter per region code:
+ * the symbols, separators and patterns of the region are resolved once from the JDK's NumberFormat and cached,
+ * and formatting then works on plain fields. Unlike NumberFormat it is safe to use from any number of threads
+ * at once without locking, and it formats into a per thread buffer that is reused between calls.
+ *
+ * The output is identical to that of NumberFormat.getCurrencyInstance(new Locale("en", regionCode)), including
+ * its rounding (HALF_EVEN) and the way it renders doubles from their shortest decimal representation.
+ *
+ * RI: every field is final and derived from the region's currency NumberFormat. prototype is never used without
+ *     being cloned first as it is not thread safe.
+ */
+final class CurrencyFormatter {
+
+    //TODO: make language an option for the user to choose
+    private static final String LANGUAGE = "en";
+    private static final BigDecimal FIVE = BigDecimal.valueOf(5);
+
+    private static final ConcurrentHashMap<String, CurrencyFormatter> formatters = new ConcurrentHashMap<String, CurrencyFormatter>();
+    private static final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(64);
+        }
+    };
+    //holds the digits of amounts that fit in a long, so they are not turned into a BigInteger and a String
+    private static final ThreadLocal<StringBuilder> digitBuffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(20);
+        }
+    };
+
+    private final String positivePrefix;
+    private final String positiveSuffix;
+    private final String negativePrefix;
+    private final String negativeSuffix;
+    private final int minimumFractionDigits;
+    private final int maximumFractionDigits;
+    private final int groupingSize; //0 when the region does not group digits
+    private final char groupingSeparator;
+    private final char decimalSeparator;
+    private final RoundingMode roundingMode;
+    private final String currencyCode;
+    private final DecimalFormat prototype;
+
+    private CurrencyFormatter(String regionCode) {
+        this.prototype = (DecimalFormat) NumberFormat.getCurrencyInstance(new Locale(LANGUAGE, regionCode));
+        this.positivePrefix = this.prototype.getPositivePrefix();
+        this.positiveSuffix = this.prototype.getPositiveSuffix();
+        this.negativePrefix = this.prototype.getNegativePrefix();
+        this.negativeSuffix = this.prototype.getNegativeSuffix();
+        this.minimumFractionDigits = this.prototype.getMinimumFractionDigits();
+        this.maximumFractionDigits = this.prototype.getMaximumFractionDigits();
+        this.groupingSize = this.prototype.isGroupingUsed() ? this.prototype.getGroupingSize() : 0;
+        this.roundingMode = this.prototype.getRoundingMode();
+        this.currencyCode = this.prototype.getCurrency().getCurrencyCode();
+
+        //the currency variants of the separators are not exposed on every JDK, so let the format tell us which
+        //characters it uses: 1234.5 grouped by one digit reads 1<g>2<g>3<g>4<d>5
+        DecimalFormat probe = (DecimalFormat) this.prototype.clone();
+        probe.setPositivePrefix("");
+        probe.setPositiveSuffix("");
+        probe.setGroupingUsed(true);
+        probe.setGroupingSize(1);
+        probe.setMinimumFractionDigits(1);
+        probe.setMaximumFractionDigits(1);
+        String probed = probe.format(1234.5);
+        this.groupingSeparator = probed.charAt(1);
+        this.decimalSeparator = probed.charAt(probed.length() - 2);
+    }
+
+    /**
+     * Get the shared formatter for a region.
+     *
+     * @param regionCode ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country whose
+     *                   currency is desired
+     * @return the CurrencyFormatter for the region, created on first use.
+     */
+    static CurrencyFormatter forRegion(String regionCode) {
+        CurrencyFormatter formatter = formatters.get(regionCode);
+        if (formatter == null) {
+            CurrencyFormatter created = new CurrencyFormatter(regionCode);
+            formatter = formatters.putIfAbsent(regionCode, created);
+            if (formatter == null)
+                formatter = created;
+        }
+        return formatter;
+    }
+
+    /**
+     * @return the number of regions a formatter was created for.
+     */
+    static int getFormatterCount() {
+        return formatters.size();
+    }
+
+    /**
+     * @return the ISO 4217 code of the region's currency.
+     */
+    String getCurrencyCode() {
+        return this.currencyCode;
+    }
+
+    /**
+     * @return the rounding the region's currency amounts are formatted with.
+     */
+    RoundingMode getRoundingMode() {
+        return this.roundingMode;
+    }
+
+    /**
+     * Formats a BigDecimal amount.
+     *
+     * @param amount the amount, can not be null.
+     * @return the amount as formatted with the region's currency customs.
+     */
+    String format(BigDecimal amount) {
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        return this.formatTo(amount, buffer).toString();
+    }
+
+    /**
+     * Formats a double amount. Like NumberFormat the shortest decimal that represents the double is formatted.
+     *
+     * @param amount the amount.
+     * @return the amount as formatted with the region's currency customs.
+     */
+    String format(double amount) {
+        if (Double.isNaN(amount) || Double.isInfinite(amount))
+            return ((DecimalFormat) this.prototype.clone()).format(amount);
+
+        boolean negative = amount < 0.0 || (amount == 0.0 && 1 / amount < 0.0);
+        BigDecimal shortest = new BigDecimal(Double.toString(Math.abs(amount)));
+        BigDecimal rounded = shortest.setScale(this.maximumFractionDigits, this.roundingMode);
+
+        //when the shortest decimal lies exactly half way between two outputs NumberFormat decides with how the
+        //double was converted to decimal, which is not exposed. Those amounts are rare, let it do them itself.
+        if (shortest.subtract(rounded).abs().scaleByPowerOfTen(this.maximumFractionDigits + 1).compareTo(FIVE) == 0)
+            return ((DecimalFormat) this.prototype.clone()).format(amount);
+
+        StringBuilder buffer = buffers.get();
+        buffer.setLength(0);
+        return this.formatScaled(negative, rounded, buffer).toString();
+    }
+
+    /**
+     * Formats an amount given in minor units of the currency, for example cents for US dollars.
+     *
+     * @param minorUnits the amount in minor units.
+     * @return the amount as formatted with the region's currency customs.
+     */
+    String formatMinorUnits(long minorUnits) {
+        return this.format(BigDecimal.valueOf(minorUnits, this.maximumFractionDigits));
+    }
+
+    /**
+     * Formats a BigDecimal amount into the given buffer.
+     *
+     * @param amount the amount, can not be null.
+     * @param out the buffer the formatted amount is appended to.
+     * @return out
+     */
+    StringBuilder formatTo(BigDecimal amount, StringBuilder out) {
+        boolean negative = amount.signum() < 0;
+        return this.formatScaled(negative, amount.abs().setScale(this.maximumFractionDigits, this.roundingMode), out);
+    }
+
+    /**
+     * Get the number of fraction digits of the region's currency.
+     *
+     * @return the number of digits after the decimal separator, 2 for cents.
+     */
+    int getFractionDigits() {
+        return this.maximumFractionDigits;
+    }
+
+    private StringBuilder formatScaled(boolean negative, BigDecimal magnitude, StringBuilder out) {
+        CharSequence digits;
+        if (magnitude.precision() <= 18) {
+            StringBuilder digitBuffer = digitBuffers.get();
+            digitBuffer.setLength(0);
+            digits = digitBuffer.append(magnitude.scaleByPowerOfTen(magnitude.scale()).longValueExact());
+        } else {
+            digits = magnitude.unscaledValue().toString();
+        }
+        int integerDigits = digits.length() - this.maximumFractionDigits;
+
+        //trailing zeros past the minimum number of fraction digits are dropped
+        int fractionDigits = this.maximumFractionDigits;
+        while (fractionDigits > this.minimumFractionDigits && digitAt(digits, integerDigits + fractionDigits - 1) == '0')
+            fractionDigits -= 1;
+
+        out.append(negative ? this.negativePrefix : this.positivePrefix);
+
+        if (integerDigits <= 0) {
+            out.append('0');
+        } else {
+            for (int i = 0; i < integerDigits; i++) {
+                if (i > 0 && this.groupingSize > 0 && (integerDigits - i) % this.groupingSize == 0)
+                    out.append(this.groupingSeparator);
+                out.append(digits.charAt(i));
+            }
+        }
+
+        if (fractionDigits > 0) {
+            out.append(this.decimalSeparator);
+            for (int i = integerDigits; i < integerDigits + fractionDigits; i++)
+                out.append(digitAt(digits, i));
+        }
+
+        out.append(negative ? this.negativeSuffix : this.positiveSuffix);
+        return out;
+    }
+
+    //digits of amounts below one are implicitly preceded by zeros
+    private static char digitAt(CharSequence digits, int index) {
+        return index < 0 ? '0' : digits.charAt(index);
+    }
+}
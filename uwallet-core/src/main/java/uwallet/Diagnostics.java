@@ -0,0 +1,82 @@
+package uwallet;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A view of the state of a running library: the storage engine and how busy it is, the objects kept in memory and
+ * the accounts with the most activity. Taking a snapshot never waits for storage operations, the only lock it takes
+ * is the one of the account identity map, for the time of one scan. The report can also be dumped over JMX, with
+ * the dumpReport operation of uwallet:type=Diagnostics.
+ *
+ * usage:
+ *      System.out.println(Diagnostics.report());
+ *      int pending = Diagnostics.snapshot().getPendingStorageOperations();
+ */
+public final class Diagnostics {
+
+    static final String OBJECT_NAME = "uwallet:type=Diagnostics";
+    static final int DEFAULT_HOTTEST = 10;
+
+    static {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            //the diagnostics are still available through this class
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+    private Diagnostics() {
+    }
+
+    /**
+     * @return a snapshot listing the DEFAULT_HOTTEST hottest accounts.
+     */
+    public static DiagnosticsSnapshot snapshot() {
+        return snapshot(DEFAULT_HOTTEST);
+    }
+
+    /**
+     * Takes a snapshot of the library.
+     *
+     * @param hottest the number of hottest accounts to list
+     * @return the snapshot.
+     */
+    public static DiagnosticsSnapshot snapshot(int hottest) {
+        int[] accounts = Account.countLoadedAccounts();
+        List<DiagnosticsSnapshot.HotAccount> hottestAccounts = new ArrayList<DiagnosticsSnapshot.HotAccount>();
+        for (AccountActivity.Rate rate : AccountActivity.hottest(Math.max(0, hottest)))
+            hottestAccounts.add(new DiagnosticsSnapshot.HotAccount(rate.accountId, rate.operations, rate.perSecond));
+
+        return new DiagnosticsSnapshot(System.currentTimeMillis(), uWalletDatabase.getEngineName(),
+                uWalletDatabase.isOpen(), uWalletDatabase.getPendingOperations(), uWalletDatabase.isBusy(),
+                uWalletDatabase.getUtilization(), uWalletDatabase.describeEngine(), accounts[0], accounts[1],
+                Wallet.getLoadedWalletCount(), CurrencyFormatter.getFormatterCount(), RateLimits.getAccountRejections(),
+                RateLimits.getWalletRejections(), hottestAccounts);
+    }
+
+    /**
+     * @return a snapshot listing the DEFAULT_HOTTEST hottest accounts, as a multi-line report.
+     */
+    public static String report() {
+        return snapshot().toString();
+    }
+
+    /**
+     * Makes sure the MBean is registered. Called when the storage is first used.
+     */
+    static void register() {
+    }
+
+    private static class MXBean implements DiagnosticsMXBean {
+
+        @Override
+        public String dumpReport(int hottestAccounts) {
+            return Diagnostics.snapshot(hottestAccounts).toString();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package uwallet;
+
+/**
+ * Management interface of Diagnostics, registered with the platform MBean server as uwallet:type=Diagnostics.
+ */
+public interface DiagnosticsMXBean {
+
+    /**
+     * Takes a snapshot of the library without stopping traffic.
+     *
+     * @param hottestAccounts the number of hottest accounts to list
+     * @return the snapshot, as a multi-line report.
+     */
+    String dumpReport(int hottestAccounts);
+}
@@ -0,0 +1,203 @@
+package uwallet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the state of the library at one point in time, as returned by Diagnostics. Each value is
+ * read on its own, without stopping traffic, so values taken a few microseconds apart may not agree exactly.
+ */
+public final class DiagnosticsSnapshot {
+
+    /**
+     * The operation rate of one account, over the last one to two minutes.
+     */
+    public static final class HotAccount {
+
+        private final String accountId;
+        private final long operations;
+        private final double operationsPerSecond;
+
+        HotAccount(String accountId, long operations, double operationsPerSecond) {
+            this.accountId = accountId;
+            this.operations = operations;
+            this.operationsPerSecond = operationsPerSecond;
+        }
+
+        public String getAccountId() {
+            return this.accountId;
+        }
+
+        /**
+         * @return the number of commits of the account with at least one transaction.
+         */
+        public long getOperations() {
+            return this.operations;
+        }
+
+        public double getOperationsPerSecond() {
+            return this.operationsPerSecond;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d ops (%.1f/s)", this.accountId, this.operations, this.operationsPerSecond);
+        }
+    }
+
+    private final long takenAt;
+    private final String engineName;
+    private final boolean engineOpen;
+    private final int pendingStorageOperations;
+    private final boolean storageBusy;
+    private final double storageUtilization;
+    private final Map<String, String> engineDetails;
+    private final int accountReferences;
+    private final int liveAccounts;
+    private final int loadedWallets;
+    private final int currencyFormatters;
+    private final long rateLimitedAccountWrites;
+    private final long rateLimitedWalletWrites;
+    private final List<HotAccount> hottestAccounts;
+
+    DiagnosticsSnapshot(long takenAt, String engineName, boolean engineOpen, int pendingStorageOperations,
+                        boolean storageBusy, double storageUtilization, Map<String, String> engineDetails,
+                        int accountReferences, int liveAccounts, int loadedWallets, int currencyFormatters,
+                        long rateLimitedAccountWrites, long rateLimitedWalletWrites, List<HotAccount> hottestAccounts) {
+        this.takenAt = takenAt;
+        this.engineName = engineName;
+        this.engineOpen = engineOpen;
+        this.pendingStorageOperations = pendingStorageOperations;
+        this.storageBusy = storageBusy;
+        this.storageUtilization = storageUtilization;
+        this.engineDetails = Collections.unmodifiableMap(new LinkedHashMap<String, String>(engineDetails));
+        this.accountReferences = accountReferences;
+        this.liveAccounts = liveAccounts;
+        this.loadedWallets = loadedWallets;
+        this.currencyFormatters = currencyFormatters;
+        this.rateLimitedAccountWrites = rateLimitedAccountWrites;
+        this.rateLimitedWalletWrites = rateLimitedWalletWrites;
+        this.hottestAccounts = Collections.unmodifiableList(new ArrayList<HotAccount>(hottestAccounts));
+    }
+
+    /**
+     * @return when the snapshot was taken, in milliseconds since the epoch.
+     */
+    public long getTakenAt() {
+        return this.takenAt;
+    }
+
+    /**
+     * @return the name of the storage engine, or null if none was selected yet.
+     */
+    public String getEngineName() {
+        return this.engineName;
+    }
+
+    public boolean isEngineOpen() {
+        return this.engineOpen;
+    }
+
+    /**
+     * @return an estimate of the number of storage operations queued behind the one in progress. The storage
+     * engine runs one operation at a time, so this is the depth of its write (and read) queue.
+     */
+    public int getPendingStorageOperations() {
+        return this.pendingStorageOperations;
+    }
+
+    /**
+     * @return true if a storage operation was in progress.
+     */
+    public boolean isStorageBusy() {
+        return this.storageBusy;
+    }
+
+    /**
+     * @return the fraction of the time since the library was loaded that the storage engine was in use, between
+     * 0 and 1. Close to 1 means every operation queues behind another one.
+     */
+    public double getStorageUtilization() {
+        return this.storageUtilization;
+    }
+
+    /**
+     * @return what the storage engine reported about itself, such as its files and their sizes in bytes.
+     */
+    public Map<String, String> getEngineDetails() {
+        return this.engineDetails;
+    }
+
+    /**
+     * @return the number of references in the identity map of accounts, including those to accounts that were
+     * collected and are not cleaned up yet.
+     */
+    public int getAccountReferences() {
+        return this.accountReferences;
+    }
+
+    /**
+     * @return the number of accounts in the identity map that are still in memory.
+     */
+    public int getLiveAccounts() {
+        return this.liveAccounts;
+    }
+
+    public int getLoadedWallets() {
+        return this.loadedWallets;
+    }
+
+    /**
+     * @return the number of regions a currency formatter is cached for.
+     */
+    public int getCurrencyFormatters() {
+        return this.currencyFormatters;
+    }
+
+    /**
+     * @return the number of writes refused since the library was loaded because their account was over its
+     * RateLimits.
+     */
+    public long getRateLimitedAccountWrites() {
+        return this.rateLimitedAccountWrites;
+    }
+
+    /**
+     * @return the number of writes refused since the library was loaded because their wallet was over its
+     * RateLimits.
+     */
+    public long getRateLimitedWalletWrites() {
+        return this.rateLimitedWalletWrites;
+    }
+
+    /**
+     * @return the accounts with the most operations over the last one to two minutes, hottest first.
+     */
+    public List<HotAccount> getHottestAccounts() {
+        return this.hottestAccounts;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("uwallet diagnostics at %tFT%<tT.%<tL%n", this.takenAt));
+        report.append(String.format("storage engine:       %s (%s)%n", this.engineName == null ? "none" : this.engineName,
+                this.engineOpen ? "open" : "closed"));
+        report.append(String.format("storage operations:   %s, %d pending, %.1f%% utilization%n",
+                this.storageBusy ? "busy" : "idle", this.pendingStorageOperations, this.storageUtilization * 100));
+        for (Map.Entry<String, String> detail : this.engineDetails.entrySet())
+            report.append(String.format("  %-20s%s%n", detail.getKey() + ":", detail.getValue()));
+        report.append(String.format("accounts in memory:   %d live, %d references%n", this.liveAccounts, this.accountReferences));
+        report.append(String.format("wallets in memory:    %d%n", this.loadedWallets));
+        report.append(String.format("currency formatters:  %d%n", this.currencyFormatters));
+        report.append(String.format("rate limited writes:  %d by account, %d by wallet%n",
+                this.rateLimitedAccountWrites, this.rateLimitedWalletWrites));
+        report.append(String.format("hottest accounts:     %d%n", this.hottestAccounts.size()));
+        for (HotAccount account : this.hottestAccounts)
+            report.append("  ").append(account).append(String.format("%n"));
+        return report.toString();
+    }
+}
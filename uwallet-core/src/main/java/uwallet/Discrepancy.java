@@ -0,0 +1,69 @@
+package uwallet;
+
+/**
+ * Something a LedgerReconciliation found in the records that does not add up.
+ */
+public final class Discrepancy {
+
+    public enum Kind {
+        //the ending balance of a transaction is not the previous ending balance plus or minus its amount
+        BROKEN_CHAIN,
+        //the balance of the account is not the ending balance of its last transaction
+        BALANCE_MISMATCH,
+        //a transaction has a higher sequence than the last one the account knows of
+        SEQUENCE_AHEAD_OF_ACCOUNT,
+        //transactions are on record for an account that is not
+        ORPHAN_TRANSACTIONS,
+        //a transaction is neither a deposit nor a withdrawal
+        UNKNOWN_TYPE
+    }
+
+    private final Kind kind;
+    private final String accountId;
+    private final long sequence;
+    private final String expected;
+    private final String actual;
+
+    Discrepancy(Kind kind, String accountId, long sequence, String expected, String actual) {
+        this.kind = kind;
+        this.accountId = accountId;
+        this.sequence = sequence;
+        this.expected = expected;
+        this.actual = actual;
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    public String getAccountId() {
+        return this.accountId;
+    }
+
+    /**
+     * @return the sequence of the transaction the discrepancy was found at, or of the account's last transaction.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    /**
+     * @return what the records should say, as a plain string.
+     */
+    public String getExpected() {
+        return this.expected;
+    }
+
+    /**
+     * @return what the records say, as a plain string.
+     */
+    public String getActual() {
+        return this.actual;
+    }
+
+    @Override
+    public String toString() {
+        return this.kind + " | " + this.accountId + " | seq " + this.sequence + " | expected " + this.expected
+                + " | actual " + this.actual;
+    }
+}
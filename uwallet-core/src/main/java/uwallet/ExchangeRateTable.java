@@ -0,0 +1,111 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An immutable version of the exchange rates, as loaded by ExchangeRates. Every currency has a rate against a
+ * common base currency, the number of units of the currency one unit of the base buys; the rate between two
+ * currencies is the ratio of their rates. Rates between pairs are computed once, on first use, and cached in the
+ * table, so converting is a lock-free map lookup.
+ *
+ * Tables are never modified once published: loading new rates creates a new table with a higher version, and
+ * conversions that already looked up the previous one finish with it.
+ *
+ * RI: every rate is positive. crossRates only holds ratios of the rates in perBase.
+ */
+public final class ExchangeRateTable {
+
+    //the precision of cross rates, 16 significant digits as a double would have but without its binary errors
+    static final MathContext PRECISION = MathContext.DECIMAL64;
+
+    private final long version;
+    private final String source;
+    private final long loadedAt;
+    private final Map<String, BigDecimal> perBase;
+    private final ConcurrentHashMap<String, BigDecimal> crossRates = new ConcurrentHashMap<String, BigDecimal>();
+
+    /**
+     * @param perBase the rate of each currency against the base, by ISO 4217 code. Copied.
+     */
+    ExchangeRateTable(long version, String source, Map<String, BigDecimal> perBase) {
+        this.version = version;
+        this.source = source;
+        this.loadedAt = System.currentTimeMillis();
+        this.perBase = Collections.unmodifiableMap(new HashMap<String, BigDecimal>(perBase));
+    }
+
+    /**
+     * @return the version of the rates. Every table that is loaded gets a higher version than the one it replaces.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * @return the file the rates were read from, or null if there was none.
+     */
+    public String getSource() {
+        return this.source;
+    }
+
+    /**
+     * @return when the table was loaded, in milliseconds since the epoch.
+     */
+    public long getLoadedAt() {
+        return this.loadedAt;
+    }
+
+    /**
+     * @return the ISO 4217 codes of the currencies the table has a rate for.
+     */
+    public Set<String> getCurrencies() {
+        return this.perBase.keySet();
+    }
+
+    /**
+     * @return true if amounts can be converted from the first currency to the second.
+     */
+    public boolean hasRate(String fromCurrency, String toCurrency) {
+        return fromCurrency.equals(toCurrency)
+                || (this.perBase.containsKey(fromCurrency) && this.perBase.containsKey(toCurrency));
+    }
+
+    /**
+     * Get the rate to convert amounts with.
+     *
+     * @param fromCurrency the ISO 4217 code of the currency amounts are in
+     * @param toCurrency the ISO 4217 code of the currency to convert them to
+     * @return the number of units of toCurrency one unit of fromCurrency buys, 1 for the same currency.
+     * @throws IllegalStateException if the table has no rate for one of the currencies
+     */
+    public BigDecimal getRate(String fromCurrency, String toCurrency) {
+        if (fromCurrency.equals(toCurrency))
+            return BigDecimal.ONE;
+
+        String pair = fromCurrency + toCurrency;
+        BigDecimal rate = this.crossRates.get(pair);
+        if (rate != null)
+            return rate;
+
+        BigDecimal from = this.perBase.get(fromCurrency);
+        BigDecimal to = this.perBase.get(toCurrency);
+        if (from == null || to == null)
+            throw new IllegalStateException("No exchange rate from " + fromCurrency + " to " + toCurrency
+                    + " in version " + this.version + " of the rates");
+        rate = to.divide(from, PRECISION).stripTrailingZeros();
+        BigDecimal raced = this.crossRates.putIfAbsent(pair, rate);
+        return raced != null ? raced : rate;
+    }
+
+    @Override
+    public String toString() {
+        return "version " + this.version + " of " + (this.source == null ? "no file" : this.source) + ", "
+                + this.perBase.size() + " currencies";
+    }
+}
@@ -0,0 +1,160 @@
+package uwallet;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The exchange rates transfers between accounts of different currencies are converted with. The rates are read
+ * from a local file, -Duwallet.fx.file, default sqlite/fx-rates.properties, the first time a conversion needs
+ * them, and kept in memory as an immutable ExchangeRateTable. Conversions read the current table without any
+ * locking; loading new rates publishes a new table, with a higher version, in a single write.
+ *
+ * The file is a properties file with the rate of each currency against a common base currency, keyed by its
+ * ISO 4217 code, and optionally the version of the rates:
+ *      # units of each currency one US dollar buys
+ *      version=42
+ *      USD=1
+ *      EUR=0.92
+ *      JPY=151.3
+ * Without a version, each load gets the version of the table it replaces plus one. A file whose version is not
+ * higher than the current one is ignored, so rates never go back to an older version.
+ *
+ * usage:
+ *      ExchangeRates.load(new File("rates.properties"));
+ *      wallet.transfer(100, "dollars", "euros");
+ *
+ * RI: table, once loaded, is never null. loadedFile, loadedModified and loadedLength describe the file table was
+ *     read from, and are only accessed while holding the class lock.
+ */
+public final class ExchangeRates {
+
+    static final String FILE_PROPERTY = "uwallet.fx.file";
+    static final String VERSION_KEY = "version";
+
+    private static volatile ExchangeRateTable table = null;
+    private static File loadedFile = null;
+    private static long loadedModified = 0;
+    private static long loadedLength = 0;
+
+    private ExchangeRates() {
+    }
+
+    /**
+     * @return the file the rates are read from when none was loaded explicitly.
+     */
+    static File file() {
+        return new File(System.getProperty(FILE_PROPERTY, "sqlite" + File.separator + "fx-rates.properties"));
+    }
+
+    /**
+     * Get the current rates. The first call reads the -Duwallet.fx.file file; if it does not exist or can not be
+     * read, the table is empty and every conversion fails until rates are loaded.
+     *
+     * @return the current table of rates.
+     */
+    public static ExchangeRateTable getTable() {
+        ExchangeRateTable current = table;
+        if (current != null)
+            return current;
+        return loadConfigured();
+    }
+
+    private static synchronized ExchangeRateTable loadConfigured() {
+        if (table != null)
+            return table;
+
+        File file = file();
+        if (file.exists()) {
+            try {
+                return load(file);
+            } catch (IOException e) {
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+        table = new ExchangeRateTable(0, null, new HashMap<String, BigDecimal>());
+        return table;
+    }
+
+    /**
+     * Reads rates from a file and makes them the current ones, unless the file states a version that is not
+     * higher than the current one.
+     *
+     * @param file the properties file to read
+     * @return the current table, which is the one read unless it was ignored.
+     * @throws IOException if the file could not be read, or has a rate that is not a positive number.
+     */
+    public static synchronized ExchangeRateTable load(File file) throws IOException {
+        long modified = file.lastModified();
+        long length = file.length();
+
+        Properties properties = new Properties();
+        Reader in = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+
+        long currentVersion = table == null ? 0 : table.getVersion();
+        long version = currentVersion + 1;
+        Map<String, BigDecimal> perBase = new HashMap<String, BigDecimal>();
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key).trim();
+            try {
+                if (key.equals(VERSION_KEY)) {
+                    version = Long.parseLong(value);
+                    continue;
+                }
+                BigDecimal rate = new BigDecimal(value);
+                if (rate.signum() <= 0)
+                    throw new IOException("The rate of " + key + " in " + file + " is not positive: " + value);
+                perBase.put(key.trim().toUpperCase(), rate);
+            } catch (NumberFormatException e) {
+                throw new IOException("The " + key + " of " + file + " is not a number: " + value);
+            }
+        }
+
+        loadedFile = file;
+        loadedModified = modified;
+        loadedLength = length;
+        if (table != null && version <= currentVersion)
+            return table;
+        table = new ExchangeRateTable(version, file.getPath(), perBase);
+        return table;
+    }
+
+    /**
+     * Reads the file the current rates came from again, if it changed since. Meant to be called periodically by
+     * the application, or when it knows new rates were written.
+     *
+     * @return the current table.
+     * @throws IOException if the file changed but could not be read.
+     */
+    public static synchronized ExchangeRateTable reload() throws IOException {
+        File file = loadedFile != null ? loadedFile : file();
+        if (table != null && file.equals(loadedFile)
+                && file.lastModified() == loadedModified && file.length() == loadedLength)
+            return table;
+        if (!file.exists())
+            return getTable();
+        return load(file);
+    }
+
+    /**
+     * Forgets the current rates, the next conversion reads the -Duwallet.fx.file file again. Meant for tests.
+     */
+    static synchronized void reset() {
+        table = null;
+        loadedFile = null;
+        loadedModified = 0;
+        loadedLength = 0;
+    }
+}
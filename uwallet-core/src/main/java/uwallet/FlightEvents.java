@@ -0,0 +1,97 @@
+package uwallet;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events emitted by the library. They show up in JMC under the uwallet category.
+ *
+ * Events are used the way JFR intends, so that they cost next to nothing when no recording has them enabled:
+ * the event object is created on the stack of the method that emits it and never escapes it, which lets the JIT
+ * remove it, and fields are only filled in when shouldCommit() or isEnabled() is true.
+ *
+ * usage:
+ *      FlightEvents.AccountCommit event = new FlightEvents.AccountCommit();
+ *      event.begin();
+ *      ...
+ *      if (event.shouldCommit()) {
+ *          event.accountId = this.id;
+ *          event.commit();
+ *      }
+ */
+final class FlightEvents {
+
+    private FlightEvents() {
+    }
+
+    @Name("uwallet.AccountMonitorWait")
+    @Label("Account Monitor Wait")
+    @Category({"uwallet", "Account"})
+    @Description("Time a deposit or withdrawal waited to lock its account")
+    @Threshold("1 ms")
+    static class AccountMonitorWait extends Event {
+
+        @Label("Account")
+        String accountId;
+
+        @Label("Operation")
+        String operation;
+    }
+
+    @Name("uwallet.AccountCommit")
+    @Label("Account Commit")
+    @Category({"uwallet", "Account"})
+    @Description("Writing an account and its new transactions to storage")
+    static class AccountCommit extends Event {
+
+        @Label("Account")
+        String accountId;
+
+        @Label("Batch Size")
+        @Description("Number of transactions committed")
+        int batchSize;
+    }
+
+    @Name("uwallet.AccountLoad")
+    @Label("Account Load")
+    @Category({"uwallet", "Account"})
+    @Description("Looking up an account among the live Account objects, and loading it from storage on a miss")
+    static class AccountLoad extends Event {
+
+        @Label("Account")
+        String accountId;
+
+        @Label("Hit")
+        @Description("The account was already loaded")
+        boolean hit;
+
+        @Label("Live Accounts")
+        @Description("References scanned in the identity map")
+        int scanned;
+    }
+
+    @Name("uwallet.StorageLockHold")
+    @Label("Storage Lock Hold")
+    @Category({"uwallet", "Storage"})
+    @Description("A storage operation's wait for, and hold of, the database lock")
+    @StackTrace(false)
+    static class StorageLockHold extends Event {
+
+        @Label("Operation")
+        String operation;
+
+        @Label("Wait Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long waited;
+
+        @Label("Hold Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long held;
+    }
+}
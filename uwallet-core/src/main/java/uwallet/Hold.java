@@ -0,0 +1,67 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * Funds of an account reserved for a later withdrawal, as card payments are authorized before they are captured.
+ * A hold lowers the available balance of its account but posts no transaction; it ends when it is captured,
+ * which withdraws at most the held amount, when it is released, or when it expires and is released by the
+ * HoldExpiry. Holds are on record until they end.
+ *
+ * RI: amount is positive. expires is after created.
+ */
+public final class Hold {
+
+    private final String id;
+    private final String accountId;
+    private final BigDecimal amount;
+    private final String description;
+    private final Timestamp created;
+    private final Timestamp expires;
+
+    Hold(String id, String accountId, BigDecimal amount, String description, Timestamp created, Timestamp expires) {
+        this.id = id;
+        this.accountId = accountId;
+        this.amount = amount;
+        this.description = description;
+        this.created = created;
+        this.expires = expires;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getAccountId() {
+        return this.accountId;
+    }
+
+    /**
+     * @return the amount that is held, in the currency of the account.
+     */
+    public BigDecimal getAmount() {
+        return this.amount;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    public Timestamp getCreated() {
+        return this.created;
+    }
+
+    /**
+     * @return when the hold is released if it was not captured or released before.
+     */
+    public Timestamp getExpires() {
+        return this.expires;
+    }
+
+    @Override
+    public String toString() {
+        return this.id + " | " + this.accountId + " | " + this.amount.toPlainString() + " | " + this.description
+                + " | expires " + this.expires;
+    }
+}
@@ -0,0 +1,119 @@
+package uwallet;
+
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Releases holds once they expire. Holds are scheduled on a TimingWheel ticking every uwallet.holds.tickMillis,
+ * so however many are pending each tick only costs the holds that expire or move down a wheel. The wheel is only
+ * touched by the expiry thread: placing a hold adds it to a lock-free queue, which the thread drains before each
+ * tick.
+ *
+ * The thread starts with the first hold that is placed, or the first account loaded with held funds, and first
+ * schedules every hold on record, PAGE_SIZE at a time, so holds placed before a restart still expire. Holds that
+ * were captured or released before they expire are found to be gone when they come round, and skipped. A page
+ * that can not be read is read again on the next tick, the thread never ends on an error.
+ *
+ * Tuned with:
+ *      uwallet.holds.tickMillis    the precision of expiry, default 100ms
+ */
+final class HoldExpiry {
+
+    static final String TICK_PROPERTY = "uwallet.holds.tickMillis";
+    //holds read from the records at once when the thread starts
+    static final int PAGE_SIZE = 1000;
+
+    private static final long tickMillis = Math.max(1, Long.getLong(TICK_PROPERTY, 100));
+    private static final ConcurrentLinkedQueue<Hold> placed = new ConcurrentLinkedQueue<Hold>();
+    private static volatile Thread thread = null;
+
+    private HoldExpiry() {
+    }
+
+    /**
+     * Schedules the release of a hold that was placed.
+     */
+    static void schedule(Hold hold) {
+        placed.add(hold);
+        start();
+    }
+
+    /**
+     * Starts the expiry thread if it is not running yet.
+     */
+    static void start() {
+        if (thread != null)
+            return;
+        synchronized (HoldExpiry.class) {
+            if (thread != null)
+                return;
+            Thread expiry = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    expire();
+                }
+            }, "uwallet-hold-expiry");
+            expiry.setDaemon(true);
+            expiry.start();
+            thread = expiry;
+        }
+    }
+
+    private static void expire() {
+        TimingWheel<Hold> wheel = new TimingWheel<Hold>(tickMillis, System.currentTimeMillis());
+        String position = null;
+        boolean loaded = false;
+        while (!loaded) {
+            try {
+                List<Hold> page = uWalletDatabase.getHoldsAfter(position, PAGE_SIZE);
+                for (Hold hold : page)
+                    wheel.schedule(hold, hold.getExpires().getTime());
+                if (page.size() < PAGE_SIZE)
+                    loaded = true;
+                else
+                    position = page.get(page.size() - 1).getId();
+            } catch (RuntimeException e) {
+                //the page is read again after a tick, the holds already on the wheel stay there
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                e.printStackTrace();
+                try {
+                    Thread.sleep(tickMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+
+        while (true) {
+            try {
+                Hold hold;
+                while ((hold = placed.poll()) != null)
+                    wheel.schedule(hold, hold.getExpires().getTime());
+
+                for (Hold expired : wheel.advance(System.currentTimeMillis())) {
+                    try {
+                        Account.loadAccount(expired.getAccountId()).expireHold(expired.getId());
+                    } catch (NoSuchObjectInDatabaseException e) {
+                        //the account is gone from the records, and its holds with it
+                    } catch (RuntimeException e) {
+                        //one hold that can not be released does not stop the others from expiring
+                        System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                        e.printStackTrace();
+                    }
+                }
+            } catch (RuntimeException e) {
+                //the expiry thread keeps running, holds placed later must still expire
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+
+            try {
+                Thread.sleep(tickMillis);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package uwallet;
+
+/**
+ * How far a batch job over every account got. It is committed together with the batch it follows, so a job that
+ * is interrupted resumes after the last batch that reached the records, and never applies a batch twice.
+ *
+ * RI: position is the id of the last account of the last committed batch, null if no batch was committed yet.
+ */
+final class JobCheckpoint {
+
+    final String job;
+    final String position;
+    final boolean completed;
+
+    JobCheckpoint(String job, String position, boolean completed) {
+        this.job = job;
+        this.position = position;
+        this.completed = completed;
+    }
+}
@@ -0,0 +1,96 @@
+package uwallet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A concurrent histogram of durations in nanoseconds, in the spirit of HdrHistogram. Buckets are log-linear: every
+ * power of two range is split in 64 equal sub-buckets, so a recorded value is known to within 1/64 (about 1.6%)
+ * of itself whatever its magnitude, and recording is a couple of shifts and an atomic increment. The whole range
+ * of a long fits in 3712 buckets.
+ *
+ * Recording never blocks and never allocates. A snapshot may miss values recorded concurrently with it, which is
+ * fine for monitoring.
+ *
+ * RI: counts[i] is the number of values recorded since the last reset whose bucket is i. sum is the sum of the
+ *     recorded values and max the largest of them.
+ */
+final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    //values below 2 * SUB_BUCKET_COUNT are counted exactly, each larger power of two adds SUB_BUCKET_COUNT buckets
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private volatile long since = System.nanoTime();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos the duration in nanoseconds, negative durations (a clock going backwards) are recorded as 0.
+     */
+    void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        this.counts.incrementAndGet(bucketOf(value));
+        this.sum.addAndGet(value);
+
+        long currentMax = this.max.get();
+        while (value > currentMax && !this.max.compareAndSet(currentMax, value))
+            currentMax = this.max.get();
+    }
+
+    /**
+     * Clears every recorded value and restarts the interval the throughput is computed over.
+     */
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++)
+            this.counts.set(i, 0);
+        this.sum.set(0);
+        this.max.set(0);
+        this.since = System.nanoTime();
+    }
+
+    /**
+     * @return an immutable copy of the histogram as it is now.
+     */
+    LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = this.counts.get(i);
+            total += copy[i];
+        }
+        return new LatencySnapshot(copy, total, this.sum.get(), this.max.get(), System.nanoTime() - this.since);
+    }
+
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT)
+            return (int) value;
+        //shift the value so that its SUB_BUCKET_BITS + 1 most significant bits remain
+        int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * @return the lowest value counted in the given bucket.
+     */
+    static long lowestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT)
+            return bucket;
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        return (long) (bucket - shift * SUB_BUCKET_COUNT) << shift;
+    }
+
+    /**
+     * @return the highest value counted in the given bucket.
+     */
+    static long highestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT)
+            return bucket;
+        int shift = bucket / SUB_BUCKET_COUNT - 1;
+        return lowestValueOf(bucket) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,102 @@
+package uwallet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable copy of the latencies recorded for one storage operation, as returned by StorageMetrics. All
+ * durations are in nanoseconds. Percentiles are accurate to within 1.6% of their value.
+ */
+public final class LatencySnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+    private final long intervalNanos;
+
+    LatencySnapshot(long[] counts, long count, long sum, long max, long intervalNanos) {
+        this.counts = counts;
+        this.count = count;
+        this.sum = sum;
+        this.max = max;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /**
+     * @return the number of recorded operations.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * @return the mean duration, 0 if nothing was recorded.
+     */
+    public double getMean() {
+        return this.count == 0 ? 0.0 : (double) this.sum / this.count;
+    }
+
+    /**
+     * @return the longest recorded duration, 0 if nothing was recorded.
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    public long getP50() {
+        return this.getValueAtPercentile(50.0);
+    }
+
+    public long getP90() {
+        return this.getValueAtPercentile(90.0);
+    }
+
+    public long getP99() {
+        return this.getValueAtPercentile(99.0);
+    }
+
+    public long getP999() {
+        return this.getValueAtPercentile(99.9);
+    }
+
+    /**
+     * @return the number of recorded operations per second over the interval since recording started or was
+     * last reset.
+     */
+    public double getThroughput() {
+        return this.intervalNanos <= 0 ? 0.0 : this.count / (this.intervalNanos / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * @return the length in nanoseconds of the interval the operations were recorded in.
+     */
+    public long getIntervalNanos() {
+        return this.intervalNanos;
+    }
+
+    /**
+     * Get the duration that the given percentage of the recorded operations did not exceed.
+     *
+     * @param percentile between 0.0 and 100.0
+     * @return the duration, never more than getMax(). 0 if nothing was recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (this.count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * this.count));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length; i++) {
+            seen += this.counts[i];
+            if (seen >= rank)
+                return Math.min(LatencyHistogram.highestValueOf(i), this.max);
+        }
+        return this.max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.0fns p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns (%.1f/s)",
+                this.count, this.getMean(), this.getP50(), this.getP90(), this.getP99(), this.getP999(),
+                this.max, this.getThroughput());
+    }
+}
@@ -0,0 +1,174 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Checks that the records add up: walking the transactions of every account in sequence order, each ending
+ * balance must be the previous one plus the amount of a deposit or minus the amount of a withdrawal, and the last
+ * one must be the balance of the account. The chain of an account whose older transactions were archived starts
+ * at the balance its checkpoint recorded.
+ *
+ * It runs online: the records are read from a LedgerSnapshot, which only holds the storage lock while it is
+ * opened, so deposits and withdrawals carry on meanwhile and are not seen by the run. The calling thread reads
+ * one account at a time from the snapshot and the accounts are checked on uwallet.reconcile.threads threads; at
+ * most IN_FLIGHT_PER_THREAD accounts per thread are read but not checked yet.
+ *
+ * Sequences may have gaps, a withdrawal that is refused for lack of funds still uses up its sequence.
+ *
+ * Tuned with:
+ *      uwallet.reconcile.threads   threads accounts are checked on, default the number of cores
+ *
+ * usage:
+ *      ReconciliationReport report = new LedgerReconciliation().run();
+ *      if (!report.isConsistent())
+ *          System.err.println(report);
+ */
+public final class LedgerReconciliation {
+
+    static final String THREADS_PROPERTY = "uwallet.reconcile.threads";
+    //accounts each thread may have waiting to be checked
+    static final int IN_FLIGHT_PER_THREAD = 4;
+
+    private final int threads;
+
+    public LedgerReconciliation() {
+        this(Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    LedgerReconciliation(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Checks every account on record, as of now.
+     *
+     * @return what was checked and the discrepancies that were found.
+     */
+    public ReconciliationReport run() {
+        long started = System.nanoTime();
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "uwallet-reconcile");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ArrayDeque<Future<List<Discrepancy>>> inFlight = new ArrayDeque<Future<List<Discrepancy>>>();
+        int window = this.threads * IN_FLIGHT_PER_THREAD;
+        Tally tally = new Tally();
+        LedgerSnapshot snapshot = uWalletDatabase.openLedgerSnapshot();
+        try {
+            AccountLedger next;
+            while ((next = snapshot.next()) != null) {
+                if (inFlight.size() >= window)
+                    tally.add(take(inFlight.removeFirst()));
+                tally.accounts += 1;
+                tally.transactions += next.entries.size();
+                final AccountLedger ledger = next;
+                inFlight.addLast(pool.submit(new Callable<List<Discrepancy>>() {
+                    @Override
+                    public List<Discrepancy> call() {
+                        return check(ledger);
+                    }
+                }));
+            }
+            while (!inFlight.isEmpty())
+                tally.add(take(inFlight.removeFirst()));
+        } finally {
+            snapshot.close();
+            for (Future<List<Discrepancy>> check : inFlight)
+                check.cancel(true);
+            pool.shutdown();
+        }
+        return new ReconciliationReport(tally.accounts, tally.transactions, tally.discrepancyCount, tally.listed,
+                System.nanoTime() - started);
+    }
+
+    /**
+     * Walks the balance chain of one account.
+     *
+     * @return the discrepancies, in the order of the sequences, possibly empty.
+     */
+    static List<Discrepancy> check(AccountLedger ledger) {
+        List<Discrepancy> found = new ArrayList<Discrepancy>();
+        BigDecimal balance = new BigDecimal(ledger.startBalance);
+        long sequence = ledger.startSequence;
+
+        for (AccountLedger.Entry entry : ledger.entries) {
+            BigDecimal ending = new BigDecimal(entry.endingBalance);
+            BigDecimal expected;
+            if (entry.txtype.equals("DR"))
+                expected = balance.add(BigDecimal.valueOf(entry.amount));
+            else if (entry.txtype.equals("CR"))
+                expected = balance.subtract(BigDecimal.valueOf(entry.amount));
+            else
+                expected = null;
+
+            if (expected == null)
+                found.add(new Discrepancy(Discrepancy.Kind.UNKNOWN_TYPE, ledger.accountId, entry.sequence,
+                        "DR or CR", entry.txtype));
+            else if (expected.compareTo(ending) != 0)
+                found.add(new Discrepancy(Discrepancy.Kind.BROKEN_CHAIN, ledger.accountId, entry.sequence,
+                        expected.toPlainString(), ending.toPlainString()));
+            //carry on from what was recorded, so that one broken link is reported once
+            balance = ending;
+            sequence = entry.sequence;
+        }
+
+        if (ledger.balance == null) {
+            found.add(new Discrepancy(Discrepancy.Kind.ORPHAN_TRANSACTIONS, ledger.accountId, sequence,
+                    "an account", ledger.entries.size() + " transactions"));
+            return found;
+        }
+        BigDecimal recorded = new BigDecimal(ledger.balance);
+        if (recorded.compareTo(balance) != 0)
+            found.add(new Discrepancy(Discrepancy.Kind.BALANCE_MISMATCH, ledger.accountId, sequence,
+                    balance.toPlainString(), recorded.toPlainString()));
+        if (sequence > ledger.lastTxId)
+            found.add(new Discrepancy(Discrepancy.Kind.SEQUENCE_AHEAD_OF_ACCOUNT, ledger.accountId, sequence,
+                    "at most " + ledger.lastTxId, String.valueOf(sequence)));
+        return found;
+    }
+
+    private static List<Discrepancy> take(Future<List<Discrepancy>> check) {
+        try {
+            return check.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reconciling", e);
+        }
+    }
+
+    //only used by the thread that runs the reconciliation
+    private static class Tally {
+        long accounts = 0;
+        long transactions = 0;
+        long discrepancyCount = 0;
+        final List<Discrepancy> listed = new ArrayList<Discrepancy>();
+
+        void add(List<Discrepancy> discrepancies) {
+            this.discrepancyCount += discrepancies.size();
+            for (Discrepancy discrepancy : discrepancies) {
+                if (this.listed.size() >= ReconciliationReport.MAX_LISTED)
+                    break;
+                this.listed.add(discrepancy);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package uwallet;
+
+import java.io.Closeable;
+
+/**
+ * A consistent, read-only view of every account and transaction on record, as of when it was opened, read one
+ * account at a time. It is opened while holding the storage lock but read without it: writers carry on while it
+ * is read and what they write is not seen. Only used by one thread at a time.
+ */
+interface LedgerSnapshot extends Closeable {
+
+    /**
+     * @return the ledger of the next account, in the order of account ids, or null once every account was read.
+     *          Transactions without an account row come last.
+     */
+    AccountLedger next();
+
+    /**
+     * Releases the snapshot. Does not throw.
+     */
+    @Override
+    void close();
+}
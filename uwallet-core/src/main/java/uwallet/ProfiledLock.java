@@ -0,0 +1,107 @@
+package uwallet;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A reentrant, unfair lock used in place of a monitor for the library's global serialization points. It always
+ * measures how long a contended acquisition waited, which costs nothing when the lock is free. When the
+ * ContentionProfiler is on it also records for every outermost acquisition which operation took the lock, how
+ * many threads were already queued for it, which operation was holding it and for how long it is then held.
+ *
+ * usage:
+ *      lock.lock("loadAccount");
+ *      try {
+ *          ...
+ *      } finally {
+ *          lock.unlock();
+ *      }
+ *
+ * RI: holderOperation and holdStarted describe the current outermost holder when it was profiled, holdStarted is
+ *     0 otherwise. They are only written by the thread holding the lock.
+ */
+final class ProfiledLock {
+
+    private final String name;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile String holderOperation;
+    private long holdStarted;
+
+    /**
+     * @param name the name the lock is reported under.
+     */
+    ProfiledLock(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Blocks until the lock is held by the calling thread.
+     *
+     * @param operation what the lock is taken for, as reported by the profiler.
+     * @return how many nanoseconds the thread waited for the lock, 0 if it was free.
+     */
+    long lock(String operation) {
+        boolean profiling = ContentionProfiler.isEnabled();
+        long waited = 0;
+        int queued = 0;
+        String blockedBy = null;
+
+        if (!this.lock.tryLock()) {
+            if (profiling) {
+                blockedBy = this.holderOperation;
+                queued = this.lock.getQueueLength();
+            }
+            long waitStarted = System.nanoTime();
+            this.lock.lock();
+            waited = System.nanoTime() - waitStarted;
+        }
+
+        if (this.lock.getHoldCount() == 1) {
+            this.holdStarted = 0;
+            if (profiling) {
+                ContentionProfiler.recordAcquisition(this.name, operation, waited, queued, blockedBy);
+                this.holderOperation = operation;
+                this.holdStarted = System.nanoTime();
+            }
+        }
+        return waited;
+    }
+
+    /**
+     * Releases one hold of the lock.
+     */
+    void unlock() {
+        String operation = null;
+        long held = 0;
+        if (this.lock.getHoldCount() == 1 && this.holdStarted != 0) {
+            operation = this.holderOperation;
+            held = System.nanoTime() - this.holdStarted;
+            this.holderOperation = null;
+            this.holdStarted = 0;
+        }
+        this.lock.unlock();
+
+        if (operation != null)
+            ContentionProfiler.recordHold(this.name, operation, held);
+    }
+
+    /**
+     * @return the number of holds of the lock by the calling thread.
+     */
+    int getHoldCount() {
+        return this.lock.getHoldCount();
+    }
+
+    /**
+     * @return an estimate of the number of threads waiting for the lock.
+     */
+    int getQueueLength() {
+        return this.lock.getQueueLength();
+    }
+
+    /**
+     * @return true if some thread holds the lock.
+     */
+    boolean isLocked() {
+        return this.lock.isLocked();
+    }
+}
@@ -0,0 +1,167 @@
+package uwallet;
+
+import uwallet.exceptions.RateLimitExceededException;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token bucket rate limits on the writes made through a Wallet: deposits, withdrawals, transfers, holds and
+ * scheduled transfers. Each account and each wallet has its own bucket, so a client flooding one account is
+ * refused before it takes the monitor of the account or queues for the storage lock, and every other account
+ * keeps its share of the storage. The writes the library makes on its own, such as accruals, scheduled transfers
+ * that are due and expiring holds, are not limited.
+ *
+ * A write takes a token from the bucket of its account, then from the bucket of its wallet; the token of the
+ * account is put back if the wallet has none left. Buckets are lock-free, see TokenBucket, and are dropped once
+ * they are full again, so only accounts and wallets that wrote recently take memory. The full buckets are swept
+ * when there are more than SWEEP_THRESHOLD of them, by one writer at a time and at most once per time a bucket
+ * takes to refill, so that the writes of new accounts do not each scan every bucket.
+ *
+ * Limits are off until a rate is set, with:
+ *      uwallet.ratelimit.account.perSecond     writes per second of each account, 0 for no limit
+ *      uwallet.ratelimit.account.burst         writes an idle account can make at once, default one second of writes
+ *      uwallet.ratelimit.wallet.perSecond      writes per second of each wallet, all its accounts together
+ *      uwallet.ratelimit.wallet.burst          writes an idle wallet can make at once, default one second of writes
+ * or at runtime with setAccountLimit and setWalletLimit.
+ *
+ * RI: a Limit with a perSecond of 0 has no buckets. Every bucket of a Limit was made with its rate and burst.
+ */
+public final class RateLimits {
+
+    static final String ACCOUNT_PROPERTY = "uwallet.ratelimit.account";
+    static final String WALLET_PROPERTY = "uwallet.ratelimit.wallet";
+    //buckets kept before the full ones are dropped
+    static final int SWEEP_THRESHOLD = 100000;
+    //the shortest time between two sweeps of a Limit
+    static final long MIN_SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static class Limit {
+        final double perSecond;
+        final int burst;
+        final ConcurrentHashMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+        //a bucket emptied right after a sweep is full again this long after it
+        final long sweepIntervalNanos;
+        //the System.nanoTime() before which no other sweep is started
+        final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+        Limit(double perSecond, int burst) {
+            this.perSecond = Math.max(0, perSecond);
+            this.burst = burst > 0 ? burst : Math.max(1, (int) Math.ceil(this.perSecond));
+            this.sweepIntervalNanos = this.perSecond == 0 ? MIN_SWEEP_INTERVAL_NANOS
+                    : Math.max(MIN_SWEEP_INTERVAL_NANOS, (long) Math.min(Long.MAX_VALUE / 2, this.burst * 1e9 / this.perSecond));
+        }
+
+        boolean isOff() {
+            return this.perSecond == 0;
+        }
+
+        TokenBucket bucket(String key, long now) {
+            TokenBucket bucket = this.buckets.get(key);
+            if (bucket != null)
+                return bucket;
+            if (this.buckets.size() >= SWEEP_THRESHOLD) {
+                //only the writer that moves nextSweep on sweeps, the others go on without waiting
+                long due = this.nextSweep.get();
+                if (now - due >= 0 && this.nextSweep.compareAndSet(due, now + this.sweepIntervalNanos))
+                    this.sweep(now);
+            }
+            TokenBucket created = new TokenBucket(this.perSecond, this.burst, now);
+            bucket = this.buckets.putIfAbsent(key, created);
+            return bucket != null ? bucket : created;
+        }
+
+        //a writer may still take a token from a bucket that was dropped, which lets through at most one more write
+        void sweep(long now) {
+            for (Iterator<Map.Entry<String, TokenBucket>> it = this.buckets.entrySet().iterator(); it.hasNext(); ) {
+                if (it.next().getValue().isFull(now))
+                    it.remove();
+            }
+        }
+    }
+
+    private static volatile Limit accounts = new Limit(Double.parseDouble(System.getProperty(ACCOUNT_PROPERTY + ".perSecond", "0")),
+            Integer.getInteger(ACCOUNT_PROPERTY + ".burst", 0));
+    private static volatile Limit wallets = new Limit(Double.parseDouble(System.getProperty(WALLET_PROPERTY + ".perSecond", "0")),
+            Integer.getInteger(WALLET_PROPERTY + ".burst", 0));
+    private static final LongAdder accountRejections = new LongAdder();
+    private static final LongAdder walletRejections = new LongAdder();
+
+    private RateLimits() {
+    }
+
+    /**
+     * Limits the writes of each account. Every account starts again with a full bucket.
+     *
+     * @param perSecond writes per second, 0 for no limit
+     * @param burst the writes an account that was idle can make at once, 0 for one second of writes
+     */
+    public static void setAccountLimit(double perSecond, int burst) {
+        accounts = new Limit(perSecond, burst);
+    }
+
+    /**
+     * Limits the writes of each wallet, all its accounts together. Every wallet starts again with a full bucket.
+     *
+     * @param perSecond writes per second, 0 for no limit
+     * @param burst the writes a wallet that was idle can make at once, 0 for one second of writes
+     */
+    public static void setWalletLimit(double perSecond, int burst) {
+        wallets = new Limit(perSecond, burst);
+    }
+
+    /**
+     * @return the number of writes refused because their account was over its limit.
+     */
+    public static long getAccountRejections() {
+        return accountRejections.sum();
+    }
+
+    /**
+     * @return the number of writes refused because their wallet was over its limit.
+     */
+    public static long getWalletRejections() {
+        return walletRejections.sum();
+    }
+
+    /**
+     * Takes a token for a write of an account, before any lock is taken for it.
+     *
+     * @param walletId the wallet making the write
+     * @param accountId the account written to, null if the wallet has no such account, which is not limited so
+     *                  that the write fails as it would without limits
+     * @throws RateLimitExceededException if the account or the wallet is over its limit
+     */
+    static void acquire(String walletId, String accountId) {
+        Limit accountLimit = accounts;
+        Limit walletLimit = wallets;
+        if (accountId == null || (accountLimit.isOff() && walletLimit.isOff()))
+            return;
+
+        long now = System.nanoTime();
+        TokenBucket account = null;
+        if (!accountLimit.isOff()) {
+            account = accountLimit.bucket(accountId, now);
+            if (!account.tryAcquire(now)) {
+                accountRejections.increment();
+                throw new RateLimitExceededException(String.format("Account %s is over its limit of %s writes per second",
+                        accountId, format(accountLimit.perSecond)));
+            }
+        }
+        if (!walletLimit.isOff() && !walletLimit.bucket(walletId, now).tryAcquire(now)) {
+            if (account != null)
+                account.release();
+            walletRejections.increment();
+            throw new RateLimitExceededException(String.format("Wallet %s is over its limit of %s writes per second",
+                    walletId, format(walletLimit.perSecond)));
+        }
+    }
+
+    private static String format(double perSecond) {
+        return perSecond == Math.rint(perSecond) ? Long.toString((long) perSecond) : Double.toString(perSecond);
+    }
+}
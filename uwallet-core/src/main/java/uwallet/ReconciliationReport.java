@@ -0,0 +1,79 @@
+package uwallet;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What one run of a LedgerReconciliation checked and found. Only the first MAX_LISTED discrepancies are listed,
+ * all of them are counted.
+ */
+public final class ReconciliationReport {
+
+    static final int MAX_LISTED = 1000;
+
+    private final long accounts;
+    private final long transactions;
+    private final long discrepancyCount;
+    private final List<Discrepancy> discrepancies;
+    private final long elapsedNanos;
+
+    ReconciliationReport(long accounts, long transactions, long discrepancyCount, List<Discrepancy> discrepancies,
+                         long elapsedNanos) {
+        this.accounts = accounts;
+        this.transactions = transactions;
+        this.discrepancyCount = discrepancyCount;
+        this.discrepancies = Collections.unmodifiableList(discrepancies);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return true if every account checked out.
+     */
+    public boolean isConsistent() {
+        return this.discrepancyCount == 0;
+    }
+
+    /**
+     * @return the number of accounts that were checked, including accounts that are only known by transactions.
+     */
+    public long getAccounts() {
+        return this.accounts;
+    }
+
+    /**
+     * @return the number of transactions that were checked. Archived transactions are not, the chain of an
+     *          archived account starts at its checkpoint.
+     */
+    public long getTransactions() {
+        return this.transactions;
+    }
+
+    public long getDiscrepancyCount() {
+        return this.discrepancyCount;
+    }
+
+    /**
+     * @return the first MAX_LISTED discrepancies, in the order of the account ids and then of the sequences.
+     */
+    public List<Discrepancy> getDiscrepancies() {
+        return this.discrepancies;
+    }
+
+    public long getElapsedNanos() {
+        return this.elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format("%d accounts, %d transactions, %d discrepancies in %dms",
+                this.accounts, this.transactions, this.discrepancyCount,
+                TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos)));
+        for (Discrepancy discrepancy : this.discrepancies)
+            report.append(System.lineSeparator()).append(discrepancy);
+        if (this.discrepancyCount > this.discrepancies.size())
+            report.append(System.lineSeparator()).append("... ")
+                    .append(this.discrepancyCount - this.discrepancies.size()).append(" more");
+        return report.toString();
+    }
+}
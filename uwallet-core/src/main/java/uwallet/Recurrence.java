@@ -0,0 +1,38 @@
+package uwallet;
+
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * How often a scheduled transfer is made. Occurrences are counted from the first one, so a monthly transfer
+ * first due on the 31st is due on the last day of shorter months and on the 31st again after them.
+ */
+public enum Recurrence {
+
+    ONCE(0, 0),
+    DAILY(Calendar.DAY_OF_MONTH, 1),
+    WEEKLY(Calendar.DAY_OF_MONTH, 7),
+    MONTHLY(Calendar.MONTH, 1);
+
+    private final int field;
+    private final int step;
+
+    Recurrence(int field, int step) {
+        this.field = field;
+        this.step = step;
+    }
+
+    /**
+     * @param first when the first occurrence is due
+     * @param occurrence the number of the occurrence, 0 for the first
+     * @return when the occurrence is due, in the default time zone.
+     */
+    Timestamp due(Timestamp first, long occurrence) {
+        if (this == ONCE || occurrence == 0)
+            return first;
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(first.getTime());
+        calendar.add(this.field, (int) (this.step * occurrence));
+        return new Timestamp(calendar.getTimeInMillis());
+    }
+}
@@ -0,0 +1,38 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An AccrualRule that posts a fraction of each account's balance, with a rate per region. A positive rate pays
+ * interest, a negative one charges a fee proportional to the balance. Accounts with a balance of 0 get nothing.
+ *
+ * usage:
+ *      Map<String, BigDecimal> daily = new HashMap<String, BigDecimal>();
+ *      daily.put("US", new BigDecimal("0.0001"));
+ *      daily.put("FR", new BigDecimal("0.00005"));
+ *      new AccrualJob("interest-2018-11-30", new RegionalRate(daily, BigDecimal.ZERO), "daily interest").run();
+ *
+ * RI: rates and defaultRate never change once the rule is created.
+ */
+public final class RegionalRate implements AccrualRule {
+
+    private final Map<String, BigDecimal> rates;
+    private final BigDecimal defaultRate;
+
+    /**
+     * @param rates the rate of each region, by region code. Copied.
+     * @param defaultRate the rate of regions that are not in rates
+     */
+    public RegionalRate(Map<String, BigDecimal> rates, BigDecimal defaultRate) {
+        this.rates = new HashMap<String, BigDecimal>(rates);
+        this.defaultRate = defaultRate;
+    }
+
+    @Override
+    public BigDecimal accrue(String regionCode, BigDecimal balance) {
+        BigDecimal rate = this.rates.get(regionCode);
+        return balance.multiply(rate != null ? rate : this.defaultRate);
+    }
+}
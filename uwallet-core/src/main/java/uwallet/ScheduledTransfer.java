@@ -0,0 +1,113 @@
+package uwallet;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+
+/**
+ * A transfer between two accounts of a wallet that the TransferScheduler makes when it is due: once, at a
+ * future date, or as a standing order. Its state is immutable, each occurrence that is made leaves a TransferRun
+ * on record and the transfer in its next state, or ends it.
+ *
+ * RI: amount is positive and rounded to the currency of the from account. fromAccountId and toAccountId are
+ *     different accounts of the wallet. due is the due date of the occurrence numbered occurrence.
+ */
+public final class ScheduledTransfer {
+
+    private final String id;
+    private final String walletId;
+    private final String fromAccountId;
+    private final String toAccountId;
+    private final BigDecimal amount;
+    private final String description;
+    private final Timestamp first;
+    private final Recurrence recurrence;
+    private final long occurrence;
+    private final Timestamp due;
+
+    ScheduledTransfer(String id, String walletId, String fromAccountId, String toAccountId, BigDecimal amount,
+                      String description, Timestamp first, Recurrence recurrence, long occurrence) {
+        this.id = id;
+        this.walletId = walletId;
+        this.fromAccountId = fromAccountId;
+        this.toAccountId = toAccountId;
+        this.amount = amount;
+        this.description = description;
+        this.first = first;
+        this.recurrence = recurrence;
+        this.occurrence = occurrence;
+        this.due = recurrence.due(first, occurrence);
+    }
+
+    /**
+     * @return the transfer in its state after the current occurrence was made at a time: its first occurrence
+     *          that is due after that time, occurrences that were missed meanwhile are skipped. null if it was
+     *          the last occurrence.
+     */
+    ScheduledTransfer after(long madeAt) {
+        if (this.recurrence == Recurrence.ONCE)
+            return null;
+        long next = this.occurrence + 1;
+        while (this.recurrence.due(this.first, next).getTime() <= madeAt)
+            next += 1;
+        return new ScheduledTransfer(this.id, this.walletId, this.fromAccountId, this.toAccountId, this.amount,
+                this.description, this.first, this.recurrence, next);
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public String getWalletId() {
+        return this.walletId;
+    }
+
+    public String getFromAccountId() {
+        return this.fromAccountId;
+    }
+
+    public String getToAccountId() {
+        return this.toAccountId;
+    }
+
+    /**
+     * @return the amount transferred, in the currency of the from account.
+     */
+    public BigDecimal getAmount() {
+        return this.amount;
+    }
+
+    public String getDescription() {
+        return this.description;
+    }
+
+    /**
+     * @return when the first occurrence was due.
+     */
+    public Timestamp getFirst() {
+        return this.first;
+    }
+
+    public Recurrence getRecurrence() {
+        return this.recurrence;
+    }
+
+    /**
+     * @return the number of the next occurrence, 0 for the first.
+     */
+    public long getOccurrence() {
+        return this.occurrence;
+    }
+
+    /**
+     * @return when the next occurrence is due.
+     */
+    public Timestamp getDue() {
+        return this.due;
+    }
+
+    @Override
+    public String toString() {
+        return this.id + " | " + this.fromAccountId + " -> " + this.toAccountId + " | "
+                + this.amount.toPlainString() + " | " + this.recurrence + " | due " + this.due;
+    }
+}
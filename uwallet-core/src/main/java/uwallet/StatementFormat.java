@@ -0,0 +1,20 @@
+package uwallet;
+
+/**
+ * How statements are rendered. Amounts are formatted with the currency customs of each account's region in both.
+ */
+public enum StatementFormat {
+
+    /**
+     * A block per account: a heading, the opening balance, one line per transaction and the closing balance.
+     */
+    TEXT,
+
+    /**
+     * A row per opening balance, transaction and closing balance, under the single header row HEADER. The type
+     * column is OPENING, CLOSING, or the symbol of the transaction (DR for deposits, CR for withdrawals).
+     */
+    CSV;
+
+    static final String HEADER = "account,wallet,timestamp,sequence,type,amount,balance,description";
+}
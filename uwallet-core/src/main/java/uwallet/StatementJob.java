@@ -0,0 +1,140 @@
+package uwallet;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Writes the statements of every account on record for a period, in the order of the account ids. Accounts are
+ * read from the records a page at a time, and their statements are read and rendered on uwallet.statements.threads
+ * threads while the calling thread writes the ones that are done.
+ *
+ * Memory stays bounded however many accounts there are: at most one page of account ids and objects is held, and
+ * at most IN_FLIGHT_PER_THREAD statements per thread are read or rendered but not written yet. Each of those only
+ * holds the transactions of its own account's period.
+ *
+ * Tuned with:
+ *      uwallet.statements.threads  threads statements are read and rendered on, default the number of cores
+ *
+ * usage:
+ *      Writer out = new BufferedWriter(new FileWriter("statements-2018-11.csv"));
+ *      long written = new StatementJob(firstOfNovember, firstOfDecember, StatementFormat.CSV).writeTo(out);
+ *      out.close();
+ */
+public final class StatementJob {
+
+    static final String THREADS_PROPERTY = "uwallet.statements.threads";
+    //accounts read from the records at once
+    static final int PAGE_SIZE = 1000;
+    //statements each thread may have read or rendered ahead of the writer
+    static final int IN_FLIGHT_PER_THREAD = 2;
+
+    private final Timestamp from;
+    private final Timestamp to;
+    private final StatementFormat format;
+    private final int threads;
+
+    /**
+     * @param from the start of the period, included
+     * @param to the end of the period, excluded
+     * @param format how statements are rendered
+     */
+    public StatementJob(Timestamp from, Timestamp to, StatementFormat format) {
+        this(from, to, format, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+    }
+
+    StatementJob(Timestamp from, Timestamp to, StatementFormat format, int threads) {
+        this.from = from;
+        this.to = to;
+        this.format = format;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Writes the statement of every account, preceded by the header row for CSV. The writer is not closed.
+     *
+     * @param out where the statements are written
+     * @return the number of statements that were written.
+     * @throws IOException if writing failed, no statement is read after that.
+     */
+    public long writeTo(Writer out) throws IOException {
+        if (this.format == StatementFormat.CSV)
+            out.write(StatementFormat.HEADER + System.lineSeparator());
+
+        ExecutorService pool = Executors.newFixedThreadPool(this.threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "uwallet-statements");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        ArrayDeque<Future<String>> inFlight = new ArrayDeque<Future<String>>();
+        int window = this.threads * IN_FLIGHT_PER_THREAD;
+        long written = 0;
+        try {
+            String position = null;
+            while (true) {
+                List<String> ids = uWalletDatabase.getAccountIdsAfter(position, PAGE_SIZE);
+                if (ids.isEmpty())
+                    break;
+                position = ids.get(ids.size() - 1);
+
+                for (final Account account : Account.loadAccounts(ids)) {
+                    if (inFlight.size() >= window) {
+                        out.write(take(inFlight.removeFirst()));
+                        written += 1;
+                    }
+                    inFlight.addLast(pool.submit(new Callable<String>() {
+                        @Override
+                        public String call() {
+                            return AccountStatement.read(account, from, to).render(format);
+                        }
+                    }));
+                }
+                if (ids.size() < PAGE_SIZE)
+                    break;
+            }
+            while (!inFlight.isEmpty()) {
+                out.write(take(inFlight.removeFirst()));
+                written += 1;
+            }
+        } finally {
+            for (Future<String> statement : inFlight)
+                statement.cancel(true);
+            pool.shutdown();
+        }
+        return written;
+    }
+
+    /**
+     * Renders the statement of a single account for the period.
+     */
+    String render(Account account) {
+        String statement = AccountStatement.read(account, this.from, this.to).render(this.format);
+        return this.format == StatementFormat.CSV ? StatementFormat.HEADER + System.lineSeparator() + statement : statement;
+    }
+
+    private static String take(Future<String> statement) throws IOException {
+        try {
+            return statement.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing statements", e);
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package uwallet;
+
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Lifecycle of the storage the library keeps its records in. Nothing is opened when the library is loaded: the
+ * first operation that needs the records opens the storage engine, and pays for it. Applications that do not
+ * want their first request to pay call start() before they accept traffic, and stop() when they shut down.
+ *
+ * With -Duwallet.prewarm=true the library also counts which wallets and accounts are loaded, and stop() (or the
+ * JVM exiting) saves the hottest ones to an access log, sqlite/access.log by default. The next start() reads that
+ * log while the engine opens, then loads those wallets and accounts from several threads, so they are served from
+ * memory from the first request on. The log is configured with:
+ *      uwallet.prewarm.file      the access log, default sqlite/access.log
+ *      uwallet.prewarm.limit     number of wallets, and of accounts, saved, default 1000
+ *      uwallet.prewarm.threads   threads loading them at start, default the number of cores
+ *
+ * usage:
+ *      Storage.start();
+ *      ... accept traffic ...
+ *      Storage.stop();
+ */
+public final class Storage {
+
+    //the identity map of live accounts only holds weak references, these keep the prewarmed ones alive until stop
+    private static final List<Account> warmAccounts = new ArrayList<Account>();
+    private static boolean started = false;
+
+    private Storage() {
+    }
+
+    /**
+     * Opens the storage engine, and prewarms the caches from the access log if -Duwallet.prewarm=true. Returns
+     * once both are done. Does nothing if the storage is already started. The engine may already be open, if an
+     * operation came first.
+     *
+     * @throws IllegalStateException if the storage engine could not be opened.
+     */
+    public static synchronized void start() {
+        if (started)
+            return;
+
+        FutureTask<AccessLog.Entries> accessLog = null;
+        if (AccessLog.isRecording()) {
+            //parsing the log does not need the engine, so it is read while the engine opens
+            accessLog = new FutureTask<AccessLog.Entries>(new Callable<AccessLog.Entries>() {
+                @Override
+                public AccessLog.Entries call() throws IOException {
+                    return AccessLog.read(AccessLog.file());
+                }
+            });
+            newThread(accessLog, "uwallet-access-log").start();
+        }
+
+        uWalletDatabase.open();
+        started = true;
+
+        if (accessLog != null) {
+            try {
+                prewarm(accessLog.get());
+            } catch (ExecutionException e) {
+                //the log is only a hint, start cold
+                System.err.println(e.getCause().getClass().getName() + ": " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Runs start() on a background thread, so that the application can carry on initializing. Operations on
+     * wallets that are made before it is done wait for the storage engine to be open.
+     *
+     * @return a future that is done once the storage is started, and holds the exception if it could not be.
+     */
+    public static Future<Void> startAsync() {
+        FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+            @Override
+            public void run() {
+                start();
+            }
+        }, null);
+        newThread(task, "uwallet-start").start();
+        return task;
+    }
+
+    /**
+     * Saves the access log if -Duwallet.prewarm=true, releases the prewarmed accounts and closes the storage
+     * engine. The next operation that needs the records opens it again.
+     */
+    public static synchronized void stop() {
+        if (AccessLog.isRecording())
+            AccessLog.save(AccessLog.file(), AccessLog.limit());
+        warmAccounts.clear();
+        started = false;
+        uWalletDatabase.close();
+    }
+
+    /**
+     * @return true if start() completed and stop() was not called since.
+     */
+    public static synchronized boolean isStarted() {
+        return started;
+    }
+
+    /**
+     * Loads the wallets and accounts of an access log, from uwallet.prewarm.threads threads. Identifiers that no
+     * longer exist are skipped. The loads themselves are not counted in the access log of this run.
+     *
+     * @return the number of wallets and accounts that were loaded.
+     */
+    static synchronized int prewarm(AccessLog.Entries entries) {
+        List<Callable<Account>> loads = new ArrayList<Callable<Account>>();
+        for (final String walletUID : entries.wallets) {
+            loads.add(new Callable<Account>() {
+                @Override
+                public Account call() throws NoSuchObjectInDatabaseException {
+                    Wallet.loadWallet(walletUID);
+                    return null;
+                }
+            });
+        }
+        for (final String accountIdentifier : entries.accounts) {
+            loads.add(new Callable<Account>() {
+                @Override
+                public Account call() throws NoSuchObjectInDatabaseException {
+                    return Account.loadAccount(accountIdentifier);
+                }
+            });
+        }
+        if (loads.isEmpty())
+            return 0;
+
+        int threads = Math.min(loads.size(),
+                Math.max(1, Integer.getInteger("uwallet.prewarm.threads", Runtime.getRuntime().availableProcessors())));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                return Storage.newThread(runnable, "uwallet-prewarm");
+            }
+        });
+        int loaded = 0;
+        try {
+            for (Future<Account> load : pool.invokeAll(loads)) {
+                try {
+                    Account account = load.get();
+                    if (account != null)
+                        warmAccounts.add(account);
+                    loaded += 1;
+                } catch (ExecutionException e) {
+                    //a wallet or account that was deleted since the log was written is simply skipped
+                    if (!(e.getCause() instanceof NoSuchObjectInDatabaseException))
+                        System.err.println(e.getCause().getClass().getName() + ": " + e.getCause().getMessage());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pool.shutdown();
+        }
+        AccessLog.reset();
+        return loaded;
+    }
+
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
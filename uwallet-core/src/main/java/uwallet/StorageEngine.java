@@ -0,0 +1,246 @@
+package uwallet;
+
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Where the records of accounts, transactions and wallets are kept. The rest of the library only talks to
+ * uWalletDatabase, which hands every call to the engine it was configured with while holding the storage lock -
+ * so an engine is never called by two threads at once and needs no locking of its own.
+ *
+ * Engines are found with java.util.ServiceLoader: an engine module lists its implementation in
+ * META-INF/services/uwallet.StorageEngine. Implementations live in the uwallet package, as they need to create
+ * Account, Transaction and Wallet objects, and must have a public no-argument constructor that does no work -
+ * every engine on the class path is instantiated when one is selected, resources are only acquired in open().
+ * An engine can be closed and opened again any number of times.
+ *
+ * Errors of the underlying store are not recoverable by the caller; engines print them and exit, like the rest
+ * of the library does.
+ */
+interface StorageEngine {
+
+    /**
+     * @return the name the engine is selected by, with the uwallet.storage system property.
+     */
+    String getName();
+
+    /**
+     * Acquires whatever the engine needs (files, connections, ...). Called before any other method, and again
+     * after close() when the engine is used once more.
+     *
+     * @throws IllegalStateException if the engine could not be opened, it may be tried again.
+     */
+    void open();
+
+    /**
+     * Releases what open() acquired. The records are kept.
+     */
+    void close();
+
+    /**
+     * Stores or updates the information for the given Account object.
+     */
+    void insertAccount(Account account);
+
+    /**
+     * @return an account object as stored for the given identifier.
+     * @throws NoSuchObjectInDatabaseException if no account with the given identifier was stored
+     */
+    Account getAccount(String identifier) throws NoSuchObjectInDatabaseException;
+
+    /**
+     * Pages through the ids of every stored account, in ascending order.
+     *
+     * @param afterId only ids strictly greater than this one are returned, null to start from the first
+     * @param limit the maximum number of ids to return
+     * @return at most limit ids, ascending. Fewer than limit only once the last account was reached.
+     */
+    List<String> getAccountIdsAfter(String afterId, int limit);
+
+    /**
+     * Loads several accounts at once. Callers only ask for accounts that are not loaded yet.
+     *
+     * @return an account object for each of the identifiers that is stored, in no particular order.
+     */
+    List<Account> getAccounts(List<String> identifiers);
+
+    /**
+     * Stores or updates a Transaction object.
+     */
+    void insertTransaction(Transaction transaction);
+
+    /**
+     * Stores or updates an account together with its new transactions atomically: either all of them reach the
+     * records or none does.
+     */
+    void commit(Account account, List<Transaction> transactions);
+
+    /**
+     * Stores or updates several accounts, their new transactions and the checkpoint of the batch job that made
+     * them atomically: either all of them reach the records or none does.
+     */
+    void commitBatch(List<Account> accounts, List<Transaction> transactions, JobCheckpoint checkpoint);
+
+    /**
+     * @return the last checkpoint committed by the batch job, or null if it never committed one.
+     */
+    JobCheckpoint getCheckpoint(String job);
+
+    /**
+     * Stores a transfer between two accounts of the same currency atomically: both accounts, as the two legs left
+     * them, and both legs either all reach the records or none does.
+     *
+     * @param debit the withdrawal, its involvedAccount is the account the amount was transferred from
+     * @param credit the deposit, its involvedAccount is the account the amount was transferred to
+     */
+    void commitTransfer(Transaction debit, Transaction credit);
+
+    /**
+     * Stores a transfer between accounts of different currencies atomically: both accounts, as the two legs left
+     * them, both legs and the conversion either all reach the records or none does.
+     *
+     * @param debit the withdrawal, its involvedAccount is the account the amount was transferred from
+     * @param credit the deposit, its involvedAccount is the account the converted amount was transferred to
+     */
+    void commitConversion(Transaction debit, Transaction credit, CurrencyConversion conversion);
+
+    /**
+     * @param transactionUUID the uuid of either leg of the conversion
+     * @return the conversion the transaction is a leg of.
+     * @throws NoSuchObjectInDatabaseException if the transaction is not a leg of a conversion
+     */
+    CurrencyConversion getConversion(String transactionUUID) throws NoSuchObjectInDatabaseException;
+
+    /**
+     * Stores a new hold together with its account, whose held balance includes it, in a single transaction.
+     */
+    void commitHold(Account account, Hold hold);
+
+    /**
+     * Ends a hold: deletes it and stores its account and the transactions that captured it, possibly none, in a
+     * single transaction.
+     */
+    void commitHoldRelease(Account account, List<Transaction> transactions, String holdId);
+
+    /**
+     * @throws NoSuchObjectInDatabaseException if no hold with the id is on record
+     */
+    Hold getHold(String holdId) throws NoSuchObjectInDatabaseException;
+
+    /**
+     * Pages through the holds on record in the order of their ids.
+     *
+     * @param afterId the id of the last hold of the previous page, null for the first page
+     * @param limit the most holds to return
+     */
+    List<Hold> getHoldsAfter(String afterId, int limit);
+
+    /**
+     * Stores a new scheduled transfer.
+     */
+    void insertScheduledTransfer(ScheduledTransfer transfer);
+
+    /**
+     * @throws NoSuchObjectInDatabaseException if no transfer with the id is scheduled
+     */
+    ScheduledTransfer getScheduledTransfer(String transferId) throws NoSuchObjectInDatabaseException;
+
+    /**
+     * @return false if no transfer with the id was scheduled.
+     */
+    boolean deleteScheduledTransfer(String transferId);
+
+    /**
+     * Pages through the scheduled transfers in the order of their ids.
+     *
+     * @param afterId the id of the last transfer of the previous page, null for the first page
+     * @param limit the most transfers to return
+     */
+    List<ScheduledTransfer> getScheduledTransfersAfter(String afterId, int limit);
+
+    /**
+     * Stores the accounts and transactions of a batch of scheduled transfers, the run of each transfer and its next
+     * occurrence, in a single transaction. A transfer whose run has no next occurrence is deleted.
+     */
+    void commitTransfers(List<Account> accounts, List<Transaction> transactions, List<TransferRun> runs);
+
+    /**
+     * @return the runs of a scheduled transfer, in the order they were made.
+     */
+    List<TransferRun> getTransferRuns(String transferId);
+
+    /**
+     * Searches the descriptions of the transactions of a wallet, or of one of its accounts. Each term must start a
+     * word of the description, see TransactionSearch.
+     *
+     * @param accountId the account to search, null to search every account of the wallet
+     * @param terms the terms, lower case, at least one
+     * @param offset the number of matches to skip, for the pages before this one
+     * @param limit the most matches to return
+     * @return the matches, best first.
+     */
+    List<Transaction> searchTransactions(String walletId, String accountId, List<String> terms, int offset, int limit);
+
+    /**
+     * @param sequence only transactions with a sequence strictly lower than this one are returned.
+     * @return at most N transactions of the account that precede the sequence, newest first.
+     */
+    List<Transaction> getTransactionsBefore(String accountIdentifier, long sequence, int N) throws NoSuchObjectInDatabaseException;
+
+    /**
+     * Opens a snapshot of every account and transaction in the hot records, to check them while the engine keeps
+     * serving writes. Called while holding the storage lock; the snapshot is then read without it and must not
+     * block other calls, nor be changed by them.
+     */
+    LedgerSnapshot openLedgerSnapshot();
+
+    /**
+     * Moves the transactions of the account that took place before the horizon out of the hot records, if the
+     * engine has a colder tier to move them to.
+     *
+     * @return the number of transactions that were moved.
+     */
+    int archiveTransactions(String accountIdentifier, Timestamp horizon);
+
+    /**
+     * @return the identifiers of every account with transactions before the horizon in the hot records.
+     */
+    List<String> getAccountsWithTransactionsBefore(Timestamp horizon);
+
+    /**
+     * Returns the space freed by archival, if the engine can.
+     */
+    void compact();
+
+    /**
+     * Stores or updates a wallet.
+     */
+    void insertWallet(Wallet wallet);
+
+    /**
+     * @return a wallet object, with the names and identifiers of its accounts, as stored for the given identifier.
+     * @throws NoSuchObjectInDatabaseException if no wallet with the given identifier was stored
+     */
+    Wallet getWallet(String walletUID) throws NoSuchObjectInDatabaseException;
+
+    /**
+     * @return true if at least one stored account belongs to the wallet.
+     */
+    boolean walletHasAccounts(String walletUID);
+
+    /**
+     * Erases ALL records.
+     */
+    void flush();
+
+    /**
+     * Adds what the engine can tell about its state (files and their sizes, connections, record counts, ...) to
+     * the diagnostics, keyed by a short name. Unlike every other method it is called WITHOUT the storage lock, so
+     * that diagnostics never wait behind traffic: it must only read what it can read safely from any thread, and
+     * the values may be slightly stale.
+     */
+    void describe(Map<String, String> diagnostics);
+}
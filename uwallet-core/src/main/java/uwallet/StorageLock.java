@@ -0,0 +1,87 @@
+package uwallet;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The lock that serializes access to the database. It takes the place of locking the uWalletDatabase class so
+ * that the time spent waiting for it, and the time each operation holds it, can be recorded in StorageMetrics.
+ * Like a monitor it is reentrant and unfair. Each release is also reported to Flight Recorder as a
+ * uwallet.StorageLockHold event, and the ContentionProfiler reports it as the uWalletDatabase lock.
+ *
+ * usage:
+ *      long started = lock.acquire(StorageOperation.GET_ACCOUNT);
+ *      try {
+ *          ...
+ *      } finally {
+ *          lock.release(StorageOperation.GET_ACCOUNT, started);
+ *      }
+ */
+final class StorageLock {
+
+    private final ProfiledLock lock = new ProfiledLock("uWalletDatabase");
+    private long waited; //how long the current holder waited, only accessed while holding the lock
+    private final LongAdder heldNanos = new LongAdder(); //outermost holds only
+    private final long created = System.nanoTime();
+
+    /**
+     * Blocks until the lock is held by the calling thread and records how long that took.
+     *
+     * @param operation the storage operation the lock is taken for
+     * @return the System.nanoTime() at which the lock was acquired, to be handed back to release.
+     */
+    long acquire(StorageOperation operation) {
+        long waited = this.lock.lock(operation.methodName);
+        StorageMetrics.recordLockWait(waited);
+        if (this.lock.getHoldCount() == 1)
+            this.waited = waited;
+        return System.nanoTime();
+    }
+
+    /**
+     * Releases the lock and records the latency of the operation that held it.
+     *
+     * @param operation the storage operation that was performed while holding the lock
+     * @param acquired the value returned by acquire
+     */
+    void release(StorageOperation operation, long acquired) {
+        long released = System.nanoTime();
+        long waited = this.waited;
+        boolean outermost = this.lock.getHoldCount() == 1;
+        this.lock.unlock();
+        StorageMetrics.record(operation, released - acquired);
+        if (outermost)
+            this.heldNanos.add(released - acquired);
+
+        FlightEvents.StorageLockHold event = new FlightEvents.StorageLockHold();
+        if (event.isEnabled()) {
+            event.operation = operation.methodName;
+            event.waited = waited;
+            event.held = released - acquired;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return an estimate of the number of threads waiting for the lock, that is of storage operations queued
+     * behind the one in progress.
+     */
+    int getQueueLength() {
+        return this.lock.getQueueLength();
+    }
+
+    /**
+     * @return true if a storage operation is in progress.
+     */
+    boolean isLocked() {
+        return this.lock.isLocked();
+    }
+
+    /**
+     * @return the fraction of the time since the lock was created that it was held, between 0 and 1. As the lock
+     * guards the only connection this is the utilization of the connection.
+     */
+    double getUtilization() {
+        long elapsed = System.nanoTime() - this.created;
+        return elapsed <= 0 ? 0.0 : Math.min(1.0, this.heldNanos.sum() / (double) elapsed);
+    }
+}
@@ -0,0 +1,97 @@
+package uwallet;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latency histograms of the storage layer. Every uWalletDatabase method records how long it held the database
+ * lock, and how long it waited to get it. The histograms can be read here, or over JMX under the name
+ * uwallet:type=StorageMetrics.
+ *
+ * usage:
+ *      LatencySnapshot inserts = StorageMetrics.getOperationLatencies().get("insertTransaction");
+ *      long p99 = inserts.getP99();
+ */
+public final class StorageMetrics {
+
+    static final String OBJECT_NAME = "uwallet:type=StorageMetrics";
+
+    private static final LatencyHistogram[] operations = new LatencyHistogram[StorageOperation.values().length];
+    private static final LatencyHistogram lockWait = new LatencyHistogram();
+
+    static {
+        for (StorageOperation operation : StorageOperation.values())
+            operations[operation.ordinal()] = new LatencyHistogram();
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MXBean(), new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            //the metrics are still available through this class
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+    private StorageMetrics() {
+    }
+
+    /**
+     * Get the latencies of every storage operation.
+     *
+     * @return a map from the name of each uWalletDatabase method to a snapshot of its latencies. Durations are
+     * the time the database lock was held, and do not include the wait for it.
+     */
+    public static Map<String, LatencySnapshot> getOperationLatencies() {
+        Map<String, LatencySnapshot> snapshots = new LinkedHashMap<String, LatencySnapshot>();
+        for (StorageOperation operation : StorageOperation.values())
+            snapshots.put(operation.methodName, operations[operation.ordinal()].snapshot());
+        return snapshots;
+    }
+
+    /**
+     * Get the time storage operations waited for the database lock. Operations that found it free are recorded
+     * as a wait of 0.
+     *
+     * @return a snapshot of the lock waits.
+     */
+    public static LatencySnapshot getLockWait() {
+        return lockWait.snapshot();
+    }
+
+    /**
+     * Clears every histogram and restarts the interval throughput is computed over.
+     */
+    public static void reset() {
+        for (LatencyHistogram histogram : operations)
+            histogram.reset();
+        lockWait.reset();
+    }
+
+    static void record(StorageOperation operation, long nanos) {
+        operations[operation.ordinal()].record(nanos);
+    }
+
+    static void recordLockWait(long nanos) {
+        lockWait.record(nanos);
+    }
+
+    private static class MXBean implements StorageMetricsMXBean {
+
+        @Override
+        public Map<String, LatencySnapshot> getOperationLatencies() {
+            return StorageMetrics.getOperationLatencies();
+        }
+
+        @Override
+        public LatencySnapshot getLockWait() {
+            return StorageMetrics.getLockWait();
+        }
+
+        @Override
+        public void reset() {
+            StorageMetrics.reset();
+        }
+    }
+}
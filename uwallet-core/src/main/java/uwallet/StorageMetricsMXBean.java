@@ -0,0 +1,25 @@
+package uwallet;
+
+import java.util.Map;
+
+/**
+ * Management interface of StorageMetrics, registered with the platform MBean server as
+ * uwallet:type=StorageMetrics.
+ */
+public interface StorageMetricsMXBean {
+
+    /**
+     * @return the latencies of each storage operation, keyed by the name of its uWalletDatabase method.
+     */
+    Map<String, LatencySnapshot> getOperationLatencies();
+
+    /**
+     * @return the time storage operations spent waiting for the database lock.
+     */
+    LatencySnapshot getLockWait();
+
+    /**
+     * Clears every histogram.
+     */
+    void reset();
+}
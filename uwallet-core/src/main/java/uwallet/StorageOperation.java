@@ -0,0 +1,48 @@
+package uwallet;
+
+/**
+ * The methods of uWalletDatabase whose latency is recorded. Each is reported under the name of its method.
+ */
+enum StorageOperation {
+    INSERT_ACCOUNT("insertAccount"),
+    GET_ACCOUNT("getAccount"),
+    GET_ACCOUNT_IDS_AFTER("getAccountIdsAfter"),
+    GET_ACCOUNTS("getAccounts"),
+    INSERT_TRANSACTION("insertTransaction"),
+    COMMIT("commit"),
+    COMMIT_BATCH("commitBatch"),
+    GET_CHECKPOINT("getCheckpoint"),
+    COMMIT_TRANSFER("commitTransfer"),
+    COMMIT_CONVERSION("commitConversion"),
+    GET_CONVERSION("getConversion"),
+    COMMIT_HOLD("commitHold"),
+    COMMIT_HOLD_RELEASE("commitHoldRelease"),
+    GET_HOLD("getHold"),
+    GET_HOLDS_AFTER("getHoldsAfter"),
+    INSERT_SCHEDULED_TRANSFER("insertScheduledTransfer"),
+    GET_SCHEDULED_TRANSFER("getScheduledTransfer"),
+    DELETE_SCHEDULED_TRANSFER("deleteScheduledTransfer"),
+    GET_SCHEDULED_TRANSFERS_AFTER("getScheduledTransfersAfter"),
+    COMMIT_TRANSFERS("commitTransfers"),
+    GET_TRANSFER_RUNS("getTransferRuns"),
+    GET_N_LAST_TRANSACTIONS("getNLastTransactions"),
+    GET_TRANSACTIONS_BEFORE("getTransactionsBefore"),
+    SEARCH_TRANSACTIONS("searchTransactions"),
+    OPEN_LEDGER_SNAPSHOT("openLedgerSnapshot"),
+    ARCHIVE_TRANSACTIONS("archiveTransactions"),
+    GET_ACCOUNTS_WITH_TRANSACTIONS_BEFORE("getAccountsWithTransactionsBefore"),
+    COMPACT("compact"),
+    INSERT_WALLET("insertWallet"),
+    GET_WALLET("getWallet"),
+    WALLET_HAS_ACCOUNTS("walletHasAccounts"),
+    FLUSH("flush"),
+    USE_ENGINE("useEngine"),
+    OPEN("open"),
+    CLOSE("close");
+
+    final String methodName;
+
+    StorageOperation(String methodName) {
+        this.methodName = methodName;
+    }
+}
@@ -0,0 +1,138 @@
+package uwallet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A hierarchical timing wheel: LEVELS wheels of WHEEL_SIZE slots, where a slot of the first wheel spans one tick
+ * and a slot of each next wheel spans a whole turn of the one below. An item is scheduled in the lowest wheel
+ * whose turn reaches its deadline, and moved down a wheel when the slot it is in comes round, so scheduling is
+ * O(1) and each tick only touches the items that are due or move down. Items further than the top wheel's turn
+ * are kept aside and looked at again once per slot of the top wheel.
+ *
+ * Items can not be cancelled, whoever handles expired items checks whether they still apply.
+ *
+ * RI: not thread safe, only used by one thread. currentTick is the last tick that was advanced to. Every item in
+ *     a slot of wheel L is due more than WHEEL_SIZE^L ticks after the tick the slot comes round at, or is in due.
+ */
+final class TimingWheel<T> {
+
+    static final int WHEEL_BITS = 6;
+    static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    static final int LEVELS = 4;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private static class Entry<T> {
+        final T item;
+        final long deadlineTick;
+
+        Entry(T item, long deadlineTick) {
+            this.item = item;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+
+    private final long tickMillis;
+    private final long origin;
+    private long currentTick = 0;
+    private int size = 0;
+    private final List<ArrayDeque<Entry<T>>> wheels = new ArrayList<ArrayDeque<Entry<T>>>(LEVELS * WHEEL_SIZE);
+    private final ArrayDeque<Entry<T>> overflow = new ArrayDeque<Entry<T>>();
+    private final ArrayDeque<Entry<T>> due = new ArrayDeque<Entry<T>>();
+
+    /**
+     * @param tickMillis the time a slot of the first wheel spans
+     * @param nowMillis the time the wheel starts at
+     */
+    TimingWheel(long tickMillis, long nowMillis) {
+        this.tickMillis = Math.max(1, tickMillis);
+        this.origin = nowMillis;
+        for (int i = 0; i < LEVELS * WHEEL_SIZE; i++)
+            this.wheels.add(new ArrayDeque<Entry<T>>());
+    }
+
+    /**
+     * @return the number of items that are scheduled and were not returned by advance yet.
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Schedules an item. It is returned by the first advance to a time at or after its deadline, rounded up to
+     * the next tick.
+     */
+    void schedule(T item, long deadlineMillis) {
+        long offset = deadlineMillis - this.origin;
+        long tick = offset <= 0 ? 0 : (offset + this.tickMillis - 1) / this.tickMillis;
+        place(new Entry<T>(item, tick));
+        this.size += 1;
+    }
+
+    private void place(Entry<T> entry) {
+        long ticks = entry.deadlineTick - this.currentTick;
+        if (ticks <= 0) {
+            this.due.add(entry);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (ticks < 1L << (WHEEL_BITS * (level + 1))) {
+                int slot = (int) ((entry.deadlineTick >>> (WHEEL_BITS * level)) & MASK);
+                this.wheels.get(level * WHEEL_SIZE + slot).add(entry);
+                return;
+            }
+        }
+        this.overflow.add(entry);
+    }
+
+    /**
+     * Advances the wheel to a time, one tick at a time.
+     *
+     * @return the items whose deadline was reached, in no particular order.
+     */
+    List<T> advance(long nowMillis) {
+        List<T> expired = new ArrayList<T>();
+        long target = (nowMillis - this.origin) / this.tickMillis;
+        drainDue(expired);
+        while (this.currentTick < target) {
+            this.currentTick += 1;
+            //the slots of the upper wheels that come round with this tick move down
+            for (int level = 1; level < LEVELS; level++) {
+                if ((this.currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0)
+                    break;
+                cascade(level * WHEEL_SIZE + (int) ((this.currentTick >>> (WHEEL_BITS * level)) & MASK));
+                if (level == LEVELS - 1)
+                    cascadeOverflow();
+            }
+
+            ArrayDeque<Entry<T>> slot = this.wheels.get((int) (this.currentTick & MASK));
+            while (!slot.isEmpty()) {
+                expired.add(slot.poll().item);
+                this.size -= 1;
+            }
+            drainDue(expired);
+        }
+        return expired;
+    }
+
+    private void cascade(int index) {
+        ArrayDeque<Entry<T>> slot = this.wheels.get(index);
+        int count = slot.size();
+        for (int i = 0; i < count; i++)
+            place(slot.poll());
+    }
+
+    private void cascadeOverflow() {
+        int count = this.overflow.size();
+        for (int i = 0; i < count; i++)
+            place(this.overflow.poll());
+    }
+
+    private void drainDue(List<T> expired) {
+        while (!this.due.isEmpty()) {
+            expired.add(this.due.poll().item);
+            this.size -= 1;
+        }
+    }
+}
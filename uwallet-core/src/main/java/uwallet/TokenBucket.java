@@ -0,0 +1,62 @@
+package uwallet;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket, refilled at a steady rate up to a burst of tokens. It is kept as the single time at
+ * which the bucket is full again (the generic cell rate algorithm): taking a token pushes that time one refill
+ * interval further, and is refused if it would be more than a burst ahead of now. Taking a token is one
+ * compare-and-set on that time, so threads never wait for each other.
+ *
+ * RI: intervalNanos is positive, toleranceNanos is not negative. fullAt - now is at most toleranceNanos +
+ *     intervalNanos.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    //when every token is back, a bucket that is full at or before now is simply full
+    private final AtomicLong fullAt;
+
+    /**
+     * @param perSecond tokens refilled per second, must be positive
+     * @param burst the most tokens the bucket holds, at least 1
+     * @param now the current System.nanoTime(), the bucket starts full
+     */
+    TokenBucket(double perSecond, int burst, long now) {
+        this.intervalNanos = Math.max(1, (long) (1e9 / perSecond));
+        this.toleranceNanos = this.intervalNanos * (Math.max(1, burst) - 1);
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Takes a token if one is left.
+     *
+     * @param now the current System.nanoTime()
+     * @return false if the bucket was empty, nothing was taken.
+     */
+    boolean tryAcquire(long now) {
+        while (true) {
+            long current = this.fullAt.get();
+            long next = Math.max(current - now, 0) + now + this.intervalNanos;
+            if (next - now > this.toleranceNanos + this.intervalNanos)
+                return false;
+            if (this.fullAt.compareAndSet(current, next))
+                return true;
+        }
+    }
+
+    /**
+     * Puts back a token that was taken but not used.
+     */
+    void release() {
+        this.fullAt.addAndGet(-this.intervalNanos);
+    }
+
+    /**
+     * @return true if the bucket holds every token, it is then the same as a new bucket.
+     */
+    boolean isFull(long now) {
+        return this.fullAt.get() - now <= 0;
+    }
+}
@@ -14,17 +14,40 @@ import java.math.BigDecimal;
  *
  * RI: Each transaction must have a globally unique UUID, a timestamp created during call of it's creation, and
  *     the endingBalance must only be defined after the transaction has been completed to the involved Account.
- *     So after call to applyTransaction() which returns the endingBalance, it must set the endingBalance
+ *     So after call to applyTransaction() which returns the endingBalance, it must set the endingBalance.
+ *     The sequence is the per account txID the transaction was created with, it strictly increases with every
+ *     transaction of an account and is what orders the history of the account.
  */
 public abstract class Transaction {
 
      final String uuid;
+     final long sequence;
      final Timestamp timestamp;
      final double amount;
      final Account involvedAccount;
      final String description;
      final BigDecimal endingBalance;
 
+    /**
+     *
+     * The constructor for the Transaction Object.
+     *
+     * @param amount double - the value magnitude of the transaction. must be positive.
+     *
+     * @param account Account
+     *
+     * @param sequence long - the per account sequence number of this transaction, which is the account's last_txID
+     *             after it was incremented for this transaction. The transaction's txID is "TX" followed by it.
+     *
+     * @param description String (optional).
+     *            description[0] is a String of at most 50char that is not null. All other items in description
+     *            are ignored. The default description is N/A.
+     *
+     */
+     Transaction(double amount, Account account, long sequence, String... description){
+        this(amount, account, sequence, account.getAccountID() + "TX" + sequence, description);
+    }
+
     /**
      *
      * The constructor for the Transaction Object.
@@ -34,7 +57,8 @@ public abstract class Transaction {
      * @param account Account
      *
      * @param txID String  - unique identifier , for transactions linked to a single account, no two transaction
-     *             can have the same txID. But different accounts can. Can not be null or empty.
+     *             can have the same txID. But different accounts can. Can not be null or empty. The sequence of
+     *             the transaction is the number the txID ends with, 0 if it does not end with one.
      *
      * @param description String (optional).
      *            description[0] is a String of at most 50char that is not null. All other items in description
@@ -42,11 +66,19 @@ public abstract class Transaction {
      *
      */
      Transaction(double amount, Account account, String txID, String... description){
+        this(amount, account, sequenceOf(txID), account.getAccountID() + txID, description);
+    }
+
+    /**
+     * @param uuid the global UUID of the transaction, the account's id followed by the txID.
+     */
+    private Transaction(double amount, Account account, long sequence, String uuid, String... description){
         this.timestamp = new Timestamp(System.currentTimeMillis());
         this.amount = amount;
         this.involvedAccount = account;
         this.endingBalance = this.applyTransaction();
-        this.uuid = this.generateUniqueIdentifier(txID);
+        this.uuid = uuid;
+        this.sequence = sequence;
 
         if (description.length > 0){
             this.description = description[0];
@@ -55,17 +87,34 @@ public abstract class Transaction {
         this.description = "N/A";
     }
 
-     Transaction (Timestamp timestamp, String uuid, String account,
+     Transaction (Timestamp timestamp, String uuid, long sequence, String account,
                            double amount, String endingBalance, String description)
             throws NoSuchObjectInDatabaseException {
         this.timestamp = timestamp;
         this.uuid = uuid;
+        this.sequence = sequence;
         this.involvedAccount = Account.loadAccount(account);
         this.amount = amount;
         this.endingBalance = new BigDecimal(endingBalance);
         this.description = description;
     }
 
+    /**
+     * Extracts the sequence number from a txID, which is the number the txID ends with.
+     *
+     * @param txID the txID, for example "TX12"
+     * @return the trailing number of the txID, 0 if it does not end with a digit.
+     */
+    static long sequenceOf(String txID){
+        int start = txID.length();
+        while (start > 0 && Character.isDigit(txID.charAt(start - 1)))
+            start -= 1;
+        //anything longer than 18 digits can not be a sequence we generated
+        if (start == txID.length() || txID.length() - start > 18)
+            return 0;
+        return Long.parseLong(txID.substring(start));
+    }
+
     /**
      * Calculate the ending balance after application of the application to the account's balance. It then return
      * the balance after the transaction.
@@ -82,22 +131,14 @@ public abstract class Transaction {
      */
     abstract String getTXSymbol();
 
-    /**
-     * Generates the global UUID for this transaction.
-     *
-     * @return a string for this transaction that will serve as a purely unique identifier of this transaction object
-     */
-    private String generateUniqueIdentifier(String txID){
-        return this.involvedAccount.getAccountID() + txID;
-    }
-
     /**
      * Returns the closing balance for the account after this transaction.
      *
-     * @return returns the endingBalance that results after the transaction
+     * @return returns the endingBalance that results after the transaction. BigDecimal is immutable, so it is
+     * not copied.
      */
      public BigDecimal getEndingBalance(){
-        return new BigDecimal(this.endingBalance.toString());
+        return this.endingBalance;
     }
 
     /**
@@ -109,6 +150,16 @@ public abstract class Transaction {
         return this.timestamp;
     }
 
+    /**
+     * Returns the per account sequence number of this transaction. Transactions of the same account are ordered by
+     * it, a higher sequence means a later transaction. It can be used to page through the history of an account.
+     *
+     * @return the sequence number of this transaction within its account
+     */
+    public long getSequence(){
+        return this.sequence;
+    }
+
     /**
      * Return the value of the transaction.
      *
@@ -0,0 +1,68 @@
+package uwallet;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns the text support staff search transactions with into terms, the way storage engines index descriptions:
+ * lower-cased runs of letters and digits without their accents, everything else separates words. A description matches when each term
+ * is the start of one of its words, so "coff shop" finds "Coffee Shop #42".
+ */
+final class TransactionSearch {
+
+    //more terms do not narrow a search of descriptions of at most 50 characters any further
+    static final int MAX_TERMS = 16;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    private TransactionSearch() {
+    }
+
+    /**
+     * @return the distinct terms of the text, in order, at most MAX_TERMS. Empty if the text has no word.
+     */
+    static List<String> terms(String text) {
+        List<String> terms = new ArrayList<String>();
+        for (String word : words(text)) {
+            if (terms.size() >= MAX_TERMS)
+                break;
+            if (!terms.contains(word))
+                terms.add(word);
+        }
+        return terms;
+    }
+
+    /**
+     * Ranks a description for engines that have no index of their own.
+     *
+     * @return 0 if a term starts none of the words of the description, otherwise the number of words that some
+     *          term starts; higher is a better match.
+     */
+    static int score(String description, List<String> terms) {
+        List<String> words = words(description);
+        int matched = 0;
+        for (String term : terms) {
+            boolean found = false;
+            for (String word : words) {
+                if (word.startsWith(term)) {
+                    found = true;
+                    matched += 1;
+                }
+            }
+            if (!found)
+                return 0;
+        }
+        return matched;
+    }
+
+    private static List<String> words(String text) {
+        List<String> words = new ArrayList<String>();
+        //accents are dropped, as the unicode61 tokenizer of sqlite does
+        String folded = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        for (String word : folded.split("[^\\p{L}\\p{N}]+"))
+            if (!word.isEmpty())
+                words.add(word);
+        return words;
+    }
+}
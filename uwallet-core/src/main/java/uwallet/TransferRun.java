@@ -0,0 +1,63 @@
+package uwallet;
+
+import java.sql.Timestamp;
+
+/**
+ * The record of one occurrence of a ScheduledTransfer: whether it was made, and the uuid of its withdrawal or
+ * why it failed. A failed occurrence is not tried again, a standing order goes on with its next one.
+ */
+public final class TransferRun {
+
+    private final String transferId;
+    private final Timestamp due;
+    private final Timestamp executed;
+    private final boolean succeeded;
+    private final String detail;
+    //the transfer in its next state, stored with the run, or null if it ended
+    final ScheduledTransfer next;
+
+    TransferRun(String transferId, Timestamp due, Timestamp executed, boolean succeeded, String detail,
+                ScheduledTransfer next) {
+        this.transferId = transferId;
+        this.due = due;
+        this.executed = executed;
+        this.succeeded = succeeded;
+        this.detail = detail;
+        this.next = next;
+    }
+
+    public String getTransferId() {
+        return this.transferId;
+    }
+
+    /**
+     * @return when the occurrence was due.
+     */
+    public Timestamp getDue() {
+        return this.due;
+    }
+
+    /**
+     * @return when the occurrence was made, or failed.
+     */
+    public Timestamp getExecuted() {
+        return this.executed;
+    }
+
+    public boolean isSucceeded() {
+        return this.succeeded;
+    }
+
+    /**
+     * @return the uuid of the withdrawal from the from account if it succeeded, otherwise why it failed.
+     */
+    public String getDetail() {
+        return this.detail;
+    }
+
+    @Override
+    public String toString() {
+        return this.transferId + " | due " + this.due + " | " + (this.succeeded ? "made " : "failed ")
+                + this.executed + " | " + this.detail;
+    }
+}
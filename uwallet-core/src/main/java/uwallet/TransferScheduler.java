@@ -0,0 +1,505 @@
+package uwallet;
+
+import uwallet.exceptions.InsufficientFundsException;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Makes scheduled transfers when they are due. Transfers are on record, and kept in memory in a priority queue
+ * ordered by due date: the scheduler thread sleeps until the head of the queue is due, or until a transfer that
+ * is due earlier is scheduled, and then takes every transfer that is due at once.
+ *
+ * Due transfers are grouped by wallet and made in batches of at most uwallet.scheduler.batchSize transfers, on
+ * uwallet.scheduler.threads threads. A batch takes the monitors of its accounts in the order of their ids, as
+ * transfers between currencies do, and commits all its transfers, their runs and the next state of each
+ * transfer in a single storage transaction. A transfer whose accounts have different currencies is converted
+ * with the current ExchangeRates and committed on its own, with its conversion, after its batch.
+ *
+ * An occurrence that was missed while the scheduler was not running is made once, late, and the occurrences
+ * missed after it are skipped. Transfers on record are scheduled again by start() after a restart.
+ *
+ * When a batch fails, its transfers are read again from the records and those it did not commit are made again
+ * one at a time, so that one transfer that can not be made does not hold up the others. A transfer that fails on
+ * its own gets a failed run and goes on to its next occurrence. Only when that run can not be recorded either is
+ * the transfer scheduled again as it was, and the scheduler thread waits RETRY_DELAY before it makes the
+ * transfers that are due again.
+ *
+ * Tuned with:
+ *      uwallet.scheduler.batchSize     transfers per batch, and per storage transaction, default 500
+ *      uwallet.scheduler.threads       threads batches are made on, default the number of cores
+ *
+ * usage:
+ *      TransferScheduler.start();
+ *      wallet.scheduleTransfer(500, "chequing", "savings", firstOfMonth, Recurrence.MONTHLY, "savings plan");
+ *
+ * RI: queue and queued hold the same transfers, which are not in executing, and are only accessed while holding
+ *     lock. A transfer is in executing while an occurrence of it is being made.
+ */
+public final class TransferScheduler {
+
+    static final String BATCH_SIZE_PROPERTY = "uwallet.scheduler.batchSize";
+    static final String THREADS_PROPERTY = "uwallet.scheduler.threads";
+    //transfers read from the records at once by start()
+    static final int PAGE_SIZE = 1000;
+    //the monitors of a batch are taken by recursion, one stack frame per account
+    static final int MAX_BATCH_SIZE = 2048;
+    //how long the scheduler thread waits after a failure that could not be recorded, so that storage that keeps
+    //failing is not retried in a loop
+    static final long RETRY_DELAY = 1000;
+
+    private static final int batchSize = Math.max(1, Math.min(MAX_BATCH_SIZE, Integer.getInteger(BATCH_SIZE_PROPERTY, 500)));
+    private static final int threads = Math.max(1, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+
+    private static final Object lock = new Object();
+    private static final PriorityQueue<ScheduledTransfer> queue = new PriorityQueue<ScheduledTransfer>(16,
+            new Comparator<ScheduledTransfer>() {
+                @Override
+                public int compare(ScheduledTransfer a, ScheduledTransfer b) {
+                    int byDue = a.getDue().compareTo(b.getDue());
+                    return byDue != 0 ? byDue : a.getId().compareTo(b.getId());
+                }
+            });
+    private static final Map<String, ScheduledTransfer> queued = new HashMap<String, ScheduledTransfer>();
+    private static final Set<String> executing = new HashSet<String>();
+    private static boolean loaded = false;
+    private static Thread thread = null;
+
+    private TransferScheduler() {
+    }
+
+    /**
+     * Schedules the transfers on record, if it was not done yet, and starts the scheduler thread. Called by
+     * applications when they start, so that transfers scheduled before a restart are made.
+     */
+    public static void start() {
+        synchronized (lock) {
+            if (!loaded) {
+                loaded = true;
+                String position = null;
+                while (true) {
+                    List<ScheduledTransfer> page = uWalletDatabase.getScheduledTransfersAfter(position, PAGE_SIZE);
+                    for (ScheduledTransfer transfer : page)
+                        enqueue(transfer);
+                    if (page.size() < PAGE_SIZE)
+                        break;
+                    position = page.get(page.size() - 1).getId();
+                }
+            }
+            if (thread != null)
+                return;
+            thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    schedule();
+                }
+            }, "uwallet-scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Makes every transfer that is due now, on the calling thread, as the scheduler thread would.
+     *
+     * @return the runs of the occurrences that were made or failed, grouped by wallet.
+     */
+    public static List<TransferRun> runDue() {
+        return execute(takeDue(System.currentTimeMillis()));
+    }
+
+    /**
+     * Stores a new transfer and schedules it, starting the scheduler if needed.
+     */
+    static void schedule(ScheduledTransfer transfer) {
+        uWalletDatabase.insertScheduledTransfer(transfer);
+        start();
+        synchronized (lock) {
+            enqueue(transfer);
+        }
+    }
+
+    /**
+     * Stops scheduling a transfer and deletes it from the records. Waits for an occurrence of it that is being
+     * made.
+     *
+     * @return false if the transfer was not scheduled.
+     */
+    static boolean cancel(String transferId) {
+        synchronized (lock) {
+            while (executing.contains(transferId)) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            ScheduledTransfer transfer = queued.remove(transferId);
+            if (transfer != null)
+                queue.remove(transfer);
+            return uWalletDatabase.deleteScheduledTransfer(transferId) || transfer != null;
+        }
+    }
+
+    /**
+     * Forgets every scheduled transfer, once the records were erased.
+     */
+    static void clear() {
+        synchronized (lock) {
+            queue.clear();
+            queued.clear();
+        }
+    }
+
+    //must hold lock
+    private static void enqueue(ScheduledTransfer transfer) {
+        if (executing.contains(transfer.getId()))
+            return;
+        ScheduledTransfer previous = queued.put(transfer.getId(), transfer);
+        if (previous != null)
+            queue.remove(previous);
+        ScheduledTransfer head = queue.peek();
+        queue.add(transfer);
+        //the scheduler thread sleeps until the head is due
+        if (head == null || transfer.getDue().before(head.getDue()))
+            lock.notifyAll();
+    }
+
+    private static List<ScheduledTransfer> takeDue(long now) {
+        List<ScheduledTransfer> due = new ArrayList<ScheduledTransfer>();
+        synchronized (lock) {
+            while (!queue.isEmpty() && queue.peek().getDue().getTime() <= now) {
+                ScheduledTransfer transfer = queue.poll();
+                queued.remove(transfer.getId());
+                executing.add(transfer.getId());
+                due.add(transfer);
+            }
+        }
+        return due;
+    }
+
+    private static void schedule() {
+        while (true) {
+            synchronized (lock) {
+                try {
+                    ScheduledTransfer head = queue.peek();
+                    long wait = head == null ? 0 : head.getDue().getTime() - System.currentTimeMillis();
+                    if (head == null || wait > 0) {
+                        lock.wait(Math.max(0, wait));
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            try {
+                execute(takeDue(System.currentTimeMillis()));
+            } catch (RuntimeException e) {
+                //the transfers whose failure could not be recorded were scheduled again by execute
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                e.printStackTrace();
+                try {
+                    Thread.sleep(RETRY_DELAY);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes the occurrences that are due, a batch per wallet and batchSize transfers, and schedules the next
+     * occurrence of each. Every batch is waited for even when one fails, then the transfers of the failed batches
+     * are made one at a time, see retry.
+     *
+     * @throws RuntimeException the first failure that could not be recorded as a failed run, once every transfer
+     *          was scheduled again.
+     */
+    private static List<TransferRun> execute(List<ScheduledTransfer> due) {
+        List<TransferRun> runs = new ArrayList<TransferRun>();
+        if (due.isEmpty())
+            return runs;
+
+        Map<String, List<List<ScheduledTransfer>>> byWallet = new LinkedHashMap<String, List<List<ScheduledTransfer>>>();
+        for (ScheduledTransfer transfer : due) {
+            List<List<ScheduledTransfer>> batches = byWallet.get(transfer.getWalletId());
+            if (batches == null) {
+                batches = new ArrayList<List<ScheduledTransfer>>();
+                byWallet.put(transfer.getWalletId(), batches);
+            }
+            if (batches.isEmpty() || batches.get(batches.size() - 1).size() >= batchSize)
+                batches.add(new ArrayList<ScheduledTransfer>());
+            batches.get(batches.size() - 1).add(transfer);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "uwallet-scheduler-batch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        List<ScheduledTransfer> unsettled = new ArrayList<ScheduledTransfer>();
+        List<ScheduledTransfer> rescheduled = new ArrayList<ScheduledTransfer>();
+        RuntimeException failure = null;
+        try {
+            List<List<ScheduledTransfer>> submitted = new ArrayList<List<ScheduledTransfer>>();
+            List<Future<List<TransferRun>>> made = new ArrayList<Future<List<TransferRun>>>();
+            for (List<List<ScheduledTransfer>> batches : byWallet.values()) {
+                for (final List<ScheduledTransfer> batch : batches) {
+                    submitted.add(batch);
+                    made.add(pool.submit(new Callable<List<TransferRun>>() {
+                        @Override
+                        public List<TransferRun> call() {
+                            return makeBatch(batch);
+                        }
+                    }));
+                }
+            }
+            for (int i = 0; i < made.size(); i++) {
+                try {
+                    runs.addAll(take(made.get(i)));
+                } catch (RuntimeException e) {
+                    System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                    e.printStackTrace();
+                    unsettled.addAll(submitted.get(i));
+                }
+            }
+        } finally {
+            pool.shutdown();
+            try {
+                for (ScheduledTransfer transfer : unsettled) {
+                    RuntimeException unrecorded = retry(transfer, runs, rescheduled);
+                    if (failure == null)
+                        failure = unrecorded;
+                    else if (unrecorded != null)
+                        failure.addSuppressed(unrecorded);
+                }
+            } finally {
+                synchronized (lock) {
+                    for (ScheduledTransfer transfer : due)
+                        executing.remove(transfer.getId());
+                    for (TransferRun run : runs)
+                        if (run.next != null)
+                            enqueue(run.next);
+                    for (ScheduledTransfer transfer : rescheduled)
+                        enqueue(transfer);
+                    lock.notifyAll();
+                }
+            }
+        }
+        if (failure != null)
+            throw failure;
+        return runs;
+    }
+
+    /**
+     * Makes a transfer of a failed batch on its own. It is read again from the records first: if the batch
+     * committed its occurrence before failing, it only has to be scheduled for the next one. If it fails on its
+     * own too, a failed run is recorded and the transfer goes on to its next occurrence, like a transfer that
+     * lacks funds.
+     *
+     * @param runs the runs made, the run of the transfer is added to them
+     * @param rescheduled the transfers to schedule that have no run in runs
+     * @return the failure, if even the failed run could not be recorded. The transfer is then in rescheduled as
+     *          it was.
+     */
+    private static RuntimeException retry(ScheduledTransfer transfer, List<TransferRun> runs,
+                                          List<ScheduledTransfer> rescheduled) {
+        ScheduledTransfer current;
+        try {
+            current = uWalletDatabase.getScheduledTransfer(transfer.getId());
+        } catch (NoSuchObjectInDatabaseException e) {
+            //ended, or cancelled
+            return null;
+        } catch (RuntimeException e) {
+            rescheduled.add(transfer);
+            return e;
+        }
+        if (current.getOccurrence() != transfer.getOccurrence()) {
+            rescheduled.add(current);
+            return null;
+        }
+
+        try {
+            runs.addAll(makeBatch(Collections.singletonList(current)));
+            return null;
+        } catch (RuntimeException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            long now = System.currentTimeMillis();
+            TransferRun run = new TransferRun(current.getId(), current.getDue(), new Timestamp(now), false,
+                    e.getClass().getName() + ": " + e.getMessage(), current.after(now));
+            try {
+                uWalletDatabase.commitTransfers(Collections.<Account>emptyList(), Collections.<Transaction>emptyList(),
+                        Collections.singletonList(run));
+            } catch (RuntimeException unrecorded) {
+                rescheduled.add(current);
+                return unrecorded;
+            }
+            runs.add(run);
+            return null;
+        }
+    }
+
+    /**
+     * Makes one occurrence of each transfer of a batch of a wallet.
+     */
+    static List<TransferRun> makeBatch(List<ScheduledTransfer> batch) {
+        Set<String> ids = new TreeSet<String>();
+        for (ScheduledTransfer transfer : batch) {
+            ids.add(transfer.getFromAccountId());
+            ids.add(transfer.getToAccountId());
+        }
+        Map<String, Account> accounts = new HashMap<String, Account>();
+        for (Account account : Account.loadAccounts(new ArrayList<String>(ids)))
+            accounts.put(account.getAccountID(), account);
+
+        List<ScheduledTransfer> sameCurrency = new ArrayList<ScheduledTransfer>();
+        List<ScheduledTransfer> converted = new ArrayList<ScheduledTransfer>();
+        List<TransferRun> failed = new ArrayList<TransferRun>();
+        long now = System.currentTimeMillis();
+        for (ScheduledTransfer transfer : batch) {
+            Account from = accounts.get(transfer.getFromAccountId());
+            Account to = accounts.get(transfer.getToAccountId());
+            if (from == null || to == null)
+                //the transfer ends with its accounts
+                failed.add(new TransferRun(transfer.getId(), transfer.getDue(), new Timestamp(now), false,
+                        "No account with identifier " + (from == null ? transfer.getFromAccountId()
+                                : transfer.getToAccountId()) + " found", null));
+            else if (from.getCurrencyCode().equals(to.getCurrencyCode()))
+                sameCurrency.add(transfer);
+            else
+                converted.add(transfer);
+        }
+
+        List<Account> locked = new ArrayList<Account>();
+        for (String id : ids)
+            if (accounts.containsKey(id))
+                locked.add(accounts.get(id));
+        List<TransferRun> runs = new ArrayList<TransferRun>();
+        commitLocked(locked, 0, sameCurrency, accounts, failed, runs);
+
+        for (ScheduledTransfer transfer : converted)
+            runs.add(makeConverted(transfer, accounts.get(transfer.getFromAccountId()),
+                    accounts.get(transfer.getToAccountId())));
+        return runs;
+    }
+
+    /**
+     * Takes the monitor of every account of the batch, in order, then posts and commits its transfers.
+     */
+    private static void commitLocked(List<Account> locked, int next, List<ScheduledTransfer> transfers,
+                                     Map<String, Account> accounts, List<TransferRun> failed, List<TransferRun> runs) {
+        if (next < locked.size()) {
+            synchronized (locked.get(next)) {
+                commitLocked(locked, next + 1, transfers, accounts, failed, runs);
+            }
+            return;
+        }
+
+        //post changes the accounts before the batch is committed, they are put back if it is not
+        BigDecimal[] balances = new BigDecimal[locked.size()];
+        int[] lastTxIds = new int[locked.size()];
+        for (int i = 0; i < locked.size(); i++) {
+            balances[i] = locked.get(i).getCurrentBalance();
+            lastTxIds[i] = locked.get(i).getLastTxId();
+        }
+        try {
+            post(transfers, accounts, failed, runs);
+        } catch (RuntimeException e) {
+            for (int i = 0; i < locked.size(); i++)
+                locked.get(i).unpost(balances[i], lastTxIds[i]);
+            throw e;
+        }
+    }
+
+    //must hold the monitors of the accounts
+    private static void post(List<ScheduledTransfer> transfers, Map<String, Account> accounts,
+                             List<TransferRun> failed, List<TransferRun> runs) {
+        Set<Account> changed = new LinkedHashSet<Account>();
+        List<Transaction> transactions = new ArrayList<Transaction>();
+        List<TransferRun> made = new ArrayList<TransferRun>(failed);
+        for (ScheduledTransfer transfer : transfers) {
+            long now = System.currentTimeMillis();
+            Account from = accounts.get(transfer.getFromAccountId());
+            Account to = accounts.get(transfer.getToAccountId());
+            Transaction debit = from.post(transfer.getAmount().negate(), transfer.getDescription());
+            if (debit == null) {
+                made.add(new TransferRun(transfer.getId(), transfer.getDue(), new Timestamp(now), false,
+                        String.format("%s only has %s available", from.getAccountName(),
+                                from.applyAccountFormat(from.getAvailableBalance())), transfer.after(now)));
+                continue;
+            }
+            Transaction credit = to.post(transfer.getAmount(), transfer.getDescription());
+            changed.add(from);
+            changed.add(to);
+            transactions.add(debit);
+            transactions.add(credit);
+            made.add(new TransferRun(transfer.getId(), transfer.getDue(), new Timestamp(now), true, debit.uuid,
+                    transfer.after(now)));
+        }
+
+        uWalletDatabase.commitTransfers(new ArrayList<Account>(changed), transactions, made);
+        runs.addAll(made);
+        for (Transaction tx : transactions)
+            tx.involvedAccount.posted(tx);
+    }
+
+    private static TransferRun makeConverted(ScheduledTransfer transfer, Account from, Account to) {
+        String detail;
+        boolean succeeded = false;
+        try {
+            CurrencyConversion conversion = Account.transferConverted(from, to, transfer.getAmount().doubleValue(),
+                    ExchangeRates.getTable(), transfer.getDescription());
+            detail = conversion.getDebitUUID();
+            succeeded = true;
+        } catch (InsufficientFundsException e) {
+            detail = e.getMessage();
+        } catch (IllegalStateException e) {
+            detail = e.getMessage();
+        }
+        long now = System.currentTimeMillis();
+        TransferRun run = new TransferRun(transfer.getId(), transfer.getDue(), new Timestamp(now), succeeded, detail,
+                transfer.after(now));
+        uWalletDatabase.commitTransfers(Collections.<Account>emptyList(), Collections.<Transaction>emptyList(),
+                Collections.singletonList(run));
+        return run;
+    }
+
+    private static List<TransferRun> take(Future<List<TransferRun>> batch) {
+        try {
+            return batch.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while making scheduled transfers", e);
+        }
+    }
+}
@@ -0,0 +1,816 @@
+package uwallet;
+
+import uwallet.exceptions.InsufficientFundsException;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.RateLimitExceededException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ *    Wallet object holds multiple accounts, in the currency of the wallet's region unless
+ *    another region is given when the account is created. Transfers between accounts of
+ *    different currencies are converted with the current ExchangeRates. It tracks these
+ *    accounts in a hashMap that maps the name of an account under this wallet to it's
+ *    unique identifier (which is created by the wallet) to load account objects.
+ *    methods interact with the accounts in the wallet through the account name that
+ *    was given to the account - of course this means no two account can have identical names.
+ *    Wallets that have been created or loaded are kept in a registry while they are in use,
+ *    so opening a wallet again is served from memory and every user of a wallet id shares
+ *    the same object. The registry holds weak references, like the identity map of Account.
+ *
+ * RI: No two wallet can EVER be created with the same UID unless first ensures both the
+ *     persistent data stores are clear of references to the UID. The region of the wallet
+ *     never changes, it is the default region of its accounts. No two accounts belonging to
+ *     this wallet can have identical names.
+ */
+public class Wallet{
+
+    //the wallet objects that have been created or loaded and are still referenced, by UID.
+    private static final ConcurrentHashMap<String, WalletReference> loadedWallets = new ConcurrentHashMap<String, WalletReference>();
+    private static final ReferenceQueue<Wallet> collectedWallets = new ReferenceQueue<Wallet>();
+
+    private Map<String, String> acountNameToAccountIdMap =  new ConcurrentHashMap<String, String>();
+    //volatile, claiming the UID again changes the region of the registered object that other threads share
+    private volatile String regionCode;
+    private String walletUID;
+
+    //a registry entry, which knows its UID so that it can be removed once its wallet was collected
+    private static final class WalletReference extends WeakReference<Wallet> {
+        final String walletUID;
+
+        WalletReference(Wallet wallet) {
+            super(wallet, collectedWallets);
+            this.walletUID = wallet.walletUID;
+        }
+    }
+
+    /**
+     *
+     * Creates a new wallet with the given UID and adds reference to it in the persistent storage. A UID
+     * stays available until an account has been created under it.
+     *
+     * @param walletUID
+     *      - globally unique string to identify this wallet. Can not be null or empty.
+     * @param regionCode
+     *         ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country whose
+     *         currency is desired
+     * @throws UniqueIDConstraintException
+     *          if another wallet object with the same uniqueIdentifier already exists either in DB.
+     */
+    public Wallet(String walletUID, String regionCode) throws UniqueIDConstraintException{
+        //claiming a UID must be atomic, otherwise two threads could both create the same wallet
+        synchronized (loadedWallets) {
+            Wallet loaded = registered(walletUID);
+            boolean allocated = loaded != null ? !loaded.acountNameToAccountIdMap.isEmpty()
+                    : uWalletDatabase.walletHasAccounts(walletUID);
+            if (allocated)
+                throw new UniqueIDConstraintException("Unique Identifier: " + walletUID + " is already allocated to a wallet!");
+
+            this.regionCode = regionCode;
+            this.walletUID = walletUID;
+
+            uWalletDatabase.insertWallet(this);
+            if (loaded == null) {
+                register(this);
+            } else {
+                //the UID is claimed again before any account was created, the registered object stays the one
+                //handed out and this one shares its accounts, so earlier holders see the same wallet.
+                loaded.regionCode = regionCode;
+                this.acountNameToAccountIdMap = loaded.acountNameToAccountIdMap;
+            }
+        }
+    }
+
+    /**
+     * Loads the wallet object for a wallet stored in the records. Wallets that were already created or loaded
+     * are returned from memory without going to the records.
+     *
+     * @param walletUID
+     *          globally unique string to identify this wallet. Can not be null or empty.
+     *
+     * @return the wallet object for this walletUID.
+     * @throws NoSuchObjectInDatabaseException
+     *          if no wallet with the given walletUID exists in the records.
+     */
+    static public Wallet loadWallet(String walletUID) throws NoSuchObjectInDatabaseException {
+        AccessLog.recordWallet(walletUID);
+        Wallet wallet = registered(walletUID);
+        if (wallet != null)
+            return wallet;
+
+        wallet = uWalletDatabase.getWallet(walletUID);
+        synchronized (loadedWallets) {
+            Wallet raced = registered(walletUID);
+            if (raced != null)
+                return raced;
+            register(wallet);
+            return wallet;
+        }
+    }
+
+    /**
+     * @return the registered wallet object for the UID, null if there is none or it was collected.
+     */
+    private static Wallet registered(String walletUID) {
+        WalletReference reference = loadedWallets.get(walletUID);
+        return reference == null ? null : reference.get();
+    }
+
+    //must hold the monitor of loadedWallets
+    private static void register(Wallet wallet) {
+        for (Reference<? extends Wallet> collected = collectedWallets.poll(); collected != null; collected = collectedWallets.poll())
+            loadedWallets.remove(((WalletReference) collected).walletUID, collected);
+        loadedWallets.put(wallet.walletUID, new WalletReference(wallet));
+    }
+
+    /**
+     * @return the number of wallets kept in memory.
+     */
+    static int getLoadedWalletCount() {
+        int live = 0;
+        for (WalletReference reference : loadedWallets.values()) {
+            if (reference.get() != null)
+                live += 1;
+        }
+        return live;
+    }
+
+    /**
+     *
+     * Constructor for the Wallet. Used when loading a wallet from the records, so it does not write to them.
+     *
+     * @param walletUID
+     *          globally unique string to identify this wallet. Can not be null or empty.
+     * @param regionCode
+     *          ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country whose
+     *          currency is desired
+     */
+    protected Wallet(String walletUID, String regionCode, HashMap<String,String> acountNameToAccountIdMap){
+        this.regionCode = regionCode;
+        this.walletUID = walletUID;
+        this.acountNameToAccountIdMap = new ConcurrentHashMap<String, String>(acountNameToAccountIdMap);
+    }
+
+    /**
+     * Adds a new account to this wallet.
+     *
+     * @param accountName
+     *          representing the name to be given to this account. Empty or Null strings are not allowed
+     *
+     * @throws UniqueIDConstraintException
+     *          if this wallet already has an account with the desired name.
+     */
+    public void createNewAccount(String accountName) throws UniqueIDConstraintException {
+        this.createNewAccount(accountName, this.regionCode);
+    }
+
+    /**
+     * Adds a new account to this wallet, in the currency of another region than the wallet's.
+     *
+     * @param accountName
+     *          representing the name to be given to this account. Empty or Null strings are not allowed
+     * @param regionCode
+     *          ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country whose
+     *          currency the account is in
+     *
+     * @throws UniqueIDConstraintException
+     *          if this wallet already has an account with the desired name.
+     */
+    public void createNewAccount(String accountName, String regionCode) throws UniqueIDConstraintException {
+        //the wallet object is shared, account UIDs are derived from the number of accounts so allocate one at a time.
+        //the map is the lock, a wallet claimed again shares it with the registered object.
+        synchronized (this.acountNameToAccountIdMap) {
+            if (this.acountNameToAccountIdMap.containsKey(accountName))
+                throw new UniqueIDConstraintException("Wallet already has account with name '" + accountName + "'");
+
+            String accountUID = this.walletUID + "ACC" + String.valueOf(this.acountNameToAccountIdMap.size() + 1);
+            try {
+                Account acc = new Account(accountName, accountUID, this.walletUID, regionCode);
+                this.acountNameToAccountIdMap.put(accountName, accountUID);
+            } catch ( UniqueIDConstraintException e ){
+                throw new UniqueIDConstraintException("Wallet already has account with name '" + accountName + "'");
+            }
+        }
+    }
+
+    /**
+     * Returns the formatted account balance for account with the given name. The format is according to the given
+     * region code's customs.
+     *
+     * @param accountName
+     *        the name of the account whose balance we want. Should not be Null or Empty.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *        if no such account in this wallet have the given name
+     *
+     * @return the formatted account balance using the region code for this wallet.
+     */
+    public String getAccountBalanceFormatted(String accountName) throws NoSuchObjectInDatabaseException {
+        try{
+            Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+            return acc.getFormattedBalance();
+        }catch (NoSuchObjectInDatabaseException e){
+            throw  new NoSuchObjectInDatabaseException("No account with name '" + accountName + "' associated to this wallet.");
+        }
+    }
+
+    /**
+     * Returns the account balance for the account with the given name as a BigDecimal.
+     *
+     * @param accountName
+     *        the name of the account whose balance we want. Should not be null or empty.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if no such account in this wallet have the given name
+     *
+     * @return the account balance as a BigDecimal.
+     */
+    public BigDecimal getAccountBalanceBigDecimal(String accountName) throws NoSuchObjectInDatabaseException {
+        try{
+            Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+            return acc.getCurrentBalance();
+        }catch (NoSuchObjectInDatabaseException e){
+            throw  new NoSuchObjectInDatabaseException("No account with name '" + accountName + "' associated to this wallet.");
+        }
+    }
+
+    /**
+     * Returns the balance of the account with the given name that can be withdrawn or held: its balance less the
+     * funds on hold.
+     *
+     * @param accountName
+     *        the name of the account whose balance we want. Should not be null or empty.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if no such account in this wallet have the given name
+     *
+     * @return the available balance as a BigDecimal.
+     */
+    public BigDecimal getAccountAvailableBalance(String accountName) throws NoSuchObjectInDatabaseException {
+        try{
+            Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+            return acc.getAvailableBalance();
+        }catch (NoSuchObjectInDatabaseException e){
+            throw  new NoSuchObjectInDatabaseException("No account with name '" + accountName + "' associated to this wallet.");
+        }
+    }
+
+    /**
+     * Holds an amount of the account with the given name for a later capture, as a card payment is authorized.
+     * The amount can not be withdrawn or held again until the hold is captured, released, or expires.
+     *
+     * @param amount
+     *        the amount to hold. Should be positive.
+     *
+     * @param accountName
+     *        the name of the account to hold the amount of
+     *
+     * @param expiresIn
+     *        how long until the hold is released if it was not captured, in the given unit
+     *
+     * @param description (optional)
+     *        description[0] is a String of at most 50char that is not null. It describes the withdrawal when the
+     *        hold is captured without a description.
+     *
+     * @return the hold, whose id captures or releases it.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the accountName does not represent an account that is held by this wallet.
+     * @throws InsufficientFundsException
+     *         if the available balance of the account does not cover the amount.
+     * @throws IllegalArgumentException
+     *         if the amount or expiresIn is not positive.
+     * @throws RateLimitExceededException
+     *         if the account or this wallet is over its RateLimits.
+     */
+    public Hold placeHold(double amount, String accountName, long expiresIn, TimeUnit unit, String... description)
+            throws NoSuchObjectInDatabaseException, InsufficientFundsException{
+        this.limitWrite(accountName);
+        Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+        if (expiresIn <= 0)
+            throw new IllegalArgumentException("Can not place a hold that expires in " + expiresIn + " " + unit);
+        return acc.placeHold(amount, new Timestamp(System.currentTimeMillis() + unit.toMillis(expiresIn)), description);
+    }
+
+    /**
+     * Captures a hold on an account of this wallet: withdraws at most the held amount, and releases the rest.
+     *
+     * @param holdId
+     *        the id of the hold
+     *
+     * @param amount
+     *        the amount to withdraw, at most the amount of the hold.
+     *
+     * @param description (optional)
+     *        description[0] is a String of at most 50char that is not null. The default is the description of
+     *        the hold.
+     *
+     * @return the withdrawal.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the hold is not on an account of this wallet, or it was captured, released or expired already.
+     * @throws IllegalArgumentException
+     *         if the amount is not positive or more than the amount of the hold.
+     */
+    public Transaction captureHold(String holdId, double amount, String... description) throws NoSuchObjectInDatabaseException {
+        return this.loadHoldAccount(holdId).captureHold(holdId, amount, description);
+    }
+
+    /**
+     * Releases a hold on an account of this wallet without withdrawing anything.
+     *
+     * @param holdId
+     *        the id of the hold
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the hold is not on an account of this wallet, or it was captured, released or expired already.
+     */
+    public void releaseHold(String holdId) throws NoSuchObjectInDatabaseException {
+        this.loadHoldAccount(holdId).releaseHold(holdId);
+    }
+
+    private Account loadHoldAccount(String holdId) throws NoSuchObjectInDatabaseException {
+        Account acc = Account.loadAccount(uWalletDatabase.getHold(holdId).getAccountId());
+        if (!acc.getParentWalletUID().equals(this.walletUID))
+            throw new NoSuchObjectInDatabaseException("No hold with identifier " + holdId + " associated to this wallet.");
+        return acc;
+    }
+
+    /**
+     * Deposits an amount of money to the account with the given name.
+     *
+     * @param amount
+     *        the amount to be deposited to the account. Should not be null or empty.
+     *
+     * @param accountName
+     *        the name of the account to deposit money to
+     *
+     * @param description (optional)
+     *         description[0] is a String of at most 50char that is not null. All other items in description
+     *         are ignored. The default description is N/A. Should not be an empty string.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if the accountName does not represent an account that is held by this wallet.
+     * @throws RateLimitExceededException
+     *         if the account or this wallet is over its RateLimits.
+     */
+    public void depositToAccount(double amount, String accountName, String... description) throws NoSuchObjectInDatabaseException {
+        this.limitWrite(accountName);
+        Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+        acc.deposit(amount, description);
+    }
+
+    /**
+     * Withdraws an amount of money from the account with the given name.
+     *
+     * @param amount
+     *        the amount to be withdrawn from the account. Should not be null or empty.
+     *
+     * @param accountName
+     *        the name of the account to deposit money to
+     *
+     * @param description (optional)
+     *        description[0] is a String of at most 50char that is not null. All other items in description
+     *        are ignored. The default description is N/A. Should not be an empty string.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the accountName does not represent an account that is held by this wallet.
+     * @throws InsufficientFundsException
+     *         if the account does not have sufficient funds for the withdrawal.
+     * @throws RateLimitExceededException
+     *         if the account or this wallet is over its RateLimits.
+     */
+    public void withdrawFromAccount(double amount, String accountName, String... description)
+            throws NoSuchObjectInDatabaseException, InsufficientFundsException{
+        this.limitWrite(accountName);
+        Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+
+        acc.withdraw(amount, description);
+    }
+
+    /**
+     * transfers the given amount from one account to another. Both transactions are committed at once. If the two
+     * accounts are in different currencies the amount is converted with the current ExchangeRates, rounded to the
+     * currency of the toAccount, and committed together with the applied rate (see getConversion).
+     *
+     * @param amount
+     *        the amount to be transferred between the two accounts, in the currency of the fromAccount. Should
+     *        not be null or empty.
+     *
+     * @param fromAccountName
+     *        the name of the account to withdraw money from
+     *
+     * @param toAccountName
+     *         the name of the account to deposit the money to
+     *
+     * @param description (optional).
+     *        description[0] is a String of at most 50char that is not null. All other items in description
+     *        are ignored. The default description is N/A. Should not be an empty string.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if one of the two account name do not refer to a valid account for this wallet
+     * @throws InsufficientFundsException
+     *         if the fromAccount does not have sufficient funds for the withdrawal.
+     * @throws IllegalArgumentException
+     *         if both names refer to the same account.
+     * @throws IllegalStateException
+     *         if the accounts are in different currencies and the exchange rates have no rate between them.
+     * @throws RateLimitExceededException
+     *         if the account or this wallet is over its RateLimits.
+     */
+    public void transfer(double amount, String fromAccountName, String toAccountName,  String... description)
+            throws NoSuchObjectInDatabaseException, InsufficientFundsException{
+        this.limitWrite(fromAccountName);
+        Account fromAcc = Account.loadAccount(this.acountNameToAccountIdMap.get(fromAccountName));
+        Account toAcc = Account.loadAccount(this.acountNameToAccountIdMap.get(toAccountName));
+
+        transfer(fromAcc, toAcc, amount, description);
+    }
+
+    /**
+     * transfers the given amount from an account of this wallet to an account of another wallet, as a payment
+     * between two users. Both accounts are locked in the same global order as every other transfer, and both
+     * legs are committed in a single storage transaction, so the money is never withdrawn without being
+     * deposited. Accounts in different currencies are converted as with transfer.
+     *
+     * @param amount
+     *        the amount to be transferred, in the currency of the fromAccount. Should be positive.
+     *
+     * @param fromAccountName
+     *        the name of the account of this wallet to withdraw money from
+     *
+     * @param toWallet
+     *        the wallet to pay. Can be this wallet.
+     *
+     * @param toAccountName
+     *         the name of the account of toWallet to deposit the money to
+     *
+     * @param description (optional).
+     *        description[0] is a String of at most 50char that is not null. All other items in description
+     *        are ignored. The default description is N/A. Should not be an empty string.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if fromAccountName is not an account of this wallet, or toAccountName is not an account of toWallet
+     * @throws InsufficientFundsException
+     *         if the fromAccount does not have sufficient funds for the withdrawal.
+     * @throws IllegalArgumentException
+     *         if both names refer to the same account.
+     * @throws IllegalStateException
+     *         if the accounts are in different currencies and the exchange rates have no rate between them.
+     * @throws RateLimitExceededException
+     *         if the account or this wallet is over its RateLimits.
+     */
+    public void transferToWallet(double amount, String fromAccountName, Wallet toWallet, String toAccountName,
+                                 String... description) throws NoSuchObjectInDatabaseException, InsufficientFundsException{
+        this.limitWrite(fromAccountName);
+        Account fromAcc = Account.loadAccount(this.acountNameToAccountIdMap.get(fromAccountName));
+        Account toAcc = Account.loadAccount(toWallet.acountNameToAccountIdMap.get(toAccountName));
+        transfer(fromAcc, toAcc, amount, description);
+    }
+
+    private static void transfer(Account fromAcc, Account toAcc, double amount, String... description)
+            throws InsufficientFundsException {
+        if (fromAcc == toAcc)
+            throw new IllegalArgumentException("Can not transfer from " + fromAcc.getAccountName() + " to itself");
+        if (!fromAcc.getCurrencyCode().equals(toAcc.getCurrencyCode())) {
+            Account.transferConverted(fromAcc, toAcc, amount, ExchangeRates.getTable(), description);
+            return;
+        }
+        Account.transfer(fromAcc, toAcc, amount, description);
+    }
+
+    /**
+     * Schedules a transfer between two accounts of this wallet, made by the TransferScheduler when it is due:
+     * once, or every day, week or month from the first due date. The transfer stays on record until it is
+     * cancelled, is made for the last time, or one of its accounts no longer exists; occurrences the accounts
+     * do not have the funds for fail and are recorded as such, the next ones are still made.
+     *
+     * @param amount
+     *        the amount to transfer at each occurrence, in the currency of the fromAccount. Should be positive.
+     *
+     * @param fromAccountName
+     *        the name of the account to withdraw money from
+     *
+     * @param toAccountName
+     *         the name of the account to deposit the money to
+     *
+     * @param firstDue
+     *        when the first occurrence is due. Should not be null, a date in the past is due immediately.
+     *
+     * @param recurrence
+     *        how often the transfer is made.
+     *
+     * @param description (optional).
+     *        description[0] is a String of at most 50char that is not null. The default description is N/A.
+     *
+     * @return the transfer, whose id cancels it.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if one of the two account names do not refer to a valid account for this wallet
+     * @throws IllegalArgumentException
+     *         if the amount is not positive, or the two accounts are the same.
+     * @throws RateLimitExceededException
+     *         if the account or this wallet is over its RateLimits.
+     */
+    public ScheduledTransfer scheduleTransfer(double amount, String fromAccountName, String toAccountName,
+                                              Timestamp firstDue, Recurrence recurrence, String... description)
+            throws NoSuchObjectInDatabaseException {
+        this.limitWrite(fromAccountName);
+        Account fromAcc = Account.loadAccount(this.acountNameToAccountIdMap.get(fromAccountName));
+        Account toAcc = Account.loadAccount(this.acountNameToAccountIdMap.get(toAccountName));
+        BigDecimal rounded = fromAcc.roundToCurrency(BigDecimal.valueOf(amount));
+        if (rounded.signum() <= 0)
+            throw new IllegalArgumentException("Can not schedule a transfer of " + rounded.toPlainString());
+        if (fromAcc == toAcc)
+            throw new IllegalArgumentException("Can not schedule a transfer from " + fromAccountName + " to itself");
+
+        ScheduledTransfer transfer = new ScheduledTransfer(this.walletUID + "ST" + UUID.randomUUID().toString(),
+                this.walletUID, fromAcc.getAccountID(), toAcc.getAccountID(), rounded,
+                description.length > 0 ? description[0] : "N/A", firstDue, recurrence, 0);
+        TransferScheduler.schedule(transfer);
+        return transfer;
+    }
+
+    /**
+     * Cancels a transfer of this wallet, its next occurrences are not made. Waits for an occurrence that is being
+     * made.
+     *
+     * @param transferId
+     *        the id of the transfer
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the transfer is not a transfer of this wallet, or was cancelled or ended already.
+     */
+    public void cancelScheduledTransfer(String transferId) throws NoSuchObjectInDatabaseException {
+        this.loadScheduledTransfer(transferId);
+        if (!TransferScheduler.cancel(transferId))
+            throw new NoSuchObjectInDatabaseException("No scheduled transfer with identifier " + transferId + " found");
+    }
+
+    /**
+     * Returns the occurrences of a transfer of this wallet that were made or failed, also once it ended.
+     *
+     * @param transferId
+     *        the id of the transfer
+     *
+     * @return the runs of the transfer, in the order they were made.
+     */
+    public List<TransferRun> getTransferRuns(String transferId) {
+        if (!transferId.startsWith(this.walletUID + "ST"))
+            return new ArrayList<TransferRun>();
+        return uWalletDatabase.getTransferRuns(transferId);
+    }
+
+    /**
+     * Takes a token of the RateLimits of the account and of this wallet, before the account is loaded or locked.
+     *
+     * @throws RateLimitExceededException if the account or this wallet made too many writes
+     */
+    private void limitWrite(String accountName) {
+        RateLimits.acquire(this.walletUID, this.acountNameToAccountIdMap.get(accountName));
+    }
+
+    private ScheduledTransfer loadScheduledTransfer(String transferId) throws NoSuchObjectInDatabaseException {
+        ScheduledTransfer transfer = uWalletDatabase.getScheduledTransfer(transferId);
+        if (!transfer.getWalletId().equals(this.walletUID))
+            throw new NoSuchObjectInDatabaseException("No scheduled transfer with identifier " + transferId
+                    + " associated to this wallet.");
+        return transfer;
+    }
+
+    /**
+     *
+     * Returns the past N transactions on record for the account with the given name.
+     *
+     * @param accountName - String
+     *        the account whose transaction history we want to access. Should not be null or empty.
+     *
+     * @param N - the number of records to return.
+     *
+     * @return a list of length 0-N (limited by the total number of transactions for
+     *        the account) of the last 0-N transactions that are on file for this account. The list is made
+     *        of Transaction objects
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if one of the two account name do not refer to a valid account for this wallet
+     */
+    public List<Transaction> getLastNTransactions(String accountName, int N) throws NoSuchObjectInDatabaseException {
+        Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+        return acc.getPastTransactions(N);
+    }
+
+
+    /**
+     *
+     * Returns the transactions on record for the account with the given name that directly precede the
+     * transaction with the given sequence number. Together with getLastNTransactions it allows paging through the
+     * whole history of an account: pass the sequence of the oldest transaction of the previous page.
+     *
+     * @param accountName - String
+     *        the account whose transaction history we want to access. Should not be null or empty.
+     *
+     * @param sequence - only transactions with a sequence strictly lower than this one are returned.
+     *
+     * @param N - the number of records to return.
+     *
+     * @return a list of length 0-N (limited by the total number of transactions for the account before the
+     *        sequence), ordered from the most recent to the oldest. The list is made of Transaction objects
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the account name does not refer to a valid account for this wallet
+     */
+    public List<Transaction> getTransactionsBefore(String accountName, long sequence, int N) throws NoSuchObjectInDatabaseException {
+        Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+        return acc.getPastTransactionsBefore(sequence, N);
+    }
+
+    /**
+     * Searches the descriptions of the transactions of every account of this wallet. Each word of the text must
+     * start a word of the description, case aside, so "coff shop" finds "Coffee Shop #42". Searches use the
+     * full-text index of the storage engine rather than reading every transaction, and only cover the hot
+     * records: archived transactions are not found.
+     *
+     * @param text
+     *        the words to look for. Punctuation is ignored.
+     *
+     * @param page
+     *        the number of the page of matches, 0 for the best ones.
+     *
+     * @param pageSize
+     *        the number of matches per page, at most 1000.
+     *
+     * @return at most pageSize matches, best first: descriptions with more of the words rank higher, newer
+     *        transactions first among equals. Empty if the text has no word.
+     *
+     * @throws IllegalArgumentException
+     *         if the page is negative or the page size is not between 1 and 1000.
+     */
+    public List<Transaction> searchTransactions(String text, int page, int pageSize) {
+        return search(null, text, page, pageSize);
+    }
+
+    /**
+     * Searches the descriptions of the transactions of the account with the given name, as searchTransactions
+     * does for the whole wallet.
+     *
+     * @param accountName
+     *        the account whose transactions to search. Should not be null or empty.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the account name does not refer to a valid account for this wallet
+     * @throws IllegalArgumentException
+     *         if the page is negative or the page size is not between 1 and 1000.
+     */
+    public List<Transaction> searchAccountTransactions(String accountName, String text, int page, int pageSize)
+            throws NoSuchObjectInDatabaseException {
+        String accountId = this.acountNameToAccountIdMap.get(accountName);
+        if (accountId == null)
+            throw new NoSuchObjectInDatabaseException("No account with name '" + accountName + "' associated to this wallet.");
+        return search(accountId, text, page, pageSize);
+    }
+
+    private List<Transaction> search(String accountId, String text, int page, int pageSize) {
+        if (page < 0 || pageSize < 1 || pageSize > TransactionSearch.MAX_PAGE_SIZE)
+            throw new IllegalArgumentException("Can not return page " + page + " of " + pageSize + " matches");
+        List<String> terms = TransactionSearch.terms(text);
+        if (terms.isEmpty() || (long) page * pageSize > Integer.MAX_VALUE)
+            return new ArrayList<Transaction>();
+        return uWalletDatabase.searchTransactions(this.walletUID, accountId, terms, page * pageSize, pageSize);
+    }
+
+    /**
+     * Returns the statement of the account with the given name for a period: its opening balance, every
+     * transaction of the period and its closing balance, formatted with the account's currency customs. To write
+     * the statements of every account use StatementJob.
+     *
+     * @param accountName
+     *        the name of the account. Should not be null or empty.
+     * @param from
+     *        the start of the period, included
+     * @param to
+     *        the end of the period, excluded
+     * @param format
+     *        TEXT or CSV, CSV statements start with the header row
+     *
+     * @return the rendered statement.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if no such account in this wallet have the given name
+     */
+    public String getStatement(String accountName, Timestamp from, Timestamp to, StatementFormat format)
+            throws NoSuchObjectInDatabaseException {
+        Account acc = Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+        return new StatementJob(from, to, format, 1).render(acc);
+    }
+
+    /**
+     * Returns the conversion a transaction of this wallet was part of, that is the rate a transfer between accounts
+     * of different currencies was converted with.
+     *
+     * @param transaction a withdrawal or deposit of a transfer between two accounts of this wallet
+     *
+     * @return the conversion, with the uuids of both legs and the applied rate.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if the transaction is not part of a conversion
+     */
+    public CurrencyConversion getConversion(Transaction transaction) throws NoSuchObjectInDatabaseException {
+        return uWalletDatabase.getConversion(transaction.getUUID());
+    }
+
+    /**
+     * Get the currency of the account with the given name.
+     *
+     * @param accountName
+     *        the name of the account. Should not be null or empty.
+     *
+     * @return the ISO 4217 code of the account's currency.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *         if no such account in this wallet have the given name
+     */
+    public String getAccountCurrency(String accountName) throws NoSuchObjectInDatabaseException {
+        return Account.loadAccount(this.acountNameToAccountIdMap.get(accountName)).getCurrencyCode();
+    }
+
+    /**
+     *  Returns a protected Account object - meant for locking it.
+     *
+     * @param accountName - String
+     *        the account whose transaction history we want to access. Should not be null or empty.
+     * @return the Account object for the given account name.
+     * @throws NoSuchObjectInDatabaseException
+     *         if one of the two account name do not refer to a valid account for this wallet
+     */
+    public Account getAccount(String accountName) throws NoSuchObjectInDatabaseException {
+        return Account.loadAccount(this.acountNameToAccountIdMap.get(accountName));
+    }
+
+
+    /**
+     * Erases all data, for all wallets. WARNING THIS IS IRREVERSIBLE
+     *
+     * @param password
+     *      must be 'delete' for method to work, just to make it a bit
+     *      harder for this method to be called accidentally.
+     */
+    static public void deleteAllRecord(String password){
+        if(password.equals("delete")){
+            uWalletDatabase.flush();
+            loadedWallets.clear();
+            TransferScheduler.clear();
+        }
+    }
+
+    /**
+     * Moves every transaction, for all wallets, that took place before the horizon out of the hot records and
+     * into compressed, immutable archive segments. A balance checkpoint is left behind for each account. Archived
+     * transactions are still returned by getLastNTransactions, they are simply read from the archive instead.
+     *
+     * @param horizon
+     *      transactions with a timestamp strictly before the horizon are archived. Can not be null.
+     *
+     * @return the number of transactions that were archived.
+     */
+    static public int archiveTransactionsBefore(Timestamp horizon){
+        int archived = 0;
+        for (String accountId : uWalletDatabase.getAccountsWithTransactionsBefore(horizon))
+            archived += uWalletDatabase.archiveTransactions(accountId, horizon);
+
+        //give the freed pages back so the hot records stay small
+        if (archived > 0)
+            uWalletDatabase.compact();
+        return archived;
+    }
+
+    /**
+     * Get the wallet unique identifier.
+     *
+     * @return the UID for this wallet
+     */
+    public String getUID() {
+        return this.walletUID;
+    }
+
+    /**
+     *  Get the code for this wallet's currency region.
+     *
+     * @return ISO 3166 alpha-2 country code or UN M.49 numeric-3 area code for the country whose
+     *      currency is used in this wallet.
+     */
+    public String getRegionCode(){
+        return  this.regionCode;
+    }
+}
\ No newline at end of file
@@ -7,15 +7,17 @@ import java.sql.Timestamp;
 
  class WithdrawalTransaction extends Transaction {
 
+     WithdrawalTransaction(double amount,  Account account, long sequence, String... description){super(amount, account, sequence, description);}
      WithdrawalTransaction(double amount,  Account account, String txID, String... description){super(amount, account, txID, description);}
-     WithdrawalTransaction(Timestamp timestamp, String uuid, String account,
+     WithdrawalTransaction(Timestamp timestamp, String uuid, long sequence, String account,
                               double amount, String endingBalance, String description) throws NoSuchObjectInDatabaseException {
-        super(timestamp, uuid, account, amount, endingBalance, description);}
+        super(timestamp, uuid, sequence, account, amount, endingBalance, description);}
 
     @Override
     BigDecimal applyTransaction() {
-        //Here we use Double.ToString() because BigDecimal constructor using double inherits the accuracy errors of doubles
-        BigDecimal endingBalance = this.involvedAccount.getCurrentBalance().subtract(new BigDecimal(Double.toString(this.amount)));
+        //BigDecimal.valueOf goes through Double.toString(), the BigDecimal constructor using double inherits the
+        //accuracy errors of doubles
+        BigDecimal endingBalance = this.involvedAccount.getCurrentBalance().subtract(BigDecimal.valueOf(this.amount));
         return endingBalance;
     }
 
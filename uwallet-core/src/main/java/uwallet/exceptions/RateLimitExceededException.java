@@ -0,0 +1,15 @@
+package uwallet.exceptions;
+
+/**
+ * Thrown when a write is refused because its account or its wallet made more writes than its rate limit allows.
+ * Nothing was written; the write can be tried again later. Unchecked, so the write methods keep their signatures
+ * when no limit is configured.
+ */
+public class RateLimitExceededException extends RuntimeException{
+
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitExceededException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package uwallet.exceptions;
+
+public class SubscriptionLaggedException extends Exception{
+
+    public SubscriptionLaggedException(String message){
+        super(message);
+    }
+}
@@ -0,0 +1,686 @@
+package uwallet;
+
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+
+/**
+ * A static class with static methods to store and fetch Account, Transaction, and Wallet
+ * objects. It seperates the choice of DB from the rest of the application: every method hands the call to a
+ * StorageEngine, found on the class path, while holding the storage lock.
+ *
+ * The engine is chosen with the uwallet.storage system property ("sqlite", "memory", ...). When it is not set
+ * the only engine on the class path is used, or sqlite if there are several. Nothing is opened when the class is
+ * loaded: the engine is selected and opened by open(), or lazily by the first method that needs it, and can be
+ * closed and opened again. A failed open leaves the engine closed, the next call tries again.
+ *
+ * RI: engine and opened are only written while holding lock, engine is only used while holding it - apart from
+ *     describing it to diagnostics. engine is null until the first open, and open when opened is true.
+ *
+ */
+
+class uWalletDatabase {
+
+    static final String STORAGE_PROPERTY = "uwallet.storage";
+    private final static String DEFAULT_ENGINE = "sqlite";
+
+    //engines are not thread safe (sqlite only allows one thread to access the db at a time), so every method
+    //holds this lock while it uses the engine. It also records how long each of them waited for and held it.
+    private final static StorageLock lock = new StorageLock();
+    private static volatile StorageEngine engine = null;
+    private static volatile boolean opened = false;
+
+    static {
+        //the diagnostics MBean is there as soon as the library does anything with its records
+        Diagnostics.register();
+    }
+
+    /**
+     * Selects and opens the storage engine, if that was not done yet.
+     *
+     * @throws IllegalStateException if no engine is found or it could not be opened.
+     */
+    static void open(){
+        long started = lock.acquire(StorageOperation.OPEN);
+        try {
+            engine();
+        } finally {
+            lock.release(StorageOperation.OPEN, started);
+        }
+    }
+
+    /**
+     * Closes the storage engine. The next call that needs it opens it again.
+     */
+    static void close(){
+        long started = lock.acquire(StorageOperation.CLOSE);
+        try {
+            if (opened) {
+                opened = false;
+                engine.close();
+            }
+        } finally {
+            lock.release(StorageOperation.CLOSE, started);
+        }
+    }
+
+    /**
+     * @return true if the engine is open.
+     */
+    static boolean isOpen(){
+        return opened;
+    }
+
+    /**
+     * @return the name of the storage engine, or null if none was selected yet.
+     */
+    static String getEngineName(){
+        StorageEngine current = engine;
+        return current == null ? null : current.getName();
+    }
+
+    /**
+     * Asks the storage engine to describe itself, without taking the lock, so that it never waits behind traffic.
+     *
+     * @return what the engine reported, empty if none was selected yet.
+     */
+    static Map<String, String> describeEngine(){
+        Map<String, String> diagnostics = new LinkedHashMap<String, String>();
+        StorageEngine current = engine;
+        if (current != null)
+            current.describe(diagnostics);
+        return diagnostics;
+    }
+
+    /**
+     * @return an estimate of the number of storage operations waiting for the one in progress.
+     */
+    static int getPendingOperations(){
+        return lock.getQueueLength();
+    }
+
+    /**
+     * @return true if a storage operation is in progress.
+     */
+    static boolean isBusy(){
+        return lock.isLocked();
+    }
+
+    /**
+     * @return the fraction of the time since the library was loaded that the engine was in use, between 0 and 1.
+     */
+    static double getUtilization(){
+        return lock.getUtilization();
+    }
+
+    /**
+     * Get the open engine, selecting and opening it first if needed. Must be called while holding lock.
+     */
+    private static StorageEngine engine(){
+        if (!opened) {
+            if (engine == null)
+                engine = select(System.getProperty(STORAGE_PROPERTY));
+            engine.open();
+            opened = true;
+        }
+        return engine;
+    }
+
+    /**
+     * Switches to another storage engine. Objects loaded from the previous engine stay alive, so this is only
+     * meant for tests and benchmarks that erase the records right after.
+     *
+     * @param name the name of the engine, as in the uwallet.storage property
+     * @throws IllegalStateException if no engine with that name is on the class path
+     */
+    static void useEngine(String name){
+        long started = lock.acquire(StorageOperation.USE_ENGINE);
+        try {
+            if (engine == null || !engine.getName().equals(name)) {
+                StorageEngine selected = select(name);
+                if (opened) {
+                    opened = false;
+                    engine.close();
+                }
+                engine = selected;
+            }
+            engine();
+        } finally {
+            lock.release(StorageOperation.USE_ENGINE, started);
+        }
+    }
+
+    /**
+     * Stores or updates the information for the given Account object in the DB.
+     *
+     * @param account account object whose data we wish to store in the DB
+     */
+    static void insertAccount(Account account){
+        long started = lock.acquire(StorageOperation.INSERT_ACCOUNT);
+        try{
+            engine().insertAccount(account);
+        } finally {
+            lock.release(StorageOperation.INSERT_ACCOUNT, started);
+        }
+    }
+
+    /**
+     * Get an account object whose record is stored.
+     *
+     * @return Account - an account object as defined in the DB for the given identifier. The identifier must be that
+     *          of an account that has been committed to the database already.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no such account with the given identifier is found in the db
+     */
+    static Account getAccount(String identifier) throws NoSuchObjectInDatabaseException {
+        long started = lock.acquire(StorageOperation.GET_ACCOUNT);
+        try {
+            return engine().getAccount(identifier);
+        } finally {
+            lock.release(StorageOperation.GET_ACCOUNT, started);
+        }
+    }
+
+    /**
+     * Pages through the ids of every account on record, in ascending order.
+     *
+     * @param afterId only ids strictly greater than this one are returned, null to start from the first
+     * @param limit the maximum number of ids to return
+     * @return at most limit ids, ascending. Fewer than limit only once the last account was reached.
+     */
+    static List<String> getAccountIdsAfter(String afterId, int limit){
+        long started = lock.acquire(StorageOperation.GET_ACCOUNT_IDS_AFTER);
+        try {
+            return engine().getAccountIdsAfter(afterId, limit);
+        } finally {
+            lock.release(StorageOperation.GET_ACCOUNT_IDS_AFTER, started);
+        }
+    }
+
+    /**
+     * Get the account objects of several accounts on record at once. Meant for accounts that are not loaded yet,
+     * see Account.loadAccounts.
+     *
+     * @return an account object for each identifier on record, in no particular order. Identifiers that are not
+     *          on record are skipped.
+     */
+    static List<Account> getAccounts(List<String> identifiers){
+        long started = lock.acquire(StorageOperation.GET_ACCOUNTS);
+        try {
+            return engine().getAccounts(identifiers);
+        } finally {
+            lock.release(StorageOperation.GET_ACCOUNTS, started);
+        }
+    }
+
+    /**
+     *  Stores or updates a Transactioni object to the persistent record.
+     *
+     * @param transaction the Transaction object that we wish to store in the DB
+     */
+    static void insertTransaction(Transaction transaction){
+        long started = lock.acquire(StorageOperation.INSERT_TRANSACTION);
+        try{
+            engine().insertTransaction(transaction);
+        } finally {
+            lock.release(StorageOperation.INSERT_TRANSACTION, started);
+        }
+    }
+
+    /**
+     * Stores or updates an account together with its new transactions, in a single database transaction: either
+     * all of them reach the records or none does. This is what Account uses to commit deposits and withdrawals.
+     *
+     * @param account the account whose state we wish to store in the DB
+     * @param transactions the transactions that brought the account to that state, possibly empty
+     */
+    static void commit(Account account, List<Transaction> transactions){
+        long started = lock.acquire(StorageOperation.COMMIT);
+        try {
+            engine().commit(account, transactions);
+        } finally {
+            lock.release(StorageOperation.COMMIT, started);
+        }
+    }
+
+    /**
+     * Opens a consistent snapshot of every account and transaction in the hot records. The lock is only held
+     * while it is opened, it is read without holding it and does not hold up other operations.
+     *
+     * @return the snapshot, which must be closed once read.
+     */
+    static LedgerSnapshot openLedgerSnapshot(){
+        long started = lock.acquire(StorageOperation.OPEN_LEDGER_SNAPSHOT);
+        try {
+            return engine().openLedgerSnapshot();
+        } finally {
+            lock.release(StorageOperation.OPEN_LEDGER_SNAPSHOT, started);
+        }
+    }
+
+    /**
+     * Stores or updates several accounts and their new transactions, together with the checkpoint of the batch job
+     * that made them, in a single database transaction.
+     *
+     * @param accounts the accounts whose state we wish to store in the DB
+     * @param transactions the transactions that brought the accounts to that state, possibly empty
+     * @param checkpoint how far the job got once this batch is committed
+     */
+    static void commitBatch(List<Account> accounts, List<Transaction> transactions, JobCheckpoint checkpoint){
+        long started = lock.acquire(StorageOperation.COMMIT_BATCH);
+        try {
+            engine().commitBatch(accounts, transactions, checkpoint);
+        } finally {
+            lock.release(StorageOperation.COMMIT_BATCH, started);
+        }
+    }
+
+    /**
+     * @return the last checkpoint the batch job committed, or null if it never committed one.
+     */
+    static JobCheckpoint getCheckpoint(String job){
+        long started = lock.acquire(StorageOperation.GET_CHECKPOINT);
+        try {
+            return engine().getCheckpoint(job);
+        } finally {
+            lock.release(StorageOperation.GET_CHECKPOINT, started);
+        }
+    }
+
+    /**
+     * Stores a transfer between two accounts of the same currency, of the same wallet or not, in a single database
+     * transaction: both accounts and both legs either all reach the records or none does.
+     *
+     * @param debit the withdrawal from the account the amount was transferred from
+     * @param credit the deposit to the account the amount was transferred to
+     */
+    static void commitTransfer(Transaction debit, Transaction credit){
+        long started = lock.acquire(StorageOperation.COMMIT_TRANSFER);
+        try {
+            engine().commitTransfer(debit, credit);
+        } finally {
+            lock.release(StorageOperation.COMMIT_TRANSFER, started);
+        }
+    }
+
+    /**
+     * Stores a transfer between accounts of different currencies in a single database transaction: both accounts,
+     * both legs and the conversion either all reach the records or none does.
+     *
+     * @param debit the withdrawal from the account the amount was transferred from
+     * @param credit the deposit to the account the converted amount was transferred to
+     * @param conversion the rate the amount was converted with
+     */
+    static void commitConversion(Transaction debit, Transaction credit, CurrencyConversion conversion){
+        long started = lock.acquire(StorageOperation.COMMIT_CONVERSION);
+        try {
+            engine().commitConversion(debit, credit, conversion);
+        } finally {
+            lock.release(StorageOperation.COMMIT_CONVERSION, started);
+        }
+    }
+
+    /**
+     * Get the conversion a transaction is a leg of.
+     *
+     * @param transactionUUID the uuid of the withdrawal or of the deposit of the conversion
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if the transaction is not a leg of a conversion on record
+     */
+    static CurrencyConversion getConversion(String transactionUUID) throws NoSuchObjectInDatabaseException {
+        long started = lock.acquire(StorageOperation.GET_CONVERSION);
+        try {
+            return engine().getConversion(transactionUUID);
+        } finally {
+            lock.release(StorageOperation.GET_CONVERSION, started);
+        }
+    }
+
+    /**
+     * Stores a new hold together with its account in a single database transaction.
+     *
+     * @param account the account, whose held balance includes the hold
+     * @param hold the hold that was placed
+     */
+    static void commitHold(Account account, Hold hold){
+        long started = lock.acquire(StorageOperation.COMMIT_HOLD);
+        try {
+            engine().commitHold(account, hold);
+        } finally {
+            lock.release(StorageOperation.COMMIT_HOLD, started);
+        }
+    }
+
+    /**
+     * Ends a hold in a single database transaction: the hold is deleted, and the account and the transactions
+     * that captured it are stored.
+     *
+     * @param account the account, whose held balance no longer includes the hold
+     * @param transactions the withdrawal that captured the hold, or none if it was released
+     * @param holdId the id of the hold
+     */
+    static void commitHoldRelease(Account account, List<Transaction> transactions, String holdId){
+        long started = lock.acquire(StorageOperation.COMMIT_HOLD_RELEASE);
+        try {
+            engine().commitHoldRelease(account, transactions, holdId);
+        } finally {
+            lock.release(StorageOperation.COMMIT_HOLD_RELEASE, started);
+        }
+    }
+
+    /**
+     * Get a hold that has not ended.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no hold with the id is on record, because it was never placed or has ended
+     */
+    static Hold getHold(String holdId) throws NoSuchObjectInDatabaseException {
+        long started = lock.acquire(StorageOperation.GET_HOLD);
+        try {
+            return engine().getHold(holdId);
+        } finally {
+            lock.release(StorageOperation.GET_HOLD, started);
+        }
+    }
+
+    /**
+     * Get a page of the holds on record, in the order of their ids.
+     *
+     * @param afterId the id of the last hold of the previous page, null for the first page
+     * @param limit the most holds to return
+     */
+    static List<Hold> getHoldsAfter(String afterId, int limit){
+        long started = lock.acquire(StorageOperation.GET_HOLDS_AFTER);
+        try {
+            return engine().getHoldsAfter(afterId, limit);
+        } finally {
+            lock.release(StorageOperation.GET_HOLDS_AFTER, started);
+        }
+    }
+
+    /**
+     * Stores a new scheduled transfer.
+     */
+    static void insertScheduledTransfer(ScheduledTransfer transfer){
+        long started = lock.acquire(StorageOperation.INSERT_SCHEDULED_TRANSFER);
+        try {
+            engine().insertScheduledTransfer(transfer);
+        } finally {
+            lock.release(StorageOperation.INSERT_SCHEDULED_TRANSFER, started);
+        }
+    }
+
+    /**
+     * Get a transfer that is still scheduled.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no transfer with the id is on record, because it was never scheduled, was cancelled or has ended
+     */
+    static ScheduledTransfer getScheduledTransfer(String transferId) throws NoSuchObjectInDatabaseException {
+        long started = lock.acquire(StorageOperation.GET_SCHEDULED_TRANSFER);
+        try {
+            return engine().getScheduledTransfer(transferId);
+        } finally {
+            lock.release(StorageOperation.GET_SCHEDULED_TRANSFER, started);
+        }
+    }
+
+    /**
+     * Deletes a scheduled transfer, its runs stay on record.
+     *
+     * @return false if no transfer with the id was scheduled.
+     */
+    static boolean deleteScheduledTransfer(String transferId){
+        long started = lock.acquire(StorageOperation.DELETE_SCHEDULED_TRANSFER);
+        try {
+            return engine().deleteScheduledTransfer(transferId);
+        } finally {
+            lock.release(StorageOperation.DELETE_SCHEDULED_TRANSFER, started);
+        }
+    }
+
+    /**
+     * Get a page of the scheduled transfers, in the order of their ids.
+     *
+     * @param afterId the id of the last transfer of the previous page, null for the first page
+     * @param limit the most transfers to return
+     */
+    static List<ScheduledTransfer> getScheduledTransfersAfter(String afterId, int limit){
+        long started = lock.acquire(StorageOperation.GET_SCHEDULED_TRANSFERS_AFTER);
+        try {
+            return engine().getScheduledTransfersAfter(afterId, limit);
+        } finally {
+            lock.release(StorageOperation.GET_SCHEDULED_TRANSFERS_AFTER, started);
+        }
+    }
+
+    /**
+     * Stores a batch of scheduled transfers in a single database transaction: the accounts and the transactions
+     * they were made with, the run of each transfer, and its next occurrence or, when it has none, its deletion.
+     *
+     * @param accounts the accounts the transfers changed
+     * @param transactions both legs of each transfer that was made
+     * @param runs one run per transfer of the batch, made or failed
+     */
+    static void commitTransfers(List<Account> accounts, List<Transaction> transactions, List<TransferRun> runs){
+        long started = lock.acquire(StorageOperation.COMMIT_TRANSFERS);
+        try {
+            engine().commitTransfers(accounts, transactions, runs);
+        } finally {
+            lock.release(StorageOperation.COMMIT_TRANSFERS, started);
+        }
+    }
+
+    /**
+     * @return the runs of a scheduled transfer, in the order they were made, also once it has ended.
+     */
+    static List<TransferRun> getTransferRuns(String transferId){
+        long started = lock.acquire(StorageOperation.GET_TRANSFER_RUNS);
+        try {
+            return engine().getTransferRuns(transferId);
+        } finally {
+            lock.release(StorageOperation.GET_TRANSFER_RUNS, started);
+        }
+    }
+
+    /**
+     * Get the last N transactions from the records for a given account.
+     *
+     * @return List<Transaction> - which is a list of length 0-N (limited by the total number of transactions for
+     * the account) of the last 0-N transactions that are on file for this account, archived ones included. The
+     * list is ordered by sequence, newest first.
+     *
+     */
+    static List<Transaction> getNLastTransactions(String accountIdentifier, int N) throws NoSuchObjectInDatabaseException {
+        long started = lock.acquire(StorageOperation.GET_N_LAST_TRANSACTIONS);
+        try {
+            return engine().getTransactionsBefore(accountIdentifier, Long.MAX_VALUE, N);
+        } finally {
+            lock.release(StorageOperation.GET_N_LAST_TRANSACTIONS, started);
+        }
+    }
+
+    /**
+     * Get the N transactions of a given account that directly precede the given sequence number. Used to page
+     * through the history of an account.
+     *
+     * @param sequence only transactions with a sequence strictly lower than this one are returned.
+     *
+     * @return List<Transaction> - which is a list of length 0-N (limited by the total number of transactions for
+     * the account before the sequence), ordered by sequence, newest first. Archived transactions are included.
+     *
+     */
+    static List<Transaction> getTransactionsBefore(String accountIdentifier, long sequence, int N) throws NoSuchObjectInDatabaseException {
+        long started = lock.acquire(StorageOperation.GET_TRANSACTIONS_BEFORE);
+        try {
+            return engine().getTransactionsBefore(accountIdentifier, sequence, N);
+        } finally {
+            lock.release(StorageOperation.GET_TRANSACTIONS_BEFORE, started);
+        }
+    }
+
+    /**
+     * Searches the descriptions of the transactions in the hot records of a wallet, or of one of its accounts,
+     * with the engine's index.
+     *
+     * @param accountId the account to search, null to search every account of the wallet
+     * @param terms the terms from TransactionSearch.terms, at least one
+     * @param offset the number of matches to skip
+     * @param limit the most matches to return
+     * @return the matches, best first.
+     */
+    static List<Transaction> searchTransactions(String walletId, String accountId, List<String> terms, int offset, int limit){
+        long started = lock.acquire(StorageOperation.SEARCH_TRANSACTIONS);
+        try {
+            return engine().searchTransactions(walletId, accountId, terms, offset, limit);
+        } finally {
+            lock.release(StorageOperation.SEARCH_TRANSACTIONS, started);
+        }
+    }
+
+    /**
+     * Moves every transaction of the given account that took place before the horizon out of the hot records,
+     * and leaves a balance checkpoint behind. Engines without a colder tier archive nothing.
+     *
+     * @param accountIdentifier the account whose old transactions should be archived
+     * @param horizon transactions with a timestamp strictly before the horizon are archived
+     * @return the number of transactions that were archived
+     */
+    static int archiveTransactions(String accountIdentifier, Timestamp horizon){
+        long started = lock.acquire(StorageOperation.ARCHIVE_TRANSACTIONS);
+        try {
+            return engine().archiveTransactions(accountIdentifier, horizon);
+        } finally {
+            lock.release(StorageOperation.ARCHIVE_TRANSACTIONS, started);
+        }
+    }
+
+    /**
+     * Get the identifiers of every account that has transactions before the horizon in the hot records.
+     *
+     * @param horizon the archival horizon
+     * @return List<String> of account identifiers, possibly empty.
+     */
+    static List<String> getAccountsWithTransactionsBefore(Timestamp horizon){
+        long started = lock.acquire(StorageOperation.GET_ACCOUNTS_WITH_TRANSACTIONS_BEFORE);
+        try {
+            return engine().getAccountsWithTransactionsBefore(horizon);
+        } finally {
+            lock.release(StorageOperation.GET_ACCOUNTS_WITH_TRANSACTIONS_BEFORE, started);
+        }
+    }
+
+    /**
+     * Returns the space freed by archival to the file system.
+     */
+    static void compact(){
+        long started = lock.acquire(StorageOperation.COMPACT);
+        try {
+            engine().compact();
+        } finally {
+            lock.release(StorageOperation.COMPACT, started);
+        }
+    }
+
+    /**
+     * Stores a wallet object to the records.
+     *
+     * inserts a new wallet row in the db or updates an existing one
+     * @param wallet the Wallet object to be inserted into the db
+     */
+    static void insertWallet(Wallet wallet){
+        long started = lock.acquire(StorageOperation.INSERT_WALLET);
+        try{
+            engine().insertWallet(wallet);
+        } finally {
+            lock.release(StorageOperation.INSERT_WALLET, started);
+        }
+    }
+
+    /**
+     * Fetches a wallet object from the records.
+     *
+     * @param walletUID - the id of the wallet object to fetch
+     *
+     * @return Wallet - an wallet object as defined in the DB for the given identifier. The identifier must be that
+     *          of a wallet that has been committed to the database already.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no such wallet with the given identifier is found in the db
+     */
+    static Wallet getWallet(String walletUID) throws NoSuchObjectInDatabaseException{
+        long started = lock.acquire(StorageOperation.GET_WALLET);
+        try {
+            return engine().getWallet(walletUID);
+        } finally {
+            lock.release(StorageOperation.GET_WALLET, started);
+        }
+    }
+
+    /**
+     * Checks whether any account has been created under a wallet.
+     *
+     * @param walletUID - the id of the wallet
+     *
+     * @return true if at least one account in the records belongs to the wallet.
+     */
+    static boolean walletHasAccounts(String walletUID){
+        long started = lock.acquire(StorageOperation.WALLET_HAS_ACCOUNTS);
+        try {
+            return engine().walletHasAccounts(walletUID);
+        } finally {
+            lock.release(StorageOperation.WALLET_HAS_ACCOUNTS, started);
+        }
+    }
+
+    /**
+     *
+     * erases ALL data in the records.
+     */
+    static void flush(){
+        long started = lock.acquire(StorageOperation.FLUSH);
+        try{
+            engine().flush();
+        } finally {
+            lock.release(StorageOperation.FLUSH, started);
+        }
+    }
+
+    /**
+     * Finds the engine with the given name on the class path.
+     *
+     * @param name the name of the engine, or null for the only engine on the class path (sqlite if there are
+     *             several)
+     */
+    static private StorageEngine select(String name){
+        List<StorageEngine> found = new ArrayList<StorageEngine>();
+        for (StorageEngine candidate : ServiceLoader.load(StorageEngine.class, uWalletDatabase.class.getClassLoader()))
+            found.add(candidate);
+
+        StorageEngine selected = null;
+        for (StorageEngine candidate : found) {
+            if (candidate.getName().equals(name != null ? name : DEFAULT_ENGINE))
+                selected = candidate;
+        }
+        if (selected == null && name == null && found.size() == 1)
+            selected = found.get(0);
+
+        if (selected == null) {
+            List<String> names = new ArrayList<String>();
+            for (StorageEngine candidate : found)
+                names.add(candidate.getName());
+            throw new IllegalStateException("No storage engine " + (name != null ? "named " + name + " " : "") +
+                    "on the class path, found " + names + ". Add a uwallet-store-* module or set " + STORAGE_PROPERTY);
+        }
+        return selected;
+    }
+
+}
@@ -0,0 +1,49 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+
+public class AccessLogTest {
+
+    @AfterEach
+    void turnOff(){
+        AccessLog.setRecording(false);
+        AccessLog.reset();
+    }
+
+    @Test
+    public void testHottestAreSavedFirst() throws IOException {
+        AccessLog.setRecording(true);
+        AccessLog.recordAccount("COLD");
+        for (int i = 0; i < 3; i++)
+            AccessLog.recordAccount("HOT");
+        AccessLog.recordAccount("WARM");
+        AccessLog.recordAccount("WARM");
+        AccessLog.recordWallet("WALLET");
+
+        File file = File.createTempFile("access", ".log");
+        AccessLog.save(file, 2);
+        AccessLog.Entries entries = AccessLog.read(file);
+        file.delete();
+
+        assert( entries.wallets.size() == 1 );
+        assert( entries.wallets.get(0).equals("WALLET") );
+        assert( entries.accounts.size() == 2 );
+        assert( entries.accounts.get(0).equals("HOT") );
+        assert( entries.accounts.get(1).equals("WARM") );
+    }
+
+    @Test
+    public void testNothingIsCountedWhenOff() throws IOException {
+        AccessLog.recordAccount("IGNORED");
+
+        File file = File.createTempFile("access", ".log");
+        file.delete();
+        AccessLog.save(file, 10);
+        assert( !file.exists() );
+        assert( AccessLog.read(file).accounts.isEmpty() );
+    }
+}
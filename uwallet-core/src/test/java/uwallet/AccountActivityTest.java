@@ -0,0 +1,37 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class AccountActivityTest {
+
+    @AfterEach
+    void clear(){
+        AccountActivity.reset();
+    }
+
+    @Test
+    public void testHottestComeFirst(){
+        AccountActivity.record("COLD");
+        for (int i = 0; i < 5; i++)
+            AccountActivity.record("HOT");
+        AccountActivity.record("WARM");
+        AccountActivity.record("WARM");
+
+        List<AccountActivity.Rate> hottest = AccountActivity.hottest(2);
+        assert( hottest.size() == 2 );
+        assert( hottest.get(0).accountId.equals("HOT") );
+        assert( hottest.get(0).operations == 5 );
+        assert( hottest.get(0).perSecond > 0 );
+        assert( hottest.get(1).accountId.equals("WARM") );
+    }
+
+    @Test
+    public void testResetForgetsEverything(){
+        AccountActivity.record("ACC");
+        AccountActivity.reset();
+        assert( AccountActivity.hottest(10).isEmpty() );
+    }
+}
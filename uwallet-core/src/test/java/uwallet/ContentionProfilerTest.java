@@ -0,0 +1,84 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+public class ContentionProfilerTest {
+
+    @AfterEach
+    void turnOff(){
+        ContentionProfiler.setEnabled(false);
+    }
+
+    @Test
+    public void testWaitIsAttributedToTheHolder() throws InterruptedException {
+        final ProfiledLock lock = new ProfiledLock("testLock");
+        final CountDownLatch held = new CountDownLatch(1);
+        ContentionProfiler.setEnabled(true);
+
+        Thread holder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                lock.lock("slowHolder");
+                try {
+                    held.countDown();
+                    Thread.sleep(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+        holder.start();
+        held.await();
+
+        long waited = lock.lock("waiter");
+        lock.unlock();
+        holder.join();
+
+        assert( waited > 0 );
+        String report = ContentionProfiler.report();
+        assert( report.contains("testLock: ") );
+        String waiterRow = null;
+        for (String line : report.split("\n")) {
+            if (line.startsWith("testLock") && line.contains(" waiter "))
+                waiterRow = line;
+        }
+        assert( waiterRow != null );
+        assert( waiterRow.contains("slowHolder (100%)") );
+        //ranked by total wait, the waiter comes before the holder that never waited
+        assert( report.indexOf(" waiter ") < report.indexOf(" slowHolder ") );
+    }
+
+    @Test
+    public void testNothingIsRecordedWhenOff(){
+        ProfiledLock lock = new ProfiledLock("quietLock");
+        ContentionProfiler.setEnabled(true);
+        ContentionProfiler.setEnabled(false);
+
+        lock.lock("op");
+        lock.lock("nested");
+        lock.unlock();
+        lock.unlock();
+
+        assert( !ContentionProfiler.report().contains("quietLock") );
+    }
+
+    @Test
+    public void testOnlyOutermostHoldIsProfiled(){
+        ProfiledLock lock = new ProfiledLock("nestedLock");
+        ContentionProfiler.setEnabled(true);
+
+        lock.lock("outer");
+        lock.lock("inner");
+        lock.unlock();
+        lock.unlock();
+
+        String report = ContentionProfiler.report();
+        assert( report.contains(" outer ") );
+        assert( !report.contains(" inner ") );
+    }
+}
@@ -0,0 +1,76 @@
+package uwallet;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.text.NumberFormat;
+import java.util.Locale;
+import java.util.Random;
+
+public class CurrencyFormatterTest {
+
+    private static final String[] REGIONS = {"US", "FR", "CL", "JO", "JP", "DE", "IN", "CH", "BR", "150"};
+
+    @Test
+    public void testSameFormatterIsSharedPerRegion() {
+        assert(CurrencyFormatter.forRegion("US") == CurrencyFormatter.forRegion("US"));
+        assert(CurrencyFormatter.forRegion("US") != CurrencyFormatter.forRegion("FR"));
+    }
+
+    @Test
+    public void testFormatsLikeNumberFormat() {
+        Random random = new Random(42);
+        for (String region : REGIONS) {
+            NumberFormat expected = NumberFormat.getCurrencyInstance(new Locale("en", region));
+            CurrencyFormatter formatter = CurrencyFormatter.forRegion(region);
+
+            double[] amounts = {0.0, -0.0, 0.1, 0.125, 1.005, 2.5, -0.001, 1e21, -1234567.891, 1.0 / 3, Double.MAX_VALUE};
+            for (double amount : amounts) {
+                assert(formatter.format(amount).equals(expected.format(amount)));
+                BigDecimal decimal = new BigDecimal(Double.toString(amount));
+                assert(formatter.format(decimal).equals(expected.format(decimal)));
+            }
+
+            for (int i = 0; i < 1000; i++) {
+                double amount = (random.nextDouble() - 0.3) * Math.pow(10, random.nextInt(12) - 3);
+                assert(formatter.format(amount).equals(expected.format(amount)));
+                BigDecimal decimal = new BigDecimal(Double.toString(amount));
+                assert(formatter.format(decimal).equals(expected.format(decimal)));
+            }
+        }
+    }
+
+    @Test
+    public void testFormatMinorUnits() {
+        assert(CurrencyFormatter.forRegion("US").formatMinorUnits(123456).equals("$1,234.56"));
+        assert(CurrencyFormatter.forRegion("US").formatMinorUnits(-5).equals("-$0.05"));
+        assert(CurrencyFormatter.forRegion("CL").formatMinorUnits(1500).equals("CLP1,500"));
+        assert(CurrencyFormatter.forRegion("JO").formatMinorUnits(1500).equals("JOD1.500"));
+    }
+
+    @Test
+    public void testConcurrentFormatting() throws InterruptedException {
+        final CurrencyFormatter formatter = CurrencyFormatter.forRegion("US");
+        final boolean[] failed = {false};
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        long cents = offset * 100000L + i;
+                        String formatted = formatter.formatMinorUnits(cents);
+                        String expected = NumberFormat.getCurrencyInstance(Locale.US).format(BigDecimal.valueOf(cents, 2));
+                        if (!formatted.equals(expected))
+                            failed[0] = true;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+
+        assert(!failed[0]);
+    }
+}
@@ -0,0 +1,93 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+public class ExchangeRatesTest {
+
+    @AfterEach
+    void forget(){
+        ExchangeRates.reset();
+    }
+
+    static File ratesFile(String contents) throws IOException {
+        File file = File.createTempFile("fx-rates", ".properties");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents.getBytes(StandardCharsets.UTF_8));
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testCrossRatesAreRatiosOfTheBaseRates() throws IOException {
+        ExchangeRateTable table = ExchangeRates.load(ratesFile("USD=1\nEUR=0.8\nJPY=150\n"));
+
+        assert( table.getRate("USD", "EUR").compareTo(new BigDecimal("0.8")) == 0 );
+        assert( table.getRate("EUR", "USD").compareTo(new BigDecimal("1.25")) == 0 );
+        assert( table.getRate("EUR", "JPY").compareTo(new BigDecimal("187.5")) == 0 );
+        assert( table.getRate("JPY", "JPY").compareTo(BigDecimal.ONE) == 0 );
+        //cached, the same object is returned
+        assert( table.getRate("EUR", "JPY") == table.getRate("EUR", "JPY") );
+        assert( ExchangeRates.getTable() == table );
+    }
+
+    @Test
+    public void testMissingRateFails() throws IOException {
+        ExchangeRateTable table = ExchangeRates.load(ratesFile("USD=1\n"));
+        assert( !table.hasRate("USD", "EUR") );
+        try {
+            table.getRate("USD", "EUR");
+            assert( false );
+        } catch (IllegalStateException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testOlderVersionsAreIgnored() throws IOException {
+        ExchangeRateTable first = ExchangeRates.load(ratesFile("version=5\nUSD=1\nEUR=0.8\n"));
+        assert( first.getVersion() == 5 );
+
+        ExchangeRateTable stale = ExchangeRates.load(ratesFile("version=4\nUSD=1\nEUR=0.5\n"));
+        assert( stale == first );
+
+        //without a version, the next one
+        ExchangeRateTable next = ExchangeRates.load(ratesFile("USD=1\nEUR=0.9\n"));
+        assert( next.getVersion() == 6 );
+        assert( ExchangeRates.getTable().getRate("USD", "EUR").compareTo(new BigDecimal("0.9")) == 0 );
+    }
+
+    @Test
+    public void testReloadOnlyReadsAChangedFile() throws IOException {
+        File file = ratesFile("USD=1\nEUR=0.8\n");
+        ExchangeRateTable loaded = ExchangeRates.load(file);
+        assert( ExchangeRates.reload() == loaded );
+
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("USD=1\nEUR=0.85\nGBP=0.7\n".getBytes(StandardCharsets.UTF_8));
+        out.close();
+        ExchangeRateTable reloaded = ExchangeRates.reload();
+        assert( reloaded.getVersion() == loaded.getVersion() + 1 );
+        assert( reloaded.hasRate("EUR", "GBP") );
+    }
+
+    @Test
+    public void testNegativeRateIsRejected() throws IOException {
+        try {
+            ExchangeRates.load(ratesFile("USD=1\nEUR=-0.8\n"));
+            assert( false );
+        } catch (IOException e) {
+            //expected
+        }
+    }
+}
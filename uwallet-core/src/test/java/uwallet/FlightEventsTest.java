@@ -0,0 +1,82 @@
+package uwallet;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FlightEventsTest {
+
+    private static List<RecordedEvent> eventsOf(Recording recording, String name) throws IOException {
+        Path file = Files.createTempFile("uwallet", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(name))
+                    events.add(event);
+            }
+            return events;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testAccountLoadHitIsRecorded() throws NoSuchObjectInDatabaseException, IOException {
+        Account acc = new Account("mymoney", "JFR1", "wallet", "US", "0", 0);
+
+        Recording recording = new Recording();
+        recording.enable("uwallet.AccountLoad").withThreshold(java.time.Duration.ZERO);
+        recording.start();
+        assert( Account.loadAccount("JFR1") == acc );
+        recording.stop();
+
+        List<RecordedEvent> events = eventsOf(recording, "uwallet.AccountLoad");
+        recording.close();
+        assert( events.size() == 1 );
+        assert( events.get(0).getString("accountId").equals("JFR1") );
+        assert( events.get(0).getBoolean("hit") );
+        assert( events.get(0).getInt("scanned") >= 1 );
+    }
+
+    @Test
+    public void testStorageLockHoldIsRecorded() throws IOException {
+        StorageLock lock = new StorageLock();
+
+        Recording recording = new Recording();
+        recording.enable("uwallet.StorageLockHold");
+        recording.start();
+        long started = lock.acquire(StorageOperation.GET_WALLET);
+        lock.release(StorageOperation.GET_WALLET, started);
+        recording.stop();
+
+        List<RecordedEvent> events = eventsOf(recording, "uwallet.StorageLockHold");
+        recording.close();
+        assert( events.size() == 1 );
+        assert( events.get(0).getString("operation").equals("getWallet") );
+        assert( events.get(0).getLong("waited") == 0 );
+        assert( events.get(0).getLong("held") >= 0 );
+    }
+
+    @Test
+    public void testNothingIsRecordedWhenDisabled() throws NoSuchObjectInDatabaseException, IOException {
+        Account acc = new Account("mymoney", "JFR2", "wallet", "US", "0", 0);
+
+        Recording recording = new Recording();
+        recording.disable("uwallet.AccountLoad");
+        recording.start();
+        Account.loadAccount("JFR2");
+        recording.stop();
+
+        assert( eventsOf(recording, "uwallet.AccountLoad").isEmpty() );
+        recording.close();
+    }
+}
@@ -0,0 +1,49 @@
+package uwallet;
+
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverEveryValueContiguously() {
+        for (int bucket = 0; bucket < 3711; bucket++) {
+            assert( LatencyHistogram.lowestValueOf(bucket + 1) == LatencyHistogram.highestValueOf(bucket) + 1 );
+            assert( LatencyHistogram.bucketOf(LatencyHistogram.lowestValueOf(bucket)) == bucket );
+            assert( LatencyHistogram.bucketOf(LatencyHistogram.highestValueOf(bucket)) == bucket );
+        }
+        assert( LatencyHistogram.bucketOf(Long.MAX_VALUE) == 3711 );
+    }
+
+    @Test
+    public void testPercentilesAreWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100000; value++)
+            histogram.record(value * 1000);
+
+        LatencySnapshot snapshot = histogram.snapshot();
+        assert( snapshot.getCount() == 100000 );
+        assert( snapshot.getMax() == 100000000L );
+        assert( Math.abs(snapshot.getMean() - 50000500.0) < 1.0 );
+        assert( Math.abs(snapshot.getP50() - 50000000L) <= 50000000L / 64 );
+        assert( Math.abs(snapshot.getP99() - 99000000L) <= 99000000L / 64 );
+        assert( snapshot.getValueAtPercentile(100.0) == 100000000L );
+    }
+
+    @Test
+    public void testEmptyAndResetHistograms() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assert( histogram.snapshot().getCount() == 0 );
+        assert( histogram.snapshot().getP99() == 0 );
+
+        histogram.record(42);
+        histogram.record(-5);
+        LatencySnapshot snapshot = histogram.snapshot();
+        assert( snapshot.getCount() == 2 );
+        assert( snapshot.getValueAtPercentile(50.0) == 0 );
+        assert( snapshot.getMax() == 42 );
+
+        histogram.reset();
+        assert( histogram.snapshot().getCount() == 0 );
+        assert( histogram.snapshot().getMax() == 0 );
+    }
+}
@@ -0,0 +1,42 @@
+package uwallet;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+public class RecurrenceTest {
+
+    private static Timestamp date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, 9, 0);
+        return new Timestamp(calendar.getTimeInMillis());
+    }
+
+    @Test
+    public void testMonthlyOccurrencesAreCountedFromTheFirst() {
+        Timestamp first = date(2024, Calendar.JANUARY, 31);
+        assert( Recurrence.MONTHLY.due(first, 0).equals(first) );
+        assert( Recurrence.MONTHLY.due(first, 1).equals(date(2024, Calendar.FEBRUARY, 29)) );
+        assert( Recurrence.MONTHLY.due(first, 2).equals(date(2024, Calendar.MARCH, 31)) );
+        assert( Recurrence.WEEKLY.due(first, 2).equals(date(2024, Calendar.FEBRUARY, 14)) );
+        assert( Recurrence.DAILY.due(first, 1).equals(date(2024, Calendar.FEBRUARY, 1)) );
+    }
+
+    @Test
+    public void testMissedOccurrencesAreSkipped() {
+        ScheduledTransfer transfer = new ScheduledTransfer("ST", "W", "A", "B", BigDecimal.ONE, "N/A",
+                date(2024, Calendar.JANUARY, 1), Recurrence.DAILY, 0);
+        ScheduledTransfer next = transfer.after(date(2024, Calendar.JANUARY, 1).getTime());
+        assert( next.getOccurrence() == 1 );
+        next = transfer.after(date(2024, Calendar.JANUARY, 10).getTime() + 1);
+        assert( next.getOccurrence() == 10 );
+        assert( next.getDue().equals(date(2024, Calendar.JANUARY, 11)) );
+
+        ScheduledTransfer once = new ScheduledTransfer("ST", "W", "A", "B", BigDecimal.ONE, "N/A",
+                date(2024, Calendar.JANUARY, 1), Recurrence.ONCE, 0);
+        assert( once.after(System.currentTimeMillis()) == null );
+    }
+}
@@ -0,0 +1,59 @@
+package uwallet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class TimingWheelTest {
+
+    @Test
+    public void testItemsExpireAtTheirTick(){
+        TimingWheel<String> wheel = new TimingWheel<String>(10, 0);
+        wheel.schedule("soon", 25);
+        wheel.schedule("later", 100);
+        wheel.schedule("past", -5);
+        assert( wheel.size() == 3 );
+
+        List<String> expired = wheel.advance(0);
+        assert( expired.size() == 1 && expired.get(0).equals("past") );
+        assert( wheel.advance(20).isEmpty() );
+        expired = wheel.advance(30);
+        assert( expired.size() == 1 && expired.get(0).equals("soon") );
+        assert( wheel.advance(99).isEmpty() );
+        expired = wheel.advance(100);
+        assert( expired.size() == 1 && expired.get(0).equals("later") );
+        assert( wheel.size() == 0 );
+    }
+
+    @Test
+    public void testItemsCascadeFromEveryWheel(){
+        TimingWheel<Long> wheel = new TimingWheel<Long>(1, 0);
+        long[] deadlines = {1, 63, 64, 65, 4095, 4096, 4097, 262143, 262144, 300000,
+                16777215, 16777216, 16777217, 40000000};
+        for (long deadline : deadlines)
+            wheel.schedule(deadline, deadline);
+
+        for (long deadline : deadlines) {
+            //nothing is returned early
+            assert( wheel.advance(deadline - 1).isEmpty() );
+            List<Long> expired = wheel.advance(deadline);
+            assert( expired.size() == 1 && expired.get(0) == deadline );
+        }
+        assert( wheel.size() == 0 );
+    }
+
+    @Test
+    public void testSchedulingWhileRunning(){
+        TimingWheel<Integer> wheel = new TimingWheel<Integer>(5, 1000);
+        Set<Integer> expired = new HashSet<Integer>();
+        for (int i = 0; i < 1000; i++) {
+            wheel.schedule(i, 1000 + i * 7L + 3000);
+            expired.addAll(wheel.advance(1000 + i * 5L));
+        }
+        expired.addAll(wheel.advance(1000 + 1000 * 7L + 3000));
+        assert( expired.size() == 1000 );
+        assert( wheel.size() == 0 );
+    }
+}
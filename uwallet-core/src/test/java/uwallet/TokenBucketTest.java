@@ -0,0 +1,65 @@
+package uwallet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenSteadyRate() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 5, now);
+        for (int i = 0; i < 5; i++)
+            assert( bucket.tryAcquire(now) );
+        assert( !bucket.tryAcquire(now) );
+        assert( !bucket.isFull(now) );
+
+        //one token is back every tenth of a second
+        assert( !bucket.tryAcquire(now + SECOND / 20) );
+        assert( bucket.tryAcquire(now + SECOND / 10) );
+        assert( !bucket.tryAcquire(now + SECOND / 10) );
+
+        //an idle bucket fills up to its burst, not beyond
+        long later = now + 10 * SECOND;
+        assert( bucket.isFull(later) );
+        for (int i = 0; i < 5; i++)
+            assert( bucket.tryAcquire(later) );
+        assert( !bucket.tryAcquire(later) );
+    }
+
+    @Test
+    public void testReleasedTokenCanBeTakenAgain() {
+        long now = 1000 * SECOND;
+        TokenBucket bucket = new TokenBucket(1, 1, now);
+        assert( bucket.tryAcquire(now) );
+        assert( !bucket.tryAcquire(now) );
+        bucket.release();
+        assert( bucket.tryAcquire(now) );
+    }
+
+    @Test
+    public void testConcurrentTakersNeverExceedTheBurst() throws InterruptedException {
+        final long now = 1000 * SECOND;
+        final TokenBucket bucket = new TokenBucket(1, 100, now);
+        final AtomicInteger taken = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++)
+                        if (bucket.tryAcquire(now))
+                            taken.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads)
+            thread.join();
+        assert( taken.get() == 100 );
+    }
+}
@@ -0,0 +1,25 @@
+package uwallet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+public class TransactionSearchTest {
+
+    @Test
+    public void testTermsAreLowerCaseWordsWithoutAccents() {
+        assert( TransactionSearch.terms("Café, SHOP #42 shop").equals(Arrays.asList("cafe", "shop", "42")) );
+        assert( TransactionSearch.terms("  -- ").isEmpty() );
+        assert( TransactionSearch.terms("a b c d e f g h i j k l m n o p q r").size() == TransactionSearch.MAX_TERMS );
+    }
+
+    @Test
+    public void testEveryTermMustStartAWord() {
+        List<String> terms = TransactionSearch.terms("coff shop");
+        assert( TransactionSearch.score("Coffee Shop #42", terms) == 2 );
+        assert( TransactionSearch.score("Coffee", terms) == 0 );
+        assert( TransactionSearch.score("decaf coffee shop", TransactionSearch.terms("caf")) == 0 );
+        assert( TransactionSearch.score("coffee, coffee shop", terms) == 3 );
+    }
+}
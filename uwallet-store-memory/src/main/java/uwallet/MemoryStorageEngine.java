@@ -0,0 +1,488 @@
+package uwallet;
+
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A storage engine that keeps the records in the heap of the JVM. Nothing survives a restart, so it is meant for
+ * tests, benchmarks and applications that only need the wallets for the life of the process. It has no colder
+ * tier, transactions are never archived. Selected with -Duwallet.storage=memory.
+ *
+ * Records are kept as copies of the values the sqlite engine would write, never as the live objects, so loading
+ * goes through the same Account and Transaction constructors as it does for any other engine.
+ *
+ * RI: every account in transactions and in walletAccounts is in accounts, accountIds holds the keys of accounts. Only used by one thread at a time -
+ *     uWalletDatabase holds the storage lock around every call - except for the sizes read by describe().
+ */
+public final class MemoryStorageEngine implements StorageEngine {
+
+    private static class AccountRecord {
+        final String accountName;
+        final int lastTxId;
+        final String regionCode;
+        final String numericalBalance;
+        final String walletId;
+        final String heldBalance;
+
+        AccountRecord(Account account) {
+            this.accountName = account.getAccountName();
+            this.lastTxId = account.getLastTxId();
+            this.regionCode = account.getRegionCode();
+            this.numericalBalance = account.getCurrentBalance().toString();
+            this.walletId = account.getParentWalletUID();
+            this.heldBalance = account.getHeldBalance().toString();
+        }
+    }
+
+    private static class TransactionRecord {
+        final Timestamp txtime;
+        final String uuid;
+        final long seq;
+        final double amount;
+        final String txtype;
+        final String endingBalanceNumeric;
+        final String description;
+
+        TransactionRecord(Transaction transaction) {
+            this.txtime = transaction.getTimestamp();
+            this.uuid = transaction.uuid;
+            this.seq = transaction.sequence;
+            this.amount = transaction.amount;
+            this.txtype = transaction.getTXSymbol();
+            this.endingBalanceNumeric = transaction.endingBalance.toString();
+            this.description = transaction.description;
+        }
+    }
+
+    private final HashMap<String, AccountRecord> accounts = new HashMap<String, AccountRecord>();
+    //per account, by sequence
+    private final HashMap<String, TreeMap<Long, TransactionRecord>> transactions = new HashMap<String, TreeMap<Long, TransactionRecord>>();
+    //wallet id to region code
+    private final HashMap<String, String> wallets = new HashMap<String, String>();
+    //wallet id to the names and ids of its accounts
+    private final HashMap<String, HashMap<String, String>> walletAccounts = new HashMap<String, HashMap<String, String>>();
+    //the ids of accounts, in order, to page through them
+    private final TreeSet<String> accountIds = new TreeSet<String>();
+    //by job, checkpoints are immutable and can be kept as is
+    private final HashMap<String, JobCheckpoint> checkpoints = new HashMap<String, JobCheckpoint>();
+    //uuid of either leg to the conversion, which is immutable and can be kept as is
+    private final HashMap<String, CurrencyConversion> conversions = new HashMap<String, CurrencyConversion>();
+    //by id, in order to page through them, holds are immutable and can be kept as is
+    private final TreeMap<String, Hold> holds = new TreeMap<String, Hold>();
+    //by id, in order to page through them, transfers are immutable and can be kept as is
+    private final TreeMap<String, ScheduledTransfer> scheduledTransfers = new TreeMap<String, ScheduledTransfer>();
+    //transfer id to its runs, in the order they were made
+    private final HashMap<String, List<TransferRun>> transferRuns = new HashMap<String, List<TransferRun>>();
+
+    public MemoryStorageEngine() {
+    }
+
+    @Override
+    public String getName() {
+        return "memory";
+    }
+
+    @Override
+    public void open() {
+    }
+
+    /**
+     * Nothing to release, the records stay in memory until the engine is flushed or the JVM exits.
+     */
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void insertAccount(Account account) {
+        AccountRecord record = new AccountRecord(account);
+        if (this.accounts.put(account.getAccountID(), record) == null)
+            this.accountIds.add(account.getAccountID());
+
+        HashMap<String, String> names = this.walletAccounts.get(record.walletId);
+        if (names == null) {
+            names = new HashMap<String, String>();
+            this.walletAccounts.put(record.walletId, names);
+        }
+        names.put(record.accountName, account.getAccountID());
+    }
+
+    @Override
+    public Account getAccount(String identifier) throws NoSuchObjectInDatabaseException {
+        AccountRecord record = this.accounts.get(identifier);
+        if (record == null)
+            throw new NoSuchObjectInDatabaseException("No account with identifier " + identifier + " found");
+        return new Account(record.accountName, identifier, record.walletId, record.regionCode,
+                record.numericalBalance, record.lastTxId, record.heldBalance);
+    }
+
+    @Override
+    public List<String> getAccountIdsAfter(String afterId, int limit) {
+        List<String> ids = new ArrayList<String>(Math.min(limit, this.accountIds.size()));
+        for (String id : afterId == null ? this.accountIds : this.accountIds.tailSet(afterId, false)) {
+            if (ids.size() >= limit)
+                break;
+            ids.add(id);
+        }
+        return ids;
+    }
+
+    @Override
+    public List<Account> getAccounts(List<String> identifiers) {
+        List<Account> loaded = new ArrayList<Account>(identifiers.size());
+        for (int i = 0; i < identifiers.size(); i++) {
+            AccountRecord record = this.accounts.get(identifiers.get(i));
+            if (record != null)
+                loaded.add(new Account(record.accountName, identifiers.get(i), record.walletId, record.regionCode,
+                        record.numericalBalance, record.lastTxId, record.heldBalance));
+        }
+        return loaded;
+    }
+
+    @Override
+    public void insertTransaction(Transaction transaction) {
+        String account = transaction.involvedAccount.getAccountID();
+        TreeMap<Long, TransactionRecord> history = this.transactions.get(account);
+        if (history == null) {
+            history = new TreeMap<Long, TransactionRecord>();
+            this.transactions.put(account, history);
+        }
+        history.put(transaction.sequence, new TransactionRecord(transaction));
+    }
+
+    @Override
+    public void commit(Account account, List<Transaction> transactions) {
+        //nothing in between can fail, so this is as atomic as the sqlite transaction
+        this.insertAccount(account);
+        for (int i = 0; i < transactions.size(); i++)
+            this.insertTransaction(transactions.get(i));
+    }
+
+    @Override
+    public void commitBatch(List<Account> accounts, List<Transaction> transactions, JobCheckpoint checkpoint) {
+        for (int i = 0; i < accounts.size(); i++)
+            this.insertAccount(accounts.get(i));
+        for (int i = 0; i < transactions.size(); i++)
+            this.insertTransaction(transactions.get(i));
+        this.checkpoints.put(checkpoint.job, checkpoint);
+    }
+
+    @Override
+    public JobCheckpoint getCheckpoint(String job) {
+        return this.checkpoints.get(job);
+    }
+
+    @Override
+    public void commitHold(Account account, Hold hold) {
+        this.insertAccount(account);
+        this.holds.put(hold.getId(), hold);
+    }
+
+    @Override
+    public void commitHoldRelease(Account account, List<Transaction> transactions, String holdId) {
+        this.commit(account, transactions);
+        this.holds.remove(holdId);
+    }
+
+    @Override
+    public Hold getHold(String holdId) throws NoSuchObjectInDatabaseException {
+        Hold hold = this.holds.get(holdId);
+        if (hold == null)
+            throw new NoSuchObjectInDatabaseException("No hold with identifier " + holdId + " found");
+        return hold;
+    }
+
+    @Override
+    public List<Hold> getHoldsAfter(String afterId, int limit) {
+        List<Hold> page = new ArrayList<Hold>(Math.min(limit, this.holds.size()));
+        for (Hold hold : afterId == null ? this.holds.values() : this.holds.tailMap(afterId, false).values()) {
+            if (page.size() >= limit)
+                break;
+            page.add(hold);
+        }
+        return page;
+    }
+
+    @Override
+    public void insertScheduledTransfer(ScheduledTransfer transfer) {
+        this.scheduledTransfers.put(transfer.getId(), transfer);
+    }
+
+    @Override
+    public ScheduledTransfer getScheduledTransfer(String transferId) throws NoSuchObjectInDatabaseException {
+        ScheduledTransfer transfer = this.scheduledTransfers.get(transferId);
+        if (transfer == null)
+            throw new NoSuchObjectInDatabaseException("No scheduled transfer with identifier " + transferId + " found");
+        return transfer;
+    }
+
+    @Override
+    public boolean deleteScheduledTransfer(String transferId) {
+        return this.scheduledTransfers.remove(transferId) != null;
+    }
+
+    @Override
+    public List<ScheduledTransfer> getScheduledTransfersAfter(String afterId, int limit) {
+        List<ScheduledTransfer> page = new ArrayList<ScheduledTransfer>(Math.min(limit, this.scheduledTransfers.size()));
+        for (ScheduledTransfer transfer : afterId == null ? this.scheduledTransfers.values()
+                : this.scheduledTransfers.tailMap(afterId, false).values()) {
+            if (page.size() >= limit)
+                break;
+            page.add(transfer);
+        }
+        return page;
+    }
+
+    @Override
+    public void commitTransfers(List<Account> accounts, List<Transaction> transactions, List<TransferRun> runs) {
+        for (Account account : accounts)
+            this.insertAccount(account);
+        for (Transaction transaction : transactions)
+            this.insertTransaction(transaction);
+        for (TransferRun run : runs) {
+            List<TransferRun> made = this.transferRuns.get(run.getTransferId());
+            if (made == null) {
+                made = new ArrayList<TransferRun>();
+                this.transferRuns.put(run.getTransferId(), made);
+            }
+            //the next occurrence is only carried to the engine, it is not part of the record
+            made.add(new TransferRun(run.getTransferId(), run.getDue(), run.getExecuted(), run.isSucceeded(),
+                    run.getDetail(), null));
+            if (run.next != null)
+                this.scheduledTransfers.put(run.getTransferId(), run.next);
+            else
+                this.scheduledTransfers.remove(run.getTransferId());
+        }
+    }
+
+    @Override
+    public List<TransferRun> getTransferRuns(String transferId) {
+        List<TransferRun> made = this.transferRuns.get(transferId);
+        return made == null ? new ArrayList<TransferRun>() : new ArrayList<TransferRun>(made);
+    }
+
+    @Override
+    public void commitTransfer(Transaction debit, Transaction credit) {
+        this.insertAccount(debit.involvedAccount);
+        this.insertTransaction(debit);
+        this.insertAccount(credit.involvedAccount);
+        this.insertTransaction(credit);
+    }
+
+    @Override
+    public void commitConversion(Transaction debit, Transaction credit, CurrencyConversion conversion) {
+        this.insertAccount(debit.involvedAccount);
+        this.insertTransaction(debit);
+        this.insertAccount(credit.involvedAccount);
+        this.insertTransaction(credit);
+        this.conversions.put(conversion.getDebitUUID(), conversion);
+        this.conversions.put(conversion.getCreditUUID(), conversion);
+    }
+
+    @Override
+    public CurrencyConversion getConversion(String transactionUUID) throws NoSuchObjectInDatabaseException {
+        CurrencyConversion conversion = this.conversions.get(transactionUUID);
+        if (conversion == null)
+            throw new NoSuchObjectInDatabaseException("No conversion with a transaction " + transactionUUID + " found");
+        return conversion;
+    }
+
+    @Override
+    public List<Transaction> getTransactionsBefore(String accountIdentifier, long sequence, int N) throws NoSuchObjectInDatabaseException {
+        List<Transaction> pastNTransactions = new ArrayList<Transaction>();
+        TreeMap<Long, TransactionRecord> history = this.transactions.get(accountIdentifier);
+        if (history == null)
+            return pastNTransactions;
+
+        for (TransactionRecord record : history.headMap(sequence, false).descendingMap().values()) {
+            if (pastNTransactions.size() >= N)
+                break;
+            Transaction tx = transactionOf(accountIdentifier, record);
+            if (tx != null)
+                pastNTransactions.add(tx);
+        }
+        return pastNTransactions;
+    }
+
+    /**
+     * Reads every transaction of the accounts searched, there is no index: the matches are ranked by the number
+     * of words the terms start, then newest first.
+     */
+    @Override
+    public List<Transaction> searchTransactions(String walletId, String accountId, List<String> terms, int offset, int limit) {
+        List<String> searched = new ArrayList<String>();
+        if (accountId != null) {
+            searched.add(accountId);
+        } else if (this.walletAccounts.containsKey(walletId)) {
+            searched.addAll(this.walletAccounts.get(walletId).values());
+        }
+
+        final Map<TransactionRecord, Integer> scores = new HashMap<TransactionRecord, Integer>();
+        final Map<TransactionRecord, String> accountsOf = new HashMap<TransactionRecord, String>();
+        for (String id : searched) {
+            TreeMap<Long, TransactionRecord> history = this.transactions.get(id);
+            if (history == null)
+                continue;
+            for (TransactionRecord record : history.values()) {
+                int score = TransactionSearch.score(record.description, terms);
+                if (score > 0) {
+                    scores.put(record, score);
+                    accountsOf.put(record, id);
+                }
+            }
+        }
+
+        List<TransactionRecord> matches = new ArrayList<TransactionRecord>(scores.keySet());
+        Collections.sort(matches, new Comparator<TransactionRecord>() {
+            @Override
+            public int compare(TransactionRecord a, TransactionRecord b) {
+                int byScore = scores.get(b).compareTo(scores.get(a));
+                if (byScore != 0)
+                    return byScore;
+                int byTime = b.txtime.compareTo(a.txtime);
+                return byTime != 0 ? byTime : a.uuid.compareTo(b.uuid);
+            }
+        });
+
+        List<Transaction> page = new ArrayList<Transaction>();
+        for (int i = offset; i < matches.size() && page.size() < limit; i++) {
+            try {
+                Transaction tx = transactionOf(accountsOf.get(matches.get(i)), matches.get(i));
+                if (tx != null)
+                    page.add(tx);
+            } catch (NoSuchObjectInDatabaseException e) {
+                //the transaction of an account that is no longer on record is not a match
+            }
+        }
+        return page;
+    }
+
+    private static Transaction transactionOf(String accountIdentifier, TransactionRecord record)
+            throws NoSuchObjectInDatabaseException {
+        if (record.txtype.equals("DR"))
+            return new DepositTransaction(record.txtime, record.uuid, record.seq,
+                    accountIdentifier, record.amount, record.endingBalanceNumeric, record.description);
+        if (record.txtype.equals("CR"))
+            return new WithdrawalTransaction(record.txtime, record.uuid, record.seq,
+                    accountIdentifier, record.amount, record.endingBalanceNumeric, record.description);
+        return null;
+    }
+
+    /**
+     * Copies the references to the records of every account while holding the storage lock; records are never
+     * modified once created, so the snapshot is then read from the copies without it. Costs a reference per
+     * transaction on record for as long as the snapshot is open.
+     */
+    @Override
+    public LedgerSnapshot openLedgerSnapshot() {
+        final List<String> ids = new ArrayList<String>(this.accountIds);
+        final List<AccountRecord> records = new ArrayList<AccountRecord>(ids.size());
+        final List<List<TransactionRecord>> histories = new ArrayList<List<TransactionRecord>>(ids.size());
+        for (String id : ids) {
+            records.add(this.accounts.get(id));
+            TreeMap<Long, TransactionRecord> history = this.transactions.get(id);
+            histories.add(history == null ? new ArrayList<TransactionRecord>() : new ArrayList<TransactionRecord>(history.values()));
+        }
+
+        return new LedgerSnapshot() {
+            private int next = 0;
+
+            @Override
+            public AccountLedger next() {
+                if (this.next >= ids.size())
+                    return null;
+                AccountRecord record = records.get(this.next);
+                AccountLedger ledger = new AccountLedger(ids.get(this.next), record.numericalBalance,
+                        record.lastTxId, 0, "0");
+                for (TransactionRecord transaction : histories.get(this.next))
+                    ledger.entries.add(new AccountLedger.Entry(transaction.seq, transaction.txtype,
+                            transaction.amount, transaction.endingBalanceNumeric));
+                this.next += 1;
+                return ledger;
+            }
+
+            @Override
+            public void close() {
+                this.next = ids.size();
+            }
+        };
+    }
+
+    /**
+     * There is no colder tier to move transactions to, nothing is archived.
+     *
+     * @return 0
+     */
+    @Override
+    public int archiveTransactions(String accountIdentifier, Timestamp horizon) {
+        return 0;
+    }
+
+    /**
+     * @return an empty list, as no transaction can be archived.
+     */
+    @Override
+    public List<String> getAccountsWithTransactionsBefore(Timestamp horizon) {
+        return new ArrayList<String>();
+    }
+
+    @Override
+    public void compact() {
+    }
+
+    @Override
+    public void insertWallet(Wallet wallet) {
+        this.wallets.put(wallet.getUID(), wallet.getRegionCode());
+    }
+
+    @Override
+    public Wallet getWallet(String walletUID) throws NoSuchObjectInDatabaseException {
+        String regionCode = this.wallets.get(walletUID);
+        if (regionCode == null)
+            throw new NoSuchObjectInDatabaseException("No wallet with identifier " + walletUID + " found");
+
+        HashMap<String, String> names = this.walletAccounts.get(walletUID);
+        return new Wallet(walletUID, regionCode,
+                names == null ? new HashMap<String, String>() : new HashMap<String, String>(names));
+    }
+
+    @Override
+    public boolean walletHasAccounts(String walletUID) {
+        Map<String, String> names = this.walletAccounts.get(walletUID);
+        return names != null && !names.isEmpty();
+    }
+
+    /**
+     * Reports the number of accounts, wallets and accounts with a history. HashMap.size() only reads a field, so
+     * this is safe without the storage lock; the counts may be slightly behind.
+     */
+    @Override
+    public void describe(Map<String, String> diagnostics) {
+        diagnostics.put("accounts", String.valueOf(this.accounts.size()));
+        diagnostics.put("wallets", String.valueOf(this.wallets.size()));
+        diagnostics.put("accountsWithHistory", String.valueOf(this.transactions.size()));
+    }
+
+    @Override
+    public void flush() {
+        this.accounts.clear();
+        this.transactions.clear();
+        this.wallets.clear();
+        this.walletAccounts.clear();
+        this.conversions.clear();
+        this.accountIds.clear();
+        this.checkpoints.clear();
+        this.holds.clear();
+        this.scheduledTransfers.clear();
+        this.transferRuns.clear();
+    }
+}
@@ -0,0 +1,97 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.util.List;
+
+public class MemoryStorageEngineTest {
+
+    @BeforeAll
+    static void flushDb(){
+        uWalletDatabase.flush();
+    }
+
+    @Test
+    public void testIsTheEngineInUse() {
+        //the only engine on the class path of this module
+        assert( new MemoryStorageEngine().getName().equals("memory") );
+        uWalletDatabase.useEngine("memory");
+    }
+
+    @Test
+    public void testInsertingAndLoadingAccount() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+        Account account = new Account("chequing", "MEM1", "wallet", "US");
+        account.deposit(300.0, "deposit");
+        account = null;
+        System.gc();
+
+        Account loaded = uWalletDatabase.getAccount("MEM1");
+        assert( loaded.getFormattedBalance().equals("$300.00") );
+        assert( loaded.getLastTxId() == 1 );
+        assert( loaded.getParentWalletUID().equals("wallet") );
+        assert( loaded.getPastTransactions(1).get(0).getUUID().equals("MEM1TX1") );
+        assert( loaded.getPastTransactions(1).get(0).getDescription().equals("deposit") );
+    }
+
+    @Test
+    public void testUnknownAccountIsNotFound() {
+        try {
+            uWalletDatabase.getAccount("MEM-UNKNOWN");
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+            assert( true );
+        }
+    }
+
+    @Test
+    public void testPagingThroughHistory() throws Exception {
+        Account account = new Account("savings", "MEM2", "wallet", "US");
+        for (int i = 1; i <= 5; i++)
+            account.deposit(i, "deposit " + i);
+
+        List<Transaction> newest = uWalletDatabase.getNLastTransactions("MEM2", 2);
+        assert( newest.size() == 2 );
+        assert( newest.get(0).getSequence() == 5 );
+        assert( newest.get(1).getSequence() == 4 );
+
+        List<Transaction> older = uWalletDatabase.getTransactionsBefore("MEM2", 4, 10);
+        assert( older.size() == 3 );
+        assert( older.get(0).getSequence() == 3 );
+        assert( older.get(2).getSequence() == 1 );
+    }
+
+    @Test
+    public void testWalletKeepsItsAccounts() throws Exception {
+        Wallet wallet = new Wallet("MEMWALLET", "US");
+        wallet.createNewAccount("savings");
+        wallet.depositToAccount(100, "savings", "test");
+        assert( uWalletDatabase.walletHasAccounts("MEMWALLET") );
+
+        Wallet loaded = uWalletDatabase.getWallet("MEMWALLET");
+        assert( loaded.getRegionCode().equals("US") );
+        assert( loaded.getAccountBalanceFormatted("savings").equals("$100.00") );
+    }
+
+    @Test
+    public void testSearchingDescriptions() throws Exception {
+        Wallet wallet = new Wallet("MEMSEARCH", "US");
+        wallet.createNewAccount("chequing");
+        wallet.createNewAccount("card");
+        wallet.depositToAccount(100, "chequing", "Payroll ACME Corp");
+        wallet.withdrawFromAccount(4.5, "chequing", "Café Coffee Shop");
+        wallet.depositToAccount(10, "card", "coffee refund");
+
+        List<Transaction> found = wallet.searchTransactions("coffee", 0, 10);
+        assert( found.size() == 2 );
+        found = wallet.searchAccountTransactions("chequing", "cafe sho", 0, 10);
+        assert( found.size() == 1 );
+        assert( found.get(0).getDescription().equals("Café Coffee Shop") );
+        assert( found.get(0).getAmount() == 4.5 );
+
+        assert( wallet.searchTransactions("coffee", 1, 1).size() == 1 );
+        assert( wallet.searchTransactions("groceries", 0, 10).isEmpty() );
+    }
+}
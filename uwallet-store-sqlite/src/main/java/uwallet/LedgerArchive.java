@@ -0,0 +1,223 @@
+package uwallet;
+
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.io.*;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cold storage for transactions that have been moved out of the hot database. Each account gets its own
+ * directory of compressed, immutable segment files. A segment is written once by the archival job and never
+ * modified afterwards - new archival runs always create a new segment with the next index. Inside a segment
+ * records are stored newest first so that reading the last N transactions can stop as soon as it has enough.
+ *
+ * The hot database keeps a checkpoint row per account (see SqliteStorageEngine) that records how many segments exist,
+ * which is what makes a segment "committed". A segment file with a higher index than the checkpoint is the
+ * leftover of an interrupted run and is discarded before the next segment is written.
+ *
+ * RI: archiveDir is where the per account segment directories are. Segment indexes for an account start at 1 and
+ *     are contiguous.
+ */
+class LedgerArchive {
+
+    private final static File archiveDir = new File("sqlite", "archive");
+    final static int MAGIC = 0x55574c53; // "UWLS"
+    //version 1 segments predate transaction sequences, version 2 stores the sequence after the uuid
+    final static int FORMAT_VERSION = 2;
+
+    /**
+     * Streams archived rows into a new segment. The segment only becomes visible under its final name when
+     * close() is called, so readers never see a partially written segment.
+     */
+    static class SegmentWriter implements Closeable {
+
+        private final File target;
+        private final File tmp;
+        private final DataOutputStream out;
+        private int count = 0;
+
+        private SegmentWriter(File target) throws IOException {
+            this.target = target;
+            this.tmp = new File(target.getPath() + ".tmp");
+            this.out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+            this.out.writeInt(MAGIC);
+            this.out.writeInt(FORMAT_VERSION);
+        }
+
+        /**
+         * Appends a single transaction row to the segment. Rows must be appended newest first.
+         */
+        void append(Timestamp txtime, String uuid, long sequence, double amount, String txtype,
+                    String endingBalanceNumeric, String description) throws IOException {
+            this.out.writeBoolean(true);
+            this.out.writeLong(txtime.getTime());
+            this.out.writeUTF(uuid);
+            this.out.writeLong(sequence);
+            this.out.writeDouble(amount);
+            this.out.writeUTF(txtype);
+            this.out.writeUTF(endingBalanceNumeric);
+            this.out.writeUTF(description);
+            this.count += 1;
+        }
+
+        /**
+         * @return the number of rows appended so far.
+         */
+        int getCount(){
+            return this.count;
+        }
+
+        /**
+         * Seals the segment and moves it to its final name.
+         */
+        @Override
+        public void close() throws IOException {
+            this.out.writeBoolean(false);
+            this.out.close();
+            Files.move(this.tmp.toPath(), this.target.toPath(),
+                    StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.target.setReadOnly();
+        }
+    }
+
+    /**
+     * A segment opened for reading, positioned at its first row.
+     */
+    static class SegmentReader implements Closeable {
+
+        final DataInputStream in;
+        //the format version from the header of the segment
+        final int version;
+
+        private SegmentReader(DataInputStream in, int version) {
+            this.in = in;
+            this.version = version;
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.in.close();
+        }
+    }
+
+    /**
+     * Opens a writer for the segment with the given index for an account. Any segment with an index equal or
+     * higher than segmentIndex is the leftover of an interrupted archival run and is removed first.
+     *
+     * @param accountIdentifier the account the segment belongs to
+     * @param segmentIndex the index of the new segment, one more than the number of committed segments
+     * @return a SegmentWriter that must be closed for the segment to be readable
+     */
+    static SegmentWriter openSegment(String accountIdentifier, int segmentIndex) throws IOException {
+        File dir = accountDir(accountIdentifier);
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Could not create archive directory " + dir);
+
+        for (int i = segmentIndex; segmentFile(accountIdentifier, i).exists(); i++)
+            discard(segmentFile(accountIdentifier, i));
+
+        return new SegmentWriter(segmentFile(accountIdentifier, segmentIndex));
+    }
+
+    /**
+     * Appends up to N archived transactions with a sequence lower than the given one, newest first, to the given
+     * list.
+     *
+     * @param accountIdentifier the account whose archive should be read
+     * @param segments the number of committed segments for the account, as recorded in its checkpoint
+     * @param sequence only transactions with a sequence strictly lower than this one are appended
+     * @param N the maximum number of transactions to append
+     * @param transactions the list the transactions are appended to
+     */
+    static void readTransactionsBefore(String accountIdentifier, int segments, long sequence, int N,
+                                       List<Transaction> transactions)
+            throws IOException, NoSuchObjectInDatabaseException {
+        int remaining = N;
+        for (int i = segments; i > 0 && remaining > 0; i--) {
+            try (SegmentReader segment = openForRead(segmentFile(accountIdentifier, i))) {
+                DataInputStream in = segment.in;
+                int version = segment.version;
+                while (remaining > 0 && in.readBoolean()) {
+                    Timestamp timestamp = new Timestamp(in.readLong());
+                    String uuid = in.readUTF();
+                    long seq = version >= 2 ? in.readLong()
+                            : Transaction.sequenceOf(uuid.substring(accountIdentifier.length()));
+                    double amount = in.readDouble();
+                    String txtype = in.readUTF();
+                    String endingBalance = in.readUTF();
+                    String description = in.readUTF();
+
+                    if (seq >= sequence)
+                        continue;
+                    if (txtype.equals("DR"))
+                        transactions.add(new DepositTransaction(timestamp, uuid, seq, accountIdentifier,
+                                amount, endingBalance, description));
+                    if (txtype.equals("CR"))
+                        transactions.add(new WithdrawalTransaction(timestamp, uuid, seq, accountIdentifier,
+                                amount, endingBalance, description));
+                    remaining -= 1;
+                }
+            }
+        }
+    }
+
+    /**
+     * Erases every segment of every account. WARNING THIS IS IRREVERSIBLE
+     */
+    static void deleteAll(){
+        deleteRecursively(archiveDir);
+    }
+
+    /**
+     * Opens a segment for reading and checks its header.
+     *
+     * @throws IOException if the file is not a segment, or its format version is not one that can be read
+     */
+    static SegmentReader openForRead(File segment) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(segment))));
+        if (in.readInt() != MAGIC) {
+            in.close();
+            throw new IOException(segment + " is not a ledger segment");
+        }
+        int version = in.readInt();
+        if (version < 1 || version > FORMAT_VERSION) {
+            in.close();
+            throw new IOException(segment + " has unsupported format version " + version);
+        }
+        return new SegmentReader(in, version);
+    }
+
+    private static File accountDir(String accountIdentifier){
+        try {
+            return new File(archiveDir, URLEncoder.encode(accountIdentifier, "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+            //UTF-8 is always supported
+            throw new AssertionError(e);
+        }
+    }
+
+    private static File segmentFile(String accountIdentifier, int segmentIndex){
+        return new File(accountDir(accountIdentifier), String.format("segment-%06d.gz", segmentIndex));
+    }
+
+    private static void discard(File segment) throws IOException {
+        segment.setWritable(true);
+        Files.deleteIfExists(segment.toPath());
+    }
+
+    private static void deleteRecursively(File file){
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children)
+                deleteRecursively(child);
+        }
+        file.setWritable(true);
+        file.delete();
+    }
+}
@@ -0,0 +1,143 @@
+package uwallet;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.FileHandler;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Logs the database statements that take longer than a threshold, with their parameters, the number of rows they
+ * returned or changed, their duration and the plan SQLite chose for them (EXPLAIN QUERY PLAN). The log is written
+ * to a set of rotating files, slow-queries0.log being the most recent.
+ *
+ * It is configured with system properties:
+ *      uwallet.slowquery.thresholdMillis   statements that take at least this long are logged, default 100.
+ *                                          A negative threshold turns the log off.
+ *      uwallet.slowquery.dir               the directory of the log files, default sqlite
+ *      uwallet.slowquery.limitBytes        size at which the log rotates to a new file, default 10MB
+ *      uwallet.slowquery.files             number of files kept, default 5
+ *
+ * The threshold can also be changed at runtime with setThresholdMillis.
+ */
+public final class SlowQueryLog {
+
+    private static final String PREFIX = "uwallet.slowquery.";
+
+    private static volatile long thresholdNanos = toNanos(Long.getLong(PREFIX + "thresholdMillis", 100));
+    private static final Logger logger = Logger.getLogger("uwallet.slowquery");
+    private static boolean handlerInstalled = false;
+
+    private SlowQueryLog() {
+    }
+
+    /**
+     * Changes the threshold above which statements are logged.
+     *
+     * @param millis the threshold in milliseconds, 0 logs every statement and a negative value none.
+     */
+    public static void setThresholdMillis(long millis) {
+        thresholdNanos = toNanos(millis);
+    }
+
+    /**
+     * @return the current threshold in milliseconds, negative when the log is off.
+     */
+    public static long getThresholdMillis() {
+        return thresholdNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    /**
+     * @return the file the most recent slow statements are written to.
+     */
+    static File currentLogFile() {
+        return new File(System.getProperty(PREFIX + "dir", "sqlite"), "slow-queries0.log");
+    }
+
+    /**
+     * @param nanos the time a statement took.
+     * @return true if a statement that took that long must be logged. Cheap enough to be called for every
+     * statement.
+     */
+    static boolean isSlow(long nanos) {
+        long threshold = thresholdNanos;
+        return threshold >= 0 && nanos >= threshold;
+    }
+
+    /**
+     * Logs a slow statement. Must be called while the connection is not in use by anyone else, as the plan of
+     * the statement is asked for on it.
+     *
+     * @param conn the connection the statement ran on
+     * @param sql the statement, with ? placeholders if it was prepared
+     * @param rows the number of rows it returned or changed
+     * @param nanos how long it took
+     * @param parameters the values bound to its placeholders, in order
+     */
+    static void log(Connection conn, String sql, int rows, long nanos, Object... parameters) {
+        String entry = String.format("%.3fms rows=%d sql=[%s] params=%s plan=[%s]",
+                nanos / 1e6, rows, sql, Arrays.toString(parameters), explain(conn, sql, parameters));
+        synchronized (SlowQueryLog.class) {
+            if (!handlerInstalled)
+                installHandler();
+        }
+        logger.log(Level.WARNING, entry);
+    }
+
+    private static String explain(Connection conn, String sql, Object[] parameters) {
+        StringBuilder plan = new StringBuilder();
+        try {
+            PreparedStatement stmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+            for (int i = 0; i < parameters.length; i++)
+                stmt.setObject(i + 1, parameters[i]);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                if (plan.length() > 0)
+                    plan.append("; ");
+                plan.append(rs.getString("detail"));
+            }
+            stmt.close();
+        } catch (SQLException e) {
+            plan.append("unavailable: ").append(e.getMessage());
+        }
+        return plan.toString();
+    }
+
+    private static void installHandler() {
+        handlerInstalled = true;
+        logger.setUseParentHandlers(false);
+        File dir = currentLogFile().getParentFile();
+        try {
+            if (!dir.exists())
+                dir.mkdirs();
+            FileHandler handler = new FileHandler(
+                    new File(dir, "slow-queries%g.log").getPath(),
+                    Integer.getInteger(PREFIX + "limitBytes", 10 * 1024 * 1024),
+                    Integer.getInteger(PREFIX + "files", 5),
+                    true);
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord record) {
+                    return new Timestamp(record.getMillis()) + " " + record.getMessage() + System.lineSeparator();
+                }
+            });
+            logger.addHandler(handler);
+        } catch (IOException e) {
+            //the entries still reach the logger, and with it any handler the application installs
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+        }
+    }
+
+    private static long toNanos(long millis) {
+        return millis < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
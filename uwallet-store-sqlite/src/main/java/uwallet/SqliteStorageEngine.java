@@ -0,0 +1,1772 @@
+package uwallet;
+
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ArrayList;
+import java.sql.*;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * The storage engine that keeps the records in a sqlite database, sqlite/uwallet.db in the working directory,
+ * with the transactions archived out of it in the LedgerArchive. Selected with -Duwallet.storage=sqlite, and the
+ * default when several engines are on the class path.
+ *
+ * RI: dbDir is where the squlite .db file is. conn is open between open() and close(), and only used by one
+ *     thread at a time - uWalletDatabase holds the storage lock around every call. preparedStatements only
+ *     holds statements of conn. conn is volatile only so that describe() can see whether it is open.
+ *     openSnapshots counts the ledger snapshots that were opened and not closed yet, each on its own connection.
+ *
+ */
+
+public final class SqliteStorageEngine implements StorageEngine {
+
+    private final static File dbDir = new File("sqlite");
+    private final static String dbFilename = "uwallet.db";
+    private final static String dbFile = "jdbc:sqlite:"+ dbDir + "/" + dbFilename;
+    private volatile Connection conn;
+    private final AtomicInteger openSnapshots = new AtomicInteger();
+
+    private final static String INSERT_ACCOUNT_SQL =
+            "INSERT OR REPLACE INTO Accounts (id, accountName, last_txID, regionCode, numericalBalance, " +
+                    "formattedBalance, walletId, heldBalance) values (?, ?, ?, ?, ?, ?, ?, ?)";
+    //id is an alias of the rowid that VACUUM keeps, the search index is keyed by it
+    private final static String CREATE_TRANSACTIONS_SQL =
+            "CREATE TABLE IF NOT EXISTS Transactions (" +
+                    " id                        INTEGER PRIMARY KEY, " +
+                    " txtime                    TIMESTAMP              NOT NULL, " +
+                    " uuid                      STRING UNIQUE          NOT NULL, " +
+                    " seq                       INTEGER                NOT NULL, " +
+                    " account                   STRING                 NOT NULL, " +
+                    " amountFormatted           STRING                 NOT NULL, " +
+                    " amountDouble              DOUBLE                 NOT NULL, " +
+                    " txtype                    STRING                 NOT NULL, " +
+                    " description               STRING                 NOT NULL, " +
+                    " endingBalanceFormatted    STRING                 NOT NULL, " +
+                    " endingBalanceNumeric      STRING                 NOT NULL, " +
+                    " FOREIGN KEY (account) REFERENCES Accounts(id))";
+    private final static String INSERT_TRANSACTION_SQL =
+            "INSERT OR REPLACE INTO Transactions (txtime, uuid, seq, account, amountFormatted, amountDouble, " +
+                    "txtype, endingBalanceFormatted, endingBalanceNumeric, description) values " +
+                    "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    //the search index has the id of the transaction it indexes, the entry of a transaction that is written again
+    //is removed first
+    private final static String UNINDEX_TRANSACTION_SQL =
+            "DELETE FROM TransactionSearch WHERE rowid = (SELECT id FROM Transactions WHERE uuid = ?)";
+    private final static String INDEX_TRANSACTION_SQL =
+            "INSERT INTO TransactionSearch (rowid, description) values (last_insert_rowid(), ?)";
+    private final static String INSERT_CONVERSION_SQL =
+            "INSERT OR REPLACE INTO Conversions (txtime, debit, credit, fromCurrency, toCurrency, rate, rateVersion) " +
+                    "values (?, ?, ?, ?, ?, ?, ?)";
+    private final static String INSERT_HOLD_SQL =
+            "INSERT OR REPLACE INTO Holds (id, account, amount, description, created, expires) values (?, ?, ?, ?, ?, ?)";
+    private final static String INSERT_SCHEDULED_TRANSFER_SQL =
+            "INSERT OR REPLACE INTO ScheduledTransfers (id, walletId, fromAccount, toAccount, amount, description, " +
+                    "firstDue, recurrence, occurrence, due) values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private final static String INSERT_TRANSFER_RUN_SQL =
+            "INSERT INTO TransferRuns (transfer, due, executed, succeeded, detail) values (?, ?, ?, ?, ?)";
+    private final static String INSERT_CHECKPOINT_SQL =
+            "INSERT OR REPLACE INTO JobCheckpoints (job, position, completed) values (?, ?, ?)";
+    //accounts loaded per query by getAccounts, sqlite allows at most 999 parameters per statement
+    private final static int GET_ACCOUNTS_CHUNK = 500;
+    //statements run on every commit are compiled once and reused
+    private final HashMap<String, PreparedStatement> preparedStatements = new HashMap<String, PreparedStatement>();
+
+    /**
+     * Does no work, the database is only opened by open().
+     */
+    public SqliteStorageEngine() {
+    }
+
+    @Override
+    public String getName() {
+        return "sqlite";
+    }
+
+    /**
+     * Opens the database, creating its tables if needed, and compiles the statements every commit runs so that the
+     * first deposit does not pay for it.
+     *
+     * @throws IllegalStateException if the database could not be opened.
+     */
+    @Override
+    public void open() {
+        Connection connection = connect();
+        if (connection == null)
+            throw new IllegalStateException("Could not open " + dbFile);
+        this.conn = connection;
+        try {
+            prepared(INSERT_ACCOUNT_SQL);
+            prepared(INSERT_TRANSACTION_SQL);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            for (PreparedStatement stmt : this.preparedStatements.values())
+                stmt.close();
+            this.preparedStatements.clear();
+            this.conn.close();
+            this.conn = null;
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Describes the database file, its write-ahead log or rollback journal, and the connection. Only looks at the
+     * files and at whether the connection is open, never at the connection itself.
+     */
+    @Override
+    public void describe(Map<String, String> diagnostics) {
+        File db = new File(dbDir, dbFilename);
+        diagnostics.put("database", db.getPath());
+        diagnostics.put("databaseBytes", String.valueOf(db.length()));
+        diagnostics.put("walBytes", String.valueOf(new File(dbDir, dbFilename + "-wal").length()));
+        diagnostics.put("journalBytes", String.valueOf(new File(dbDir, dbFilename + "-journal").length()));
+        diagnostics.put("openConnections", this.conn != null ? "1" : "0");
+        diagnostics.put("maxConnections", "1");
+    }
+
+    /**
+     * Stores or updates the information for the given Account object in the DB.
+     *
+     * @param account account object whose data we wish to store in the DB
+     */
+    @Override
+    public void insertAccount(Account account){
+        try{
+            writeAccount(account);
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Get an account object whose record is stored.
+     *
+     * @return Account - an account object as defined in the DB for the given identifier. The identifier must be that
+     *          of an account that has been committed to the database already.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no such account with the given identifier is found in the db
+     */
+    @Override
+    public Account getAccount(String identifier) throws NoSuchObjectInDatabaseException {
+        try {
+            //we want to create a table for the given transactionGroupId.
+            Statement stmt = conn.createStatement();
+
+            String sql = "SELECT * FROM Accounts " +
+                    "WHERE id = '" + identifier + "'";
+            long queryStarted = System.nanoTime();
+            ResultSet rs = stmt.executeQuery(sql);
+
+            try{
+                rs.getString("id");
+            } catch (SQLException e){
+                logIfSlow(sql, 0, queryStarted);
+                throw new NoSuchObjectInDatabaseException("No account with identifier " + identifier + " found");
+            }
+            logIfSlow(sql, 1, queryStarted);
+
+            String id = rs.getString("id");
+            String accountName = rs.getString("accountName");
+            int last_txID = rs.getInt("last_txID");
+            String regionCode = rs.getString("regionCode");
+            String parentWalletUID = rs.getString("walletId");
+            String numericalBalance = rs.getString("numericalBalance").substring(1); //removes the '>' char
+            String heldBalance = rs.getString("heldBalance").substring(1);
+            stmt.close();
+            return new Account(accountName, id, parentWalletUID, regionCode, numericalBalance, last_txID, heldBalance);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return null;
+    }
+
+    /**
+     * Pages through the account ids with the primary key index, so each page is a range scan however far in it
+     * starts.
+     */
+    @Override
+    public List<String> getAccountIdsAfter(String afterId, int limit){
+        List<String> ids = new ArrayList<String>();
+        try {
+            String sql = afterId == null ? "SELECT id FROM Accounts ORDER BY id LIMIT ?"
+                    : "SELECT id FROM Accounts WHERE id > ? ORDER BY id LIMIT ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            if (afterId == null) {
+                stmt.setInt(1, limit);
+            } else {
+                stmt.setString(1, afterId);
+                stmt.setInt(2, limit);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next())
+                ids.add(rs.getString("id"));
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, ids.size(), elapsed, afterId, limit);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return ids;
+    }
+
+    /**
+     * Loads the accounts with one query per GET_ACCOUNTS_CHUNK identifiers, sqlite limits the number of
+     * parameters of a statement.
+     */
+    @Override
+    public List<Account> getAccounts(List<String> identifiers){
+        List<Account> accounts = new ArrayList<Account>(identifiers.size());
+        try {
+            for (int from = 0; from < identifiers.size(); from += GET_ACCOUNTS_CHUNK) {
+                List<String> chunk = identifiers.subList(from, Math.min(identifiers.size(), from + GET_ACCOUNTS_CHUNK));
+                StringBuilder sql = new StringBuilder("SELECT * FROM Accounts WHERE id IN (");
+                for (int i = 0; i < chunk.size(); i++)
+                    sql.append(i == 0 ? "?" : ", ?");
+                sql.append(")");
+
+                long queryStarted = System.nanoTime();
+                PreparedStatement stmt = conn.prepareStatement(sql.toString());
+                for (int i = 0; i < chunk.size(); i++)
+                    stmt.setString(i + 1, chunk.get(i));
+                ResultSet rs = stmt.executeQuery();
+                int rows = 0;
+                while (rs.next()) {
+                    accounts.add(new Account(rs.getString("accountName"), rs.getString("id"),
+                            rs.getString("walletId"), rs.getString("regionCode"),
+                            rs.getString("numericalBalance").substring(1), rs.getInt("last_txID"),
+                            rs.getString("heldBalance").substring(1)));
+                    rows += 1;
+                }
+                stmt.close();
+                long elapsed = System.nanoTime() - queryStarted;
+                if (SlowQueryLog.isSlow(elapsed))
+                    SlowQueryLog.log(conn, sql.toString(), rows, elapsed, chunk.toArray());
+            }
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return accounts;
+    }
+
+    /**
+     *  Stores or updates a Transactioni object to the persistent record. The row and its search index entry are
+     *  written in a single database transaction.
+     *
+     * @param transaction the Transaction object that we wish to store in the DB
+     */
+    @Override
+    public void insertTransaction(Transaction transaction){
+        try{
+            conn.setAutoCommit(false);
+            try {
+                writeTransaction(transaction);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Stores or updates an account together with its new transactions, in a single database transaction: either
+     * all of them reach the records or none does. This is what Account uses to commit deposits and withdrawals.
+     *
+     * @param account the account whose state we wish to store in the DB
+     * @param transactions the transactions that brought the account to that state, possibly empty
+     */
+    @Override
+    public void commit(Account account, List<Transaction> transactions){
+        try {
+            conn.setAutoCommit(false);
+            try {
+                writeAccount(account);
+                //indexed to not allocate an iterator on every commit
+                for (int i = 0; i < transactions.size(); i++)
+                    writeTransaction(transactions.get(i));
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Stores a batch of accounts, their transactions and the job's checkpoint in a single database transaction,
+     * reusing the compiled statements for every row.
+     */
+    @Override
+    public void commitBatch(List<Account> accounts, List<Transaction> transactions, JobCheckpoint checkpoint){
+        try {
+            conn.setAutoCommit(false);
+            try {
+                for (int i = 0; i < accounts.size(); i++)
+                    writeAccount(accounts.get(i));
+                for (int i = 0; i < transactions.size(); i++)
+                    writeTransaction(transactions.get(i));
+                writeCheckpoint(checkpoint);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    private void writeCheckpoint(JobCheckpoint checkpoint) throws SQLException {
+        PreparedStatement stmt = prepared(INSERT_CHECKPOINT_SQL);
+        stmt.setString(1, checkpoint.job);
+        stmt.setString(2, checkpoint.position);
+        stmt.setInt(3, checkpoint.completed ? 1 : 0);
+        long queryStarted = System.nanoTime();
+        int rows = stmt.executeUpdate();
+
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, INSERT_CHECKPOINT_SQL, rows, elapsed, checkpoint.job, checkpoint.position,
+                    checkpoint.completed ? 1 : 0);
+    }
+
+    @Override
+    public JobCheckpoint getCheckpoint(String job){
+        try {
+            String sql = "SELECT position, completed FROM JobCheckpoints WHERE job = ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, job);
+            ResultSet rs = stmt.executeQuery();
+            JobCheckpoint checkpoint = null;
+            if (rs.next())
+                checkpoint = new JobCheckpoint(job, rs.getString("position"), rs.getInt("completed") != 0);
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, checkpoint != null ? 1 : 0, elapsed, job);
+            return checkpoint;
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return null;
+    }
+
+    /**
+     * Stores both accounts of a transfer and its two legs in a single database transaction.
+     */
+    @Override
+    public void commitTransfer(Transaction debit, Transaction credit){
+        try {
+            conn.setAutoCommit(false);
+            try {
+                writeAccount(debit.involvedAccount);
+                writeTransaction(debit);
+                writeAccount(credit.involvedAccount);
+                writeTransaction(credit);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Stores both accounts of a conversion, its two legs and the rate they were converted with in a single
+     * database transaction.
+     */
+    @Override
+    public void commitConversion(Transaction debit, Transaction credit, CurrencyConversion conversion){
+        try {
+            conn.setAutoCommit(false);
+            try {
+                writeAccount(debit.involvedAccount);
+                writeTransaction(debit);
+                writeAccount(credit.involvedAccount);
+                writeTransaction(credit);
+                writeConversion(conversion);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    private void writeConversion(CurrencyConversion conversion) throws SQLException {
+        PreparedStatement stmt = prepared(INSERT_CONVERSION_SQL);
+
+        String txtime = conversion.getTimestamp().toString();
+        //kept as text like the balances, so the rate is stored exactly
+        String rate = ">" + conversion.getRate().toPlainString();
+
+        stmt.setString(1, txtime);
+        stmt.setString(2, conversion.getDebitUUID());
+        stmt.setString(3, conversion.getCreditUUID());
+        stmt.setString(4, conversion.getFromCurrency());
+        stmt.setString(5, conversion.getToCurrency());
+        stmt.setString(6, rate);
+        stmt.setLong(7, conversion.getRateVersion());
+        long queryStarted = System.nanoTime();
+        int rows = stmt.executeUpdate();
+
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, INSERT_CONVERSION_SQL, rows, elapsed, txtime, conversion.getDebitUUID(),
+                    conversion.getCreditUUID(), conversion.getFromCurrency(), conversion.getToCurrency(), rate,
+                    conversion.getRateVersion());
+    }
+
+    /**
+     * Get the conversion a transaction is a leg of.
+     *
+     * @param transactionUUID the uuid of either leg of the conversion
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no conversion on record has a leg with the given uuid
+     */
+    @Override
+    public CurrencyConversion getConversion(String transactionUUID) throws NoSuchObjectInDatabaseException {
+        try {
+            String sql = "SELECT txtime, debit, credit, fromCurrency, toCurrency, rate, rateVersion FROM Conversions " +
+                    "WHERE debit = ? UNION ALL SELECT txtime, debit, credit, fromCurrency, toCurrency, rate, " +
+                    "rateVersion FROM Conversions WHERE credit = ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, transactionUUID);
+            stmt.setString(2, transactionUUID);
+            ResultSet rs = stmt.executeQuery();
+            CurrencyConversion conversion = null;
+            if (rs.next())
+                conversion = new CurrencyConversion(rs.getTimestamp("txtime"), rs.getString("debit"),
+                        rs.getString("credit"), rs.getString("fromCurrency"), rs.getString("toCurrency"),
+                        new BigDecimal(rs.getString("rate").substring(1)), rs.getLong("rateVersion"));
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, conversion != null ? 1 : 0, elapsed, transactionUUID, transactionUUID);
+
+            if (conversion == null)
+                throw new NoSuchObjectInDatabaseException("No conversion with a transaction " + transactionUUID + " found");
+            return conversion;
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return null;
+    }
+
+    /**
+     * Stores a new hold and its account in a single database transaction.
+     */
+    @Override
+    public void commitHold(Account account, Hold hold){
+        try {
+            conn.setAutoCommit(false);
+            try {
+                writeAccount(account);
+                writeHold(hold);
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Deletes a hold and stores its account and the transactions that captured it in a single database
+     * transaction.
+     */
+    @Override
+    public void commitHoldRelease(Account account, List<Transaction> transactions, String holdId){
+        try {
+            conn.setAutoCommit(false);
+            try {
+                writeAccount(account);
+                for (int i = 0; i < transactions.size(); i++)
+                    writeTransaction(transactions.get(i));
+                PreparedStatement delete = prepared("DELETE FROM Holds WHERE id = ?");
+                delete.setString(1, holdId);
+                delete.executeUpdate();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    private void writeHold(Hold hold) throws SQLException {
+        PreparedStatement stmt = prepared(INSERT_HOLD_SQL);
+
+        String amount = ">" + hold.getAmount().toPlainString();
+        String created = hold.getCreated().toString();
+        String expires = hold.getExpires().toString();
+
+        stmt.setString(1, hold.getId());
+        stmt.setString(2, hold.getAccountId());
+        stmt.setString(3, amount);
+        stmt.setString(4, hold.getDescription());
+        stmt.setString(5, created);
+        stmt.setString(6, expires);
+        long queryStarted = System.nanoTime();
+        int rows = stmt.executeUpdate();
+
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, INSERT_HOLD_SQL, rows, elapsed, hold.getId(), hold.getAccountId(), amount,
+                    hold.getDescription(), created, expires);
+    }
+
+    /**
+     * Get a hold on record.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no hold with the given id is on record
+     */
+    @Override
+    public Hold getHold(String holdId) throws NoSuchObjectInDatabaseException {
+        try {
+            String sql = "SELECT * FROM Holds WHERE id = ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, holdId);
+            ResultSet rs = stmt.executeQuery();
+            Hold hold = rs.next() ? readHold(rs) : null;
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, hold != null ? 1 : 0, elapsed, holdId);
+
+            if (hold == null)
+                throw new NoSuchObjectInDatabaseException("No hold with identifier " + holdId + " found");
+            return hold;
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return null;
+    }
+
+    /**
+     * Pages through the holds with the primary key index.
+     */
+    @Override
+    public List<Hold> getHoldsAfter(String afterId, int limit){
+        List<Hold> holds = new ArrayList<Hold>();
+        try {
+            String sql = afterId == null ? "SELECT * FROM Holds ORDER BY id LIMIT ?"
+                    : "SELECT * FROM Holds WHERE id > ? ORDER BY id LIMIT ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            if (afterId == null) {
+                stmt.setInt(1, limit);
+            } else {
+                stmt.setString(1, afterId);
+                stmt.setInt(2, limit);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next())
+                holds.add(readHold(rs));
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, holds.size(), elapsed, afterId, limit);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return holds;
+    }
+
+    private static Hold readHold(ResultSet rs) throws SQLException {
+        return new Hold(rs.getString("id"), rs.getString("account"), new BigDecimal(rs.getString("amount").substring(1)),
+                rs.getString("description"), rs.getTimestamp("created"), rs.getTimestamp("expires"));
+    }
+
+    /**
+     * Stores a new scheduled transfer.
+     */
+    @Override
+    public void insertScheduledTransfer(ScheduledTransfer transfer){
+        try {
+            writeScheduledTransfer(transfer);
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Get a scheduled transfer on record.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no transfer with the given id is scheduled
+     */
+    @Override
+    public ScheduledTransfer getScheduledTransfer(String transferId) throws NoSuchObjectInDatabaseException {
+        try {
+            String sql = "SELECT * FROM ScheduledTransfers WHERE id = ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, transferId);
+            ResultSet rs = stmt.executeQuery();
+            ScheduledTransfer transfer = rs.next() ? readScheduledTransfer(rs) : null;
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, transfer != null ? 1 : 0, elapsed, transferId);
+
+            if (transfer == null)
+                throw new NoSuchObjectInDatabaseException("No scheduled transfer with identifier " + transferId + " found");
+            return transfer;
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return null;
+    }
+
+    /**
+     * Deletes a scheduled transfer, its runs are kept.
+     */
+    @Override
+    public boolean deleteScheduledTransfer(String transferId){
+        try {
+            PreparedStatement delete = prepared("DELETE FROM ScheduledTransfers WHERE id = ?");
+            delete.setString(1, transferId);
+            return delete.executeUpdate() > 0;
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return false;
+    }
+
+    /**
+     * Pages through the scheduled transfers with the primary key index.
+     */
+    @Override
+    public List<ScheduledTransfer> getScheduledTransfersAfter(String afterId, int limit){
+        List<ScheduledTransfer> transfers = new ArrayList<ScheduledTransfer>();
+        try {
+            String sql = afterId == null ? "SELECT * FROM ScheduledTransfers ORDER BY id LIMIT ?"
+                    : "SELECT * FROM ScheduledTransfers WHERE id > ? ORDER BY id LIMIT ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            if (afterId == null) {
+                stmt.setInt(1, limit);
+            } else {
+                stmt.setString(1, afterId);
+                stmt.setInt(2, limit);
+            }
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next())
+                transfers.add(readScheduledTransfer(rs));
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, transfers.size(), elapsed, afterId, limit);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return transfers;
+    }
+
+    /**
+     * Stores a batch of scheduled transfers, their runs and their next occurrences in a single database
+     * transaction.
+     */
+    @Override
+    public void commitTransfers(List<Account> accounts, List<Transaction> transactions, List<TransferRun> runs){
+        try {
+            conn.setAutoCommit(false);
+            try {
+                for (int i = 0; i < accounts.size(); i++)
+                    writeAccount(accounts.get(i));
+                for (int i = 0; i < transactions.size(); i++)
+                    writeTransaction(transactions.get(i));
+                for (int i = 0; i < runs.size(); i++) {
+                    TransferRun run = runs.get(i);
+                    writeTransferRun(run);
+                    if (run.next != null) {
+                        writeScheduledTransfer(run.next);
+                    } else {
+                        PreparedStatement delete = prepared("DELETE FROM ScheduledTransfers WHERE id = ?");
+                        delete.setString(1, run.getTransferId());
+                        delete.executeUpdate();
+                    }
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Reads the runs of a transfer with the TransferRunsByTransfer index.
+     */
+    @Override
+    public List<TransferRun> getTransferRuns(String transferId){
+        List<TransferRun> runs = new ArrayList<TransferRun>();
+        try {
+            String sql = "SELECT * FROM TransferRuns WHERE transfer = ? ORDER BY rowid";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, transferId);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next())
+                runs.add(new TransferRun(rs.getString("transfer"), readTimestamp(rs, "due"), readTimestamp(rs, "executed"),
+                        rs.getInt("succeeded") != 0, rs.getString("detail"), null));
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, runs.size(), elapsed, transferId);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return runs;
+    }
+
+    private void writeScheduledTransfer(ScheduledTransfer transfer) throws SQLException {
+        PreparedStatement stmt = prepared(INSERT_SCHEDULED_TRANSFER_SQL);
+
+        String amount = ">" + transfer.getAmount().toPlainString();
+        String first = transfer.getFirst().toString();
+        String due = transfer.getDue().toString();
+
+        stmt.setString(1, transfer.getId());
+        stmt.setString(2, transfer.getWalletId());
+        stmt.setString(3, transfer.getFromAccountId());
+        stmt.setString(4, transfer.getToAccountId());
+        stmt.setString(5, amount);
+        stmt.setString(6, transfer.getDescription());
+        stmt.setString(7, first);
+        stmt.setString(8, transfer.getRecurrence().name());
+        stmt.setLong(9, transfer.getOccurrence());
+        stmt.setString(10, due);
+        long queryStarted = System.nanoTime();
+        int rows = stmt.executeUpdate();
+
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, INSERT_SCHEDULED_TRANSFER_SQL, rows, elapsed, transfer.getId(),
+                    transfer.getWalletId(), transfer.getFromAccountId(), transfer.getToAccountId(), amount,
+                    transfer.getDescription(), first, transfer.getRecurrence().name(), transfer.getOccurrence(), due);
+    }
+
+    private void writeTransferRun(TransferRun run) throws SQLException {
+        PreparedStatement stmt = prepared(INSERT_TRANSFER_RUN_SQL);
+
+        String due = run.getDue().toString();
+        String executed = run.getExecuted().toString();
+
+        stmt.setString(1, run.getTransferId());
+        stmt.setString(2, due);
+        stmt.setString(3, executed);
+        stmt.setInt(4, run.isSucceeded() ? 1 : 0);
+        stmt.setString(5, run.getDetail());
+        long queryStarted = System.nanoTime();
+        int rows = stmt.executeUpdate();
+
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, INSERT_TRANSFER_RUN_SQL, rows, elapsed, run.getTransferId(), due, executed,
+                    run.isSucceeded() ? 1 : 0, run.getDetail());
+    }
+
+    private static ScheduledTransfer readScheduledTransfer(ResultSet rs) throws SQLException {
+        return new ScheduledTransfer(rs.getString("id"), rs.getString("walletId"), rs.getString("fromAccount"),
+                rs.getString("toAccount"), new BigDecimal(rs.getString("amount").substring(1)),
+                rs.getString("description"), readTimestamp(rs, "firstDue"), Recurrence.valueOf(rs.getString("recurrence")),
+                rs.getLong("occurrence"));
+    }
+
+    /**
+     * Reads a timestamp written with Timestamp.toString. The driver's getTimestamp reads the fraction as
+     * milliseconds, so ".12" would come back as 12ms instead of 120ms, and the due of a transfer or a run would
+     * move.
+     */
+    private static Timestamp readTimestamp(ResultSet rs, String column) throws SQLException {
+        return Timestamp.valueOf(rs.getString(column));
+    }
+
+    private void writeAccount(Account account) throws SQLException {
+        PreparedStatement stmt = prepared(INSERT_ACCOUNT_SQL);
+
+        //for some reason if its purely numerical SQL gets angry and makes very big numbers infinity
+        //and also reformats them.
+        String numericalBalance = ">" + account.getCurrentBalance().toString();
+        String formattedBalance = account.getFormattedBalance();
+        String heldBalance = ">" + account.getHeldBalance().toString();
+
+        stmt.setString(1, account.getAccountID());
+        stmt.setString(2, account.getAccountName());
+        stmt.setInt(3, account.getLastTxId());
+        stmt.setString(4, account.getRegionCode());
+        stmt.setString(5, numericalBalance);
+        stmt.setString(6, formattedBalance);
+        stmt.setString(7, account.getParentWalletUID());
+        stmt.setString(8, heldBalance);
+        long queryStarted = System.nanoTime();
+        int rows = stmt.executeUpdate();
+
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, INSERT_ACCOUNT_SQL, rows, elapsed, account.getAccountID(), account.getAccountName(),
+                    account.getLastTxId(), account.getRegionCode(), numericalBalance, formattedBalance,
+                    account.getParentWalletUID(), heldBalance);
+    }
+
+    private void writeTransaction(Transaction transaction) throws SQLException {
+        PreparedStatement stmt = prepared(INSERT_TRANSACTION_SQL);
+
+        String txtime = transaction.getTimestamp().toString();
+        String account = transaction.involvedAccount.getAccountID();
+        String amountFormatted = transaction.involvedAccount.applyAccountFormat(transaction.amount);
+        String endingBalanceFormatted = transaction.involvedAccount.applyAccountFormat(transaction.endingBalance);
+        String endingBalanceNumeric = ">" + transaction.endingBalance.toString();
+
+        stmt.setString(1, txtime);
+        stmt.setString(2, transaction.uuid);
+        stmt.setLong(3, transaction.sequence);
+        stmt.setString(4, account);
+        stmt.setString(5, amountFormatted);
+        stmt.setDouble(6, transaction.amount);
+        stmt.setString(7, transaction.getTXSymbol());
+        stmt.setString(8, endingBalanceFormatted);
+        stmt.setString(9, endingBalanceNumeric);
+        stmt.setString(10, transaction.description);
+        PreparedStatement unindex = prepared(UNINDEX_TRANSACTION_SQL);
+        unindex.setString(1, transaction.uuid);
+        PreparedStatement index = prepared(INDEX_TRANSACTION_SQL);
+        index.setString(1, transaction.description);
+        long queryStarted = System.nanoTime();
+        unindex.executeUpdate();
+        int rows = stmt.executeUpdate();
+        index.executeUpdate();
+
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, INSERT_TRANSACTION_SQL, rows, elapsed, txtime, transaction.uuid,
+                    transaction.sequence, account, amountFormatted, transaction.amount, transaction.getTXSymbol(),
+                    endingBalanceFormatted, endingBalanceNumeric, transaction.description);
+    }
+
+    /**
+     * Get the prepared statement for the given SQL, compiling it on first use.
+     */
+    private PreparedStatement prepared(String sql) throws SQLException {
+        PreparedStatement stmt = preparedStatements.get(sql);
+        if (stmt == null) {
+            stmt = conn.prepareStatement(sql);
+            preparedStatements.put(sql, stmt);
+        }
+        return stmt;
+    }
+
+    /**
+     * Get the N transactions of a given account that directly precede the given sequence number. Transactions
+     * that were moved to the ledger archive are read back from it when the hot database holds fewer than N.
+     *
+     * @return List<Transaction> - ordered by sequence, newest first.
+     */
+    @Override
+    public List<Transaction> getTransactionsBefore(String accountIdentifier, long sequence, int N) throws NoSuchObjectInDatabaseException {
+        try {
+            String sql = " SELECT * From Transactions " +
+                    " WHERE account = ? AND seq < ? " +
+                    " ORDER BY seq DESC" +
+                    " LIMIT ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, accountIdentifier);
+            stmt.setLong(2, sequence);
+            stmt.setInt(3, N);
+            ResultSet rs = stmt.executeQuery();
+            //iterate through the result set to form the return list
+            List<Transaction> pastNTransactions = new ArrayList<Transaction>();
+            while(rs.next()){
+                Transaction tx = transactionFromRow(rs);
+                if (tx != null)
+                    pastNTransactions.add(tx);
+            }
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, pastNTransactions.size(), elapsed, accountIdentifier, sequence, N);
+
+            //older transactions may have been moved to the archive, read through to it if the hot rows ran out
+            if (pastNTransactions.size() < N) {
+                int segments = getArchivedSegmentCount(accountIdentifier);
+                if (segments > 0)
+                    LedgerArchive.readTransactionsBefore(accountIdentifier, segments, sequence,
+                            N - pastNTransactions.size(), pastNTransactions);
+            }
+            return pastNTransactions;
+        } catch (SQLException | IOException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return null;
+    }
+
+    /**
+     * Opens a ledger snapshot on a connection of its own, in a read transaction that is started here: the
+     * database is in write-ahead log mode, so the snapshot keeps seeing the records as they were when it was
+     * opened while conn goes on committing, and neither waits for the other.
+     *
+     * @throws IllegalStateException if the snapshot could not be opened.
+     */
+    @Override
+    public LedgerSnapshot openLedgerSnapshot(){
+        try {
+            Connection reader = DriverManager.getConnection(dbFile);
+            reader.setAutoCommit(false);
+            //counted before it is read from, a failed snapshot closes and uncounts itself
+            this.openSnapshots.incrementAndGet();
+            return new Snapshot(reader, this.openSnapshots);
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not open a ledger snapshot of " + dbFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the accounts, with the checkpoints of their archived transactions, in the order of their ids, and the
+     * hot transactions of each account one at a time with the index on (account, seq). Accounts that have
+     * transactions but no account row are read last. The first query starts the read transaction every other
+     * query of the snapshot is answered from.
+     */
+    private static final class Snapshot implements LedgerSnapshot {
+
+        private final Connection reader;
+        private final AtomicInteger openSnapshots;
+        private final PreparedStatement transactions;
+        private Statement accountsStatement;
+        private ResultSet accounts;
+        private boolean orphans = false;
+        private boolean closed = false;
+
+        Snapshot(Connection reader, AtomicInteger openSnapshots) throws SQLException {
+            this.reader = reader;
+            this.openSnapshots = openSnapshots;
+            try {
+                this.accountsStatement = reader.createStatement();
+                this.accounts = this.accountsStatement.executeQuery(
+                        "SELECT a.id, a.numericalBalance, a.last_txID, c.lastSequence, c.endingBalanceNumeric " +
+                                "FROM Accounts a LEFT JOIN LedgerCheckpoints c ON c.account = a.id ORDER BY a.id");
+                this.transactions = reader.prepareStatement(
+                        "SELECT seq, amountDouble, txtype, endingBalanceNumeric FROM Transactions " +
+                                "WHERE account = ? ORDER BY seq");
+            } catch (SQLException e) {
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public AccountLedger next() {
+            if (this.closed)
+                return null;
+            try {
+                while (!this.accounts.next()) {
+                    this.accountsStatement.close();
+                    if (this.orphans)
+                        return null;
+                    this.orphans = true;
+                    this.accountsStatement = this.reader.createStatement();
+                    this.accounts = this.accountsStatement.executeQuery(
+                            "SELECT DISTINCT t.account AS id, NULL AS numericalBalance, 0 AS last_txID, " +
+                                    "c.lastSequence, c.endingBalanceNumeric FROM Transactions t " +
+                                    "LEFT JOIN LedgerCheckpoints c ON c.account = t.account " +
+                                    "WHERE t.account NOT IN (SELECT id FROM Accounts) ORDER BY t.account");
+                }
+
+                String id = this.accounts.getString("id");
+                String checkpointBalance = this.accounts.getString("endingBalanceNumeric");
+                AccountLedger ledger = new AccountLedger(id, numeric(this.accounts.getString("numericalBalance")),
+                        this.accounts.getLong("last_txID"), this.accounts.getLong("lastSequence"),
+                        checkpointBalance == null ? "0" : numeric(checkpointBalance));
+
+                this.transactions.setString(1, id);
+                ResultSet rs = this.transactions.executeQuery();
+                while (rs.next())
+                    ledger.entries.add(new AccountLedger.Entry(rs.getLong("seq"), rs.getString("txtype"),
+                            rs.getDouble("amountDouble"), numeric(rs.getString("endingBalanceNumeric"))));
+                rs.close();
+                return ledger;
+            } catch (SQLException e) {
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                e.printStackTrace();
+                System.exit(0);
+            }
+            return null;
+        }
+
+        @Override
+        public void close() {
+            if (this.closed)
+                return;
+            this.closed = true;
+            this.openSnapshots.decrementAndGet();
+            try {
+                this.reader.rollback();
+            } catch (SQLException e) {
+                //only the read transaction is ended, closing ends it as well
+            }
+            try {
+                this.reader.close();
+            } catch (SQLException e) {
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            }
+        }
+
+        //numerical balances are stored with a ">" in front
+        private static String numeric(String stored) {
+            if (stored == null)
+                return null;
+            return stored.startsWith(">") ? stored.substring(1) : stored;
+        }
+    }
+
+    /**
+     * Moves every transaction of the given account that took place before the horizon into a new compressed
+     * segment of the ledger archive, and leaves a balance checkpoint behind in the hot database. The segment is
+     * sealed before the rows are deleted, and the rows are deleted in the same database transaction that records
+     * the checkpoint, so an interrupted run never loses a transaction.
+     *
+     * @param accountIdentifier the account whose old transactions should be archived
+     * @param horizon transactions with a timestamp strictly before the horizon are archived
+     * @return the number of transactions that were archived
+     */
+    @Override
+    public int archiveTransactions(String accountIdentifier, Timestamp horizon){
+        try {
+            PreparedStatement select = conn.prepareStatement(
+                    "SELECT * FROM Transactions WHERE account = ? AND txtime < ? ORDER BY seq DESC");
+            select.setString(1, accountIdentifier);
+            select.setString(2, horizon.toString());
+            ResultSet rs = select.executeQuery();
+
+            if (!rs.next()) {
+                select.close();
+                return 0;
+            }
+
+            int segments = getArchivedSegmentCount(accountIdentifier);
+            int previouslyArchived = 0;
+            Timestamp archivedThrough = rs.getTimestamp("txtime");
+            long lastSequence = rs.getLong("seq");
+            String checkpointBalance = rs.getString("endingBalanceNumeric");
+
+            LedgerArchive.SegmentWriter segment = LedgerArchive.openSegment(accountIdentifier, segments + 1);
+            try {
+                do {
+                    segment.append(
+                            rs.getTimestamp("txtime"),
+                            rs.getString("uuid"),
+                            rs.getLong("seq"),
+                            rs.getDouble("amountDouble"),
+                            rs.getString("txtype"),
+                            rs.getString("endingBalanceNumeric").substring(1), // removed ">"
+                            rs.getString("description"));
+                } while (rs.next());
+            } finally {
+                select.close();
+                segment.close();
+            }
+
+            PreparedStatement previous = conn.prepareStatement(
+                    "SELECT archivedCount FROM LedgerCheckpoints WHERE account = ?");
+            previous.setString(1, accountIdentifier);
+            ResultSet prs = previous.executeQuery();
+            if (prs.next())
+                previouslyArchived = prs.getInt("archivedCount");
+            previous.close();
+
+            conn.setAutoCommit(false);
+            try {
+                //archived transactions are not searched
+                PreparedStatement unindex = conn.prepareStatement(
+                        "DELETE FROM TransactionSearch WHERE rowid IN " +
+                                "(SELECT id FROM Transactions WHERE account = ? AND txtime < ?)");
+                unindex.setString(1, accountIdentifier);
+                unindex.setString(2, horizon.toString());
+                unindex.executeUpdate();
+                unindex.close();
+
+                PreparedStatement delete = conn.prepareStatement(
+                        "DELETE FROM Transactions WHERE account = ? AND txtime < ?");
+                delete.setString(1, accountIdentifier);
+                delete.setString(2, horizon.toString());
+                delete.executeUpdate();
+                delete.close();
+
+                PreparedStatement checkpoint = conn.prepareStatement(
+                        "INSERT OR REPLACE INTO LedgerCheckpoints (account, segments, archivedThrough, " +
+                                "lastSequence, endingBalanceNumeric, archivedCount) values (?, ?, ?, ?, ?, ?)");
+                checkpoint.setString(1, accountIdentifier);
+                checkpoint.setInt(2, segments + 1);
+                checkpoint.setString(3, archivedThrough.toString());
+                checkpoint.setLong(4, lastSequence);
+                checkpoint.setString(5, checkpointBalance);
+                checkpoint.setInt(6, previouslyArchived + segment.getCount());
+                checkpoint.executeUpdate();
+                checkpoint.close();
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            return segment.getCount();
+        } catch (SQLException | IOException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return 0;
+    }
+
+    /**
+     * Get the identifiers of every account that has transactions before the horizon in the hot database.
+     *
+     * @param horizon the archival horizon
+     * @return List<String> of account identifiers, possibly empty.
+     */
+    @Override
+    public List<String> getAccountsWithTransactionsBefore(Timestamp horizon){
+        List<String> accounts = new ArrayList<String>();
+        try {
+            String sql = "SELECT DISTINCT account FROM Transactions WHERE txtime < ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, horizon.toString());
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next())
+                accounts.add(rs.getString("account"));
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, accounts.size(), elapsed, horizon.toString());
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return accounts;
+    }
+
+    /**
+     * Rebuilds the database file so that the pages freed by archival are returned to the file system. Skipped
+     * while a ledger snapshot is open, as VACUUM can not run while another connection reads; the pages are then
+     * returned by the next compaction. The search index is keyed by the id of Transactions, an INTEGER PRIMARY
+     * KEY that VACUUM keeps, so it stays valid.
+     */
+    @Override
+    public void compact(){
+        if (this.openSnapshots.get() > 0)
+            return;
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.executeUpdate("VACUUM");
+            stmt.close();
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Searches the descriptions with the TransactionSearch index, ranked by bm25, then newest first. The matches
+     * are joined to their transactions by id, and to the accounts of the wallet with the AccountsByWallet index.
+     */
+    @Override
+    public List<Transaction> searchTransactions(String walletId, String accountId, List<String> terms, int offset, int limit){
+        List<Transaction> matches = new ArrayList<Transaction>();
+        try {
+            //every term is quoted, and matches the words it starts
+            StringBuilder query = new StringBuilder();
+            for (String term : terms)
+                query.append(query.length() == 0 ? "" : " ").append('"').append(term.replace("\"", "\"\"")).append("\"*");
+
+            String sql = "SELECT Transactions.* FROM TransactionSearch " +
+                    " JOIN Transactions ON Transactions.id = TransactionSearch.rowid " +
+                    (accountId == null ? " JOIN Accounts ON Accounts.id = Transactions.account " : "") +
+                    " WHERE TransactionSearch MATCH ? AND " +
+                    (accountId == null ? "Accounts.walletId = ?" : "Transactions.account = ?") +
+                    " ORDER BY TransactionSearch.rank, Transactions.id DESC" +
+                    " LIMIT ? OFFSET ?";
+            String scope = accountId == null ? walletId : accountId;
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, query.toString());
+            stmt.setString(2, scope);
+            stmt.setInt(3, limit);
+            stmt.setInt(4, offset);
+            ResultSet rs = stmt.executeQuery();
+            while (rs.next()) {
+                try {
+                    Transaction tx = transactionFromRow(rs);
+                    if (tx != null)
+                        matches.add(tx);
+                } catch (NoSuchObjectInDatabaseException e) {
+                    //the transaction of an account that is no longer on record is not a match
+                }
+            }
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, matches.size(), elapsed, query.toString(), scope, limit, offset);
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return matches;
+    }
+
+    /**
+     * Hands a statement without parameters to the slow query log if it took longer than its threshold.
+     *
+     * @param queryStarted the System.nanoTime() at which the statement was started.
+     */
+    private void logIfSlow(String sql, int rows, long queryStarted) {
+        long elapsed = System.nanoTime() - queryStarted;
+        if (SlowQueryLog.isSlow(elapsed))
+            SlowQueryLog.log(conn, sql, rows, elapsed);
+    }
+
+    /**
+     * Get the number of archive segments that have been committed for an account.
+     *
+     * @return the segment count recorded in the account's checkpoint, 0 if the account was never archived.
+     */
+    private int getArchivedSegmentCount(String accountIdentifier) throws SQLException {
+        PreparedStatement stmt = conn.prepareStatement(
+                "SELECT segments FROM LedgerCheckpoints WHERE account = ?");
+        stmt.setString(1, accountIdentifier);
+        ResultSet rs = stmt.executeQuery();
+        int segments = rs.next() ? rs.getInt("segments") : 0;
+        stmt.close();
+        return segments;
+    }
+
+    /**
+     * Builds the Transaction object for the current row of a result set on the Transactions table.
+     *
+     * @return the Transaction, or null if the row has an unknown txtype.
+     */
+    private Transaction transactionFromRow(ResultSet rs) throws SQLException, NoSuchObjectInDatabaseException {
+        Timestamp timestamp = rs.getTimestamp("txtime");
+        String uuid = rs.getString("uuid");
+        long seq = rs.getLong("seq");
+        String account = rs.getString("account");
+        double amountDouble = rs.getDouble("amountDouble");
+        String txtype = rs.getString("txtype");
+        String endingBalanceNumeric = rs.getString("endingBalanceNumeric").substring(1); // removed ">"
+        String description = rs.getString("description");
+
+        if ( txtype.equals("DR") ) {
+            return new DepositTransaction(
+                    timestamp,
+                    uuid,
+                    seq,
+                    account,
+                    amountDouble,
+                    endingBalanceNumeric,
+                    description
+            );
+        }
+        if ( txtype.equals("CR") ) {
+            return new WithdrawalTransaction(
+                    timestamp,
+                    uuid,
+                    seq,
+                    account,
+                    amountDouble,
+                    endingBalanceNumeric,
+                    description
+            );
+        }
+        return null;
+    }
+
+    /**
+     * Stores a wallet object to the records.
+     *
+     * inserts a new wallet row in the db or updates an existing one
+     * @param wallet the Wallet object to be inserted into the db
+     */
+    @Override
+    public void insertWallet(Wallet wallet){
+        try{
+            //we want to create a table for the given transactionGroupId.
+            Statement stmt = conn.createStatement();
+
+            String walletId = wallet.getUID();
+            String regionCode = wallet.getRegionCode();
+
+            String sql = "INSERT OR REPLACE INTO Wallets (id, regionCode) values" +
+                    "('" + walletId + "', '" + regionCode + "')";
+            long queryStarted = System.nanoTime();
+            int rows = stmt.executeUpdate(sql);
+            logIfSlow(sql, rows, queryStarted);
+
+            stmt.close();
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+
+    }
+
+    /**
+     * Fetches a wallet object from the records.
+     *
+     * @param walletUID - the id of the wallet object to fetch
+     *
+     * @return Wallet - an wallet object as defined in the DB for the given identifier. The identifier must be that
+     *          of a wallet that has been committed to the database already.
+     *
+     * @throws NoSuchObjectInDatabaseException
+     *          if no such wallet with the given identifier is found in the db
+     */
+    @Override
+    public Wallet getWallet(String walletUID) throws NoSuchObjectInDatabaseException{
+        try {
+            String sql = "SELECT regionCode FROM Wallets WHERE id = ?";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, walletUID);
+            ResultSet rs = stmt.executeQuery();
+            boolean found = rs.next();
+            String regionCode = found ? rs.getString("regionCode") : null;
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, found ? 1 : 0, elapsed, walletUID);
+
+            if (!found)
+                throw new NoSuchObjectInDatabaseException("No wallet with identifier " + walletUID + " found");
+
+            //only the two columns the wallet needs, looked up through the walletId index
+            String accountsSql = "SELECT id, accountName FROM Accounts WHERE walletId = ?";
+            queryStarted = System.nanoTime();
+            PreparedStatement accounts = conn.prepareStatement(accountsSql);
+            accounts.setString(1, walletUID);
+            ResultSet rs2 = accounts.executeQuery();
+
+            HashMap<String, String> walletAccounts = new HashMap<String, String>();
+            while(rs2.next())
+                walletAccounts.put(rs2.getString("accountName"), rs2.getString("id"));
+
+            accounts.close();
+            elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, accountsSql, walletAccounts.size(), elapsed, walletUID);
+            return new Wallet(walletUID, regionCode, walletAccounts);
+
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks whether any account has been created under a wallet.
+     *
+     * @param walletUID - the id of the wallet
+     *
+     * @return true if at least one account in the records belongs to the wallet.
+     */
+    @Override
+    public boolean walletHasAccounts(String walletUID){
+        try {
+            String sql = "SELECT 1 FROM Accounts WHERE walletId = ? LIMIT 1";
+            long queryStarted = System.nanoTime();
+            PreparedStatement stmt = conn.prepareStatement(sql);
+            stmt.setString(1, walletUID);
+            boolean hasAccounts = stmt.executeQuery().next();
+            stmt.close();
+            long elapsed = System.nanoTime() - queryStarted;
+            if (SlowQueryLog.isSlow(elapsed))
+                SlowQueryLog.log(conn, sql, hasAccounts ? 1 : 0, elapsed, walletUID);
+            return hasAccounts;
+        } catch (SQLException e) {
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+        return false;
+    }
+
+    /**
+     *
+     * erases ALL data in the records.
+     */
+    @Override
+    public void flush(){
+        try{
+            //we want to create a table for the given transactionGroupId.
+            Statement stmt = conn.createStatement();
+
+            stmt.executeUpdate(
+                    "DELETE FROM Accounts");
+            stmt.executeUpdate(
+                    "DELETE FROM Transactions");
+            stmt.executeUpdate(
+                    "DELETE FROM LedgerCheckpoints");
+            stmt.executeUpdate(
+                    "DELETE FROM Wallets");
+            stmt.executeUpdate(
+                    "DELETE FROM Conversions");
+            stmt.executeUpdate(
+                    "DELETE FROM JobCheckpoints");
+            stmt.executeUpdate(
+                    "DELETE FROM Holds");
+            stmt.executeUpdate(
+                    "DELETE FROM ScheduledTransfers");
+            stmt.executeUpdate(
+                    "DELETE FROM TransferRuns");
+            stmt.executeUpdate(
+                    "DELETE FROM TransactionSearch");
+
+            stmt.close();
+            LedgerArchive.deleteAll();
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+
+    static private Connection connect(){
+
+        //check if the SQLITE_DIR exists, else create it
+        if (!dbDir.exists()) {
+            try {
+                dbDir.mkdir();
+            } catch (SecurityException e) {
+                System.err.println(e.getClass().getName() + ": " + e.getMessage());
+                e.printStackTrace();
+                System.exit(0);
+            }
+        }
+
+        try{
+            Connection conn = DriverManager.getConnection(dbFile);
+            //readers such as ledger snapshots see a consistent state without holding up commits
+            Statement stmt = conn.createStatement();
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.close();
+            createTablesIfNotThere(conn);
+            return conn;
+        }catch(SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+
+        return  null;
+    }
+
+    /**
+     * Rebuilds the search index from the descriptions of every transaction in the hot records.
+     */
+    static private void reindexTransactions(Connection conn) throws SQLException {
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("DELETE FROM TransactionSearch");
+        stmt.executeUpdate("INSERT INTO TransactionSearch (rowid, description) SELECT id, description FROM Transactions");
+        stmt.close();
+    }
+
+    /**
+     * @return true if the table has the column.
+     */
+    static private boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        Statement stmt = conn.createStatement();
+        ResultSet rs = stmt.executeQuery("PRAGMA table_info(" + table + ")");
+        while (rs.next()) {
+            if (rs.getString("name").equalsIgnoreCase(column)) {
+                stmt.close();
+                return true;
+            }
+        }
+        stmt.close();
+        return false;
+    }
+
+    /**
+     * Adds a column to an existing table if it does not have it yet.
+     *
+     * @return true if the column was added, false if it was already there.
+     */
+    static private boolean addColumnIfNotThere(Connection conn, String table, String column, String definition) throws SQLException {
+        if (hasColumn(conn, table, column))
+            return false;
+        Statement stmt = conn.createStatement();
+        stmt.executeUpdate("ALTER TABLE " + table + " ADD COLUMN " + column + " " + definition);
+        stmt.close();
+        return true;
+    }
+
+    /**
+     * Copies the Transactions of records created before it had an id into a table that has one. A column can
+     * not be made the INTEGER PRIMARY KEY of an existing table. Each transaction gets its rowid as id, which is
+     * the key its search entry already has.
+     */
+    static private void addTransactionIds(Connection conn) throws SQLException {
+        conn.setAutoCommit(false);
+        try {
+            Statement stmt = conn.createStatement();
+            stmt.executeUpdate("ALTER TABLE Transactions RENAME TO TransactionsWithoutId");
+            stmt.executeUpdate(CREATE_TRANSACTIONS_SQL);
+            stmt.executeUpdate(
+                    "INSERT INTO Transactions (id, txtime, uuid, seq, account, amountFormatted, amountDouble, " +
+                            "txtype, description, endingBalanceFormatted, endingBalanceNumeric) " +
+                            "SELECT rowid, txtime, uuid, seq, account, amountFormatted, amountDouble, txtype, " +
+                            "description, endingBalanceFormatted, endingBalanceNumeric FROM TransactionsWithoutId");
+            //its indexes go with it, and are created again on the new table
+            stmt.executeUpdate("DROP TABLE TransactionsWithoutId");
+            stmt.close();
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Generate the tables if the sqlite db is empty. Nothing happens if the tables already exists.
+     */
+    static private void createTablesIfNotThere(Connection conn){
+        try{
+            //we want to create a table for the given transactionGroupId.
+            Statement stmt = conn.createStatement();
+
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS Accounts (" +
+                            " id                        STRING PRIMARY KEY     NOT NULL, " +
+                            " accountName               STRING                 NOT NULL, " +
+                            " last_txID                 INT                    NOT NULL, " +
+                            " regionCode                STRING                 NOT NULL, " +
+                            " numericalBalance          STRING                 NOT NULL, " +
+                            " formattedBalance          STRING                 NOT NULL, " +
+                            " walletId                  STRING                 NOT NULL, " +
+                            " heldBalance               STRING                 NOT NULL DEFAULT '>0', " +
+                            " FOREIGN KEY (walletId) REFERENCES Wallets(id))");
+
+            stmt.executeUpdate(CREATE_TRANSACTIONS_SQL);
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS Wallets (" +
+                            " id                        STRING PRIMARY KEY     NOT NULL, " +
+                            " regionCode                STRING                 NOT NULL)");
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS LedgerCheckpoints (" +
+                            " account                   STRING PRIMARY KEY     NOT NULL, " +
+                            " segments                  INT                    NOT NULL, " +
+                            " archivedThrough           TIMESTAMP              NOT NULL, " +
+                            " lastSequence              INTEGER                NOT NULL, " +
+                            " endingBalanceNumeric      STRING                 NOT NULL, " +
+                            " archivedCount             INT                    NOT NULL, " +
+                            " FOREIGN KEY (account) REFERENCES Accounts(id))");
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS Conversions (" +
+                            " txtime                    TIMESTAMP              NOT NULL, " +
+                            " debit                     STRING PRIMARY KEY     NOT NULL, " +
+                            " credit                    STRING                 NOT NULL, " +
+                            " fromCurrency              STRING                 NOT NULL, " +
+                            " toCurrency                STRING                 NOT NULL, " +
+                            " rate                      STRING                 NOT NULL, " +
+                            " rateVersion               INTEGER                NOT NULL)");
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS Holds (" +
+                            " id                        STRING PRIMARY KEY     NOT NULL, " +
+                            " account                   STRING                 NOT NULL, " +
+                            " amount                    STRING                 NOT NULL, " +
+                            " description               STRING                 NOT NULL, " +
+                            " created                   TIMESTAMP              NOT NULL, " +
+                            " expires                   TIMESTAMP              NOT NULL, " +
+                            " FOREIGN KEY (account) REFERENCES Accounts(id))");
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS ScheduledTransfers (" +
+                            " id                        STRING PRIMARY KEY     NOT NULL, " +
+                            " walletId                  STRING                 NOT NULL, " +
+                            " fromAccount               STRING                 NOT NULL, " +
+                            " toAccount                 STRING                 NOT NULL, " +
+                            " amount                    STRING                 NOT NULL, " +
+                            " description               STRING                 NOT NULL, " +
+                            " firstDue                  TIMESTAMP              NOT NULL, " +
+                            " recurrence                STRING                 NOT NULL, " +
+                            " occurrence                INTEGER                NOT NULL, " +
+                            " due                       TIMESTAMP              NOT NULL)");
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS TransferRuns (" +
+                            " transfer                  STRING                 NOT NULL, " +
+                            " due                       TIMESTAMP              NOT NULL, " +
+                            " executed                  TIMESTAMP              NOT NULL, " +
+                            " succeeded                 INT                    NOT NULL, " +
+                            " detail                    STRING)");
+
+            stmt.executeUpdate(
+                    "CREATE TABLE IF NOT EXISTS JobCheckpoints (" +
+                            " job                       STRING PRIMARY KEY     NOT NULL, " +
+                            " position                  STRING, " +
+                            " completed                 INT                    NOT NULL)");
+
+            //records created before transactions carried a sequence get one derived from their uuid,
+            //which is the account id followed by "TX" and the sequence.
+            if (addColumnIfNotThere(conn, "Transactions", "seq", "INTEGER NOT NULL DEFAULT 0"))
+                stmt.executeUpdate(
+                        "UPDATE Transactions SET seq = CAST(substr(uuid, length(account) + 3) AS INTEGER) " +
+                                "WHERE uuid LIKE account || 'TX%'");
+            addColumnIfNotThere(conn, "LedgerCheckpoints", "lastSequence", "INTEGER NOT NULL DEFAULT 0");
+            addColumnIfNotThere(conn, "Accounts", "heldBalance", "STRING NOT NULL DEFAULT '>0'");
+            if (!hasColumn(conn, "Transactions", "id"))
+                addTransactionIds(conn);
+
+            //descriptions are searched with a full-text index, keyed by the id of their transaction. Records
+            //created before it are indexed once, when it is created.
+            ResultSet search = stmt.executeQuery(
+                    "SELECT name FROM sqlite_master WHERE type = 'table' AND name = 'TransactionSearch'");
+            boolean indexed = search.next();
+            search.close();
+            if (!indexed) {
+                stmt.executeUpdate(
+                        "CREATE VIRTUAL TABLE TransactionSearch USING fts5(description, tokenize = 'unicode61')");
+                reindexTransactions(conn);
+            }
+
+            //wallets are opened by looking up their accounts
+            stmt.executeUpdate(
+                    "CREATE INDEX IF NOT EXISTS AccountsByWallet ON Accounts (walletId)");
+
+            //conversions are looked up by either leg
+            stmt.executeUpdate(
+                    "CREATE INDEX IF NOT EXISTS ConversionsByCredit ON Conversions (credit)");
+
+            //history is read per account in sequence order
+            stmt.executeUpdate(
+                    "CREATE INDEX IF NOT EXISTS TransactionsByAccountSeq ON Transactions (account, seq)");
+
+            //the runs of a transfer are read together
+            stmt.executeUpdate(
+                    "CREATE INDEX IF NOT EXISTS TransferRunsByTransfer ON TransferRuns (transfer)");
+
+            stmt.close();
+        } catch (SQLException e){
+            System.err.println(e.getClass().getName() + ": " + e.getMessage());
+            e.printStackTrace();
+            System.exit(0);
+        }
+    }
+
+}
@@ -7,6 +7,7 @@ import uwallet.exceptions.InsufficientFundsException;
 import uwallet.exceptions.NoSuchObjectInDatabaseException;
 import uwallet.exceptions.UniqueIDConstraintException;
 
+import java.lang.ref.WeakReference;
 import java.util.List;
 
 
@@ -103,6 +104,27 @@ public class WalletTest {
 
     }
 
+    @Test void pagingThroughTransactions() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+        Wallet wallet = new Wallet("WAL006", "US");
+        wallet.createNewAccount("chequing");
+        for (int i = 1; i <= 25; i++)
+            wallet.depositToAccount(i, "chequing");
+
+        List<Transaction> page = wallet.getLastNTransactions("chequing", 10);
+        assert( page.size() == 10 );
+        assert( page.get(0).getAmount() == 25 );
+        assert( page.get(9).getAmount() == 16 );
+
+        page = wallet.getTransactionsBefore("chequing", page.get(9).getSequence(), 10);
+        assert( page.size() == 10 );
+        assert( page.get(0).getAmount() == 15 );
+        assert( page.get(9).getAmount() == 6 );
+
+        page = wallet.getTransactionsBefore("chequing", page.get(9).getSequence(), 10);
+        assert( page.size() == 5 );
+        assert( page.get(4).getAmount() == 1 );
+    }
+
     @Test
     public void testDepositToNonExistentAccount() throws NoSuchObjectInDatabaseException, UniqueIDConstraintException {
         Wallet wallet = new Wallet("WALL10", "US");
@@ -151,6 +173,67 @@ public class WalletTest {
         assert(false);
     }
 
+    @Test
+    public void loadingAWalletTwiceYieldsTheSameObject() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+        Wallet wallet = new Wallet("WAL007", "US");
+        wallet.createNewAccount("savings");
+
+        assert( Wallet.loadWallet("WAL007") == wallet );
+        assert( Wallet.loadWallet("WAL007") == Wallet.loadWallet("WAL007") );
+    }
+
+    @Test
+    public void loadWalletWithoutAccounts() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+        Wallet wallet = new Wallet("WAL008", "FR");
+        Wallet loaded = Wallet.loadWallet("WAL008");
+
+        assert( loaded.getRegionCode().equals("FR") );
+        loaded.createNewAccount("savings");
+        assert( wallet.getAccountBalanceFormatted("savings").equals("€0.00") );
+    }
+
+    @Test
+    public void reclaimingAWalletWithoutAccountsKeepsTheRegisteredObject() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException {
+        Wallet first = new Wallet("WAL010", "US");
+        Wallet second = new Wallet("WAL010", "FR");
+
+        assert( Wallet.loadWallet("WAL010") == first );
+        assert( first.getRegionCode().equals("FR") );
+        second.createNewAccount("savings");
+        assert( first.getAccountBalanceFormatted("savings").equals("€0.00") );
+    }
+
+    @Test
+    public void unreferencedWalletIsLoadedAgainFromTheRecords() throws Exception {
+        Wallet wallet = new Wallet("WAL011", "US");
+        wallet.createNewAccount("savings");
+        WeakReference<Wallet> registered = new WeakReference<Wallet>(wallet);
+        wallet = null;
+        for (int i = 0; i < 100 && registered.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assert( registered.get() == null );
+
+        Wallet loaded = Wallet.loadWallet("WAL011");
+        assert( loaded.getAccountBalanceFormatted("savings").equals("$0.00") );
+        assert( Wallet.loadWallet("WAL011") == loaded );
+    }
+
+    @Test
+    public void createTwoAccountsWithTheSameName() throws UniqueIDConstraintException {
+        Wallet wallet = new Wallet("WAL009", "US");
+        wallet.createNewAccount("savings");
+
+        try{
+            wallet.createNewAccount("savings");
+        }catch (UniqueIDConstraintException e) {
+            return;
+        }
+
+        assert(false);
+    }
+
     @Test
     public void loadWalletThatDoesNotExist() {
         try{
@@ -7,9 +7,22 @@ import org.junit.jupiter.api.Test;
 import uwallet.exceptions.NoSuchObjectInDatabaseException;
 import uwallet.exceptions.UniqueIDConstraintException;
 
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.List;
+
 
 public class AccountTest {
 
+    //the identity map only holds weak references, once the account is collected the next load reads the DB
+    private static void awaitCollected(WeakReference<Account> account) throws InterruptedException {
+        for (int i = 0; i < 100 && account.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assert(account.get() == null);
+    }
+
     @BeforeAll
     public static void flushDb(){
         uWalletDatabase db = new uWalletDatabase();
@@ -145,5 +158,97 @@ public class AccountTest {
         assert(loadedAccountUsd.getPastTransactions(1).get(0).getUUID().equals("110TX1"));
     }
 
+    @Test
+    public void testRecentTransactionsAreServedFromMemory() throws UniqueIDConstraintException {
+        Account accountUSD = new Account("chequing", "RING1", "wallet", "US");
+        accountUSD.deposit(1.0, "first");
+        accountUSD.deposit(2.0, "second");
+
+        //reads served from the ring buffer hand back the very same Transaction objects
+        assert(accountUSD.getPastTransactions(1).get(0) == accountUSD.getPastTransactions(1).get(0));
+        assert(accountUSD.getPastTransactions(1).get(0).getAmount() == 2.0);
+        //the account was created in memory so the buffer holds its whole history
+        assert(accountUSD.getPastTransactions(10).size() == 2);
+    }
+
+    @Test
+    public void testHistoryLargerThanRingBufferFallsBackToStorage() throws UniqueIDConstraintException {
+        Account accountUSD = new Account("chequing", "RING2", "wallet", "US");
+        for (int i = 1; i <= 40; i++)
+            accountUSD.deposit(i);
+
+        List<Transaction> last5 = accountUSD.getPastTransactions(5);
+        assert(last5.size() == 5);
+        assert(last5.get(0).getAmount() == 40);
+        assert(last5.get(4).getAmount() == 36);
+
+        List<Transaction> all = accountUSD.getPastTransactions(50);
+        assert(all.size() == 40);
+        //history is ordered by sequence so transactions within the same millisecond keep their order
+        assert(all.get(0).getAmount() == 40);
+        assert(all.get(39).getAmount() == 1);
+
+        List<Transaction> before = accountUSD.getPastTransactionsBefore(all.get(19).getSequence(), 5);
+        assert(before.size() == 5);
+        assert(before.get(0).getAmount() == 20);
+        assert(before.get(4).getAmount() == 16);
+    }
+
+    @Test
+    public void testLoadedAccountFillsRingBufferOnFirstRead() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException, InterruptedException {
+        Account accountUSD = new Account("chequing", "RING3", "wallet", "US");
+        accountUSD.deposit(5.0);
+        accountUSD.deposit(6.0);
+        WeakReference<Account> created = new WeakReference<Account>(accountUSD);
+        accountUSD = null;
+        awaitCollected(created);
+
+        Account loaded = Account.loadAccount("RING3");
+        List<Transaction> first = loaded.getPastTransactions(10);
+        assert(first.size() == 2);
+
+        loaded.deposit(7.0);
+        List<Transaction> second = loaded.getPastTransactions(10);
+        assert(second.size() == 3);
+        assert(second.get(0).getAmount() == 7.0);
+    }
+
+    @Test
+    public void testConcurrentLoadsYieldTheSameObject() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException, InterruptedException {
+        for (int round = 0; round < 20; round++) {
+            //fresh accounts every round, on record but no longer in memory
+            final String first = "LOADRACE" + round + "A";
+            final String second = "LOADRACE" + round + "B";
+            awaitCollected(new WeakReference<Account>(new Account("chequing", first, "wallet", "US")));
+            awaitCollected(new WeakReference<Account>(new Account("savings", second, "wallet", "US")));
+
+            final Account[] loaded = new Account[8];
+            Thread[] threads = new Thread[loaded.length];
+            for (int i = 0; i < threads.length; i++) {
+                final int slot = i;
+                threads[i] = new Thread() {
+                    public void run() {
+                        try {
+                            if (slot % 2 == 0)
+                                loaded[slot] = Account.loadAccount(first);
+                            else
+                                loaded[slot] = Account.loadAccounts(Arrays.asList(first, second)).get(0);
+                        } catch (NoSuchObjectInDatabaseException e) {
+                            e.printStackTrace();
+                        }
+                    }
+                };
+            }
+            for (Thread t : threads)
+                t.start();
+            for (Thread t : threads)
+                t.join();
+
+            for (Account acc : loaded)
+                assert(acc == loaded[0]);
+            assert(Account.loadAccount(first) == loaded[0]);
+        }
+    }
+
 }
 
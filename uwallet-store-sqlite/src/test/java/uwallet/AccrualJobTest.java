@@ -0,0 +1,96 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AccrualJobTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    private static AccrualRule onePercent(){
+        Map<String, BigDecimal> rates = new HashMap<String, BigDecimal>();
+        rates.put("US", new BigDecimal("0.01"));
+        return new RegionalRate(rates, BigDecimal.ZERO);
+    }
+
+    @Test
+    public void testInterestIsPostedToEveryAccount() throws Exception {
+        Wallet wallet = new Wallet("ACCRUAL1", "US");
+        for (int i = 0; i < 10; i++) {
+            wallet.createNewAccount("account" + i);
+            wallet.depositToAccount(100 * (i + 1), "account" + i);
+        }
+        wallet.createNewAccount("euros", "FR");
+        wallet.depositToAccount(100, "euros");
+        wallet.createNewAccount("empty");
+
+        AccrualResult result = new AccrualJob("interest-1", onePercent(), 3, 4, "interest").run();
+        assert( !result.isResumed() );
+        assert( result.getAccounts() == 12 );
+        //no rate for FR, nothing for an empty account
+        assert( result.getPostings() == 10 );
+        assert( result.getBatches() == 4 );
+
+        for (int i = 0; i < 10; i++)
+            assert( wallet.getAccountBalanceBigDecimal("account" + i).compareTo(BigDecimal.valueOf(101 * (i + 1))) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("euros").compareTo(new BigDecimal("100")) == 0 );
+        Transaction posting = wallet.getLastNTransactions("account0", 1).get(0);
+        assert( posting.getDescription().equals("interest") );
+        assert( posting.getAmount() == 1.0 );
+
+        //the job completed, running it again posts nothing
+        AccrualResult again = new AccrualJob("interest-1", onePercent(), 3, 4, "interest").run();
+        assert( again.isAlreadyCompleted() );
+        assert( wallet.getAccountBalanceBigDecimal("account0").compareTo(new BigDecimal("101")) == 0 );
+    }
+
+    @Test
+    public void testInterruptedJobResumesAfterItsCheckpoint() throws Exception {
+        Wallet wallet = new Wallet("ACCRUAL2", "US");
+        for (int i = 0; i < 4; i++) {
+            wallet.createNewAccount("account" + i);
+            wallet.depositToAccount(100, "account" + i);
+        }
+        //as left by a run that committed the batch of the first two accounts before it was interrupted
+        uWalletDatabase.commitBatch(Collections.<Account>emptyList(), Collections.<Transaction>emptyList(),
+                new JobCheckpoint("interest-2", "ACCRUAL2ACC2", false));
+
+        AccrualResult result = new AccrualJob("interest-2", onePercent(), 2, 2).run();
+        assert( result.isResumed() );
+        assert( result.getAccounts() == 2 );
+        assert( wallet.getAccountBalanceBigDecimal("account0").compareTo(new BigDecimal("100")) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("account1").compareTo(new BigDecimal("100")) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("account2").compareTo(new BigDecimal("101")) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("account3").compareTo(new BigDecimal("101")) == 0 );
+    }
+
+    @Test
+    public void testFeesAreRoundedAndNeverOverdraw() throws Exception {
+        Wallet wallet = new Wallet("ACCRUAL3", "US");
+        wallet.createNewAccount("rich");
+        wallet.depositToAccount(1000, "rich");
+        wallet.createNewAccount("poor");
+        wallet.depositToAccount(1, "poor");
+
+        AccrualRule fee = new AccrualRule() {
+            @Override
+            public BigDecimal accrue(String regionCode, BigDecimal balance) {
+                return new BigDecimal("-2.555");
+            }
+        };
+        AccrualResult result = new AccrualJob("fees-1", fee, 10, 2, "monthly fee").run();
+        assert( result.getPostings() == 1 );
+        assert( result.getSkipped() == 1 );
+        //HALF_EVEN, as balances are formatted
+        assert( wallet.getAccountBalanceBigDecimal("rich").compareTo(new BigDecimal("997.44")) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("poor").compareTo(new BigDecimal("1")) == 0 );
+    }
+}
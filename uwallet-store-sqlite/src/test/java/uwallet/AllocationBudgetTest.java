@@ -0,0 +1,116 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.InsufficientFundsException;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+
+/**
+ * Fails when the hot paths allocate more bytes per operation than their budget. Allocations are what drive young
+ * collections and with them our tail latency, so a budget may only be raised knowingly.
+ *
+ * The bytes allocated by the test thread are read from the JVM's per thread allocation counter. Each operation is
+ * warmed up first and then averaged over many runs. Budgets leave room for the interpreter and C1, which do not
+ * eliminate allocations the way C2 does.
+ */
+public class AllocationBudgetTest {
+
+    //storage included, about half of it is the formatted and UTF-8 encoded column values
+    private static final long DEPOSIT_BUDGET = 6 * 1024;
+    private static final long WITHDRAW_BUDGET = 6 * 1024;
+    //in memory only
+    private static final long TRANSACTION_BUDGET = 512;
+    private static final long FORMAT_BUDGET = 192;
+
+    private static final int WARMUP = 2000;
+    private static final int ITERATIONS = 5000;
+
+    private static com.sun.management.ThreadMXBean threads;
+
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    @BeforeAll
+    static void enableCounter(){
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        threads.setThreadAllocatedMemoryEnabled(true);
+        uWalletDatabase.flush();
+    }
+
+    private static long bytesPerOperation(Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP; i++)
+            operation.run();
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < ITERATIONS; i++)
+            operation.run();
+        long after = threads.getThreadAllocatedBytes(thread);
+        return (after - before) / ITERATIONS;
+    }
+
+    @Test
+    public void testDepositBudget() throws Exception {
+        final Account acc = new Account("budget", "ALLOC1", "wallet", "US");
+        long bytes = bytesPerOperation(new Operation() {
+            @Override
+            public void run() {
+                acc.deposit(1.25, "budget");
+            }
+        });
+        assert bytes <= DEPOSIT_BUDGET : "deposit allocates " + bytes + " bytes, budget is " + DEPOSIT_BUDGET;
+    }
+
+    @Test
+    public void testWithdrawBudget() throws Exception {
+        final Account acc = new Account("budget", "ALLOC2", "wallet", "US");
+        acc.deposit(1000000.0);
+        long bytes = bytesPerOperation(new Operation() {
+            @Override
+            public void run() throws InsufficientFundsException {
+                acc.withdraw(0.25, "budget");
+            }
+        });
+        assert bytes <= WITHDRAW_BUDGET : "withdraw allocates " + bytes + " bytes, budget is " + WITHDRAW_BUDGET;
+    }
+
+    @Test
+    public void testTransactionBudget() throws Exception {
+        final Account acc = new Account("budget", "ALLOC3", "wallet", "US", "100.00", 0);
+        long bytes = bytesPerOperation(new Operation() {
+            @Override
+            public void run() {
+                new DepositTransaction(1.25, acc, 42L, "budget");
+            }
+        });
+        assert bytes <= TRANSACTION_BUDGET : "a transaction allocates " + bytes + " bytes, budget is " + TRANSACTION_BUDGET;
+    }
+
+    @Test
+    public void testFormatBudget() throws Exception {
+        final CurrencyFormatter format = CurrencyFormatter.forRegion("US");
+        final BigDecimal amount = new BigDecimal("1234567.89");
+        long bytes = bytesPerOperation(new Operation() {
+            @Override
+            public void run() {
+                format.format(amount);
+            }
+        });
+        assert bytes <= FORMAT_BUDGET : "formatting allocates " + bytes + " bytes, budget is " + FORMAT_BUDGET;
+    }
+
+    @Test
+    public void testBalanceReadsDoNotAllocate() throws Exception {
+        final Account acc = new Account("budget", "ALLOC4", "wallet", "US", "100.00", 0);
+        long bytes = bytesPerOperation(new Operation() {
+            @Override
+            public void run() {
+                acc.getCurrentBalance();
+            }
+        });
+        assert bytes == 0 : "reading the balance allocates " + bytes + " bytes";
+    }
+}
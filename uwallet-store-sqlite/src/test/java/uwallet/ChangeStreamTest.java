@@ -0,0 +1,164 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.SubscriptionLaggedException;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ChangeStreamTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    @Test
+    public void testCommittedTransactionsArePublishedInOrder() throws Exception {
+        Wallet wallet = new Wallet("CHANGES1", "US");
+        wallet.createNewAccount("a");
+        wallet.createNewAccount("b");
+
+        ChangeSubscription changes = ChangeStream.subscribe(BackpressurePolicy.DROP_OLDEST);
+        long start = changes.getPosition();
+        wallet.depositToAccount(100, "a", "salary");
+        wallet.withdrawFromAccount(30, "a");
+        wallet.transfer(20, "a", "b");
+
+        ChangeEvent deposit = changes.poll();
+        assert( deposit.getPosition() == start + 1 );
+        assert( deposit.getAccountId().equals(wallet.getAccount("a").getAccountID()) );
+        assert( deposit.getWalletId().equals("CHANGES1") );
+        assert( deposit.getType().equals("DR") );
+        assert( deposit.getSequence() == 1 );
+        assert( deposit.getDescription().equals("salary") );
+        assert( deposit.getEndingBalance().compareTo(new BigDecimal("100")) == 0 );
+        ChangeEvent withdrawal = changes.poll();
+        assert( withdrawal.getType().equals("CR") );
+        assert( withdrawal.getEndingBalance().compareTo(new BigDecimal("70")) == 0 );
+        assert( changes.poll().getEndingBalance().compareTo(new BigDecimal("50")) == 0 );
+        ChangeEvent credit = changes.poll();
+        assert( credit.getAccountId().equals(wallet.getAccount("b").getAccountID()) );
+        assert( credit.getEndingBalance().compareTo(new BigDecimal("20")) == 0 );
+        assert( changes.poll() == null );
+        assert( changes.getMissed() == 0 );
+        changes.close();
+        assert( changes.poll() == null );
+    }
+
+    @Test
+    public void testSubscriptionResumesAfterItsPosition() throws Exception {
+        Wallet wallet = new Wallet("CHANGES2", "US");
+        wallet.createNewAccount("a");
+
+        ChangeSubscription first = ChangeStream.subscribe(BackpressurePolicy.DISCONNECT);
+        for (int i = 1; i <= 3; i++)
+            wallet.depositToAccount(i, "a");
+        first.poll();
+        long handled = first.getPosition();
+        first.close();
+
+        ChangeSubscription resumed = ChangeStream.subscribe(BackpressurePolicy.DISCONNECT, handled);
+        assert( resumed.poll().getSequence() == 2 );
+        assert( resumed.poll().getSequence() == 3 );
+        assert( resumed.poll() == null );
+        resumed.close();
+    }
+
+    @Test
+    public void testTimedPollIsWokenByACommit() throws Exception {
+        final Wallet wallet = new Wallet("CHANGES3", "US");
+        wallet.createNewAccount("a");
+        ChangeSubscription changes = ChangeStream.subscribe(BackpressurePolicy.BLOCK);
+
+        Thread depositor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    wallet.depositToAccount(5, "a");
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+        depositor.start();
+        ChangeEvent event = changes.poll(10, TimeUnit.SECONDS);
+        depositor.join();
+        assert( event != null );
+        assert( event.getAmount() == 5.0 );
+        assert( changes.poll(10, TimeUnit.MILLISECONDS) == null );
+        changes.close();
+    }
+
+    private static List<Transaction> history(String walletUID, int n) throws Exception {
+        Wallet wallet = new Wallet(walletUID, "US");
+        wallet.createNewAccount("a");
+        for (int i = 1; i <= n; i++)
+            wallet.depositToAccount(i, "a");
+        return wallet.getLastNTransactions("a", n);
+    }
+
+    @Test
+    public void testDropOldestSkipsWhatWasOverwritten() throws Exception {
+        List<Transaction> transactions = history("CHANGES4", 10);
+        ChangeRing ring = new ChangeRing(4);
+        ChangeSubscription changes = ring.subscribe(BackpressurePolicy.DROP_OLDEST, 0);
+        for (Transaction transaction : transactions)
+            ring.publish(transaction);
+
+        ChangeEvent oldest = changes.poll();
+        assert( oldest.getPosition() == 7 );
+        assert( changes.getMissed() == 6 );
+        assert( changes.poll().getPosition() == 8 );
+        assert( changes.poll().getPosition() == 9 );
+        assert( changes.poll().getPosition() == 10 );
+        assert( changes.poll() == null );
+    }
+
+    @Test
+    public void testDisconnectFailsOnceOverwritten() throws Exception {
+        List<Transaction> transactions = history("CHANGES5", 6);
+        ChangeRing ring = new ChangeRing(4);
+        ChangeSubscription changes = ring.subscribe(BackpressurePolicy.DISCONNECT, 0);
+        for (Transaction transaction : transactions)
+            ring.publish(transaction);
+        try {
+            changes.poll();
+            assert( false );
+        } catch (SubscriptionLaggedException e) {
+        }
+        assert( changes.isClosed() );
+        assert( ring.getSubscriptionCount() == 0 );
+    }
+
+    @Test
+    public void testBlockHoldsPublishingUntilRead() throws Exception {
+        final List<Transaction> transactions = history("CHANGES6", 3);
+        final ChangeRing ring = new ChangeRing(2);
+        ChangeSubscription changes = ring.subscribe(BackpressurePolicy.BLOCK, 0);
+        ring.publish(transactions.get(0));
+        ring.publish(transactions.get(1));
+
+        Thread publisher = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ring.publish(transactions.get(2));
+            }
+        });
+        publisher.start();
+        publisher.join(100);
+        //the ring is full of events the subscription has not read
+        assert( publisher.isAlive() );
+        assert( ring.getPosition() == 2 );
+
+        assert( changes.poll().getPosition() == 1 );
+        publisher.join(10000);
+        assert( !publisher.isAlive() );
+        assert( changes.poll().getPosition() == 2 );
+        assert( changes.poll().getPosition() == 3 );
+        assert( changes.getMissed() == 0 );
+    }
+}
@@ -0,0 +1,105 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.InsufficientFundsException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class CurrencyConversionTest {
+
+    @BeforeAll
+    static void loadRates() throws Exception {
+        uWalletDatabase.flush();
+        File file = File.createTempFile("fx-rates", ".properties");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("version=7\nUSD=1\nEUR=0.8\n".getBytes(StandardCharsets.UTF_8));
+        out.close();
+        ExchangeRates.load(file);
+    }
+
+    @AfterAll
+    static void forgetRates(){
+        ExchangeRates.reset();
+    }
+
+    @Test
+    public void testTransferIsConvertedAndRecorded() throws Exception {
+        Wallet wallet = new Wallet("FXWALLET1", "US");
+        wallet.createNewAccount("dollars");
+        wallet.createNewAccount("euros", "FR");
+        assert( wallet.getAccountCurrency("dollars").equals("USD") );
+        assert( wallet.getAccountCurrency("euros").equals("EUR") );
+
+        wallet.depositToAccount(100, "dollars");
+        wallet.transfer(25, "dollars", "euros", "holiday");
+
+        assert( wallet.getAccountBalanceBigDecimal("dollars").compareTo(new BigDecimal("75")) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("euros").compareTo(new BigDecimal("20")) == 0 );
+
+        Transaction debit = wallet.getLastNTransactions("dollars", 1).get(0);
+        Transaction credit = wallet.getLastNTransactions("euros", 1).get(0);
+        assert( credit.getAmount() == 20.0 );
+        assert( credit.getDescription().equals("holiday") );
+
+        CurrencyConversion conversion = wallet.getConversion(credit);
+        assert( conversion.getDebitUUID().equals(debit.getUUID()) );
+        assert( conversion.getCreditUUID().equals(credit.getUUID()) );
+        assert( conversion.getFromCurrency().equals("USD") );
+        assert( conversion.getToCurrency().equals("EUR") );
+        assert( conversion.getRate().compareTo(new BigDecimal("0.8")) == 0 );
+        assert( conversion.getRateVersion() == 7 );
+        assert( wallet.getConversion(debit).getCreditUUID().equals(credit.getUUID()) );
+    }
+
+    @Test
+    public void testConvertedAmountIsRoundedToTheTargetCurrency() throws Exception {
+        Wallet wallet = new Wallet("FXWALLET2", "FR");
+        wallet.createNewAccount("euros");
+        wallet.createNewAccount("dollars", "US");
+        wallet.depositToAccount(10, "euros");
+
+        //10 EUR is 12.5 USD, 0.01 EUR is 0.0125 USD which rounds to 0.01
+        wallet.transfer(0.01, "euros", "dollars");
+        assert( wallet.getAccountBalanceBigDecimal("dollars").compareTo(new BigDecimal("0.01")) == 0 );
+    }
+
+    @Test
+    public void testFailedTransferChangesNothing() throws Exception {
+        Wallet wallet = new Wallet("FXWALLET3", "US");
+        wallet.createNewAccount("dollars");
+        wallet.createNewAccount("euros", "FR");
+        wallet.depositToAccount(5, "dollars");
+
+        try {
+            wallet.transfer(10, "dollars", "euros");
+            assert( false );
+        } catch (InsufficientFundsException e) {
+            //expected
+        }
+        assert( wallet.getAccountBalanceBigDecimal("dollars").compareTo(new BigDecimal("5")) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("euros").compareTo(BigDecimal.ZERO) == 0 );
+        List<Transaction> history = wallet.getLastNTransactions("euros", 10);
+        assert( history.isEmpty() );
+
+        //the next transfer gets the next sequence, nothing was used up by the failed one
+        wallet.transfer(5, "dollars", "euros");
+        assert( wallet.getLastNTransactions("dollars", 1).get(0).getSequence() == 2 );
+    }
+
+    @Test
+    public void testSameCurrencyNeedsNoRate() throws Exception {
+        Wallet wallet = new Wallet("FXWALLET4", "FR");
+        wallet.createNewAccount("paris");
+        wallet.createNewAccount("berlin", "DE");
+        wallet.depositToAccount(10, "paris");
+        wallet.transfer(4, "paris", "berlin");
+        assert( wallet.getAccountBalanceBigDecimal("berlin").compareTo(new BigDecimal("4")) == 0 );
+    }
+}
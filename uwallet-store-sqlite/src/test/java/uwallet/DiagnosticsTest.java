@@ -0,0 +1,48 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+public class DiagnosticsTest {
+
+    @BeforeAll
+    static void flushDb(){
+        uWalletDatabase.flush();
+        AccountActivity.reset();
+    }
+
+    @Test
+    public void testSnapshotSeesTheHottestAccount() throws Exception {
+        Wallet wallet = new Wallet("DIAGNOSTICS1", "US");
+        wallet.createNewAccount("savings");
+        wallet.createNewAccount("checking");
+        for (int i = 0; i < 3; i++)
+            wallet.depositToAccount(10, "savings");
+        wallet.depositToAccount(10, "checking");
+
+        DiagnosticsSnapshot snapshot = Diagnostics.snapshot(1);
+        assert( snapshot.isEngineOpen() );
+        assert( snapshot.getEngineName() != null );
+        assert( !snapshot.getEngineDetails().isEmpty() );
+        assert( snapshot.getLiveAccounts() >= 2 );
+        assert( snapshot.getAccountReferences() >= snapshot.getLiveAccounts() );
+        assert( snapshot.getLoadedWallets() >= 1 );
+        assert( snapshot.getStorageUtilization() >= 0 && snapshot.getStorageUtilization() <= 1 );
+        assert( snapshot.getHottestAccounts().size() == 1 );
+        assert( snapshot.getHottestAccounts().get(0).getAccountId().equals("DIAGNOSTICS1ACC1") );
+        assert( snapshot.getHottestAccounts().get(0).getOperations() == 3 );
+    }
+
+    @Test
+    public void testReportOverJmx() throws Exception {
+        uWalletDatabase.open();
+        String report = (String) ManagementFactory.getPlatformMBeanServer().invoke(
+                new ObjectName(Diagnostics.OBJECT_NAME), "dumpReport",
+                new Object[]{5}, new String[]{int.class.getName()});
+        assert( report.startsWith("uwallet diagnostics") );
+        assert( report.contains("storage engine:") );
+    }
+}
@@ -0,0 +1,152 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.InsufficientFundsException;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.concurrent.TimeUnit;
+
+public class HoldTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    @Test
+    public void testHoldLowersTheAvailableBalanceOnly() throws Exception {
+        Wallet wallet = new Wallet("HOLD1", "US");
+        wallet.createNewAccount("card");
+        wallet.depositToAccount(100, "card");
+
+        Hold hold = wallet.placeHold(60, "card", 1, TimeUnit.HOURS, "coffee shop");
+        assert( wallet.getAccountBalanceBigDecimal("card").compareTo(new BigDecimal("100")) == 0 );
+        assert( wallet.getAccountAvailableBalance("card").compareTo(new BigDecimal("40")) == 0 );
+        assert( wallet.getLastNTransactions("card", 10).size() == 1 );
+
+        try {
+            wallet.withdrawFromAccount(50, "card");
+            assert( false );
+        } catch (InsufficientFundsException e) {
+        }
+        try {
+            wallet.placeHold(50, "card", 1, TimeUnit.HOURS);
+            assert( false );
+        } catch (InsufficientFundsException e) {
+        }
+        wallet.withdrawFromAccount(40, "card");
+        assert( wallet.getAccountAvailableBalance("card").signum() == 0 );
+
+        wallet.releaseHold(hold.getId());
+        assert( wallet.getAccountAvailableBalance("card").compareTo(new BigDecimal("60")) == 0 );
+        try {
+            wallet.releaseHold(hold.getId());
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+    }
+
+    @Test
+    public void testPartialCaptureReleasesTheRest() throws Exception {
+        Wallet wallet = new Wallet("HOLD2", "US");
+        wallet.createNewAccount("card");
+        wallet.depositToAccount(100, "card");
+        Hold hold = wallet.placeHold(80, "card", 1, TimeUnit.HOURS, "hotel");
+
+        try {
+            wallet.captureHold(hold.getId(), 90);
+            assert( false );
+        } catch (IllegalArgumentException e) {
+        }
+        Transaction capture = wallet.captureHold(hold.getId(), 65.5);
+        assert( capture.getDescription().equals("hotel") );
+        assert( capture.getAmount() == 65.5 );
+        assert( wallet.getAccountBalanceBigDecimal("card").compareTo(new BigDecimal("34.5")) == 0 );
+        assert( wallet.getAccountAvailableBalance("card").compareTo(new BigDecimal("34.5")) == 0 );
+        assert( wallet.getLastNTransactions("card", 1).get(0).getSequence() == capture.getSequence() );
+        try {
+            wallet.captureHold(hold.getId(), 1);
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+        assert( new LedgerReconciliation(1).run().isConsistent() );
+    }
+
+    @Test
+    public void testHoldsOfOtherWalletsCanNotBeTouched() throws Exception {
+        Wallet wallet = new Wallet("HOLD3", "US");
+        wallet.createNewAccount("card");
+        wallet.depositToAccount(10, "card");
+        Hold hold = wallet.placeHold(10, "card", 1, TimeUnit.HOURS);
+
+        Wallet other = new Wallet("HOLD4", "US");
+        try {
+            other.releaseHold(hold.getId());
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+        assert( wallet.getAccountAvailableBalance("card").signum() == 0 );
+    }
+
+    @Test
+    public void testExpiredHoldsAreReleased() throws Exception {
+        Wallet wallet = new Wallet("HOLD5", "US");
+        wallet.createNewAccount("card");
+        wallet.depositToAccount(100, "card");
+        Hold hold = wallet.placeHold(30, "card", 200, TimeUnit.MILLISECONDS);
+        wallet.placeHold(20, "card", 1, TimeUnit.HOURS);
+        assert( wallet.getAccountAvailableBalance("card").compareTo(new BigDecimal("50")) == 0 );
+
+        long deadline = System.currentTimeMillis() + 10000;
+        while (wallet.getAccountAvailableBalance("card").compareTo(new BigDecimal("80")) != 0
+                && System.currentTimeMillis() < deadline)
+            Thread.sleep(20);
+        assert( wallet.getAccountAvailableBalance("card").compareTo(new BigDecimal("80")) == 0 );
+        try {
+            wallet.captureHold(hold.getId(), 30);
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+    }
+
+    @Test
+    public void testHoldsMustBePositiveAndNotExpired() throws Exception {
+        Wallet wallet = new Wallet("HOLD6", "US");
+        wallet.createNewAccount("card");
+        wallet.depositToAccount(100, "card");
+
+        //a negative hold would lower the held balance and let a withdrawal take the balance below zero
+        double[] amounts = {-50, 0, 0.001};
+        for (double amount : amounts) {
+            try {
+                wallet.placeHold(amount, "card", 1, TimeUnit.HOURS);
+                assert( false );
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        long[] expiries = {0, -1};
+        for (long expiresIn : expiries) {
+            try {
+                wallet.placeHold(10, "card", expiresIn, TimeUnit.MINUTES);
+                assert( false );
+            } catch (IllegalArgumentException e) {
+            }
+        }
+        Account card = wallet.getAccount("card");
+        try {
+            card.placeHold(10, new Timestamp(System.currentTimeMillis() - 1000));
+            assert( false );
+        } catch (IllegalArgumentException e) {
+        }
+
+        assert( wallet.getAccountAvailableBalance("card").compareTo(new BigDecimal("100")) == 0 );
+        try {
+            wallet.withdrawFromAccount(150, "card");
+            assert( false );
+        } catch (InsufficientFundsException e) {
+        }
+    }
+}
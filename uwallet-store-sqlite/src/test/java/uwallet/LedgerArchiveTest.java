@@ -0,0 +1,116 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+public class LedgerArchiveTest {
+
+    @BeforeAll
+    static void flushDb(){
+        uWalletDatabase.flush();
+    }
+
+    @Test
+    public void testArchivedTransactionsAreReadThrough() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException, InterruptedException {
+        Account acc = new Account("mymoney", "ARCH1", "wallet", "US");
+        acc.deposit(1.0, "tx 1");
+        acc.deposit(2.0, "tx 2");
+        acc.deposit(3.0, "tx 3");
+        TimeUnit.MILLISECONDS.sleep(10);
+        Timestamp horizon = new Timestamp(System.currentTimeMillis());
+        TimeUnit.MILLISECONDS.sleep(10);
+        acc.deposit(4.0, "tx 4");
+        acc.deposit(5.0, "tx 5");
+
+        assert( uWalletDatabase.archiveTransactions("ARCH1", horizon) == 3 );
+        //nothing left to archive before the horizon
+        assert( uWalletDatabase.archiveTransactions("ARCH1", horizon) == 0 );
+
+        List<Transaction> past = uWalletDatabase.getNLastTransactions("ARCH1", 10);
+        assert( past.size() == 5 );
+        assert( past.get(0).getAmount() == 5.0 );
+        assert( past.get(1).getAmount() == 4.0 );
+        assert( past.get(2).getAmount() == 3.0 );
+        assert( past.get(3).getAmount() == 2.0 );
+        assert( past.get(4).getAmount() == 1.0 );
+        assert( past.get(2).getDescription().equals("tx 3") );
+        assert( past.get(2).getUUID().equals("ARCH1TX3") );
+        assert( past.get(2).getEndingBalance().toString().equals("6.0") );
+    }
+
+    @Test
+    public void testSecondArchivalRunCreatesNewSegment() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException, InterruptedException {
+        Account acc = new Account("mymoney", "ARCH2", "wallet", "FR");
+        acc.deposit(10.0);
+        TimeUnit.MILLISECONDS.sleep(10);
+        Timestamp firstHorizon = new Timestamp(System.currentTimeMillis());
+        TimeUnit.MILLISECONDS.sleep(10);
+        acc.deposit(20.0);
+        TimeUnit.MILLISECONDS.sleep(10);
+        Timestamp secondHorizon = new Timestamp(System.currentTimeMillis());
+        TimeUnit.MILLISECONDS.sleep(10);
+        acc.deposit(30.0);
+
+        assert( uWalletDatabase.archiveTransactions("ARCH2", firstHorizon) == 1 );
+        assert( uWalletDatabase.archiveTransactions("ARCH2", secondHorizon) == 1 );
+
+        List<Transaction> past = uWalletDatabase.getNLastTransactions("ARCH2", 2);
+        assert( past.size() == 2 );
+        assert( past.get(0).getAmount() == 30.0 );
+        assert( past.get(1).getAmount() == 20.0 );
+
+        past = uWalletDatabase.getNLastTransactions("ARCH2", 3);
+        assert( past.size() == 3 );
+        assert( past.get(2).getAmount() == 10.0 );
+    }
+
+    @Test
+    public void testAccountBalanceIsUntouchedByArchival() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException, InterruptedException {
+        Wallet wallet = new Wallet("ARCHWALLET", "US");
+        wallet.createNewAccount("savings");
+        wallet.depositToAccount(100.0, "savings");
+        TimeUnit.MILLISECONDS.sleep(10);
+
+        Wallet.archiveTransactionsBefore(new Timestamp(System.currentTimeMillis()));
+
+        assert( wallet.getAccountBalanceFormatted("savings").equals("$100.00") );
+        assert( wallet.getLastNTransactions("savings", 1).get(0).getAmount() == 100.0 );
+    }
+
+    private static File segmentWithVersion(int version) throws IOException {
+        File segment = File.createTempFile("segment", ".gz");
+        segment.deleteOnExit();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(new FileOutputStream(segment)));
+        out.writeInt(LedgerArchive.MAGIC);
+        out.writeInt(version);
+        out.writeBoolean(false);
+        out.close();
+        return segment;
+    }
+
+    @Test
+    public void testSegmentsOfUnknownVersionsAreRejected() throws IOException {
+        for (int version : new int[]{0, LedgerArchive.FORMAT_VERSION + 1}) {
+            try (LedgerArchive.SegmentReader reader = LedgerArchive.openForRead(segmentWithVersion(version))) {
+                assert( false );
+            } catch (IOException e) {
+                assert( e.getMessage().contains("version " + version) );
+            }
+        }
+        try (LedgerArchive.SegmentReader reader = LedgerArchive.openForRead(segmentWithVersion(LedgerArchive.FORMAT_VERSION))) {
+            assert( reader.version == LedgerArchive.FORMAT_VERSION );
+            assert( !reader.in.readBoolean() );
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.RateLimitExceededException;
+
+import java.math.BigDecimal;
+
+public class RateLimitsTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    @AfterEach
+    void removeLimits(){
+        RateLimits.setAccountLimit(0, 0);
+        RateLimits.setWalletLimit(0, 0);
+    }
+
+    @Test
+    public void testFloodedAccountDoesNotStarveTheOthers() throws Exception {
+        Wallet wallet = new Wallet("RATE1", "US");
+        wallet.createNewAccount("flooded");
+        wallet.createNewAccount("quiet");
+        //one write every 100 seconds, no token comes back while the test runs
+        RateLimits.setAccountLimit(0.01, 3);
+        long rejected = RateLimits.getAccountRejections();
+
+        for (int i = 0; i < 3; i++)
+            wallet.depositToAccount(1, "flooded");
+        try {
+            wallet.depositToAccount(1, "flooded");
+            assert( false );
+        } catch (RateLimitExceededException e) {
+        }
+        try {
+            wallet.transfer(1, "flooded", "quiet");
+            assert( false );
+        } catch (RateLimitExceededException e) {
+        }
+        assert( RateLimits.getAccountRejections() == rejected + 2 );
+        assert( Diagnostics.snapshot().getRateLimitedAccountWrites() == rejected + 2 );
+        assert( wallet.getAccountBalanceBigDecimal("flooded").compareTo(new BigDecimal("3")) == 0 );
+        assert( wallet.getLastNTransactions("flooded", 10).size() == 3 );
+
+        wallet.depositToAccount(1, "quiet");
+        assert( wallet.getAccountBalanceBigDecimal("quiet").compareTo(new BigDecimal("1")) == 0 );
+    }
+
+    @Test
+    public void testWalletLimitCoversAllItsAccounts() throws Exception {
+        Wallet wallet = new Wallet("RATE2", "US");
+        Wallet other = new Wallet("RATE3", "US");
+        wallet.createNewAccount("a");
+        wallet.createNewAccount("b");
+        other.createNewAccount("a");
+        RateLimits.setAccountLimit(0.01, 2);
+        RateLimits.setWalletLimit(0.01, 3);
+        long rejected = RateLimits.getWalletRejections();
+
+        wallet.depositToAccount(1, "a");
+        wallet.depositToAccount(1, "b");
+        wallet.depositToAccount(1, "b");
+        try {
+            wallet.depositToAccount(1, "a");
+            assert( false );
+        } catch (RateLimitExceededException e) {
+        }
+        assert( RateLimits.getWalletRejections() == rejected + 1 );
+        other.depositToAccount(1, "a");
+
+        //the token of the account was given back when the wallet refused the write
+        RateLimits.setWalletLimit(0, 0);
+        wallet.depositToAccount(1, "a");
+        assert( wallet.getAccountBalanceBigDecimal("a").compareTo(new BigDecimal("2")) == 0 );
+    }
+}
@@ -0,0 +1,149 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.InsufficientFundsException;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ReconciliationTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    private static List<Discrepancy.Kind> kinds(ReconciliationReport report){
+        List<Discrepancy.Kind> kinds = new ArrayList<Discrepancy.Kind>();
+        for (Discrepancy discrepancy : report.getDiscrepancies())
+            kinds.add(discrepancy.getKind());
+        return kinds;
+    }
+
+    @Test
+    public void testConsistentRecordsHaveNoDiscrepancies() throws Exception {
+        Wallet wallet = new Wallet("RECONCILE1", "US");
+        for (int i = 0; i < 20; i++) {
+            wallet.createNewAccount("account" + i);
+            wallet.depositToAccount(100.25 * (i + 1), "account" + i);
+            wallet.withdrawFromAccount(0.1, "account" + i);
+        }
+        //a refused withdrawal leaves a gap in the sequences
+        try {
+            wallet.withdrawFromAccount(1000000, "account0");
+            assert( false );
+        } catch (InsufficientFundsException e) {
+        }
+        wallet.depositToAccount(1, "account0");
+        wallet.transfer(50, "account3", "account4");
+        wallet.createNewAccount("empty");
+
+        ReconciliationReport report = new LedgerReconciliation(3).run();
+        assert( report.isConsistent() );
+        assert( report.getAccounts() == 21 );
+        assert( report.getTransactions() == 43 );
+    }
+
+    @Test
+    public void testBrokenChainIsReported() throws Exception {
+        Wallet wallet = new Wallet("RECONCILE2", "US");
+        wallet.createNewAccount("good");
+        wallet.depositToAccount(10, "good");
+        wallet.createNewAccount("bad");
+        wallet.depositToAccount(100, "bad");
+        wallet.depositToAccount(5, "bad");
+
+        //a transaction whose ending balance does not follow from the previous one, that the account does not know of
+        String id = wallet.getAccount("bad").getAccountID();
+        uWalletDatabase.insertTransaction(new DepositTransaction(new Timestamp(System.currentTimeMillis()),
+                id + "TX3", 3, id, 10, "999", "tampered"));
+
+        ReconciliationReport report = new LedgerReconciliation(2).run();
+        assert( !report.isConsistent() );
+        assert( report.getDiscrepancyCount() == 3 );
+        List<Discrepancy.Kind> kinds = kinds(report);
+        assert( kinds.contains(Discrepancy.Kind.BROKEN_CHAIN) );
+        assert( kinds.contains(Discrepancy.Kind.BALANCE_MISMATCH) );
+        assert( kinds.contains(Discrepancy.Kind.SEQUENCE_AHEAD_OF_ACCOUNT) );
+        for (Discrepancy discrepancy : report.getDiscrepancies())
+            assert( discrepancy.getAccountId().equals(id) );
+        Discrepancy broken = report.getDiscrepancies().get(0);
+        assert( broken.getKind() == Discrepancy.Kind.BROKEN_CHAIN );
+        assert( broken.getSequence() == 3 );
+        assert( new BigDecimal(broken.getExpected()).compareTo(new BigDecimal("115")) == 0 );
+        assert( new BigDecimal(broken.getActual()).compareTo(new BigDecimal("999")) == 0 );
+    }
+
+    @Test
+    public void testArchivedAccountsStartAtTheirCheckpoint() throws Exception {
+        Wallet wallet = new Wallet("RECONCILE3", "US");
+        wallet.createNewAccount("old");
+        wallet.depositToAccount(70, "old");
+        wallet.withdrawFromAccount(20, "old");
+        String id = wallet.getAccount("old").getAccountID();
+        assert( uWalletDatabase.archiveTransactions(id, new Timestamp(System.currentTimeMillis() + 1000)) == 2 );
+        wallet.depositToAccount(5, "old");
+
+        ReconciliationReport report = new LedgerReconciliation(1).run();
+        assert( report.isConsistent() );
+        assert( report.getTransactions() == 1 );
+    }
+
+    @Test
+    public void testWritersAreNotHeldUpNorSeen() throws Exception {
+        final Wallet wallet = new Wallet("RECONCILE4", "US");
+        for (int i = 0; i < 8; i++) {
+            wallet.createNewAccount("account" + i);
+            wallet.depositToAccount(1000, "account" + i);
+        }
+
+        LedgerSnapshot snapshot = uWalletDatabase.openLedgerSnapshot();
+        try {
+            //commits go through while the snapshot is open, and it keeps seeing the records as they were
+            for (int i = 0; i < 8; i++)
+                wallet.depositToAccount(1, "account" + i);
+            AccountLedger ledger = snapshot.next();
+            assert( ledger.entries.size() == 1 );
+            assert( new BigDecimal(ledger.balance).compareTo(new BigDecimal("1000")) == 0 );
+        } finally {
+            snapshot.close();
+        }
+
+        final Throwable[] failed = new Throwable[1];
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int n = 0; n < 200; n++)
+                        wallet.transfer(1, "account" + (n % 8), "account" + ((n + 1) % 8));
+                } catch (Throwable t) {
+                    failed[0] = t;
+                }
+            }
+        });
+        writer.start();
+        for (int run = 0; run < 5; run++)
+            assert( new LedgerReconciliation(4).run().isConsistent() );
+        writer.join();
+        assert( failed[0] == null );
+        assert( new LedgerReconciliation(4).run().isConsistent() );
+    }
+
+    @Test
+    public void testOrphanedTransactionsAreReported() {
+        AccountLedger ledger = new AccountLedger("GONEACC1", null, 0, 0, "0");
+        ledger.entries.add(new AccountLedger.Entry(1, "DR", 5, "5"));
+        List<Discrepancy> found = LedgerReconciliation.check(ledger);
+        assert( found.size() == 1 );
+        assert( found.get(0).getKind() == Discrepancy.Kind.ORPHAN_TRANSACTIONS );
+
+        AccountLedger unknown = new AccountLedger("ODDACC1", "5", 1, 0, "0");
+        unknown.entries.add(new AccountLedger.Entry(1, "XX", 5, "5"));
+        found = LedgerReconciliation.check(unknown);
+        assert( found.size() == 1 );
+        assert( found.get(0).getKind() == Discrepancy.Kind.UNKNOWN_TYPE );
+    }
+}
@@ -0,0 +1,114 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.sql.Timestamp;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class SearchTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    @Test
+    public void testSearchIsScopedToTheWalletOrAccount() throws Exception {
+        Wallet wallet = new Wallet("SEARCH1", "US");
+        Wallet other = new Wallet("SEARCH2", "US");
+        wallet.createNewAccount("chequing");
+        wallet.createNewAccount("card");
+        other.createNewAccount("chequing");
+        wallet.depositToAccount(100, "chequing", "Payroll ACME Corp");
+        wallet.withdrawFromAccount(4.5, "chequing", "Coffee Shop #42");
+        wallet.depositToAccount(10, "card", "coffee refund");
+        wallet.depositToAccount(10, "card", "Groceries");
+        other.depositToAccount(100, "chequing", "Coffee beans");
+
+        List<Transaction> found = wallet.searchTransactions("COFFEE", 0, 10);
+        assert( found.size() == 2 );
+        Set<String> descriptions = new HashSet<String>();
+        for (Transaction tx : found)
+            descriptions.add(tx.getDescription());
+        assert( descriptions.contains("Coffee Shop #42") && descriptions.contains("coffee refund") );
+
+        found = wallet.searchAccountTransactions("chequing", "coff sho", 0, 10);
+        assert( found.size() == 1 );
+        assert( found.get(0).getDescription().equals("Coffee Shop #42") );
+        assert( found.get(0).getAmount() == 4.5 );
+
+        assert( wallet.searchTransactions("beans", 0, 10).isEmpty() );
+        assert( other.searchTransactions("beans", 0, 10).size() == 1 );
+        assert( wallet.searchTransactions("#", 0, 10).isEmpty() );
+        try {
+            wallet.searchAccountTransactions("savings", "coffee", 0, 10);
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+        try {
+            wallet.searchTransactions("coffee", 0, 0);
+            assert( false );
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testMatchesAreRankedAndPaged() throws Exception {
+        Wallet wallet = new Wallet("SEARCH3", "US");
+        wallet.createNewAccount("chequing");
+        for (int i = 0; i < 25; i++)
+            wallet.depositToAccount(1, "chequing", "rent payment " + i);
+        wallet.depositToAccount(1, "chequing", "rent rent rent");
+        wallet.depositToAccount(1, "chequing", "utilities");
+
+        List<Transaction> first = wallet.searchTransactions("rent", 0, 10);
+        assert( first.size() == 10 );
+        assert( first.get(0).getDescription().equals("rent rent rent") );
+
+        Set<String> seen = new HashSet<String>();
+        int matches = 0;
+        for (int page = 0; ; page++) {
+            List<Transaction> found = wallet.searchTransactions("rent", page, 10);
+            for (Transaction tx : found)
+                assert( seen.add(tx.uuid) );
+            matches += found.size();
+            if (found.size() < 10)
+                break;
+        }
+        assert( matches == 26 );
+        assert( wallet.searchTransactions("rent payment 7", 0, 10).size() == 1 );
+    }
+
+    @Test
+    public void testSearchFindsTheSameTransactionsAfterCompaction() throws Exception {
+        Wallet wallet = new Wallet("SEARCH4", "US");
+        wallet.createNewAccount("chequing");
+        for (int i = 0; i < 20; i++)
+            wallet.depositToAccount(1, "chequing", "rent payment " + i);
+        Thread.sleep(5);
+        Timestamp horizon = new Timestamp(System.currentTimeMillis());
+        Thread.sleep(5);
+        for (int i = 0; i < 10; i++)
+            wallet.depositToAccount(1, "chequing", "groceries " + i);
+
+        //archival frees the pages of the older transactions, and compacts the records
+        assert( Wallet.archiveTransactionsBefore(horizon) == 20 );
+        assert( wallet.searchTransactions("rent", 0, 10).isEmpty() );
+        List<Transaction> found = wallet.searchTransactions("groceries", 0, 20);
+        assert( found.size() == 10 );
+        for (Transaction tx : found)
+            assert( tx.getDescription().startsWith("groceries ") );
+        found = wallet.searchTransactions("groceries 3", 0, 20);
+        assert( found.size() == 1 );
+        assert( found.get(0).getDescription().equals("groceries 3") );
+
+        wallet.depositToAccount(1, "chequing", "coffee");
+        found = wallet.searchTransactions("coffee", 0, 20);
+        assert( found.size() == 1 );
+        assert( found.get(0).getDescription().equals("coffee") );
+    }
+}
@@ -0,0 +1,47 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+import uwallet.exceptions.UniqueIDConstraintException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class SlowQueryLogTest {
+
+    private static long previousThreshold;
+
+    @BeforeAll
+    static void logEverything(){
+        previousThreshold = SlowQueryLog.getThresholdMillis();
+        SlowQueryLog.setThresholdMillis(0);
+    }
+
+    @AfterAll
+    static void restoreThreshold(){
+        SlowQueryLog.setThresholdMillis(previousThreshold);
+    }
+
+    @Test
+    public void testSlowHistoryReadIsLoggedWithItsPlan() throws UniqueIDConstraintException, NoSuchObjectInDatabaseException, IOException {
+        Account acc = new Account("mymoney", "SLOW1", "wallet", "US");
+        acc.deposit(1.0);
+        uWalletDatabase.getNLastTransactions("SLOW1", 5);
+
+        String log = new String(Files.readAllBytes(SlowQueryLog.currentLogFile().toPath()), StandardCharsets.UTF_8);
+        assert( log.contains("params=[SLOW1, 9223372036854775807, 5]") );
+        assert( log.contains("TransactionsByAccountSeq") );
+        assert( log.contains("INSERT OR REPLACE INTO Transactions") );
+    }
+
+    @Test
+    public void testNegativeThresholdTurnsTheLogOff(){
+        SlowQueryLog.setThresholdMillis(-1);
+        assert( !SlowQueryLog.isSlow(Long.MAX_VALUE) );
+        SlowQueryLog.setThresholdMillis(0);
+        assert( SlowQueryLog.isSlow(0) );
+    }
+}
@@ -0,0 +1,62 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.sql.Timestamp;
+
+public class StatementJobTest {
+
+    private static Timestamp from;
+    private static Timestamp to;
+
+    private static Timestamp now() throws InterruptedException {
+        Thread.sleep(5);
+        Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+        Thread.sleep(5);
+        return timestamp;
+    }
+
+    @BeforeAll
+    static void makeHistory() throws Exception {
+        Wallet.deleteAllRecord("delete");
+        Wallet wallet = new Wallet("STATEMENTS1", "US");
+        wallet.createNewAccount("chequing");
+        wallet.createNewAccount("savings");
+        wallet.depositToAccount(1000, "chequing", "before");
+        from = now();
+        wallet.depositToAccount(250.5, "chequing", "salary, november");
+        wallet.withdrawFromAccount(50, "chequing", "groceries");
+        to = now();
+        wallet.depositToAccount(5, "chequing", "after");
+    }
+
+    @Test
+    public void testTextStatementOfOneAccount() throws Exception {
+        String statement = Wallet.loadWallet("STATEMENTS1").getStatement("chequing", from, to, StatementFormat.TEXT);
+        String[] lines = statement.split(System.lineSeparator());
+        assert( lines[0].startsWith("Statement of chequing (STATEMENTS1ACC1)") );
+        assert( lines[2].equals("Opening balance: $1,000.00") );
+        assert( lines[3].contains("| 2 | DR | $250.50 | $1,250.50 | salary, november") );
+        assert( lines[4].contains("| 3 | CR | $50.00 | $1,200.50 | groceries") );
+        assert( lines[5].equals("Closing balance: $1,200.50") );
+    }
+
+    @Test
+    public void testCsvOfEveryAccount() throws Exception {
+        StringWriter out = new StringWriter();
+        long written = new StatementJob(from, to, StatementFormat.CSV, 2).writeTo(out);
+        assert( written == 2 );
+
+        String[] rows = out.toString().split(System.lineSeparator());
+        assert( rows[0].equals(StatementFormat.HEADER) );
+        assert( rows.length == 1 + 4 + 2 );
+        assert( rows[1].startsWith("STATEMENTS1ACC1,STATEMENTS1,") && rows[1].contains(",OPENING,,\"$1,000.00\",") );
+        assert( rows[2].contains(",2,DR,$250.50,\"$1,250.50\",\"salary, november\"") );
+        assert( rows[4].contains(",CLOSING,,\"$1,200.50\",") );
+        //an account without transactions opens and closes at 0
+        assert( rows[5].startsWith("STATEMENTS1ACC2") && rows[5].contains(",OPENING,,$0.00,") );
+        assert( rows[6].contains(",CLOSING,,$0.00,") );
+    }
+}
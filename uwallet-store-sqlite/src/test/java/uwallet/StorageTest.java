@@ -0,0 +1,57 @@
+package uwallet;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+public class StorageTest {
+
+    @BeforeAll
+    static void flushDb(){
+        uWalletDatabase.flush();
+    }
+
+    @AfterEach
+    void restart(){
+        AccessLog.setRecording(false);
+        AccessLog.reset();
+        Storage.start();
+    }
+
+    @Test
+    public void testStopAndStartAgain() throws Exception {
+        Wallet wallet = new Wallet("LIFECYCLE1", "US");
+        wallet.createNewAccount("savings");
+
+        Storage.start();
+        assert( Storage.isStarted() );
+        Storage.stop();
+        assert( !Storage.isStarted() );
+        assert( !uWalletDatabase.isOpen() );
+
+        //the first operation after a stop opens the engine again
+        wallet.depositToAccount(10, "savings");
+        assert( uWalletDatabase.isOpen() );
+        assert( wallet.getAccountBalanceFormatted("savings").equals("$10.00") );
+    }
+
+    @Test
+    public void testPrewarmLoadsTheAccessLog() throws Exception {
+        Wallet wallet = new Wallet("LIFECYCLE2", "US");
+        wallet.createNewAccount("savings");
+        wallet.depositToAccount(10, "savings");
+
+        AccessLog.setRecording(true);
+        Wallet.loadWallet("LIFECYCLE2");
+        AccessLog.recordAccount("LIFECYCLE2ACC1");
+        AccessLog.recordAccount("DELETEDACC");
+        File file = File.createTempFile("access", ".log");
+        AccessLog.save(file, 10);
+
+        //the deleted account is skipped
+        assert( Storage.prewarm(AccessLog.read(file)) == 2 );
+        file.delete();
+    }
+}
@@ -86,4 +86,15 @@ public class TransactionTest {
         WithdrawalTransaction withTX = new WithdrawalTransaction(400.0, testAccount, "TEST");
         assert(withTX.getUUID().equals("ITEST"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSequenceIsDerivedFromTxID() throws UniqueIDConstraintException {
+        Account testAccount = new Account("test", "J", "wallet", "US");
+        assert(new DepositTransaction(1.0, testAccount, "TX12").getSequence() == 12);
+        assert(new DepositTransaction(1.0, testAccount, "test").getSequence() == 0);
+
+        DepositTransaction depositTX = new DepositTransaction(1.0, testAccount, 7);
+        assert(depositTX.getSequence() == 7);
+        assert(depositTX.getUUID().equals("JTX7"));
+    }
+}
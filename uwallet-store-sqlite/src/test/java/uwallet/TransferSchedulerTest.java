@@ -0,0 +1,191 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class TransferSchedulerTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    //the scheduler thread may make the transfers before runDue does, either way their runs are recorded
+    private static List<TransferRun> awaitRuns(Wallet wallet, String transferId, int runs) throws Exception {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (true) {
+            TransferScheduler.runDue();
+            List<TransferRun> made = wallet.getTransferRuns(transferId);
+            if (made.size() >= runs || System.currentTimeMillis() > deadline)
+                return made;
+            Thread.sleep(10);
+        }
+    }
+
+    private static Timestamp ago(long amount, TimeUnit unit) {
+        return new Timestamp(System.currentTimeMillis() - unit.toMillis(amount));
+    }
+
+    @Test
+    public void testDueTransferIsMadeOnce() throws Exception {
+        Wallet wallet = new Wallet("SCHED1", "US");
+        wallet.createNewAccount("chequing");
+        wallet.createNewAccount("savings");
+        wallet.depositToAccount(100, "chequing");
+
+        ScheduledTransfer transfer = wallet.scheduleTransfer(40, "chequing", "savings",
+                ago(1, TimeUnit.MINUTES), Recurrence.ONCE, "savings plan");
+        List<TransferRun> runs = awaitRuns(wallet, transfer.getId(), 1);
+        assert( runs.size() == 1 );
+        assert( runs.get(0).isSucceeded() );
+        assert( runs.get(0).getDue().equals(transfer.getDue()) );
+        assert( wallet.getAccountBalanceBigDecimal("chequing").compareTo(new BigDecimal("60")) == 0 );
+        assert( wallet.getAccountBalanceBigDecimal("savings").compareTo(new BigDecimal("40")) == 0 );
+        assert( wallet.getLastNTransactions("savings", 1).get(0).getDescription().equals("savings plan") );
+
+        //a transfer that was made for the last time has ended
+        try {
+            wallet.cancelScheduledTransfer(transfer.getId());
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+        assert( TransferScheduler.runDue().isEmpty() );
+        assert( wallet.getTransferRuns(transfer.getId()).size() == 1 );
+    }
+
+    @Test
+    public void testFailedOccurrenceIsRecordedAndMissedOnesAreSkipped() throws Exception {
+        Wallet wallet = new Wallet("SCHED2", "US");
+        wallet.createNewAccount("chequing");
+        wallet.createNewAccount("savings");
+        wallet.depositToAccount(10, "chequing");
+
+        ScheduledTransfer transfer = wallet.scheduleTransfer(25, "chequing", "savings",
+                ago(30, TimeUnit.DAYS), Recurrence.WEEKLY);
+        List<TransferRun> runs = awaitRuns(wallet, transfer.getId(), 1);
+        assert( runs.size() == 1 );
+        assert( !runs.get(0).isSucceeded() );
+        assert( wallet.getAccountBalanceBigDecimal("chequing").compareTo(new BigDecimal("10")) == 0 );
+        assert( wallet.getLastNTransactions("savings", 10).isEmpty() );
+
+        //the four weeks that were missed are not made late, the next occurrence is the next one to come
+        ScheduledTransfer next = uWalletDatabase.getScheduledTransfer(transfer.getId());
+        assert( next.getOccurrence() == 5 );
+        assert( next.getDue().getTime() > System.currentTimeMillis() );
+        assert( TransferScheduler.runDue().isEmpty() );
+
+        wallet.cancelScheduledTransfer(transfer.getId());
+        try {
+            uWalletDatabase.getScheduledTransfer(transfer.getId());
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+    }
+
+    @Test
+    public void testTransfersOfOtherWalletsCanNotBeCancelled() throws Exception {
+        Wallet wallet = new Wallet("SCHED3", "US");
+        wallet.createNewAccount("chequing");
+        wallet.createNewAccount("savings");
+        Wallet other = new Wallet("SCHED4", "US");
+
+        ScheduledTransfer transfer = wallet.scheduleTransfer(5, "chequing", "savings",
+                new Timestamp(System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1)), Recurrence.MONTHLY);
+        try {
+            other.cancelScheduledTransfer(transfer.getId());
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+        assert( other.getTransferRuns(transfer.getId()).isEmpty() );
+        try {
+            wallet.scheduleTransfer(0, "chequing", "savings", ago(1, TimeUnit.MINUTES), Recurrence.ONCE);
+            assert( false );
+        } catch (IllegalArgumentException e) {
+        }
+        try {
+            wallet.scheduleTransfer(5, "chequing", "nothing", ago(1, TimeUnit.MINUTES), Recurrence.ONCE);
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+        wallet.cancelScheduledTransfer(transfer.getId());
+    }
+
+    @Test
+    public void testBatchesOfManyTransfersAreMadeTogether() throws Exception {
+        Wallet wallet = new Wallet("SCHED5", "US");
+        wallet.createNewAccount("chequing");
+        wallet.depositToAccount(1000, "chequing");
+        for (int i = 0; i < 10; i++)
+            wallet.createNewAccount("goal" + i);
+
+        List<ScheduledTransfer> transfers = new ArrayList<ScheduledTransfer>();
+        for (int i = 0; i < 200; i++)
+            transfers.add(wallet.scheduleTransfer(5, "chequing", "goal" + (i % 10),
+                    ago(1, TimeUnit.MINUTES), Recurrence.ONCE));
+        for (ScheduledTransfer transfer : transfers)
+            assert( awaitRuns(wallet, transfer.getId(), 1).get(0).isSucceeded() );
+
+        assert( wallet.getAccountBalanceBigDecimal("chequing").signum() == 0 );
+        for (int i = 0; i < 10; i++)
+            assert( wallet.getAccountBalanceBigDecimal("goal" + i).compareTo(new BigDecimal("100")) == 0 );
+        assert( wallet.getLastNTransactions("chequing", 1000).size() == 201 );
+        assert( new LedgerReconciliation(1).run().isConsistent() );
+    }
+
+    @Test
+    public void testTransferThatKeepsFailingGetsAFailedRun() throws Exception {
+        File file = File.createTempFile("fx-rates", ".properties");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("version=1\nUSD=1\nJPY=150\n".getBytes(StandardCharsets.UTF_8));
+        out.close();
+        ExchangeRates.load(file);
+        try {
+            Wallet wallet = new Wallet("SCHED6", "US");
+            wallet.createNewAccount("chequing");
+            wallet.createNewAccount("savings");
+            wallet.createNewAccount("reserve");
+            wallet.createNewAccount("yen", "JP");
+            wallet.depositToAccount(100, "chequing");
+            wallet.depositToAccount(Double.MAX_VALUE, "reserve");
+            BigDecimal reserve = wallet.getAccountBalanceBigDecimal("reserve");
+
+            //both are made in the same batch, the yen the largest double converts to is no double
+            ScheduledTransfer daily = wallet.scheduleTransfer(10, "chequing", "savings",
+                    ago(1, TimeUnit.MINUTES), Recurrence.DAILY);
+            ScheduledTransfer failing = wallet.scheduleTransfer(Double.MAX_VALUE, "reserve", "yen",
+                    ago(1, TimeUnit.MINUTES), Recurrence.DAILY);
+
+            List<TransferRun> runs = awaitRuns(wallet, daily.getId(), 1);
+            assert( runs.size() == 1 );
+            assert( runs.get(0).isSucceeded() );
+            assert( wallet.getAccountBalanceBigDecimal("savings").compareTo(new BigDecimal("10")) == 0 );
+
+            //the failing transfer goes on to its next occurrence instead of being retried
+            runs = awaitRuns(wallet, failing.getId(), 1);
+            assert( runs.size() == 1 );
+            assert( !runs.get(0).isSucceeded() );
+            assert( uWalletDatabase.getScheduledTransfer(failing.getId()).getDue().getTime()
+                    > System.currentTimeMillis() );
+            TransferScheduler.runDue();
+            assert( wallet.getTransferRuns(failing.getId()).size() == 1 );
+            assert( wallet.getAccountBalanceBigDecimal("reserve").compareTo(reserve) == 0 );
+            assert( wallet.getAccountBalanceBigDecimal("yen").signum() == 0 );
+
+            wallet.cancelScheduledTransfer(daily.getId());
+            wallet.cancelScheduledTransfer(failing.getId());
+        } finally {
+            ExchangeRates.reset();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package uwallet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uwallet.exceptions.InsufficientFundsException;
+import uwallet.exceptions.NoSuchObjectInDatabaseException;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+
+public class WalletTransferTest {
+
+    @BeforeEach
+    void flushDb(){
+        Wallet.deleteAllRecord("delete");
+    }
+
+    @Test
+    public void testTransferToAnotherWallet() throws Exception {
+        Wallet alice = new Wallet("P2P1", "US");
+        Wallet bob = new Wallet("P2P2", "US");
+        alice.createNewAccount("chequing");
+        bob.createNewAccount("chequing");
+        alice.depositToAccount(100, "chequing");
+
+        alice.transferToWallet(30, "chequing", bob, "chequing", "dinner");
+        assert( alice.getAccountBalanceBigDecimal("chequing").compareTo(new BigDecimal("70")) == 0 );
+        assert( bob.getAccountBalanceBigDecimal("chequing").compareTo(new BigDecimal("30")) == 0 );
+        Transaction credit = bob.getLastNTransactions("chequing", 1).get(0);
+        assert( credit.getDescription().equals("dinner") );
+        assert( credit.getSequence() == 1 );
+
+        try {
+            alice.transferToWallet(71, "chequing", bob, "chequing");
+            assert( false );
+        } catch (InsufficientFundsException e) {
+        }
+        assert( alice.getLastNTransactions("chequing", 10).size() == 2 );
+        assert( bob.getLastNTransactions("chequing", 10).size() == 1 );
+
+        //the names are looked up in the wallet each account belongs to
+        try {
+            alice.transferToWallet(1, "chequing", bob, "savings");
+            assert( false );
+        } catch (NoSuchObjectInDatabaseException e) {
+        }
+        try {
+            alice.transferToWallet(1, "chequing", alice, "chequing");
+            assert( false );
+        } catch (IllegalArgumentException e) {
+        }
+        assert( new LedgerReconciliation(1).run().isConsistent() );
+    }
+
+    @Test
+    public void testOpposingTransfersDoNotDeadlock() throws Exception {
+        final Wallet alice = new Wallet("P2P3", "US");
+        final Wallet bob = new Wallet("P2P4", "US");
+        alice.createNewAccount("chequing");
+        bob.createNewAccount("chequing");
+        alice.depositToAccount(1000, "chequing");
+        bob.depositToAccount(1000, "chequing");
+
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final boolean fromAlice = t % 2 == 0;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 200; i++) {
+                            if (fromAlice)
+                                alice.transferToWallet(1, "chequing", bob, "chequing");
+                            else
+                                bob.transferToWallet(1, "chequing", alice, "chequing");
+                        }
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(60000);
+            assert( !thread.isAlive() );
+        }
+
+        assert( alice.getAccountBalanceBigDecimal("chequing").compareTo(new BigDecimal("1000")) == 0 );
+        assert( bob.getAccountBalanceBigDecimal("chequing").compareTo(new BigDecimal("1000")) == 0 );
+        assert( alice.getLastNTransactions("chequing", 1000).size() == 801 );
+        assert( new LedgerReconciliation(1).run().isConsistent() );
+    }
+}
@@ -231,4 +231,21 @@ public class uWalletDatabaseTest {
 
     }
 
+    @Test
+    public void testStorageOperationsAreTimed() throws NoSuchObjectInDatabaseException, UniqueIDConstraintException {
+        long commits = StorageMetrics.getOperationLatencies().get("commit").getCount();
+        long reads = StorageMetrics.getOperationLatencies().get("getNLastTransactions").getCount();
+        long waits = StorageMetrics.getLockWait().getCount();
+
+        Account acc = new Account("mymoney", "METRICS", "wallet", "US");
+        acc.deposit(1.0);
+        uWalletDatabase.getNLastTransactions("METRICS", 1);
+
+        LatencySnapshot commitLatency = StorageMetrics.getOperationLatencies().get("commit");
+        assert( commitLatency.getCount() > commits );
+        assert( commitLatency.getMax() > 0 );
+        assert( StorageMetrics.getOperationLatencies().get("getNLastTransactions").getCount() == reads + 1 );
+        assert( StorageMetrics.getLockWait().getCount() > waits );
+    }
+
 }
\ No newline at end of file